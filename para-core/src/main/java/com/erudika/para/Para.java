@@ -205,6 +205,16 @@ public final class Para {
 		destroyListeners.add(dl);
 	}
 
+	/**
+	 * Registers a new destruction listener which is executed before all others.
+	 * Use this for listeners which still depend on other services, like flushing buffered writes.
+	 *
+	 * @param dl the listener
+	 */
+	public static void addFirstDestroyListener(DestroyListener dl) {
+		destroyListeners.add(0, dl);
+	}
+
 	/**
 	 * Returns the Para executor service
 	 * @return a fixed thread executor service
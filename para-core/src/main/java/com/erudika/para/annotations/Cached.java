@@ -63,7 +63,11 @@ public @interface Cached {
 		/**
 		 * Delete all objects from cache.
 		 */
-		DELETE_ALL;
+		DELETE_ALL,
+		/**
+		 * Delete an object from cache by id, after it was modified in the data store.
+		 */
+		EVICT;
 	}
 
 	/**
@@ -53,7 +53,11 @@ public @interface Indexed {
 		/**
 		 * Removes many objects from index.
 		 */
-		REMOVE_ALL;
+		REMOVE_ALL,
+		/**
+		 * Reads an object by id and indexes it again, after it was modified in the data store.
+		 */
+		REINDEX;
 	}
 
 	/**
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import com.erudika.para.Para;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes all links or all children of an object, no matter how many there are. Matching objects are streamed
+ * from the search index with a scroll cursor, or from the data store when it can look up objects by parent id,
+ * and deleted with {@link DAO#deleteAll(java.lang.String, java.util.List)} in batches of
+ * {@code cascade_delete_batch_size}. Up to {@code cascade_delete_threads} batches are deleted in parallel and
+ * the stream is paused while they are all busy, so memory use stays bounded.
+ * <br>
+ * A cascade can run on the calling thread or in the background, with {@link Para#asyncExecute(java.lang.Runnable)}.
+ * Either way, its progress is tracked by a {@link Task}, which can be looked up by id with
+ * {@link #getTask(java.lang.String)} for an hour after it finishes.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class CascadeDeleter {
+
+	private static final Logger logger = LoggerFactory.getLogger(CascadeDeleter.class);
+	private static final int BATCH_SIZE = Math.max(Config.getConfigInt("cascade_delete_batch_size", 100), 1);
+	private static final int THREADS = Math.max(Config.getConfigInt("cascade_delete_threads", 4), 1);
+	private static final long TASK_RETENTION = TimeUnit.HOURS.toMillis(1);
+	private static final Map<String, Task> tasks = new ConcurrentHashMap<String, Task>();
+	// deletes batches, shared by all cascades
+	private static final ExecutorService workers = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "para-cascade-delete");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	static {
+		Para.addDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				workers.shutdownNow();
+			}
+		});
+	}
+
+	private CascadeDeleter() { }
+
+	/**
+	 * Deletes all {@link Linker} objects where one of the ids is the id of the given object.
+	 * Returns when all links are deleted.
+	 * @param obj the object to unlink
+	 * @return the finished task
+	 */
+	public static Task unlinkAll(ParaObject obj) {
+		Task task = newTask(obj, "links");
+		run(task, obj.getDao(), links(obj));
+		return task;
+	}
+
+	/**
+	 * Deletes all {@link Linker} objects where one of the ids is the id of the given object, in the background.
+	 * @param obj the object to unlink
+	 * @return the task, which is updated as the cascade progresses
+	 */
+	public static Task unlinkAllAsync(final ParaObject obj) {
+		final Task task = newTask(obj, "links");
+		Para.asyncExecute(new Runnable() {
+			public void run() {
+				CascadeDeleter.run(task, obj.getDao(), links(obj));
+			}
+		});
+		return task;
+	}
+
+	/**
+	 * Deletes all objects of a given type whose parent is the given object.
+	 * Returns when all children are deleted.
+	 * @param obj the parent object
+	 * @param type the children's type
+	 * @return the finished task
+	 */
+	public static Task deleteChildren(ParaObject obj, String type) {
+		Task task = newTask(obj, "children:" + type);
+		run(task, obj.getDao(), children(obj, type));
+		return task;
+	}
+
+	/**
+	 * Deletes all objects of a given type whose parent is the given object, in the background.
+	 * @param obj the parent object
+	 * @param type the children's type
+	 * @return the task, which is updated as the cascade progresses
+	 */
+	public static Task deleteChildrenAsync(final ParaObject obj, final String type) {
+		final Task task = newTask(obj, "children:" + type);
+		Para.asyncExecute(new Runnable() {
+			public void run() {
+				CascadeDeleter.run(task, obj.getDao(), children(obj, type));
+			}
+		});
+		return task;
+	}
+
+	/**
+	 * Returns a running cascade, or one which finished recently.
+	 * @param id the id of the task
+	 * @return the task or null if not found
+	 */
+	public static Task getTask(String id) {
+		return (id == null) ? null : tasks.get(id);
+	}
+
+	private static Task newTask(ParaObject obj, String target) {
+		long now = Utils.timestamp();
+		for (Iterator<Task> it = tasks.values().iterator(); it.hasNext();) {
+			Task old = it.next();
+			if (old.isDone() && old.getFinished() < now - TASK_RETENTION) {
+				it.remove();
+			}
+		}
+		Task task = new Task(Utils.getNewId(), obj.getAppid(), obj.getId(), target, now);
+		tasks.put(task.getId(), task);
+		return task;
+	}
+
+	private static Iterator<ParaObject> links(ParaObject obj) {
+		if (StringUtils.isBlank(obj.getId())) {
+			return Collections.<ParaObject>emptyIterator();
+		}
+		Map<String, Object> terms = new HashMap<String, Object>();
+		// all links where id1 == id OR id2 == id
+		terms.put("id1", obj.getId());
+		terms.put("id2", obj.getId());
+		return orEmpty(obj.getSearch().<ParaObject>iterateTerms(obj.getAppid(), Utils.type(Linker.class),
+				terms, false));
+	}
+
+	private static Iterator<ParaObject> children(ParaObject obj, String type) {
+		if (StringUtils.isBlank(obj.getId())) {
+			return Collections.<ParaObject>emptyIterator();
+		}
+		Pager pager = new Pager(BATCH_SIZE);
+		List<ParaObject> first = obj.getDao().readByField(obj.getAppid(), Config._PARENTID, obj.getId(), pager);
+		if (first == null) {
+			return orEmpty(obj.getSearch().<ParaObject>iterateTerms(obj.getAppid(), type,
+					Collections.singletonMap(Config._PARENTID, obj.getId()), true));
+		}
+		return new ChildIterator(obj, type, pager, first);
+	}
+
+	private static Iterator<ParaObject> orEmpty(Iterator<ParaObject> it) {
+		return (it == null) ? Collections.<ParaObject>emptyIterator() : it;
+	}
+
+	private static void run(final Task task, final DAO dao, Iterator<ParaObject> source) {
+		final Semaphore permits = new Semaphore(THREADS);
+		List<Future<?>> batches = new LinkedList<Future<?>>();
+		try {
+			List<ParaObject> batch = new ArrayList<ParaObject>(BATCH_SIZE);
+			while (source.hasNext()) {
+				ParaObject obj = source.next();
+				if (obj != null) {
+					batch.add(obj);
+					task.found.incrementAndGet();
+				}
+				if (batch.size() >= BATCH_SIZE || (!batch.isEmpty() && !source.hasNext())) {
+					final List<ParaObject> objects = batch;
+					batch = new ArrayList<ParaObject>(BATCH_SIZE);
+					permits.acquire();
+					batches.add(workers.submit(new Runnable() {
+						public void run() {
+							try {
+								dao.deleteAll(task.getAppid(), objects);
+								task.deleted.addAndGet(objects.size());
+							} finally {
+								permits.release();
+							}
+						}
+					}));
+				}
+				// forget the batches which are done, only the pending ones are waited for
+				while (!batches.isEmpty() && batches.get(0).isDone()) {
+					batches.remove(0).get();
+				}
+			}
+			for (Future<?> pending : batches) {
+				pending.get();
+			}
+		} catch (Exception e) {
+			task.failed = true;
+			logger.error("Cascade delete of " + task.getTarget() + " of " + task.getObjectId() + " failed.", e);
+		} finally {
+			task.finished = Utils.timestamp();
+			logger.debug("Cascade delete of {} of {}: {} of {} objects deleted.", task.getTarget(),
+					task.getObjectId(), task.getDeleted(), task.getFound());
+		}
+	}
+
+	/**
+	 * The progress of a cascade.
+	 */
+	public static final class Task {
+		private final String id;
+		private final String appid;
+		private final String objectId;
+		private final String target;
+		private final long started;
+		private final AtomicLong found = new AtomicLong();
+		private final AtomicLong deleted = new AtomicLong();
+		private volatile long finished;
+		private volatile boolean failed;
+
+		Task(String id, String appid, String objectId, String target, long started) {
+			this.id = id;
+			this.appid = appid;
+			this.objectId = objectId;
+			this.target = target;
+			this.started = started;
+		}
+
+		/**
+		 * @return the id of the task
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return the app id
+		 */
+		public String getAppid() {
+			return appid;
+		}
+
+		/**
+		 * @return the id of the object whose links or children are deleted
+		 */
+		public String getObjectId() {
+			return objectId;
+		}
+
+		/**
+		 * @return "links" or "children:" followed by the type of the children
+		 */
+		public String getTarget() {
+			return target;
+		}
+
+		/**
+		 * @return the number of objects found so far
+		 */
+		public long getFound() {
+			return found.get();
+		}
+
+		/**
+		 * @return the number of objects deleted so far
+		 */
+		public long getDeleted() {
+			return deleted.get();
+		}
+
+		/**
+		 * @return the time when the task started
+		 */
+		public long getStarted() {
+			return started;
+		}
+
+		/**
+		 * @return the time when the task finished or 0 if it's still running
+		 */
+		public long getFinished() {
+			return finished;
+		}
+
+		/**
+		 * @return true if the task finished, successfully or not
+		 */
+		public boolean isDone() {
+			return finished > 0;
+		}
+
+		/**
+		 * @return true if some of the objects couldn't be deleted
+		 */
+		public boolean isFailed() {
+			return failed;
+		}
+	}
+
+	/**
+	 * Reads children from the data store page by page, using the cursor in {@link Pager#getLastKey()}.
+	 */
+	private static final class ChildIterator implements Iterator<ParaObject> {
+		private final ParaObject parent;
+		private final String type;
+		private final Pager pager;
+		private Iterator<ParaObject> page;
+		private ParaObject next;
+		private boolean done;
+
+		ChildIterator(ParaObject parent, String type, Pager pager, List<ParaObject> first) {
+			this.parent = parent;
+			this.type = type;
+			this.pager = pager;
+			this.page = first.iterator();
+			this.done = first.isEmpty() || pager.getLastKey() == null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				if (page.hasNext()) {
+					ParaObject obj = page.next();
+					if (obj != null && (StringUtils.isBlank(type) || type.equals(obj.getType()))) {
+						next = obj;
+					}
+				} else if (done) {
+					break;
+				} else {
+					String lastKey = pager.getLastKey();
+					List<ParaObject> list = parent.getDao().readByField(parent.getAppid(),
+							Config._PARENTID, parent.getId(), pager);
+					page = (list == null) ? Collections.<ParaObject>emptyIterator() : list.iterator();
+					// stop if there are no more pages or the DAO didn't move forward
+					done = list == null || list.isEmpty() || pager.getLastKey() == null ||
+							pager.getLastKey().equals(lastKey);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public ParaObject next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ParaObject obj = next;
+			next = null;
+			return obj;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
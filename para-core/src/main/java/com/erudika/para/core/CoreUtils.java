@@ -158,20 +158,16 @@ public final class CoreUtils {
 	/**
 	 * Unlinks all objects that are linked to this one.
 	 * @param obj the object to execute this method on
-	 * Deletes all {@link com.erudika.para.core.Linker} objects.
+	 * Deletes all {@link com.erudika.para.core.Linker} objects, in batches. See {@link CascadeDeleter}.
 	 * Only the links are deleted. Objects are left untouched.
 	 */
 	public static void unlinkAll(ParaObject obj) {
-		Map<String, Object> terms = new HashMap<String, Object>();
-		// delete all links where id1 == id OR id2 == id
-		terms.put("id1", obj.getId());
-		terms.put("id2", obj.getId());
-		obj.getDao().deleteAll(obj.getAppid(), obj.getSearch().
-				findTerms(obj.getAppid(), Utils.type(Linker.class), terms, false));
+		CascadeDeleter.unlinkAll(obj);
 	}
 
 	/**
 	 * Returns a list of all Linker objects for a given object.
+	 * If the {@link LinkStore} is enabled, they are read by key instead of searched for.
 	 * @param obj the object to execute this method on
 	 * @param type2 the other type
 	 * @param pager a {@link com.erudika.para.utils.Pager}
@@ -181,6 +177,14 @@ public final class CoreUtils {
 		if (type2 == null) {
 			return Collections.emptyList();
 		}
+		if (LinkStore.isEnabled()) {
+			List<String> keys = new ArrayList<String>();
+			for (String id2 : LinkStore.getLinkedIds(obj, type2, pager)) {
+				keys.add(new Linker(obj.getType(), type2, obj.getId(), id2).getId());
+			}
+			Map<String, Linker> links = obj.getDao().readAll(obj.getAppid(), keys, true);
+			return new ArrayList<Linker>(links.values());
+		}
 		Linker link = new Linker(obj.getType(), type2, null, null);
 		String idField = link.getIdFieldNameFor(obj.getType());
 		Map<String, Object> terms = new HashMap<String, Object>();
@@ -218,6 +222,7 @@ public final class CoreUtils {
 
 	/**
 	 * Count the total number of links between this object and another type of object.
+	 * If the {@link LinkStore} is enabled, the count is read from the adjacency list.
 	 * @param type2 the other type of object
 	 * @param obj the object to execute this method on
 	 * @return the number of links for the given object
@@ -226,6 +231,9 @@ public final class CoreUtils {
 		if (obj.getId() == null) {
 			return 0L;
 		}
+		if (LinkStore.isEnabled()) {
+			return LinkStore.countLinks(obj, type2);
+		}
 		Linker link = new Linker(obj.getType(), type2, null, null);
 		String idField = link.getIdFieldNameFor(obj.getType());
 		Map<String, Object> terms = new HashMap<String, Object>();
@@ -241,7 +249,7 @@ public final class CoreUtils {
 	 * @return the number of links
 	 */
 	public static Long countChildren(ParaObject obj, String type2) {
-		return obj.getSearch().getCount(obj.getAppid(), type2);
+		return obj.getSearch().getCount(obj.getAppid(), type2, Collections.singletonMap(Config._PARENTID, obj.getId()));
 	}
 
 	/**
@@ -271,25 +279,77 @@ public final class CoreUtils {
 		Map<String, Object> terms = new HashMap<String, Object>();
 		if (!StringUtils.isBlank(field) && !StringUtils.isBlank(term)) {
 			terms.put(field, term);
+		} else {
+			List<P> children = readByField(obj, type2, Config._PARENTID, obj.getId(), false, pager);
+			if (children != null) {
+				return children;
+			}
 		}
 		terms.put(Config._PARENTID, obj.getId());
 		return obj.getSearch().findTerms(obj.getAppid(), type2, terms, true, pager);
 	}
 
 	/**
-	 * Deletes all child objects permanently.
+	 * Deletes all child objects permanently, in batches. See {@link CascadeDeleter}.
 	 * @param obj the object to execute this method on
 	 * @param type2 the children's type.
 	 */
 	public static void deleteChildren(ParaObject obj, String type2) {
-		if (!StringUtils.isBlank(obj.getId())) {
-			obj.getDao().deleteAll(obj.getAppid(), obj.getSearch().findTerms(obj.getAppid(),
-					type2, Collections.singletonMap(Config._PARENTID, obj.getId()), true));
+		CascadeDeleter.deleteChildren(obj, type2);
+	}
+
+	/**
+	 * Reads objects of a given type by the exact value of an indexed field, straight from the data store.
+	 * Unlike the search index, the data store always reflects the latest writes. Pages are read with the
+	 * cursor in {@link Pager#getLastKey()}, so a page requested by number can't be served this way.
+	 * @param <P> the type of object
+	 * @param obj the object to execute this method on
+	 * @param type the type of objects to return, or null for all types
+	 * @param field parentid, creatorid or type
+	 * @param value the exact value of the field
+	 * @param readAll if true, all matching objects are returned, otherwise one page of them
+	 * @param pager a {@link com.erudika.para.utils.Pager}
+	 * @return a list of objects, or null if the lookup should be done by the search index instead
+	 */
+	static <P extends ParaObject> List<P> readByField(ParaObject obj, String type, String field, String value,
+			boolean readAll, Pager... pager) {
+		Pager p = (pager == null || pager.length == 0) ? null : pager[0];
+		if (StringUtils.isBlank(value) || (p != null && p.getPage() > 1 && StringUtils.isBlank(p.getLastKey()))) {
+			return null;
+		}
+		int limit = (p == null) ? Config.MAX_ITEMS_PER_PAGE : p.getLimit();
+		Pager page = new Pager(limit);
+		if (p != null) {
+			page.setDesc(p.isDesc());
+			page.setLastKey(p.getLastKey());
+		}
+		boolean fromStart = StringUtils.isBlank(page.getLastKey());
+		List<P> results = new ArrayList<P>();
+		do {
+			// when filtering by type, only ask for as many objects as are missing so that the cursor stays exact
+			page.setLimit(readAll ? limit : limit - results.size());
+			List<P> objects = obj.getDao().readByField(obj.getAppid(), field, value, page);
+			if (objects == null) {
+				return null;
+			}
+			for (P object : objects) {
+				if (object != null && (StringUtils.isBlank(type) || type.equals(object.getType()))) {
+					results.add(object);
+				}
+			}
+		} while (page.getLastKey() != null && (readAll || results.size() < limit));
+		if (p != null) {
+			p.setLastKey(page.getLastKey());
+			if (fromStart && page.getLastKey() == null) {
+				p.setCount(results.size());
+			}
 		}
+		return results;
 	}
 
 	/**
 	 * Returns all objects linked to the given one. Only applicable to many-to-many relationships.
+	 * If the {@link LinkStore} is enabled, they are read by key instead of searched for.
 	 * @param <P> type of linked objects
 	 * @param type2 type of linked objects to search for
 	 * @param obj the object to execute this method on
@@ -298,6 +358,11 @@ public final class CoreUtils {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <P extends ParaObject> List<P> getLinkedObjects(ParaObject obj, String type2, Pager... pager) {
+		if (LinkStore.isEnabled()) {
+			List<String> keys = (type2 == null) ? Collections.<String>emptyList() :
+					LinkStore.getLinkedIds(obj, type2, pager);
+			return new ArrayList<P>((Collection<? extends P>) obj.getDao().readAll(obj.getAppid(), keys, true).values());
+		}
 		List<Linker> links = getLinks(obj, type2, pager);
 		LinkedList<String> keys = new LinkedList<String>();
 		for (Linker link : links) {
@@ -351,8 +416,16 @@ public final class CoreUtils {
 		}
 
 		if (done) {
+			// the count is updated in the data store with a single atomic operation
+			Long votes = votable.getDao().increment(votable.getAppid(), votable.getId(), "votes", vote);
 			synchronized (votable) {
-				votable.setVotes(votable.getVotes() + vote);
+				if (votes == null) {
+					// the object wasn't saved yet
+					votable.setVotes(votable.getVotes() + vote);
+				} else {
+					votable.setVotes(votes.intValue());
+					ParaObjectUtils.markClean(votable, "votes");
+				}
 			}
 		}
 		return done;
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+/**
+ * An object which expires some time after it was created. Expired objects are purged from the data store,
+ * the cache and the search index. Types which don't implement this interface can be given a time to live
+ * with the {@code ttl_types} setting.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ * @see ParaObjectUtils#getExpiresAt(com.erudika.para.core.ParaObject)
+ */
+public interface Expirable {
+
+	/**
+	 * Returns the time to live of the object.
+	 * @return seconds after the object's timestamp, or 0 or null if it never expires
+	 */
+	Long getExpiresAfter();
+}
@@ -0,0 +1,573 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ReadConsistency;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores many-to-many links as adjacency lists, so linked objects can be read and counted with key lookups
+ * instead of search queries. For each object and each type it's linked to, there is a list of the ids of the
+ * linked objects. Long lists are split into shards of {@code link_store_shard_size} ids, each stored as a
+ * separate {@link Sysprop} of type {@value #TYPE}. A head object keeps the size of each shard, so a page of
+ * links is read from only the shards which contain it and links are counted with a single read.
+ * <br>
+ * The lists are kept up to date by the DAO whenever {@link Linker} objects are created or deleted, so
+ * {@link Linker} objects remain the source of truth - {@link #rebuild(DAO, String)} recreates all lists from
+ * them. Enabled by {@code link_store_enabled}. Adjacency lists are written through the DAO, so they are cached
+ * like any other object, but they are not indexed.
+ * <br>
+ * Each object also has a directory of the types it has lists for, so its lists can be dropped when the
+ * object is deleted.
+ * <br>
+ * Updates of the same list are serialized across nodes with a lock row per list, which is taken and released
+ * with {@link DAO#compareAndSet(java.lang.String, com.erudika.para.core.ParaObject,
+ * com.erudika.para.core.ParaObject)}, and lists are read with strong consistency while they are locked. Locks
+ * expire after {@code link_store_lock_timeout_sec} seconds, so a node which stops while holding one doesn't
+ * block the list forever. Lock rows are kept when a list becomes empty and are deleted with the lists of their
+ * object.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class LinkStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(LinkStore.class);
+
+	/**
+	 * The type of the objects which hold adjacency lists.
+	 */
+	public static final String TYPE = "adjacencylist";
+
+	private static final String SIZES = "sizes";
+	private static final String IDS = "ids";
+	private static final String TYPES = "types";
+	private static final String LOCKED_UNTIL = "lockedUntil";
+	private static final long LOCK_TIMEOUT = TimeUnit.SECONDS.toMillis(
+			Math.max(Config.getConfigInt("link_store_lock_timeout_sec", 30), 1));
+	private static final int SHARD_SIZE = Math.max(Config.getConfigInt("link_store_shard_size", 1000), 1);
+	private static final int STRIPES = 64;
+	private static final Object[] locks = new Object[STRIPES];
+	// separate from the list locks, because they are held while the lists are updated
+	private static final ReentrantLock[] linkLocks = new ReentrantLock[STRIPES];
+
+	static {
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+			linkLocks[i] = new ReentrantLock();
+		}
+	}
+
+	private LinkStore() { }
+
+	/**
+	 * @return true if links are read from adjacency lists instead of the search index
+	 */
+	public static boolean isEnabled() {
+		return Config.getConfigBoolean("link_store_enabled", false);
+	}
+
+	/**
+	 * @param so an object
+	 * @return true if the object is (part of) an adjacency list
+	 */
+	public static boolean isAdjacencyList(ParaObject so) {
+		return so != null && TYPE.equals(so.getType());
+	}
+
+	/**
+	 * Adds new links to the adjacency lists of the objects on both of their ends.
+	 * @param dao the DAO to write to
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param links a list of links, which didn't exist before
+	 */
+	public static void addLinks(DAO dao, String appid, List<Linker> links) {
+		Map<String, List<String>> created = new LinkedHashMap<String, List<String>>();
+		for (Map.Entry<String, List<String>> list : groupByList(links).entrySet()) {
+			synchronized (lock(list.getKey())) {
+				Sysprop lock = lockList(dao, appid, list.getKey());
+				try {
+					if (add(dao, appid, list.getKey(), list.getValue())) {
+						addToDirectory(created, list.getKey());
+					}
+				} finally {
+					unlockList(dao, appid, lock);
+				}
+			}
+		}
+		updateDirectories(dao, appid, created, true);
+	}
+
+	/**
+	 * Removes links from the adjacency lists of the objects on both of their ends.
+	 * @param dao the DAO to write to
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param links a list of deleted links
+	 */
+	public static void removeLinks(DAO dao, String appid, List<Linker> links) {
+		Map<String, List<String>> dropped = new LinkedHashMap<String, List<String>>();
+		for (Map.Entry<String, List<String>> list : groupByList(links).entrySet()) {
+			synchronized (lock(list.getKey())) {
+				Sysprop lock = lockList(dao, appid, list.getKey());
+				try {
+					if (remove(dao, appid, list.getKey(), list.getValue())) {
+						addToDirectory(dropped, list.getKey());
+					}
+				} finally {
+					unlockList(dao, appid, lock);
+				}
+			}
+		}
+		updateDirectories(dao, appid, dropped, false);
+	}
+
+	/**
+	 * Deletes the adjacency lists of objects which were deleted, with all of their shards. The lists of the
+	 * objects on the other end of their links are not changed - they are updated when the links are deleted.
+	 * @param dao the DAO to write to
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param objects a list of deleted objects
+	 */
+	public static void dropLists(DAO dao, String appid, List<? extends ParaObject> objects) {
+		List<String> dirKeys = new ArrayList<String>();
+		if (objects != null) {
+			for (ParaObject so : objects) {
+				if (so != null && so.getId() != null && !(so instanceof Linker) && !isAdjacencyList(so)) {
+					dirKeys.add(getDirectoryKey(so.getType(), so.getId()));
+				}
+			}
+		}
+		if (dirKeys.isEmpty()) {
+			return;
+		}
+		List<Sysprop> dropped = new ArrayList<Sysprop>();
+		for (Sysprop dir : dao.<Sysprop>readAll(appid, dirKeys, true).values()) {
+			if (dir == null) {
+				continue;
+			}
+			for (String type2 : getStrings(dir, TYPES)) {
+				String key = dir.getId() + Config.SEPARATOR + type2;
+				synchronized (lock(key)) {
+					Sysprop lock = lockList(dao, appid, key);
+					try {
+						Sysprop head = dao.read(appid, key, ReadConsistency.STRONG);
+						if (head != null) {
+							for (int i = 0; i < getSizes(head).size(); i++) {
+								Sysprop shard = new Sysprop(getShardKey(key, i));
+								shard.setType(TYPE);
+								dropped.add(shard);
+							}
+							dropped.add(head);
+						}
+					} finally {
+						unlockList(dao, appid, lock);
+					}
+					dropped.add(newRow(getLockKey(key), LOCKED_UNTIL, 0L));
+				}
+			}
+			dropped.add(dir);
+			dropped.add(newRow(getLockKey(dir.getId()), LOCKED_UNTIL, 0L));
+		}
+		dao.deleteAll(appid, dropped);
+	}
+
+	/**
+	 * Locks the given links on this node, so that checking if a link exists and adding it to the lists
+	 * can't interleave with another write of the same link. Must be followed by {@link #unlockLinks(List)}.
+	 * @param links a list of links
+	 */
+	public static void lockLinks(List<Linker> links) {
+		// always locked in the same order, otherwise two batches could wait for each other
+		for (Integer stripe : getLinkStripes(links)) {
+			linkLocks[stripe].lock();
+		}
+	}
+
+	/**
+	 * Unlocks links which were locked with {@link #lockLinks(List)}.
+	 * @param links the same list of links
+	 */
+	public static void unlockLinks(List<Linker> links) {
+		for (Integer stripe : getLinkStripes(links).descendingSet()) {
+			linkLocks[stripe].unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of objects of a given type which are linked to an object.
+	 * @param obj the object
+	 * @param type2 the type of the linked objects
+	 * @return the number of links
+	 */
+	public static long countLinks(ParaObject obj, String type2) {
+		Sysprop head = obj.getDao().read(obj.getAppid(), getKey(obj.getType(), obj.getId(), type2));
+		long count = 0;
+		for (Integer size : getSizes(head)) {
+			count += size;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the ids of the objects of a given type which are linked to an object, in the order they were
+	 * linked. Pages are selected with {@link Pager#getPage()} and {@link Pager#getLimit()}.
+	 * @param obj the object
+	 * @param type2 the type of the linked objects
+	 * @param pager a {@link com.erudika.para.utils.Pager}. its count is set to the total number of links
+	 * @return a list of ids
+	 */
+	public static List<String> getLinkedIds(ParaObject obj, String type2, Pager... pager) {
+		Pager p = (pager == null || pager.length == 0) ? new Pager() : pager[0];
+		String key = getKey(obj.getType(), obj.getId(), type2);
+		List<Integer> sizes = getSizes(obj.getDao().<Sysprop>read(obj.getAppid(), key));
+		long total = 0;
+		for (Integer size : sizes) {
+			total += size;
+		}
+		p.setCount(total);
+		long from = (p.getPage() > 1) ? (p.getPage() - 1) * p.getLimit() : 0;
+		long to = Math.min(from + p.getLimit(), total);
+		if (from >= to) {
+			return Collections.emptyList();
+		}
+		// only read the shards which overlap with the page
+		List<String> shardKeys = new ArrayList<String>();
+		long shardStart = 0;
+		long skip = from;
+		for (int i = 0; i < sizes.size() && shardStart < to; i++) {
+			long shardEnd = shardStart + sizes.get(i);
+			if (shardEnd > from) {
+				shardKeys.add(getShardKey(key, i));
+			} else {
+				skip -= sizes.get(i);
+			}
+			shardStart = shardEnd;
+		}
+		Map<String, Sysprop> shards = obj.getDao().readAll(obj.getAppid(), shardKeys, true);
+		List<String> ids = new ArrayList<String>((int) (to - from));
+		for (String shardKey : shardKeys) {
+			for (String id : getStrings(shards.get(shardKey), IDS)) {
+				if (skip > 0) {
+					skip--;
+				} else if (ids.size() < to - from) {
+					ids.add(id);
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Deletes all adjacency lists of an app and creates them again from the {@link Linker} objects in
+	 * the data store. Used when the link store is enabled for an app which already has links. All
+	 * lists are built in memory before they are written.
+	 * @param dao the DAO
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return the number of links
+	 */
+	public static long rebuild(DAO dao, String appid) {
+		List<ParaObject> old = new ArrayList<ParaObject>();
+		for (Iterator<ParaObject> it = dao.iterate(appid, TYPE); it.hasNext();) {
+			old.add(it.next());
+			if (old.size() >= SHARD_SIZE) {
+				dao.deleteAll(appid, old);
+				old.clear();
+			}
+		}
+		dao.deleteAll(appid, old);
+
+		Map<String, List<String>> lists = new LinkedHashMap<String, List<String>>();
+		Map<String, List<String>> dirs = new LinkedHashMap<String, List<String>>();
+		long count = 0;
+		for (Iterator<Linker> it = dao.iterate(appid, Utils.type(Linker.class)); it.hasNext();) {
+			Linker link = it.next();
+			addToList(lists, getKey(link.getType1(), link.getId1(), link.getType2()), link.getId2());
+			addToList(lists, getKey(link.getType2(), link.getId2(), link.getType1()), link.getId1());
+			addToList(dirs, getDirectoryKey(link.getType1(), link.getId1()), link.getType2());
+			addToList(dirs, getDirectoryKey(link.getType2(), link.getId2()), link.getType1());
+			count++;
+		}
+		List<Sysprop> rows = new ArrayList<Sysprop>();
+		for (Map.Entry<String, List<String>> dir : dirs.entrySet()) {
+			rows.add(newRow(dir.getKey(), TYPES, new ArrayList<String>(dir.getValue())));
+		}
+		for (Map.Entry<String, List<String>> list : lists.entrySet()) {
+			List<Integer> sizes = new ArrayList<Integer>();
+			List<String> ids = list.getValue();
+			for (int from = 0; from < ids.size(); from += SHARD_SIZE) {
+				int to = Math.min(from + SHARD_SIZE, ids.size());
+				List<String> shardIds = new ArrayList<String>(ids.subList(from, to));
+				rows.add(newRow(getShardKey(list.getKey(), sizes.size()), IDS, shardIds));
+				sizes.add(shardIds.size());
+			}
+			rows.add(newRow(list.getKey(), SIZES, sizes));
+			if (rows.size() >= SHARD_SIZE) {
+				dao.createAll(appid, rows);
+				rows.clear();
+			}
+		}
+		dao.createAll(appid, rows);
+		return count;
+	}
+
+	private static boolean add(DAO dao, String appid, String key, List<String> newIds) {
+		Sysprop head = dao.read(appid, key, ReadConsistency.STRONG);
+		List<Integer> sizes = getSizes(head);
+		List<Sysprop> changed = new ArrayList<Sysprop>();
+		int last = sizes.size() - 1;
+		Sysprop shard = (last < 0 || sizes.get(last) >= SHARD_SIZE) ? null :
+				dao.<Sysprop>read(appid, getShardKey(key, last), ReadConsistency.STRONG);
+		List<String> ids = getStrings(shard, IDS);
+		for (String id : newIds) {
+			if (shard == null || ids.size() >= SHARD_SIZE) {
+				last = sizes.size();
+				ids = new ArrayList<String>();
+				shard = newRow(getShardKey(key, last), IDS, ids);
+				sizes.add(0);
+			}
+			ids.add(id);
+			shard.addProperty(IDS, ids);
+			sizes.set(last, ids.size());
+			if (!changed.contains(shard)) {
+				changed.add(shard);
+			}
+		}
+		changed.add(newRow(key, SIZES, sizes));
+		dao.createAll(appid, changed);
+		return head == null;
+	}
+
+	private static boolean remove(DAO dao, String appid, String key, List<String> oldIds) {
+		Sysprop head = dao.read(appid, key, ReadConsistency.STRONG);
+		List<Integer> sizes = getSizes(head);
+		if (sizes.isEmpty()) {
+			return false;
+		}
+		List<String> shardKeys = new ArrayList<String>(sizes.size());
+		for (int i = 0; i < sizes.size(); i++) {
+			shardKeys.add(getShardKey(key, i));
+		}
+		Map<String, Sysprop> shards = dao.readAll(appid, shardKeys, true, ReadConsistency.STRONG);
+		List<Sysprop> changed = new ArrayList<Sysprop>();
+		for (int i = 0; i < sizes.size(); i++) {
+			Sysprop shard = shards.get(shardKeys.get(i));
+			List<String> ids = getStrings(shard, IDS);
+			if (shard != null && ids.removeAll(oldIds)) {
+				shard.addProperty(IDS, ids);
+				sizes.set(i, ids.size());
+				changed.add(shard);
+			}
+		}
+		if (changed.isEmpty()) {
+			return false;
+		}
+		// empty shards at the end are dropped, the others keep their place so the keys stay the same
+		List<Sysprop> dropped = new ArrayList<Sysprop>();
+		while (!sizes.isEmpty() && sizes.get(sizes.size() - 1) == 0) {
+			Sysprop shard = shards.get(shardKeys.get(sizes.size() - 1));
+			changed.remove(shard);
+			dropped.add(shard);
+			sizes.remove(sizes.size() - 1);
+		}
+		if (sizes.isEmpty()) {
+			dropped.add(head);
+		} else {
+			changed.add(newRow(key, SIZES, sizes));
+		}
+		dao.createAll(appid, changed);
+		dao.deleteAll(appid, dropped);
+		return sizes.isEmpty();
+	}
+
+	private static void addToDirectory(Map<String, List<String>> dirs, String key) {
+		// the list key is the directory key followed by the type of the linked objects
+		addToList(dirs, StringUtils.substringBeforeLast(key, Config.SEPARATOR),
+				StringUtils.substringAfterLast(key, Config.SEPARATOR));
+	}
+
+	/**
+	 * Adds or removes types from the directories of objects. Called after the lists are updated,
+	 * so the list locks and the directory locks are never held together.
+	 */
+	private static void updateDirectories(DAO dao, String appid, Map<String, List<String>> dirs, boolean add) {
+		for (Map.Entry<String, List<String>> dir : dirs.entrySet()) {
+			synchronized (lock(dir.getKey())) {
+				Sysprop lock = lockList(dao, appid, dir.getKey());
+				try {
+					Sysprop row = dao.read(appid, dir.getKey(), ReadConsistency.STRONG);
+					List<String> types = getStrings(row, TYPES);
+					boolean changed = false;
+					for (String type2 : dir.getValue()) {
+						if (add && !types.contains(type2)) {
+							changed = types.add(type2);
+						} else if (!add) {
+							changed |= types.remove(type2);
+						}
+					}
+					if (types.isEmpty() && row != null) {
+						dao.delete(appid, row);
+					} else if (changed) {
+						dao.create(appid, newRow(dir.getKey(), TYPES, types));
+					}
+				} finally {
+					unlockList(dao, appid, lock);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Locks a list (or directory) on all nodes, by replacing its lock row if it's missing or expired.
+	 * Waits until the lock is free or expired. If the thread is interrupted, the list isn't locked.
+	 * @return the lock row which was written, null if the list wasn't locked
+	 */
+	private static Sysprop lockList(DAO dao, String appid, String key) {
+		String lockKey = getLockKey(key);
+		for (int attempt = 1; !Thread.currentThread().isInterrupted(); attempt++) {
+			Sysprop current = dao.read(appid, lockKey, ReadConsistency.STRONG);
+			long now = Utils.timestamp();
+			if (current == null || getLockedUntil(current) < now) {
+				Sysprop lock = newRow(lockKey, LOCKED_UNTIL, now + LOCK_TIMEOUT);
+				if (dao.compareAndSet(appid, current, lock)) {
+					return lock;
+				}
+			}
+			try {
+				Thread.sleep(Math.min(attempt * 10L, 200L));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		logger.warn("Interrupted while waiting for the lock of adjacency list {}.", key);
+		return null;
+	}
+
+	/**
+	 * Releases a lock, unless it expired and was taken by someone else in the meantime.
+	 */
+	private static void unlockList(DAO dao, String appid, Sysprop lock) {
+		if (lock != null && !dao.compareAndSet(appid, lock, newRow(lock.getId(), LOCKED_UNTIL, 0L))) {
+			logger.warn("The lock of adjacency list {} expired before it was released.", lock.getId());
+		}
+	}
+
+	private static long getLockedUntil(Sysprop lock) {
+		Object value = lock.getProperty(LOCKED_UNTIL);
+		return (value instanceof Number) ? ((Number) value).longValue() : 0L;
+	}
+
+	private static Map<String, List<String>> groupByList(List<Linker> links) {
+		Map<String, List<String>> lists = new LinkedHashMap<String, List<String>>();
+		if (links != null) {
+			for (Linker link : links) {
+				if (link != null && !StringUtils.isBlank(link.getId1()) && !StringUtils.isBlank(link.getId2())) {
+					addToList(lists, getKey(link.getType1(), link.getId1(), link.getType2()), link.getId2());
+					addToList(lists, getKey(link.getType2(), link.getId2(), link.getType1()), link.getId1());
+				}
+			}
+		}
+		return lists;
+	}
+
+	private static void addToList(Map<String, List<String>> lists, String key, String id) {
+		List<String> ids = lists.get(key);
+		if (ids == null) {
+			ids = new LinkedList<String>();
+			lists.put(key, ids);
+		}
+		if (!ids.contains(id)) {
+			ids.add(id);
+		}
+	}
+
+	private static Sysprop newRow(String key, String property, Object value) {
+		Sysprop row = new Sysprop(key);
+		row.setType(TYPE);
+		row.addProperty(property, value);
+		return row;
+	}
+
+	private static List<Integer> getSizes(Sysprop head) {
+		List<Integer> sizes = new ArrayList<Integer>();
+		Object value = (head == null) ? null : head.getProperty(SIZES);
+		if (value instanceof List) {
+			for (Object size : (List<?>) value) {
+				sizes.add((size instanceof Number) ? ((Number) size).intValue() : 0);
+			}
+		}
+		return sizes;
+	}
+
+	private static List<String> getStrings(Sysprop row, String property) {
+		List<String> strings = new ArrayList<String>();
+		Object value = (row == null) ? null : row.getProperty(property);
+		if (value instanceof List) {
+			for (Object string : (List<?>) value) {
+				strings.add(String.valueOf(string));
+			}
+		}
+		return strings;
+	}
+
+	private static String getKey(String type, String id, String type2) {
+		return getDirectoryKey(type, id) + Config.SEPARATOR + type2;
+	}
+
+	private static String getDirectoryKey(String type, String id) {
+		return TYPE + Config.SEPARATOR + type + Config.SEPARATOR + id;
+	}
+
+	private static String getShardKey(String key, int shard) {
+		return key + Config.SEPARATOR + shard;
+	}
+
+	private static String getLockKey(String key) {
+		// not under the same prefix as the lists, so it can't clash with the key of a list or shard
+		return "lock" + Config.SEPARATOR + key;
+	}
+
+	private static Object lock(String key) {
+		return locks[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+	}
+
+	private static TreeSet<Integer> getLinkStripes(List<Linker> links) {
+		TreeSet<Integer> stripes = new TreeSet<Integer>();
+		if (links != null) {
+			for (Linker link : links) {
+				if (link != null && link.getId() != null) {
+					stripes.add((link.getId().hashCode() & Integer.MAX_VALUE) % STRIPES);
+				}
+			}
+		}
+		return stripes;
+	}
+}
@@ -29,18 +29,25 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.collections.bidimap.DualHashBidiMap;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -64,6 +71,13 @@ public final class ParaObjectUtils {
 	private static final ObjectMapper jsonMapper = new ObjectMapper();
 	private static final ObjectReader jsonReader;
 	private static final ObjectWriter jsonWriter;
+	// snapshots of objects as they were when last read from or written to a data store, keyed by identity
+	// because hashCode() may depend on mutable fields and equal objects must not share a snapshot
+	private static final Map<IdentityKey, Snapshot> snapshots = new ConcurrentHashMap<IdentityKey, Snapshot>();
+	private static final ReferenceQueue<ParaObject> collected = new ReferenceQueue<ParaObject>();
+	private static Map<String, Long> typeTTLs;
+	// the fields annotated with @Stored of each class, looked up by reflection only once
+	private static final Map<Class<?>, List<Field>> storedFields = new ConcurrentHashMap<Class<?>, List<Field>>();
 
 	static {
 		jsonMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
@@ -236,11 +250,8 @@ public final class ParaObjectUtils {
 			return map;
 		}
 		try {
-			List<Field> fields = getAllDeclaredFields(pojo.getClass());
-			// filter transient fields and those without annotations
-			for (Field field : fields) {
-				boolean dontSkip = ((filter == null) ? true : !field.isAnnotationPresent(filter));
-				if (field.isAnnotationPresent(Stored.class) && dontSkip) {
+			for (Field field : getStoredFields(pojo.getClass())) {
+				if (filter == null || !field.isAnnotationPresent(filter)) {
 					String name = field.getName();
 					Object value = PropertyUtils.getProperty(pojo, name);
 					if (!Utils.isBasicType(field.getType()) && convertNestedToJsonString) {
@@ -256,6 +267,337 @@ public final class ParaObjectUtils {
 		return map;
 	}
 
+	/**
+	 * Returns the fields of a class which are annotated with {@link Stored}. Transient fields and
+	 * serialVersionUID are skipped. The result is computed once per class.
+	 * @param clazz a class
+	 * @return an unmodifiable list of fields
+	 */
+	static List<Field> getStoredFields(Class<? extends ParaObject> clazz) {
+		List<Field> fields = storedFields.get(clazz);
+		if (fields == null) {
+			List<Field> stored = new ArrayList<Field>();
+			for (Field field : getAllDeclaredFields(clazz)) {
+				if (field.isAnnotationPresent(Stored.class)) {
+					stored.add(field);
+				}
+			}
+			fields = Collections.unmodifiableList(stored);
+			storedFields.put(clazz, fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * Remembers the current state of an object. Called by a DAO right after an object is read from
+	 * or written to the data store. Later, {@link #getChangedFields(com.erudika.para.core.ParaObject,
+	 * java.lang.Class)} will return only the fields which were modified since then.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 */
+	public static <P extends ParaObject> void markClean(P pojo) {
+		if (pojo != null) {
+			expungeSnapshots();
+			snapshots.put(new IdentityKey(pojo, collected),
+					new Snapshot(WriteContext.getFields(pojo, null, true), null, isPartial(pojo)));
+		}
+	}
+
+	/**
+	 * Remembers the current state of an object, like {@link #markClean(com.erudika.para.core.ParaObject)},
+	 * but without reading its fields. They are read from the source of the object only if the object is
+	 * updated later. DAOs call it right after an object is read, because most objects which are read are
+	 * never updated.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param source what the object was populated from, which must never be modified afterwards - a JSON
+	 * string, JSON bytes, a map of fields to immutable values or another object with the same state
+	 */
+	public static <P extends ParaObject> void markCleanLazily(P pojo, Object source) {
+		if (pojo != null) {
+			if (source == null) {
+				markClean(pojo);
+			} else {
+				expungeSnapshots();
+				snapshots.put(new IdentityKey(pojo, collected), new Snapshot(null, source, isPartial(pojo)));
+			}
+		}
+	}
+
+	/**
+	 * Checks if two objects have the same values in all of their annotated fields. Used to check that an
+	 * object is still stored as it was read.
+	 * @param obj1 an object or null
+	 * @param obj2 another object or null
+	 * @return true if both are null or if all of their annotated fields are equal
+	 */
+	public static boolean sameFields(ParaObject obj1, ParaObject obj2) {
+		if (obj1 == null || obj2 == null) {
+			return obj1 == obj2;
+		}
+		return obj1.getClass() == obj2.getClass() &&
+				getAnnotatedFields(obj1, null, false).equals(getAnnotatedFields(obj2, null, false));
+	}
+
+	/**
+	 * Returns the annotated fields which were modified since the object was last marked as clean.
+	 * Nested objects are converted to JSON strings and compared as such. If the object isn't tracked,
+	 * all annotated fields are returned.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param filter a filter annotation. fields that have it will be skipped
+	 * @return a map of changed fields and their values
+	 */
+	public static <P extends ParaObject> Map<String, Object> getChangedFields(P pojo,
+			Class<? extends Annotation> filter) {
+		Map<String, Object> fields = getAnnotatedFields(pojo, filter);
+		if (pojo == null) {
+			return fields;
+		}
+		Map<String, Object> snapshot = getSnapshot(pojo);
+		if (snapshot == null) {
+			return fields;
+		}
+		for (Iterator<Map.Entry<String, Object>> it = fields.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Object> field = it.next();
+			Object oldValue = snapshot.get(field.getKey());
+			if (field.getValue() == null ? oldValue == null : field.getValue().equals(oldValue)) {
+				it.remove();
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Marks a single field of an object as clean, e.g. after it was changed atomically in the data store.
+	 * The other fields of the object keep their state. Does nothing if the object isn't tracked.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param field the name of the field
+	 */
+	public static <P extends ParaObject> void markClean(P pojo, String field) {
+		if (pojo != null && field != null) {
+			Map<String, Object> snapshot = getSnapshot(pojo);
+			Map<String, Object> current = getAnnotatedFields(pojo);
+			if (snapshot != null && current.containsKey(field)) {
+				Map<String, Object> updated = new HashMap<String, Object>(snapshot);
+				updated.put(field, current.get(field));
+				snapshots.put(new IdentityKey(pojo, collected), new Snapshot(updated, null, isPartial(pojo)));
+			}
+		}
+	}
+
+	/**
+	 * Adds a number to a numeric field of an object. This is done in memory - DAOs which can't
+	 * increment fields natively use it while holding a lock on the stored object.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param field the name of a numeric field, annotated with {@link Stored} but not {@link Locked}
+	 * @param delta the number to add, can be negative
+	 * @return the new value of the field or null if the field isn't numeric or doesn't exist
+	 */
+	public static <P extends ParaObject> Long incrementField(P pojo, String field, long delta) {
+		if (pojo == null || StringUtils.isBlank(field)) {
+			return null;
+		}
+		try {
+			for (Field f : getAllDeclaredFields(pojo.getClass())) {
+				if (f.getName().equals(field) && f.isAnnotationPresent(Stored.class) &&
+						!f.isAnnotationPresent(Locked.class) && ClassUtils.isAssignable(Number.class, f.getType())) {
+					Object value = PropertyUtils.getProperty(pojo, field);
+					long newValue = ((value instanceof Number) ? ((Number) value).longValue() : 0L) + delta;
+					BeanUtils.setProperty(pojo, field, newValue);
+					return newValue;
+				}
+			}
+		} catch (Exception ex) {
+			logger.error(null, ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a copy of an object which contains only the given fields, plus its id and type.
+	 * The copy is marked as clean and {@link #isPartial(com.erudika.para.core.ParaObject) partial}, so updating
+	 * it later writes only the fields which were changed.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param fields a list of field names. if empty, the object itself is returned
+	 * @return a partial copy of the object
+	 */
+	public static <P extends ParaObject> P project(P pojo, List<String> fields) {
+		if (pojo == null || fields == null || fields.isEmpty()) {
+			return pojo;
+		}
+		Map<String, Object> all = getAnnotatedFields(pojo);
+		Map<String, Object> selected = new HashMap<String, Object>(fields.size() + 2);
+		selected.put(Config._ID, pojo.getId());
+		selected.put(Config._TYPE, pojo.getType());
+		for (String field : fields) {
+			if (all.containsKey(field)) {
+				selected.put(field, all.get(field));
+			}
+		}
+		P copy = setAnnotatedFields(selected);
+		expungeSnapshots();
+		snapshots.put(new IdentityKey(copy, collected), new Snapshot(null, selected, true));
+		return copy;
+	}
+
+	/**
+	 * Checks if an object is a partial copy, returned by {@link #project(com.erudika.para.core.ParaObject,
+	 * java.util.List)}. The fields which weren't read are missing, so such objects must never be cached or
+	 * indexed as they are - only their changes can be written.
+	 * @param pojo an object
+	 * @return true if the object is partial
+	 */
+	public static boolean isPartial(ParaObject pojo) {
+		if (pojo == null) {
+			return false;
+		}
+		Snapshot snapshot = snapshots.get(new IdentityKey(pojo, null));
+		return snapshot != null && snapshot.partial;
+	}
+
+	/**
+	 * Returns the time when an object expires. The time to live is taken from
+	 * {@link Expirable#getExpiresAfter()}, or from the {@code ttl_types} setting for the object's type,
+	 * e.g. {@code "session:3600,token:600"} (type and seconds).
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @return the expiration time in milliseconds, or null if the object never expires
+	 */
+	public static <P extends ParaObject> Long getExpiresAt(P pojo) {
+		if (pojo == null || pojo.getTimestamp() == null) {
+			return null;
+		}
+		Long ttl = (pojo instanceof Expirable) ? ((Expirable) pojo).getExpiresAfter() : null;
+		if (ttl == null && pojo.getType() != null) {
+			ttl = getTypeTTLs().get(pojo.getType());
+		}
+		return (ttl == null || ttl <= 0) ? null : pojo.getTimestamp() + ttl * 1000;
+	}
+
+	/**
+	 * Returns the number of seconds an object has left to live.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @return the remaining seconds (0 if already expired), or null if the object never expires
+	 */
+	public static <P extends ParaObject> Long getTimeToLive(P pojo) {
+		Long expiresAt = getExpiresAt(pojo);
+		if (expiresAt == null) {
+			return null;
+		}
+		return Math.max(0, (long) Math.ceil((expiresAt - Utils.timestamp()) / 1000.0));
+	}
+
+	/**
+	 * Returns the time to live of each type, as configured by {@code ttl_types}.
+	 * @return a map of types to seconds
+	 */
+	public static synchronized Map<String, Long> getTypeTTLs() {
+		if (typeTTLs == null) {
+			Map<String, Long> ttls = new HashMap<String, Long>();
+			for (String ttl : StringUtils.split(Config.getConfigParam("ttl_types", ""), ',')) {
+				String type = StringUtils.trimToNull(StringUtils.substringBefore(ttl, ":"));
+				long seconds = NumberUtils.toLong(StringUtils.trim(StringUtils.substringAfter(ttl, ":")), 0);
+				if (type != null && seconds > 0) {
+					ttls.put(type, seconds);
+				}
+			}
+			typeTTLs = Collections.unmodifiableMap(ttls);
+		}
+		return typeTTLs;
+	}
+
+	private static <P extends ParaObject> Map<String, Object> getSnapshot(P pojo) {
+		Snapshot snapshot = snapshots.get(new IdentityKey(pojo, null));
+		return (snapshot == null) ? null : snapshot.getFields(pojo);
+	}
+
+	private static void expungeSnapshots() {
+		Reference<? extends ParaObject> ref;
+		while ((ref = collected.poll()) != null) {
+			snapshots.remove((IdentityKey) ref);
+		}
+	}
+
+	/**
+	 * The fields of an object as they were when it was marked clean, or the source they are read from
+	 * when they are first needed.
+	 */
+	private static final class Snapshot {
+		private volatile Map<String, Object> fields;
+		private final Object source;
+		private final boolean partial;
+
+		Snapshot(Map<String, Object> fields, Object source, boolean partial) {
+			this.fields = fields;
+			this.source = source;
+			this.partial = partial;
+		}
+
+		Map<String, Object> getFields(ParaObject pojo) {
+			if (fields == null) {
+				// a fresh object populated from the source has the same state the tracked object had
+				ParaObject original = fromSource(pojo.getClass());
+				fields = (original == null) ? null : getAnnotatedFields(original);
+			}
+			return fields;
+		}
+
+		@SuppressWarnings("unchecked")
+		private ParaObject fromSource(Class<? extends ParaObject> clazz) {
+			if (source instanceof ParaObject) {
+				return (ParaObject) source;
+			}
+			try {
+				Map<String, Object> data;
+				if (source instanceof String) {
+					data = getJsonReader(Map.class).readValue((String) source);
+				} else if (source instanceof byte[]) {
+					data = getJsonReader(Map.class).readValue((byte[]) source);
+				} else {
+					data = (Map<String, Object>) source;
+				}
+				return setAnnotatedFields(clazz.getConstructor().newInstance(), data, null);
+			} catch (Exception ex) {
+				logger.error(null, ex);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * A weak reference to an object, compared by identity.
+	 */
+	private static final class IdentityKey extends WeakReference<ParaObject> {
+		private final int hash;
+
+		IdentityKey(ParaObject referent, ReferenceQueue<ParaObject> queue) {
+			super(referent, queue);
+			this.hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof IdentityKey)) {
+				return false;
+			}
+			ParaObject referent = get();
+			return referent != null && referent == ((IdentityKey) obj).get();
+		}
+	}
+
 	/**
 	 * @see #setAnnotatedFields(com.erudika.para.core.ParaObject, java.util.Map, java.lang.Class)
 	 * @param <P> the object type
@@ -310,6 +652,8 @@ public final class ParaObjectUtils {
 				}
 				props.remove(name);
 			}
+			// the expiration time is derived from the timestamp and stored under a reserved name
+			props.remove(Config._EXPIRES);
 			// handle unknown (user-defined) fields
 			if (!props.isEmpty() && pojo instanceof Sysprop) {
 				for (Map.Entry<String, Object> entry : props.entrySet()) {
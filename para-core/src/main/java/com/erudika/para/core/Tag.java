@@ -122,21 +122,34 @@ public class Tag implements ParaObject {
 
 	/**
 	 * Increments the count when a new object is tagged.
+	 * If the tag is saved, the count is incremented atomically in the data store.
 	 */
 	public void incrementCount() {
-		this.count++;
+		addToCount(1);
 	}
 
 	/**
 	 * Decrements the count when a new object is untagged.
+	 * If the tag is saved, the count is decremented atomically in the data store.
 	 */
 	public void decrementCount() {
-		this.count--;
+		addToCount(-1);
 		if (this.count < 1 && exists()) {
 			delete();
 		}
 	}
 
+	private void addToCount(int delta) {
+		DAO d = getDao();
+		Long newCount = (d == null || getId() == null) ? null : d.increment(getAppid(), getId(), "count", delta);
+		if (newCount == null) {
+			this.count = ((this.count == null) ? 0 : this.count) + delta;
+		} else {
+			this.count = newCount.intValue();
+			ParaObjectUtils.markClean(this, "count");
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null) {
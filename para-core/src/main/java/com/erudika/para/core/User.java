@@ -24,6 +24,7 @@ import com.erudika.para.annotations.Locked;
 import com.erudika.para.annotations.Stored;
 import com.erudika.para.i18n.CurrencyUtils;
 import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ReadConsistency;
 import com.erudika.para.search.Search;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Pager;
@@ -292,6 +293,8 @@ public class User implements ParaObject {
 		if (getId() != null) {
 			getDao().deleteAll(getAppid(), getIdentifiers());
 			getDao().delete(getAppid(), this);
+			// a user may have lots of links, they are removed in the background
+			CascadeDeleter.unlinkAllAsync(this);
 		}
 	}
 
@@ -301,6 +304,11 @@ public class User implements ParaObject {
 	 */
 	@JsonIgnore
 	public List<Sysprop> getIdentifiers() {
+		List<Sysprop> identifiers = CoreUtils.readByField(this, Utils.type(Sysprop.class),
+				Config._CREATORID, getId(), true);
+		if (identifiers != null) {
+			return identifiers;
+		}
 		return getSearch().findTerms(getAppid(), Utils.type(Sysprop.class),
 				Collections.singletonMap(Config._CREATORID, getId()), true);
 	}
@@ -438,9 +446,10 @@ public class User implements ParaObject {
 			return null;
 		}
 		String identifier = u.getIdentifier();
-		Sysprop s = u.getDao().read(u.getAppid(), identifier);
+		// authentication must see the latest identifiers and passwords
+		Sysprop s = u.getDao().read(u.getAppid(), identifier, ReadConsistency.STRONG);
 		if (s != null && s.getCreatorid() != null) {
-			User user = u.getDao().read(u.getAppid(), s.getCreatorid());
+			User user = u.getDao().read(u.getAppid(), s.getCreatorid(), ReadConsistency.STRONG);
 			if (user != null) {
 				if (!identifier.equals(user.getIdentifier())) {
 					// the main identifier was changed - update
@@ -469,7 +478,7 @@ public class User implements ParaObject {
 		if (StringUtils.isBlank(password) || StringUtils.isBlank(identifier)) {
 			return false;
 		}
-		Sysprop s = u.getDao().read(u.getAppid(), identifier);
+		Sysprop s = u.getDao().read(u.getAppid(), identifier, ReadConsistency.STRONG);
 		if (s != null) {
 			String storedHash = (String) s.getProperty(Config._PASSWORD);
 			return Utils.bcryptMatches(password, storedHash);
@@ -596,7 +605,7 @@ public class User implements ParaObject {
 	 * @return true if valid
 	 */
 	public final boolean isValidPasswordResetToken(String token) {
-		Sysprop s = getDao().read(getAppid(), identifier);
+		Sysprop s = getDao().read(getAppid(), identifier, ReadConsistency.STRONG);
 		return isValidToken(s, Config._RESET_TOKEN, token);
 	}
 
@@ -606,7 +615,7 @@ public class User implements ParaObject {
 	 * @return true if valid
 	 */
 	public final boolean isValidEmailConfirmationToken(String token) {
-		Sysprop s = getDao().read(getAppid(), identifier);
+		Sysprop s = getDao().read(getAppid(), identifier, ReadConsistency.STRONG);
 		return isValidToken(s, Config._EMAIL_TOKEN, token);
 	}
 
@@ -34,11 +34,11 @@ import org.hibernate.validator.constraints.NotBlank;
 /**
  * When a user votes on an object the vote is saved as positive or negative.
  * The user has a short amount of time to amend that vote and then it's locked.
- * Votes can expire after X seconds and they get deleted.
+ * Votes can expire after X seconds and they get deleted (see {@link Expirable}).
  * This allows the voter to vote again on the same object.
  * @author Alex Bogdanovski [alex@erudika.com]
  */
-public class Vote implements ParaObject {
+public class Vote implements ParaObject, Expirable {
 	private static final long serialVersionUID = 1L;
 
 	@Stored @Locked private String id;
@@ -127,6 +127,7 @@ public class Vote implements ParaObject {
 	 * Returns the expiration period
 	 * @return time in seconds
 	 */
+	@Override
 	public Long getExpiresAfter() {
 		if (expiresAfter == null) {
 			expiresAfter = Config.VOTE_EXPIRES_AFTER_SEC;
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import com.erudika.para.utils.Utils;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares the {@link com.erudika.para.annotations.Stored} fields of objects between the steps of a single write.
+ * The data store extracts the fields of an object once, when it maps the object to a row, and the steps which
+ * follow - the search index, the change stream and the tracking of changed fields - reuse the same values
+ * instead of walking the object by reflection again. Nested objects are converted to JSON at most once per
+ * write.
+ * <br>
+ * A context is bound to the current thread between {@link #open()} and {@link #close()}. Contexts can be
+ * nested, the outermost one is the one which counts. Outside of a context, the fields are extracted on
+ * every call, just like {@link ParaObjectUtils#getAnnotatedFields(ParaObject, Class, boolean)} does.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class WriteContext {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteContext.class);
+	private static final ThreadLocal<WriteContext> current = new ThreadLocal<WriteContext>();
+
+	// objects are compared by identity, equal objects may be in different states
+	private final Map<ParaObject, Snapshot> snapshots = new IdentityHashMap<ParaObject, Snapshot>();
+	private int depth;
+
+	private WriteContext() { }
+
+	/**
+	 * Opens a context on the current thread, or joins the one which is already open.
+	 * Must be followed by {@link #close()}, in a finally block.
+	 * @return the context
+	 */
+	public static WriteContext open() {
+		WriteContext ctx = current.get();
+		if (ctx == null) {
+			ctx = new WriteContext();
+			current.set(ctx);
+		}
+		ctx.depth++;
+		return ctx;
+	}
+
+	/**
+	 * Closes the context. The shared fields are discarded when the outermost context is closed.
+	 */
+	public void close() {
+		if (--depth <= 0) {
+			snapshots.clear();
+			current.remove();
+		}
+	}
+
+	/**
+	 * @return true if a context is open on the current thread
+	 */
+	public static boolean isOpen() {
+		return current.get() != null;
+	}
+
+	/**
+	 * Extracts the fields of an object and shares them with the rest of the write. Called by a DAO when
+	 * the object is in its final state, i.e. right before it's written. Any fields which were shared
+	 * earlier are replaced.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param filter a filter annotation. fields that have it will be skipped
+	 * @param convertNestedToJsonString true if you want to flatten the nested objects to a JSON string.
+	 * @return a map of fields and their values
+	 * @see ParaObjectUtils#getAnnotatedFields(ParaObject, Class, boolean)
+	 */
+	public static <P extends ParaObject> Map<String, Object> capture(P pojo, Class<? extends Annotation> filter,
+			boolean convertNestedToJsonString) {
+		WriteContext ctx = current.get();
+		if (ctx == null || pojo == null) {
+			return ParaObjectUtils.getAnnotatedFields(pojo, filter, convertNestedToJsonString);
+		}
+		Snapshot snapshot = new Snapshot(pojo);
+		ctx.snapshots.put(pojo, snapshot);
+		return snapshot.toMap(filter, convertNestedToJsonString);
+	}
+
+	/**
+	 * Returns the fields of an object which were shared earlier in the write, or extracts and shares them.
+	 * @param <P> the object type
+	 * @param pojo the object
+	 * @param filter a filter annotation. fields that have it will be skipped
+	 * @param convertNestedToJsonString true if you want to flatten the nested objects to a JSON string.
+	 * @return a map of fields and their values
+	 * @see ParaObjectUtils#getAnnotatedFields(ParaObject, Class, boolean)
+	 */
+	public static <P extends ParaObject> Map<String, Object> getFields(P pojo, Class<? extends Annotation> filter,
+			boolean convertNestedToJsonString) {
+		WriteContext ctx = current.get();
+		if (ctx == null || pojo == null) {
+			return ParaObjectUtils.getAnnotatedFields(pojo, filter, convertNestedToJsonString);
+		}
+		Snapshot snapshot = ctx.snapshots.get(pojo);
+		if (snapshot == null) {
+			snapshot = new Snapshot(pojo);
+			ctx.snapshots.put(pojo, snapshot);
+		}
+		return snapshot.toMap(filter, convertNestedToJsonString);
+	}
+
+	/**
+	 * The values of the stored fields of an object, read once. Nested objects are converted to JSON lazily.
+	 */
+	private static final class Snapshot {
+		private final List<Field> fields;
+		private final Object[] values;
+		private final String[] json;
+		private int size;
+
+		Snapshot(ParaObject pojo) {
+			fields = ParaObjectUtils.getStoredFields(pojo.getClass());
+			values = new Object[fields.size()];
+			json = new String[fields.size()];
+			try {
+				for (; size < values.length; size++) {
+					values[size] = PropertyUtils.getProperty(pojo, fields.get(size).getName());
+				}
+			} catch (Exception ex) {
+				logger.error(null, ex);
+			}
+		}
+
+		Map<String, Object> toMap(Class<? extends Annotation> filter, boolean convertNestedToJsonString) {
+			Map<String, Object> map = new HashMap<String, Object>(size * 2);
+			for (int i = 0; i < size; i++) {
+				Field field = fields.get(i);
+				if (filter != null && field.isAnnotationPresent(filter)) {
+					continue;
+				}
+				Object value = values[i];
+				if (convertNestedToJsonString && !Utils.isBasicType(field.getType())) {
+					if (json[i] == null) {
+						try {
+							json[i] = ParaObjectUtils.getJsonWriterNoIdent().writeValueAsString(value);
+						} catch (Exception ex) {
+							logger.error(null, ex);
+							continue;
+						}
+					}
+					value = json[i];
+				}
+				map.put(field.getName(), value);
+			}
+			return map;
+		}
+	}
+}
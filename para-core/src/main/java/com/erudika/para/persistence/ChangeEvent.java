@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A change made to an object through the {@link DAO}. Events are emitted after each successful write
+ * and carry a sequence number which is increasing in the order the writes were made.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class ChangeEvent {
+
+	/**
+	 * The type of change.
+	 */
+	public enum Action {
+
+		/**
+		 * An object was created.
+		 */
+		CREATE,
+		/**
+		 * An object was updated.
+		 */
+		UPDATE,
+		/**
+		 * An object was deleted.
+		 */
+		DELETE
+	}
+
+	private final long sequence;
+	private final Action action;
+	private final String appid;
+	private final String id;
+	private final String type;
+	private final Map<String, Object> fields;
+	private final long timestamp;
+
+	/**
+	 * Default constructor.
+	 * @param sequence the sequence number
+	 * @param action the type of change
+	 * @param appid the {@link com.erudika.para.core.App} id
+	 * @param id the object id
+	 * @param type the object type, may be null if unknown
+	 * @param fields the fields which were written and their values, may be null
+	 * @param timestamp the time of the change
+	 */
+	public ChangeEvent(long sequence, Action action, String appid, String id, String type,
+			Map<String, Object> fields, long timestamp) {
+		this.sequence = sequence;
+		this.action = action;
+		this.appid = appid;
+		this.id = id;
+		this.type = type;
+		this.fields = (fields == null) ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(fields);
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return the sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the type of change
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * @return the app id
+	 */
+	public String getAppid() {
+		return appid;
+	}
+
+	/**
+	 * @return the object id
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the object type or null
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * The fields which were written. For creates these are all stored fields, for updates - only
+	 * the changed fields and for deletes the map is empty.
+	 * @return a map of field names and their values
+	 */
+	public Map<String, Object> getFields() {
+		return fields;
+	}
+
+	/**
+	 * @return the time of the change
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + action + " " + appid + "/" + type + "/" + id + " " + fields.keySet();
+	}
+}
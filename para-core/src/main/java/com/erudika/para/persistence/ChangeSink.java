@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import java.util.List;
+
+/**
+ * A consumer of {@link ChangeEvent}s. Each sink has its own bounded queue and receives batches of
+ * events in the order they were queued, on a separate thread, away from the request path. Events
+ * emitted concurrently may be out of sequence. External sinks can be registered with
+ * {@link java.util.ServiceLoader}.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public interface ChangeSink {
+
+	/**
+	 * Processes a batch of changes. Exceptions are logged and the batch is dropped.
+	 * @param changes a list of events in the order they were queued
+	 */
+	void onChanges(List<ChangeEvent> changes);
+}
@@ -21,6 +21,7 @@ import com.erudika.para.annotations.Cached;
 import com.erudika.para.annotations.Indexed;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.utils.Pager;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -71,6 +72,26 @@ public interface DAO {
 	 */
 	<P extends ParaObject> P read(String key);
 
+	/**
+	 * Retrieves an object from the data store with a given read consistency.
+	 * @param <P> the type of object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param key an object id
+	 * @param consistency the read consistency, or null for the data store's default
+	 * @return the object or null if not found
+	 */
+	@Cached(action = Cached.Action.GET)
+	<P extends ParaObject> P read(String appid, String key, ReadConsistency consistency);
+
+	/**
+	 * Retrieves an object from the data store with a given read consistency.
+	 * @param <P> the type of object
+	 * @param key an object id
+	 * @param consistency the read consistency, or null for the data store's default
+	 * @return the object or null if not found
+	 */
+	<P extends ParaObject> P read(String key, ReadConsistency consistency);
+
 	/**
 	 * Updates an object permanently.
 	 * @param <P> the type of object
@@ -105,6 +126,53 @@ public interface DAO {
 	 */
 	<P extends ParaObject> void delete(P so);
 
+	/**
+	 * Replaces an object only if it's still stored as it was read - no field was changed in the meantime by
+	 * an update, an increment or another replacement. The check and the write are done atomically, so
+	 * read-modify-write cycles built on it don't lose concurrent writes. Stored fields are compared with
+	 * {@link com.erudika.para.core.ParaObjectUtils#sameFields(com.erudika.para.core.ParaObject,
+	 * com.erudika.para.core.ParaObject)}.
+	 * @param <P> the type of object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param expected the object as it was read from the data store, or null if it must not exist yet
+	 * @param so the new version of the object, with the same id
+	 * @return true if the object was written, false if the stored object was different
+	 */
+	@Indexed(action = Indexed.Action.ADD)
+	@Cached(action = Cached.Action.EVICT)
+	<P extends ParaObject> boolean compareAndSet(String appid, P expected, P so);
+
+	/**
+	 * Replaces an object only if it's still stored as it was read.
+	 * @param <P> the type of object
+	 * @param expected the object as it was read from the data store, or null if it must not exist yet
+	 * @param so the new version of the object, with the same id
+	 * @return true if the object was written, false if the stored object was different
+	 */
+	<P extends ParaObject> boolean compareAndSet(P expected, P so);
+
+	/**
+	 * Atomically adds a number to a numeric field of an object, without a read-modify-write cycle
+	 * where the data store allows it. Used for counters like votes.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param id the object id
+	 * @param field the name of a numeric field
+	 * @param delta the number to add, can be negative
+	 * @return the new value of the field or null if the object doesn't exist or the field isn't numeric
+	 */
+	@Indexed(action = Indexed.Action.REINDEX)
+	@Cached(action = Cached.Action.EVICT)
+	Long increment(String appid, String id, String field, long delta);
+
+	/**
+	 * Atomically adds a number to a numeric field of an object.
+	 * @param id the object id
+	 * @param field the name of a numeric field
+	 * @param delta the number to add, can be negative
+	 * @return the new value of the field or null if the object doesn't exist or the field isn't numeric
+	 */
+	Long increment(String id, String field, long delta);
+
 	/////////////////////////////////////////////
 	//				READ ALL FUNCTIONS
 	/////////////////////////////////////////////
@@ -146,6 +214,54 @@ public interface DAO {
 	 */
 	<P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns);
 
+	/**
+	 * Retrieves multiple objects from the data store with a given read consistency.
+	 * @param <P> the type of object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param keys a list of object ids
+	 * @param getAllColumns true if all columns must be retrieved. used to save bandwidth.
+	 * @param consistency the read consistency, or null for the data store's default
+	 * @return a map of ids to objects
+	 */
+	@Cached(action = Cached.Action.GET_ALL)
+	<P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency);
+
+	/**
+	 * Retrieves multiple objects from the data store with a given read consistency.
+	 * @param <P> the type of object
+	 * @param keys a list of object ids
+	 * @param getAllColumns true if all columns must be retrieved. used to save bandwidth.
+	 * @param consistency the read consistency, or null for the data store's default
+	 * @return a map of ids to objects
+	 */
+	<P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency);
+
+	/**
+	 * Retrieves multiple objects from the data store, reading only some of their fields.
+	 * The objects are partial, so they aren't cached. Updating them writes only the fields which were changed,
+	 * their cached copies are evicted and the search index is updated from the stored objects. They must not
+	 * be written with {@link #create(java.lang.String, com.erudika.para.core.ParaObject)} or
+	 * {@link #compareAndSet(java.lang.String, com.erudika.para.core.ParaObject, com.erudika.para.core.ParaObject)},
+	 * which replace whole objects.
+	 * @param <P> the type of object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param keys a list of object ids
+	 * @param fields the fields to read. id and type are always read. if empty, all fields are read.
+	 * @return a map of ids to objects
+	 */
+	<P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields);
+
+	/**
+	 * Retrieves multiple objects from the data store, reading only some of their fields.
+	 * @param <P> the type of object
+	 * @param keys a list of object ids
+	 * @param fields the fields to read. id and type are always read. if empty, all fields are read.
+	 * @return a map of ids to objects
+	 */
+	<P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields);
+
 	/**
 	 * Reads a fixed number of objects. Used for scanning a data store page by page.
 	 * @param <P> the type of object
@@ -163,11 +279,57 @@ public interface DAO {
 	 */
 	<P extends ParaObject> List<P> readPage(Pager pager);
 
+	/**
+	 * Returns an iterator over all objects of an app. Used for enumerating a data store,
+	 * e.g. for reindexing or exporting. Objects are read lazily and in no particular order.
+	 * If the iterator is also {@link java.io.Closeable}, it should be closed when the iteration
+	 * stops before the end, and it may throw an exception if the data store fails during the iteration.
+	 * @param <P> the type of object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param type the type of objects to return, or null for all types
+	 * @return an iterator of objects
+	 */
+	<P extends ParaObject> Iterator<P> iterate(String appid, String type);
+
+	/**
+	 * Returns an iterator over all objects of an app. Used for enumerating a data store,
+	 * e.g. for reindexing or exporting. Objects are read lazily and in no particular order.
+	 * @param <P> the type of object
+	 * @param type the type of objects to return, or null for all types
+	 * @return an iterator of objects
+	 */
+	<P extends ParaObject> Iterator<P> iterate(String type);
+
+	/**
+	 * Reads objects by the exact value of an indexed field, without going through the search index.
+	 * Supported fields are {@code parentid}, {@code creatorid} and {@code type}. Results are sorted
+	 * by timestamp, newest first unless {@link Pager#isDesc()} is false. Paging continues from
+	 * {@link Pager#getLastKey()}, which is set to the cursor for the next page, or to null on the last page.
+	 * @param <P> the type of object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param field the name of the field - parentid, creatorid or type
+	 * @param value the exact value of the field
+	 * @param pager a {@link com.erudika.para.utils.Pager}
+	 * @return a list of objects, or null if the field isn't indexed by the data store
+	 */
+	<P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager);
+
+	/**
+	 * Reads objects by the exact value of an indexed field, without going through the search index.
+	 * @param <P> the type of object
+	 * @param field the name of the field - parentid, creatorid or type
+	 * @param value the exact value of the field
+	 * @param pager a {@link com.erudika.para.utils.Pager}
+	 * @return a list of objects, or null if the field isn't indexed by the data store
+	 */
+	<P extends ParaObject> List<P> readByField(String field, String value, Pager pager);
+
 	/**
 	 * Updates multiple objects.
 	 * @param <P> the type of object
 	 * @param appid name of the {@link com.erudika.para.core.App}
 	 * @param objects a list of objects to update
+	 * @throws UpdateFailedException if some of the objects couldn't be updated. the others are updated
 	 */
 	@Indexed(action = Indexed.Action.ADD_ALL)
 	@Cached(action = Cached.Action.PUT_ALL)
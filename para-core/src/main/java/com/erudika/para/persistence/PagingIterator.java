@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.utils.Pager;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * An iterator which reads objects page by page, using {@link DAO#readPage(java.lang.String, Pager)}.
+ * This is the default implementation of {@link DAO#iterate(java.lang.String, java.lang.String)}.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ * @param <P> the type of object
+ */
+public class PagingIterator<P extends ParaObject> implements Iterator<P> {
+
+	private final DAO dao;
+	private final String appid;
+	private final String type;
+	private final Pager pager;
+	private Iterator<P> page = Collections.<P>emptyIterator();
+	private P next;
+	private boolean done;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO to read from
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param type the type of objects to return, or null for all types
+	 * @param pageSize the number of objects to read at once
+	 */
+	public PagingIterator(DAO dao, String appid, String type, int pageSize) {
+		this.dao = dao;
+		this.appid = appid;
+		this.type = type;
+		this.pager = new Pager(pageSize);
+		this.done = (dao == null || StringUtils.isBlank(appid));
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null) {
+			if (page.hasNext()) {
+				P obj = page.next();
+				if (obj != null && (type == null || type.equals(obj.getType()))) {
+					next = obj;
+				}
+			} else if (done) {
+				break;
+			} else {
+				readNextPage();
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public P next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		P obj = next;
+		next = null;
+		return obj;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void readNextPage() {
+		String lastKey = pager.getLastKey();
+		List<P> list = dao.readPage(appid, pager);
+		page = (list == null) ? Collections.<P>emptyIterator() : list.iterator();
+		// stop if there are no more pages or the DAO didn't move forward
+		done = list == null || list.isEmpty() || pager.getLastKey() == null || pager.getLastKey().equals(lastKey);
+	}
+}
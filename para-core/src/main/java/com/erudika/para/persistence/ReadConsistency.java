@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.utils.Config;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The consistency of a read from the {@link DAO}. Eventually consistent reads are cheaper, but may not
+ * reflect a write which completed just before them. Data stores which are always strongly consistent
+ * treat both the same.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public enum ReadConsistency {
+
+	/**
+	 * The read may return stale data for a short while after a write.
+	 */
+	EVENTUAL,
+	/**
+	 * The read reflects all writes which completed before it.
+	 */
+	STRONG;
+
+	/**
+	 * Returns the default read consistency for objects of a given type. Strong reads are enabled
+	 * for all types with {@code para.strong_reads = true}, or for some of them with
+	 * {@code para.strong_read_types}, a comma-separated list of types.
+	 * @param type the type of object, or null for the global default
+	 * @return the read consistency
+	 */
+	public static ReadConsistency forType(String type) {
+		if (Config.getConfigBoolean("strong_reads", false)) {
+			return STRONG;
+		}
+		if (!StringUtils.isBlank(type)) {
+			for (String strongType : StringUtils.split(Config.getConfigParam("strong_read_types", ""), ',')) {
+				if (type.equals(StringUtils.trim(strongType))) {
+					return STRONG;
+				}
+			}
+		}
+		return EVENTUAL;
+	}
+}
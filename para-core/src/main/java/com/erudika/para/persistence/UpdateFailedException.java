@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.ParaObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Thrown by {@link DAO#updateAll(java.lang.String, java.util.List)} when some of the objects couldn't be
+ * updated, even after retrying. The other objects were updated and stay updated.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class UpdateFailedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String appid;
+	private final Set<String> failedIds;
+
+	/**
+	 * Default constructor.
+	 * @param appid the {@link com.erudika.para.core.App} id
+	 * @param failedIds the ids of the objects which weren't updated
+	 */
+	public UpdateFailedException(String appid, Collection<String> failedIds) {
+		super("Failed to update " + failedIds.size() + " objects in app '" + appid + "': " + failedIds);
+		this.appid = appid;
+		this.failedIds = Collections.unmodifiableSet(new LinkedHashSet<String>(failedIds));
+	}
+
+	/**
+	 * @return the {@link com.erudika.para.core.App} id
+	 */
+	public String getAppid() {
+		return appid;
+	}
+
+	/**
+	 * @return the ids of the objects which weren't updated
+	 */
+	public Set<String> getFailedIds() {
+		return failedIds;
+	}
+
+	/**
+	 * Returns the objects which were updated.
+	 * @param <P> the type of object
+	 * @param objects the objects passed to {@link DAO#updateAll(java.lang.String, java.util.List)}
+	 * @return a new list without the objects which weren't updated
+	 */
+	public <P extends ParaObject> List<P> getUpdated(List<P> objects) {
+		List<P> updated = new ArrayList<P>();
+		if (objects != null) {
+			for (P so : objects) {
+				if (so != null && !failedIds.contains(so.getId())) {
+					updated.add(so);
+				}
+			}
+		}
+		return updated;
+	}
+}
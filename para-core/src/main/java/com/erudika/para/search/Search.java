@@ -19,6 +19,7 @@ package com.erudika.para.search;
 
 import com.erudika.para.utils.Pager;
 import com.erudika.para.core.ParaObject;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -335,6 +336,32 @@ public interface Search {
 	 */
 	<P extends ParaObject> List<P> findTerms(String appid, String type, Map<String, ?> terms, boolean matchAll, Pager... pager);
 
+	/**
+	 * Returns an iterator over all objects that have properties matching some given values. Unlike
+	 * {@link #findTerms(java.lang.String, java.lang.String, java.util.Map, boolean,
+	 * com.erudika.para.utils.Pager...)}, results are not limited to a page - they are read lazily, in batches,
+	 * from a snapshot of the index taken on the first read. Used for bulk operations, like cascade deletes.
+	 * The iterator throws an exception if the index fails during the iteration, instead of stopping early.
+	 * @param <P> type of the object
+	 * @param type the type of object to search for. See {@link com.erudika.para.core.ParaObject#getType()}
+	 * @param terms a map of fields (property names) to terms (property values)
+	 * @param matchAll match all terms. If true - AND search, if false - OR search
+	 * @return an iterator of objects found
+	 */
+	<P extends ParaObject> Iterator<P> iterateTerms(String type, Map<String, ?> terms, boolean matchAll);
+
+	/**
+	 * Returns an iterator over all objects that have properties matching some given values.
+	 * @param <P> type of the object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param type the type of object to search for. See {@link com.erudika.para.core.ParaObject#getType()}
+	 * @param terms a map of fields (property names) to terms (property values)
+	 * @param matchAll match all terms. If true - AND search, if false - OR search
+	 * @return an iterator of objects found
+	 * @see #iterateTerms(java.lang.String, java.util.Map, boolean)
+	 */
+	<P extends ParaObject> Iterator<P> iterateTerms(String appid, String type, Map<String, ?> terms, boolean matchAll);
+
 	/**
 	 * Searches for objects that have a property with a value matching a wildcard query.
 	 * @param <P> type of the object
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file store which can also write streams of any length to an exact location. Unlike
+ * {@link #store(java.lang.String, java.io.InputStream)}, the path isn't changed, there is no size limit
+ * and the file is never publicly readable. Used for exports and archives.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public interface StreamingFileStore extends FileStore {
+
+	/**
+	 * Writes a stream to a file, replacing the file if it exists. The stream is read to the end and closed.
+	 * A file which can't be written completely is not left behind.
+	 * @param path the relative file path, used as is
+	 * @param data the contents of the file
+	 * @throws IOException if the file can't be written
+	 */
+	void write(String path, InputStream data) throws IOException;
+
+}
@@ -72,6 +72,11 @@ public final class Config {
 	public static final String _EMAIL = "email";
 	/** {@value #_GROUPS} */
 	public static final String _GROUPS = "groups";
+	/**
+	 * {@value #_EXPIRES} - the expiration time of an object, written by data stores and search indexes.
+	 * It's reserved, so it can't clash with a user-defined property called "expires".
+	 */
+	public static final String _EXPIRES = "_expires";
 
 	static {
 		init(null);
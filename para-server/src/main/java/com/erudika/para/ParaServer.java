@@ -32,6 +32,7 @@ import com.erudika.para.utils.Config;
 import com.erudika.para.utils.filters.CORSFilter;
 import com.erudika.para.utils.filters.ErrorFilter;
 import com.erudika.para.utils.filters.GZipServletFilter;
+import com.erudika.para.utils.filters.IdentityMapFilter;
 import com.google.inject.Module;
 import javax.annotation.PreDestroy;
 import javax.servlet.ServletContext;
@@ -139,6 +140,17 @@ public class ParaServer implements WebApplicationInitializer, Ordered {
 		return frb;
 	}
 
+	@Bean
+	public FilterRegistrationBean identityMapFilterRegistrationBean() {
+		FilterRegistrationBean frb = new FilterRegistrationBean(new IdentityMapFilter());
+		frb.addUrlPatterns("/*");
+		frb.setAsyncSupported(true);
+		frb.setEnabled(Config.getConfigBoolean("identity_map_enabled", true));
+		// must run before the security filter chain
+		frb.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+		return frb;
+	}
+
 	@Bean
 	public EmbeddedServletContainerFactory jettyConfigBean() {
 		JettyEmbeddedServletContainerFactory jef = new JettyEmbeddedServletContainerFactory();
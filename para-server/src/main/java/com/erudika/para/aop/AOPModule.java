@@ -19,19 +19,18 @@ package com.erudika.para.aop;
 
 import com.erudika.para.persistence.DAO;
 import com.google.inject.AbstractModule;
-import com.google.inject.matcher.Matchers;
+import com.google.inject.name.Names;
 
 /**
- * The default Aspect Oriented Programming module
+ * The default Aspect Oriented Programming module. It binds the {@link DAOPipeline}, which adds validation,
+ * caching and indexing to the data store bound as {@code @Named(DAOPipeline.STORE) DAO}.
  * @author Alex Bogdanovski [alex@erudika.com]
  */
 public class AOPModule extends AbstractModule {
 
 	protected void configure() {
 		// enable automatic indexing and caching each time an object is created/updated
-		IndexAndCacheAspect aspect = new IndexAndCacheAspect();
-		requestInjection(aspect);
-		bindInterceptor(Matchers.subclassesOf(DAO.class), Matchers.any(), aspect);
+		bind(DAO.class).annotatedWith(Names.named(DAOPipeline.PIPELINE)).toProvider(DAOPipeline.class).asEagerSingleton();
 	}
 
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.BloomFilters;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import com.erudika.para.persistence.ReadConsistency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A decorator which answers reads of objects that don't exist from the app's {@link BloomFilters},
+ * without going to the identity map, the cache or the data store. Created objects are added to the filters
+ * before and after they are written, so concurrent reads never miss them. Strong reads skip the filters.
+ * The filters are built by scanning the decorated DAO.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class BloomFilterDAO extends ForwardingDAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(BloomFilterDAO.class);
+
+	private final BloomFilters filters;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 * @param filters the Bloom filters
+	 */
+	public BloomFilterDAO(DAO dao, BloomFilters filters) {
+		super(dao);
+		this.filters = filters;
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		added(appid, so);
+		String id = getDelegate().create(appid, so);
+		// ids of new objects may be generated by the data store
+		added(appid, so);
+		return id;
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		if (consistency != ReadConsistency.STRONG && !filters.mightExist(getDelegate(), appid, key)) {
+			logger.debug("Bloom filter miss: {}->{}", appid, key);
+			return null;
+		}
+		return getDelegate().read(appid, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		added(appid, so);
+		getDelegate().update(appid, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		added(appid, so);
+		return getDelegate().compareAndSet(appid, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		getDelegate().delete(appid, so);
+		filters.deleted(getDelegate(), appid, 1);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		addedAll(appid, objects);
+		getDelegate().createAll(appid, objects);
+		addedAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		if (keys != null && consistency != ReadConsistency.STRONG && noneMightExist(appid, keys)) {
+			logger.debug("Bloom filter miss: {}->{}", appid, keys);
+			return new LinkedHashMap<String, P>();
+		}
+		return getDelegate().readAll(appid, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		addedAll(appid, objects);
+		getDelegate().updateAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		getDelegate().deleteAll(appid, objects);
+		filters.deleted(getDelegate(), appid, (objects == null) ? 0 : objects.size());
+	}
+
+	private boolean noneMightExist(String appid, List<String> ids) {
+		for (String id : ids) {
+			if (filters.mightExist(getDelegate(), appid, id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void added(String appid, ParaObject so) {
+		if (so != null && so.getId() != null) {
+			filters.added(appid, Collections.singletonList(so.getId()));
+		}
+	}
+
+	private <P extends ParaObject> void addedAll(String appid, List<P> objects) {
+		if (objects != null) {
+			List<String> ids = new ArrayList<String>(objects.size());
+			for (ParaObject object : objects) {
+				if (object != null && object.getId() != null) {
+					ids.add(object.getId());
+				}
+			}
+			filters.added(appid, ids);
+		}
+	}
+}
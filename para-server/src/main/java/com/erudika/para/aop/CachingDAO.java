@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.Cache;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import com.erudika.para.persistence.ReadConsistency;
+import com.erudika.para.persistence.UpdateFailedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-through, write-through caching decorator. Reads are served from the {@link Cache} and misses
+ * are read from the data store and cached. Written objects are cached after they are written, deleted and
+ * incremented objects are evicted. Objects with a time to live are cached until they expire. Strong reads
+ * go to the data store, because the cache may be behind other nodes' writes.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class CachingDAO extends ForwardingDAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(CachingDAO.class);
+
+	private final Cache cache;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 * @param cache the cache
+	 */
+	public CachingDAO(DAO dao, Cache cache) {
+		super(dao);
+		this.cache = cache;
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		String id = getDelegate().create(appid, so);
+		if (id != null) {
+			cachePut(appid, id, so);
+			logger.debug("Cache put: {}->{}", appid, id);
+		}
+		return id;
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		if (key == null) {
+			return getDelegate().read(appid, key, consistency);
+		}
+		P so = (consistency == ReadConsistency.STRONG) ? null : cache.<P>get(appid, key);
+		if (so != null) {
+			logger.debug("Cache hit: {}->{}", appid, key);
+			return so;
+		}
+		so = getDelegate().read(appid, key, consistency);
+		if (so != null) {
+			cachePut(appid, key, so);
+			logger.debug("Cache miss: {}->{}", appid, key);
+		}
+		return so;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		getDelegate().update(appid, so);
+		if (so != null) {
+			cachePut(appid, so.getId(), so);
+			logger.debug("Cache put: {}->{}", appid, so.getId());
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		// evicted even if the write failed - the cached copy is probably the stale one
+		boolean done = getDelegate().compareAndSet(appid, expected, so);
+		if (so != null) {
+			cache.remove(appid, so.getId());
+			logger.debug("Cache delete: {}->{}", appid, so.getId());
+		}
+		return done;
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		getDelegate().delete(appid, so);
+		if (so != null) {
+			cache.remove(appid, so.getId());
+			logger.debug("Cache delete: {}->{}", appid, so.getId());
+		}
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		Long value = getDelegate().increment(appid, id, field, delta);
+		if (id != null) {
+			cache.remove(appid, id);
+			logger.debug("Cache evict: {}->{}", appid, id);
+		}
+		return value;
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		getDelegate().createAll(appid, objects);
+		cachePutAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		if (keys == null || keys.isEmpty()) {
+			return getDelegate().readAll(appid, keys, getAllColumns, consistency);
+		}
+		Map<String, P> cached = (consistency == ReadConsistency.STRONG) ?
+				Collections.<String, P>emptyMap() : cache.<P>getAll(appid, keys);
+		logger.debug("Cache get page: {}->{}", appid, keys);
+		for (String key : keys) {
+			if (!cached.containsKey(key)) {
+				Map<String, P> results = getDelegate().readAll(appid, keys, getAllColumns, consistency);
+				cachePutAll(appid, results);
+				logger.debug("Cache get page reload: {}->{}", appid, key);
+				return results;
+			}
+		}
+		return cached;
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		try {
+			getDelegate().updateAll(appid, objects);
+		} catch (UpdateFailedException e) {
+			cachePutAll(appid, e.getUpdated(objects));
+			throw e;
+		}
+		cachePutAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		getDelegate().deleteAll(appid, objects);
+		if (objects != null && !objects.isEmpty()) {
+			List<String> ids = new ArrayList<String>(objects.size());
+			for (ParaObject paraObject : objects) {
+				ids.add(paraObject.getId());
+			}
+			cache.removeAll(appid, ids);
+			logger.debug("Cache delete page: {}->{}", appid, ids);
+		}
+	}
+
+	/**
+	 * Caches an object, until it expires if it has a time to live. Expired and partial objects aren't
+	 * cached - the stale copy is evicted instead.
+	 */
+	private void cachePut(String appid, String id, ParaObject object) {
+		Long ttl = ParaObjectUtils.getTimeToLive(object);
+		if (ParaObjectUtils.isPartial(object)) {
+			cache.remove(appid, id);
+		} else if (ttl == null) {
+			cache.put(appid, id, object);
+		} else if (ttl > 0) {
+			cache.put(appid, id, object, ttl);
+		} else {
+			cache.remove(appid, id);
+		}
+	}
+
+	private <P extends ParaObject> void cachePutAll(String appid, List<P> objects) {
+		if (objects != null && !objects.isEmpty()) {
+			Map<String, P> map = new LinkedHashMap<String, P>(objects.size());
+			for (P paraObject : objects) {
+				map.put(paraObject.getId(), paraObject);
+			}
+			cachePutAll(appid, map);
+			logger.debug("Cache put page: {}->{}", appid, map.keySet());
+		}
+	}
+
+	private <P extends ParaObject> void cachePutAll(String appid, Map<String, P> objects) {
+		if (objects == null || objects.isEmpty()) {
+			return;
+		}
+		Map<String, P> lasting = new LinkedHashMap<String, P>(objects.size());
+		for (Map.Entry<String, P> entry : objects.entrySet()) {
+			if (ParaObjectUtils.getExpiresAt(entry.getValue()) == null &&
+					!ParaObjectUtils.isPartial(entry.getValue())) {
+				lasting.put(entry.getKey(), entry.getValue());
+			} else {
+				cachePut(appid, entry.getKey(), entry.getValue());
+			}
+		}
+		if (!lasting.isEmpty()) {
+			cache.putAll(appid, lasting);
+		}
+	}
+}
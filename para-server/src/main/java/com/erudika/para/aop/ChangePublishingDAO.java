@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.WriteContext;
+import com.erudika.para.persistence.ChangeEvent;
+import com.erudika.para.persistence.ChangeStream;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import com.erudika.para.persistence.UpdateFailedException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decorator which publishes successful writes to the {@link ChangeStream}. Created objects are published
+ * with all of their fields, updated objects with the fields that changed and deleted objects without fields.
+ * Nothing is captured while the stream has no sinks.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class ChangePublishingDAO extends ForwardingDAO {
+
+	private final ChangeStream changeStream;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 * @param changeStream the change stream
+	 */
+	public ChangePublishingDAO(DAO dao, ChangeStream changeStream) {
+		super(dao);
+		this.changeStream = changeStream;
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		String id = getDelegate().create(appid, so);
+		if (id != null && changeStream.isEnabled()) {
+			changeStream.emit(ChangeEvent.Action.CREATE, appid, id, so.getType(), WriteContext.getFields(so, null, true));
+		}
+		return id;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (so == null || !changeStream.isEnabled()) {
+			getDelegate().update(appid, so);
+			return;
+		}
+		// the changes must be captured before the DAO marks the object as clean
+		Map<String, Object> changes = ParaObjectUtils.getChangedFields(so, null);
+		getDelegate().update(appid, so);
+		changeStream.emit(ChangeEvent.Action.UPDATE, appid, so.getId(), so.getType(), changes);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		boolean done = getDelegate().compareAndSet(appid, expected, so);
+		if (done && changeStream.isEnabled()) {
+			// the whole object was replaced so all of its fields are published
+			changeStream.emit(ChangeEvent.Action.UPDATE, appid, so.getId(), so.getType(),
+					WriteContext.getFields(so, null, true));
+		}
+		return done;
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		getDelegate().delete(appid, so);
+		if (so != null && changeStream.isEnabled()) {
+			changeStream.emit(ChangeEvent.Action.DELETE, appid, so.getId(), so.getType(), null);
+		}
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		Long value = getDelegate().increment(appid, id, field, delta);
+		if (value != null && changeStream.isEnabled()) {
+			changeStream.emit(ChangeEvent.Action.UPDATE, appid, id, null,
+					Collections.<String, Object>singletonMap(field, value));
+		}
+		return value;
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		getDelegate().createAll(appid, objects);
+		if (objects != null && changeStream.isEnabled()) {
+			for (P so : objects) {
+				if (so != null) {
+					changeStream.emit(ChangeEvent.Action.CREATE, appid, so.getId(), so.getType(),
+							WriteContext.getFields(so, null, true));
+				}
+			}
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		if (objects == null || !changeStream.isEnabled()) {
+			getDelegate().updateAll(appid, objects);
+			return;
+		}
+		Map<ParaObject, Map<String, Object>> changes = new IdentityHashMap<ParaObject, Map<String, Object>>();
+		for (P so : objects) {
+			if (so != null) {
+				changes.put(so, ParaObjectUtils.getChangedFields(so, null));
+			}
+		}
+		List<P> updated = objects;
+		UpdateFailedException failure = null;
+		try {
+			getDelegate().updateAll(appid, objects);
+		} catch (UpdateFailedException e) {
+			updated = e.getUpdated(objects);
+			failure = e;
+		}
+		for (P so : updated) {
+			if (so != null) {
+				changeStream.emit(ChangeEvent.Action.UPDATE, appid, so.getId(), so.getType(), changes.get(so));
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		getDelegate().deleteAll(appid, objects);
+		if (objects != null && changeStream.isEnabled()) {
+			for (P so : objects) {
+				if (so != null) {
+					changeStream.emit(ChangeEvent.Action.DELETE, appid, so.getId(), so.getType(), null);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.BloomFilters;
+import com.erudika.para.cache.Cache;
+import com.erudika.para.core.LinkStore;
+import com.erudika.para.persistence.ChangeStream;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.search.IndexingChangeSink;
+import com.erudika.para.search.Search;
+import com.erudika.para.utils.Config;
+import com.google.inject.Provider;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Assembles the chain of {@link DAO} decorators which adds validation, caching and indexing to the data store.
+ * The chain is built once, when the DAO is injected, and only contains the decorators which are enabled, so the
+ * calls which reach a decorator are exactly the ones it handles. From the outside in:
+ * <ol>
+ * <li>{@link ValidatingDAO} - invalid objects are rejected,</li>
+ * <li>{@link WriteContextDAO} - the fields of written objects are extracted once and shared,</li>
+ * <li>{@link LinkStoreDAO} - adjacency lists are updated when links change, if {@code link_store_enabled},</li>
+ * <li>{@link BloomFilterDAO} - reads of missing objects are answered, if {@code bloom_filters_enabled},</li>
+ * <li>{@link IdentityMapDAO} - repeated reads within a request are answered,</li>
+ * <li>{@link CachingDAO} - reads and writes go through the cache, if {@code cache_enabled},</li>
+ * <li>{@link ChangePublishingDAO} - writes are published to the {@link ChangeStream},</li>
+ * <li>{@link IndexingDAO} - writes are indexed, if {@code search_enabled} and not {@code cdc.async_indexing},</li>
+ * <li>the data store.</li>
+ * </ol>
+ * When {@code cdc.async_indexing} is enabled, objects are indexed by an {@link IndexingChangeSink} in the
+ * background instead of inline. Its events are never dropped - writes wait when it falls behind.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class DAOPipeline implements Provider<DAO> {
+
+	/**
+	 * The name of the binding for the data store at the end of the pipeline.
+	 */
+	public static final String STORE = "DAOPipeline.store";
+
+	/**
+	 * The name of the binding for the assembled pipeline.
+	 */
+	public static final String PIPELINE = "DAOPipeline";
+
+	private final DAO store;
+	private final Provider<Search> search;
+	private final Provider<Cache> cache;
+	private final ChangeStream changeStream;
+
+	/**
+	 * Default constructor.
+	 * @param store the data store
+	 * @param search the search index
+	 * @param cache the cache
+	 * @param changeStream the change stream
+	 */
+	@Inject
+	public DAOPipeline(@Named(STORE) DAO store, Provider<Search> search, Provider<Cache> cache,
+			ChangeStream changeStream) {
+		this.store = store;
+		this.search = search;
+		this.cache = cache;
+		this.changeStream = changeStream;
+	}
+
+	/**
+	 * Assembles the pipeline, as configured.
+	 * @return the outermost decorator
+	 */
+	public DAO get() {
+		boolean asyncIndexing = changeStream != null && Config.getConfigBoolean("cdc.async_indexing", false);
+		if (asyncIndexing) {
+			changeStream.addSink(new IndexingChangeSink(), true);
+		}
+		return assemble(store,
+				(Config.isSearchEnabled() && !asyncIndexing) ? search : null,
+				Config.isCacheEnabled() ? cache.get() : null,
+				changeStream,
+				Config.getConfigBoolean("bloom_filters_enabled", false) ? new BloomFilters() : null,
+				LinkStore.isEnabled());
+	}
+
+	/**
+	 * Assembles a pipeline around a data store.
+	 * @param store the data store
+	 * @param search the search index or null if objects shouldn't be indexed
+	 * @param cache the cache or null if objects shouldn't be cached
+	 * @param changeStream the change stream or null if changes shouldn't be published
+	 * @param filters the Bloom filters or null if they are disabled
+	 * @param linkStore true if links should be kept in adjacency lists
+	 * @return the outermost decorator
+	 */
+	public static DAO assemble(DAO store, Provider<Search> search, Cache cache, ChangeStream changeStream,
+			BloomFilters filters, boolean linkStore) {
+		DAO dao = store;
+		if (search != null) {
+			dao = new IndexingDAO(dao, search);
+		}
+		if (changeStream != null) {
+			dao = new ChangePublishingDAO(dao, changeStream);
+		}
+		if (cache != null) {
+			dao = new CachingDAO(dao, cache);
+		}
+		dao = new IdentityMapDAO(dao);
+		if (filters != null) {
+			dao = new BloomFilterDAO(dao, filters);
+		}
+		if (linkStore) {
+			dao = new LinkStoreDAO(dao);
+		}
+		return new ValidatingDAO(new WriteContextDAO(dao));
+	}
+}
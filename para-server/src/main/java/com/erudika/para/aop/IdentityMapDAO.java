@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.IdentityMap;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import com.erudika.para.persistence.ReadConsistency;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A decorator which serves repeated reads within the same request from the {@link IdentityMap}, before
+ * they reach the cache or the data store. Writes evict the affected objects, so that the next read goes
+ * through the cache and the data store again. When no identity map is bound to the current thread, calls
+ * are passed through.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ * @see com.erudika.para.utils.filters.IdentityMapFilter
+ */
+public class IdentityMapDAO extends ForwardingDAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(IdentityMapDAO.class);
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 */
+	public IdentityMapDAO(DAO dao) {
+		super(dao);
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		if (!IdentityMap.isActive()) {
+			return getDelegate().create(appid, so);
+		}
+		String id = (so == null) ? null : so.getId();
+		IdentityMap.remove(appid, id);
+		String created = getDelegate().create(appid, so);
+		// a newly created object is the current version of itself
+		if (created != null) {
+			IdentityMap.put(appid, so);
+		} else {
+			IdentityMap.remove(appid, id);
+		}
+		return created;
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		if (!IdentityMap.isActive()) {
+			return getDelegate().read(appid, key, consistency);
+		}
+		P so = (consistency == ReadConsistency.STRONG) ? null : IdentityMap.<P>get(appid, key);
+		if (so != null) {
+			logger.debug("IdentityMap hit: {}->{}", appid, key);
+		} else {
+			so = getDelegate().read(appid, key, consistency);
+			IdentityMap.put(appid, so);
+		}
+		return so;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (!IdentityMap.isActive()) {
+			getDelegate().update(appid, so);
+			return;
+		}
+		String id = (so == null) ? null : so.getId();
+		IdentityMap.remove(appid, id);
+		getDelegate().update(appid, so);
+		IdentityMap.remove(appid, id);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (!IdentityMap.isActive()) {
+			return getDelegate().compareAndSet(appid, expected, so);
+		}
+		String id = (so == null) ? null : so.getId();
+		IdentityMap.remove(appid, id);
+		boolean done = getDelegate().compareAndSet(appid, expected, so);
+		IdentityMap.remove(appid, id);
+		return done;
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		if (!IdentityMap.isActive()) {
+			getDelegate().delete(appid, so);
+			return;
+		}
+		String id = (so == null) ? null : so.getId();
+		IdentityMap.remove(appid, id);
+		getDelegate().delete(appid, so);
+		IdentityMap.remove(appid, id);
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (!IdentityMap.isActive()) {
+			return getDelegate().increment(appid, id, field, delta);
+		}
+		IdentityMap.remove(appid, id);
+		Long value = getDelegate().increment(appid, id, field, delta);
+		IdentityMap.remove(appid, id);
+		return value;
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		if (!IdentityMap.isActive()) {
+			getDelegate().createAll(appid, objects);
+			return;
+		}
+		IdentityMap.removeAll(appid, objects);
+		getDelegate().createAll(appid, objects);
+		IdentityMap.removeAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		if (!IdentityMap.isActive()) {
+			return getDelegate().readAll(appid, keys, getAllColumns, consistency);
+		}
+		Map<String, P> results = (consistency == ReadConsistency.STRONG) ? null : IdentityMap.<P>getAll(appid, keys);
+		if (results != null) {
+			logger.debug("IdentityMap hit: {}->{}", appid, keys);
+		} else {
+			results = getDelegate().readAll(appid, keys, getAllColumns, consistency);
+			// partial objects (only key columns) don't go into the identity map
+			if (results != null && getAllColumns) {
+				IdentityMap.putAll(appid, results.values());
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		if (!IdentityMap.isActive()) {
+			getDelegate().updateAll(appid, objects);
+			return;
+		}
+		IdentityMap.removeAll(appid, objects);
+		try {
+			getDelegate().updateAll(appid, objects);
+		} finally {
+			IdentityMap.removeAll(appid, objects);
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		if (!IdentityMap.isActive()) {
+			getDelegate().deleteAll(appid, objects);
+			return;
+		}
+		IdentityMap.removeAll(appid, objects);
+		getDelegate().deleteAll(appid, objects);
+		IdentityMap.removeAll(appid, objects);
+	}
+}
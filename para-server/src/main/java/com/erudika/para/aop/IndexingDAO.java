@@ -0,0 +1,341 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.Para;
+import com.erudika.para.core.LinkStore;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import com.erudika.para.persistence.TieredDAO;
+import com.erudika.para.persistence.UpdateFailedException;
+import com.erudika.para.search.Search;
+import com.erudika.para.utils.Config;
+import com.google.inject.Provider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A decorator which keeps the search index in sync with the data store. Objects are indexed after they
+ * are written and removed from the index after they are deleted.
+ * <br>
+ * {@link DAO#increment(java.lang.String, java.lang.String, java.lang.String, long)} only returns the new
+ * value of a field, so incremented objects are read back from the data store and indexed again - one
+ * extra read per increment. With {@code reindex_delay_ms} set, increments are collected instead and
+ * reindexed after that delay with one batch read, so an object which is voted on many times is read and
+ * indexed once. The index then lags behind the counters by up to that delay.
+ * <br>
+ * The search index is looked up on first use, because the {@link Search} itself depends on the {@link DAO}.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class IndexingDAO extends ForwardingDAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexingDAO.class);
+
+	private final Provider<Search> searchProvider;
+	private final long reindexDelay;
+	// appid -> ids of incremented objects waiting to be reindexed
+	private final Map<String, Set<String>> pendingReindex = new LinkedHashMap<String, Set<String>>();
+	private Search search;
+	private ScheduledExecutorService scheduler;
+	private boolean stopped;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 * @param search the search index
+	 */
+	public IndexingDAO(DAO dao, Provider<Search> search) {
+		this(dao, search, Config.getConfigInt("reindex_delay_ms", 0));
+	}
+
+	/**
+	 * @param dao the DAO calls are forwarded to
+	 * @param search the search index
+	 * @param reindexDelayMillis the time incremented objects are collected for before they are reindexed,
+	 * 0 means each one is reindexed right away
+	 */
+	public IndexingDAO(DAO dao, Provider<Search> search, long reindexDelayMillis) {
+		super(dao);
+		this.searchProvider = search;
+		this.reindexDelay = reindexDelayMillis;
+		if (reindexDelay > 0) {
+			Para.addFirstDestroyListener(new Para.DestroyListener() {
+				public void onDestroy() {
+					shutdown();
+				}
+			});
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		String id = getDelegate().create(appid, so);
+		if (id != null && isIndexable(so)) {
+			getSearch().index(appid, so);
+			logger.debug("Indexed {}->{}", appid, id);
+		}
+		return id;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		getDelegate().update(appid, so);
+		if (ParaObjectUtils.isPartial(so)) {
+			// a partial object would replace the whole document - the stored object is indexed instead
+			reindex(appid, Collections.singletonList(so.getId()));
+		} else if (isIndexable(so)) {
+			getSearch().index(appid, so);
+		}
+		logger.debug("Indexed {}->{}", appid, (so == null) ? null : so.getId());
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		boolean done = getDelegate().compareAndSet(appid, expected, so);
+		if (done && TieredDAO.isTombstone(so)) {
+			// the object was archived and is no longer searchable
+			if (expected != null) {
+				getSearch().unindex(appid, expected);
+				logger.debug("Unindexed {}->{}", appid, expected.getId());
+			}
+		} else if (done && isIndexable(so)) {
+			getSearch().index(appid, so);
+			logger.debug("Indexed {}->{}", appid, so.getId());
+		}
+		return done;
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		getDelegate().delete(appid, so);
+		if (!LinkStore.isAdjacencyList(so)) {
+			getSearch().unindex(appid, so);
+		}
+		logger.debug("Unindexed {}->{}", appid, (so == null) ? null : so.getId());
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		Long value = getDelegate().increment(appid, id, field, delta);
+		if (value != null && id != null) {
+			if (!scheduleReindex(appid, id)) {
+				ParaObject reindexMe = getDelegate().read(appid, id);
+				if (reindexMe != null && isIndexable(reindexMe)) {
+					getSearch().index(appid, reindexMe);
+					logger.debug("Reindexed {}->{}", appid, id);
+				}
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		getDelegate().createAll(appid, objects);
+		getSearch().indexAll(appid, indexable(objects));
+		logger.debug("Indexed all {}->#{}", appid, (objects == null) ? null : objects.size());
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		try {
+			getDelegate().updateAll(appid, objects);
+		} catch (UpdateFailedException e) {
+			// the objects which were updated must still be indexed
+			indexUpdated(appid, e.getUpdated(objects));
+			throw e;
+		}
+		indexUpdated(appid, objects);
+		logger.debug("Indexed all {}->#{}", appid, (objects == null) ? null : objects.size());
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		getDelegate().deleteAll(appid, objects);
+		getSearch().unindexAll(appid, indexable(objects));
+		logger.debug("Unindexed all {}->#{}", appid, (objects == null) ? null : objects.size());
+	}
+
+	/**
+	 * Reads all incremented objects which are waiting to be reindexed, in one batch per app, and indexes them.
+	 */
+	public void reindexPending() {
+		Map<String, Set<String>> pending;
+		synchronized (pendingReindex) {
+			if (pendingReindex.isEmpty()) {
+				return;
+			}
+			pending = new LinkedHashMap<String, Set<String>>(pendingReindex);
+			pendingReindex.clear();
+		}
+		for (Map.Entry<String, Set<String>> entry : pending.entrySet()) {
+			String appid = entry.getKey();
+			Map<String, ParaObject> objects = getDelegate().readAll(appid, new ArrayList<String>(entry.getValue()), true);
+			getSearch().indexAll(appid, indexable(new ArrayList<ParaObject>(objects.values())));
+			logger.debug("Reindexed {}->#{}", appid, objects.size());
+		}
+	}
+
+	/**
+	 * Reindexes the pending objects and stops the background reindexing.
+	 */
+	public void shutdown() {
+		synchronized (pendingReindex) {
+			stopped = true;
+			if (scheduler != null) {
+				scheduler.shutdown();
+				scheduler = null;
+			}
+		}
+		reindexPending();
+	}
+
+	private boolean scheduleReindex(String appid, String id) {
+		if (reindexDelay <= 0) {
+			return false;
+		}
+		synchronized (pendingReindex) {
+			if (stopped) {
+				return false;
+			}
+			boolean first = pendingReindex.isEmpty();
+			Set<String> ids = pendingReindex.get(appid);
+			if (ids == null) {
+				ids = new LinkedHashSet<String>();
+				pendingReindex.put(appid, ids);
+			}
+			ids.add(id);
+			if (!first) {
+				// a reindex is already scheduled
+				return true;
+			}
+			if (scheduler == null) {
+				scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "para-reindex");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+			try {
+				scheduler.schedule(new Runnable() {
+					public void run() {
+						try {
+							reindexPending();
+						} catch (Exception e) {
+							logger.error(null, e);
+						}
+					}
+				}, reindexDelay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				logger.debug("Reindexing was stopped.");
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Adjacency lists of the {@link LinkStore} are internal and are never indexed,
+	 * neither are the tombstones of archived objects.
+	 */
+	private static boolean isIndexable(ParaObject so) {
+		return !LinkStore.isAdjacencyList(so) && !TieredDAO.isTombstone(so);
+	}
+
+	private <P extends ParaObject> List<P> indexable(List<P> objects) {
+		if (objects != null) {
+			for (P so : objects) {
+				if (!isIndexable(so)) {
+					List<P> indexable = new ArrayList<P>(objects.size());
+					for (P obj : objects) {
+						if (isIndexable(obj)) {
+							indexable.add(obj);
+						}
+					}
+					return indexable;
+				}
+			}
+		}
+		return objects;
+	}
+
+	private <P extends ParaObject> void indexUpdated(String appid, List<P> objects) {
+		List<P> complete = indexable(objects);
+		List<String> partial = new ArrayList<String>();
+		if (complete != null) {
+			for (P obj : complete) {
+				if (ParaObjectUtils.isPartial(obj)) {
+					partial.add(obj.getId());
+				}
+			}
+		}
+		if (!partial.isEmpty()) {
+			List<P> indexable = new ArrayList<P>(complete.size());
+			for (P obj : complete) {
+				if (!ParaObjectUtils.isPartial(obj)) {
+					indexable.add(obj);
+				}
+			}
+			reindex(appid, partial);
+			if (indexable.isEmpty()) {
+				return;
+			}
+			complete = indexable;
+		}
+		getSearch().indexAll(appid, complete);
+	}
+
+	/**
+	 * Reads objects from the data store and indexes them, or schedules them to be reindexed.
+	 */
+	private void reindex(String appid, List<String> ids) {
+		List<String> readNow = new ArrayList<String>(ids.size());
+		for (String id : ids) {
+			if (id != null && !scheduleReindex(appid, id)) {
+				readNow.add(id);
+			}
+		}
+		if (!readNow.isEmpty()) {
+			Map<String, ParaObject> objects = getDelegate().readAll(appid, readNow, true);
+			getSearch().indexAll(appid, indexable(new ArrayList<ParaObject>(objects.values())));
+			logger.debug("Reindexed {}->#{}", appid, objects.size());
+		}
+	}
+
+	private Search getSearch() {
+		if (search == null) {
+			search = searchProvider.get();
+		}
+		return search;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.core.LinkStore;
+import com.erudika.para.core.Linker;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the adjacency lists of the {@link LinkStore} in sync with the {@link Linker} objects. New links are
+ * added to the lists of both linked objects, deleted links are removed from them. The lists are written
+ * through the rest of the pipeline, so they are cached like any other object. When any other object is
+ * deleted, its own lists are deleted too. Enabled by {@code link_store_enabled}.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class LinkStoreDAO extends ForwardingDAO {
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 */
+	public LinkStoreDAO(DAO dao) {
+		super(dao);
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		if (!(so instanceof Linker)) {
+			return getDelegate().create(appid, so);
+		}
+		// linking twice overwrites the link, the lists must not have the same id twice
+		List<Linker> links = Collections.singletonList((Linker) so);
+		LinkStore.lockLinks(links);
+		try {
+			boolean exists = so.getId() != null && getDelegate().read(appid, so.getId()) != null;
+			String id = getDelegate().create(appid, so);
+			if (id != null && !exists) {
+				LinkStore.addLinks(getDelegate(), appid, links);
+			}
+			return id;
+		} finally {
+			LinkStore.unlockLinks(links);
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		getDelegate().delete(appid, so);
+		if (so instanceof Linker) {
+			LinkStore.removeLinks(getDelegate(), appid, Collections.singletonList((Linker) so));
+		} else if (so != null) {
+			LinkStore.dropLists(getDelegate(), appid, Collections.singletonList(so));
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		List<Linker> links = getLinks(objects);
+		if (links.isEmpty()) {
+			getDelegate().createAll(appid, objects);
+			return;
+		}
+		List<String> ids = new ArrayList<String>(links.size());
+		for (Linker link : links) {
+			ids.add(link.getId());
+		}
+		LinkStore.lockLinks(links);
+		try {
+			Map<String, ParaObject> existing = getDelegate().readAll(appid, ids, false);
+			getDelegate().createAll(appid, objects);
+			List<Linker> added = new ArrayList<Linker>(links.size());
+			for (Linker link : links) {
+				if (existing.get(link.getId()) == null) {
+					added.add(link);
+				}
+			}
+			LinkStore.addLinks(getDelegate(), appid, added);
+		} finally {
+			LinkStore.unlockLinks(links);
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		getDelegate().deleteAll(appid, objects);
+		LinkStore.removeLinks(getDelegate(), appid, getLinks(objects));
+		LinkStore.dropLists(getDelegate(), appid, objects);
+	}
+
+	private <P extends ParaObject> List<Linker> getLinks(List<P> objects) {
+		List<Linker> links = new ArrayList<Linker>();
+		if (objects != null) {
+			for (P so : objects) {
+				if (so instanceof Linker && so.getId() != null) {
+					links.add((Linker) so);
+				}
+			}
+		}
+		return links;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.User;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import com.erudika.para.validation.ValidationUtils;
+import java.util.Iterator;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The outermost decorator of the {@link DAOPipeline}. Invalid objects are not created or updated, so they
+ * never reach the cache, the search index or the data store. Users and apps are removed from batch writes,
+ * because they must be validated and written one at a time.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class ValidatingDAO extends ForwardingDAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(ValidatingDAO.class);
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 */
+	public ValidatingDAO(DAO dao) {
+		super(dao);
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		return isValid(appid, so) ? getDelegate().create(appid, so) : null;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (isValid(appid, so)) {
+			getDelegate().update(appid, so);
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		return isValid(appid, so) && getDelegate().compareAndSet(appid, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		getDelegate().createAll(appid, removeSpecialClasses(objects));
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		getDelegate().updateAll(appid, removeSpecialClasses(objects));
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		getDelegate().deleteAll(appid, removeSpecialClasses(objects));
+	}
+
+	private boolean isValid(String appid, ParaObject so) {
+		String[] errors = ValidationUtils.validateObject(so);
+		if (errors.length > 0) {
+			logger.warn("Invalid object {}->{} errors: [{}]. Changes weren't persisted.",
+					appid, so, String.join("; ", errors));
+			return false;
+		}
+		return true;
+	}
+
+	private <P extends ParaObject> List<P> removeSpecialClasses(List<P> objects) {
+		if (objects != null) {
+			for (Iterator<P> it = objects.iterator(); it.hasNext();) {
+				P paraObject = it.next();
+				if (paraObject instanceof User || paraObject instanceof App) {
+					it.remove();
+				}
+			}
+		}
+		return objects;
+	}
+}
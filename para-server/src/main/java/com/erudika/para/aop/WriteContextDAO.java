@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.WriteContext;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ForwardingDAO;
+import java.util.List;
+
+/**
+ * Opens a {@link WriteContext} around each write, so the fields of an object are extracted once by the data
+ * store and then reused by the decorators which index and publish the object.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class WriteContextDAO extends ForwardingDAO {
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 */
+	public WriteContextDAO(DAO dao) {
+		super(dao);
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		WriteContext ctx = WriteContext.open();
+		try {
+			return getDelegate().create(appid, so);
+		} finally {
+			ctx.close();
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		WriteContext ctx = WriteContext.open();
+		try {
+			getDelegate().update(appid, so);
+		} finally {
+			ctx.close();
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		WriteContext ctx = WriteContext.open();
+		try {
+			return getDelegate().compareAndSet(appid, expected, so);
+		} finally {
+			ctx.close();
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		WriteContext ctx = WriteContext.open();
+		try {
+			getDelegate().createAll(appid, objects);
+		} finally {
+			ctx.close();
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		WriteContext ctx = WriteContext.open();
+		try {
+			getDelegate().updateAll(appid, objects);
+		} finally {
+			ctx.close();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /**
- * The AOP module - method interceptors for adding functionality through AOP.
+ * The AOP module - DAO decorators which add validation, caching and indexing to the data store.
  * @author Alex Bogdanovski [alex@erudika.com]
  */
 package com.erudika.para.aop;
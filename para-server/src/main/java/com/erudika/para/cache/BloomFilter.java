@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scalable Bloom filter of string keys. It starts with room for a given number of keys and adds a new,
+ * twice as large stage whenever the current one is full, each with a lower false positive rate, so the
+ * overall rate stays below the configured one no matter how many keys are added. Keys can't be removed.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class BloomFilter {
+
+	private static final double TIGHTENING_RATIO = 0.5;
+
+	private final int initialCapacity;
+	private final double falsePositiveRate;
+	private final List<Stage> stages = new ArrayList<Stage>();
+	private long size;
+
+	/**
+	 * Creates a new filter.
+	 * @param initialCapacity the number of keys the first stage holds
+	 * @param falsePositiveRate the maximum rate of false positives, e.g. 0.01
+	 */
+	public BloomFilter(int initialCapacity, double falsePositiveRate) {
+		this.initialCapacity = Math.max(initialCapacity, 64);
+		this.falsePositiveRate = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+		// the rates of all stages add up to at most the given rate
+		stages.add(new Stage(this.initialCapacity, this.falsePositiveRate * (1 - TIGHTENING_RATIO)));
+	}
+
+	/**
+	 * Adds a key.
+	 * @param key a key
+	 */
+	public synchronized void add(String key) {
+		if (key == null) {
+			return;
+		}
+		long hash = hash(key);
+		if (mightContain(hash)) {
+			return;
+		}
+		Stage stage = stages.get(stages.size() - 1);
+		if (stage.count >= stage.capacity) {
+			stage = new Stage(stage.capacity * 2, stage.falsePositiveRate * TIGHTENING_RATIO);
+			stages.add(stage);
+		}
+		stage.add(hash);
+		size++;
+	}
+
+	/**
+	 * Checks if a key was added.
+	 * @param key a key
+	 * @return false if the key was definitely never added, true if it probably was
+	 */
+	public synchronized boolean mightContain(String key) {
+		return key != null && mightContain(hash(key));
+	}
+
+	/**
+	 * @return the approximate number of keys added
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * @return the memory taken by the bits of the filter, in bytes
+	 */
+	public synchronized long sizeInBytes() {
+		long bytes = 0;
+		for (Stage stage : stages) {
+			bytes += stage.bits.length * 8L;
+		}
+		return bytes;
+	}
+
+	private boolean mightContain(long hash) {
+		for (Stage stage : stages) {
+			if (stage.mightContain(hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 64-bit FNV-1a, finished with the MurmurHash3 mixer.
+	 */
+	private static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * A plain Bloom filter. The bit positions are derived from one 64-bit hash by double hashing.
+	 */
+	private static final class Stage {
+		private final long capacity;
+		private final double falsePositiveRate;
+		private final long[] bits;
+		private final long numBits;
+		private final int numHashes;
+		private long count;
+
+		Stage(long capacity, double falsePositiveRate) {
+			this.capacity = capacity;
+			this.falsePositiveRate = falsePositiveRate;
+			long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+			this.bits = new long[(int) Math.max(1, (m + 63) / 64)];
+			this.numBits = bits.length * 64L;
+			this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+		}
+
+		void add(long hash) {
+			for (int i = 1; i <= numHashes; i++) {
+				long bit = bit(hash, i);
+				bits[(int) (bit >>> 6)] |= 1L << bit;
+			}
+			count++;
+		}
+
+		boolean mightContain(long hash) {
+			for (int i = 1; i <= numHashes; i++) {
+				long bit = bit(hash, i);
+				if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private long bit(long hash, int i) {
+			long combined = (int) hash + (long) i * (int) (hash >>> 32);
+			return ((combined < 0) ? ~combined : combined) % numBits;
+		}
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.cache;
+
+import com.erudika.para.Para;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.utils.Config;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-app {@link BloomFilter}s of all object ids in the data store. They answer "definitely doesn't exist"
+ * for ids which were never created, so reads of missing objects can skip the cache and the data store.
+ * <br>
+ * The filter of an app is built from a scan of the data store the first time the app is read. Until the
+ * scan is done, all ids are reported as possibly existing. Created ids are added as they are written.
+ * Deleted ids can't be removed from a Bloom filter, so the filter is rebuilt after many deletes.
+ * <br>
+ * With {@code bloom_filters_shared} enabled, ids created on one node are published to the other nodes
+ * through a Hazelcast topic. Objects created on another node may be reported missing until the message
+ * arrives, usually within milliseconds - reads with {@link com.erudika.para.persistence.ReadConsistency#STRONG}
+ * skip the filters. Topic messages may be lost, so shared filters are also rebuilt every
+ * {@code bloom_filters_rebuild_interval_min} minutes.
+ * <br>
+ * The scan may miss objects which were written just before it started, if the data store is eventually
+ * consistent. So a new filter isn't trusted until it's confirmed by a second scan,
+ * {@code bloom_filters_confirm_sec} seconds later - until then, ids which aren't in the filter are read from
+ * the data store.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class BloomFilters {
+
+	private static final Logger logger = LoggerFactory.getLogger(BloomFilters.class);
+	private static final String TOPIC = "para-bloom-filters";
+	private static final int REBUILD_MIN_DELETES = 1000;
+
+	private final ConcurrentMap<String, AppFilter> filters = new ConcurrentHashMap<String, AppFilter>();
+	private final int initialCapacity;
+	private final double falsePositiveRate;
+	private final Executor executor;
+	private final long confirmDelay;
+	private ITopic<String[]> topic;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Creates the filters, configured by {@code bloom_filters_initial_capacity},
+	 * {@code bloom_filters_false_positive_rate} (in percent), {@code bloom_filters_shared},
+	 * {@code bloom_filters_confirm_sec} and {@code bloom_filters_rebuild_interval_min}.
+	 */
+	public BloomFilters() {
+		this(Config.getConfigInt("bloom_filters_initial_capacity", 100000),
+				Config.getConfigInt("bloom_filters_false_positive_rate", 1) / 100.0,
+				new Executor() {
+					public void execute(Runnable command) {
+						Para.asyncExecute(command);
+					}
+				}, Config.getConfigBoolean("bloom_filters_shared", Config.IN_PRODUCTION),
+				TimeUnit.SECONDS.toMillis(Config.getConfigInt("bloom_filters_confirm_sec", 60)),
+				TimeUnit.MINUTES.toMillis(Config.getConfigInt("bloom_filters_rebuild_interval_min",
+						Config.getConfigBoolean("bloom_filters_shared", Config.IN_PRODUCTION) ? 60 : 0)));
+	}
+
+	/**
+	 * Creates the filters, which are trusted as soon as they are built and are never rebuilt periodically.
+	 * @param initialCapacity the initial number of ids per app
+	 * @param falsePositiveRate the maximum rate of false positives, e.g. 0.01
+	 * @param executor runs the scans which build the filters
+	 * @param shared true if created ids should be shared with other nodes through Hazelcast
+	 */
+	public BloomFilters(int initialCapacity, double falsePositiveRate, Executor executor, boolean shared) {
+		this(initialCapacity, falsePositiveRate, executor, shared, 0, 0);
+	}
+
+	/**
+	 * Creates the filters.
+	 * @param initialCapacity the initial number of ids per app
+	 * @param falsePositiveRate the maximum rate of false positives, e.g. 0.01
+	 * @param executor runs the scans which build the filters
+	 * @param shared true if created ids should be shared with other nodes through Hazelcast
+	 * @param confirmDelay milliseconds after the first scan of an app when the second scan confirms it,
+	 * 0 to trust the first scan
+	 * @param rebuildInterval milliseconds between rebuilds of all filters, 0 to disable
+	 */
+	public BloomFilters(int initialCapacity, double falsePositiveRate, Executor executor, boolean shared,
+			long confirmDelay, long rebuildInterval) {
+		this.initialCapacity = initialCapacity;
+		this.falsePositiveRate = falsePositiveRate;
+		this.executor = executor;
+		this.confirmDelay = Math.max(confirmDelay, 0);
+		if (confirmDelay > 0 || rebuildInterval > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "para-bloom-filters");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			if (rebuildInterval > 0) {
+				scheduler.scheduleWithFixedDelay(new Runnable() {
+					public void run() {
+						rebuildAll();
+					}
+				}, rebuildInterval, rebuildInterval, TimeUnit.MILLISECONDS);
+			}
+			Para.addDestroyListener(new Para.DestroyListener() {
+				public void onDestroy() {
+					scheduler.shutdownNow();
+				}
+			});
+		}
+		if (shared) {
+			try {
+				topic = HazelcastUtils.getClient().getTopic(TOPIC);
+				topic.addMessageListener(new MessageListener<String[]>() {
+					public void onMessage(Message<String[]> message) {
+						String[] ids = message.getMessageObject();
+						if (!message.getPublishingMember().localMember() && ids != null && ids.length > 1) {
+							AppFilter filter = filters.get(ids[0]);
+							if (filter != null) {
+								for (int i = 1; i < ids.length; i++) {
+									filter.add(ids[i]);
+								}
+							}
+						}
+					}
+				});
+			} catch (Exception e) {
+				logger.error("Failed to share Bloom filters through Hazelcast.", e);
+				topic = null;
+			}
+		}
+	}
+
+	/**
+	 * Checks if an object might exist. Starts building the filter of the app if it isn't built yet.
+	 * @param dao the data store to scan when building the filter
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param id an object id
+	 * @return false if the object definitely doesn't exist, true if it might
+	 */
+	public boolean mightExist(DAO dao, String appid, String id) {
+		if (StringUtils.isBlank(appid) || id == null) {
+			return true;
+		}
+		AppFilter filter = getFilter(appid);
+		BloomFilter current = filter.current;
+		if (current == null) {
+			rebuildAsync(dao, appid, filter);
+			return true;
+		}
+		return current.mightContain(id) || !filter.confirmed;
+	}
+
+	/**
+	 * Adds the ids of created objects.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param ids object ids
+	 */
+	public void added(String appid, Collection<String> ids) {
+		if (StringUtils.isBlank(appid) || ids == null || ids.isEmpty()) {
+			return;
+		}
+		AppFilter filter = getFilter(appid);
+		List<String> message = new ArrayList<String>(ids.size() + 1);
+		message.add(appid);
+		for (String id : ids) {
+			if (id != null) {
+				filter.add(id);
+				message.add(id);
+			}
+		}
+		if (topic != null && message.size() > 1) {
+			try {
+				topic.publish(message.toArray(new String[message.size()]));
+			} catch (Exception e) {
+				logger.error(null, e);
+			}
+		}
+	}
+
+	/**
+	 * Counts deleted objects and rebuilds the filter of the app when there are too many of them.
+	 * @param dao the data store to scan when rebuilding the filter
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param count the number of deleted objects
+	 */
+	public void deleted(DAO dao, String appid, int count) {
+		if (StringUtils.isBlank(appid) || count <= 0) {
+			return;
+		}
+		AppFilter filter = getFilter(appid);
+		BloomFilter current = filter.current;
+		long deletes;
+		synchronized (filter) {
+			deletes = (filter.deletes += count);
+		}
+		if (current != null && deletes >= Math.max(REBUILD_MIN_DELETES, current.size() / 2)) {
+			rebuildAsync(dao, appid, filter);
+		}
+	}
+
+	/**
+	 * Builds the filter of an app from a scan of the data store. Ids added during the scan are kept.
+	 * @param dao the data store
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return the number of ids in the new filter
+	 */
+	public long rebuild(DAO dao, String appid) {
+		AppFilter filter = getFilter(appid);
+		long started = System.currentTimeMillis();
+		synchronized (filter) {
+			if (filter.building != null) {
+				return 0;
+			}
+			filter.building = new BloomFilter(initialCapacity, falsePositiveRate);
+			filter.deletes = 0;
+			filter.dao = dao;
+		}
+		try {
+			for (Iterator<ParaObject> it = dao.iterate(appid, null); it.hasNext();) {
+				ParaObject obj = it.next();
+				if (obj != null && obj.getId() != null) {
+					filter.building.add(obj.getId());
+				}
+			}
+			synchronized (filter) {
+				filter.current = filter.building;
+				if (filter.firstScan == 0) {
+					filter.firstScan = started;
+				}
+				// the scan must start after everything written before the first scan is visible
+				filter.confirmed |= started - filter.firstScan >= confirmDelay;
+			}
+			logger.info("Built the Bloom filter of app '{}' - {} ids, {} KB.", appid, filter.current.size(),
+					filter.current.sizeInBytes() / 1024);
+			return filter.current.size();
+		} catch (Exception e) {
+			logger.error(null, e);
+			return 0;
+		} finally {
+			synchronized (filter) {
+				filter.building = null;
+			}
+			if (!filter.confirmed) {
+				scheduleRebuild(dao, appid, confirmDelay);
+			}
+		}
+	}
+
+	/**
+	 * Drops the filter of an app, e.g. when the app is deleted.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 */
+	public void clear(String appid) {
+		if (appid != null) {
+			filters.remove(appid);
+		}
+	}
+
+	/**
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return true if the filter of the app is built and confirmed
+	 */
+	public boolean isReady(String appid) {
+		AppFilter filter = (appid == null) ? null : filters.get(appid);
+		return filter != null && filter.current != null && filter.confirmed;
+	}
+
+	private void rebuildAll() {
+		for (Map.Entry<String, AppFilter> filter : filters.entrySet()) {
+			if (filter.getValue().current != null && filter.getValue().dao != null) {
+				rebuild(filter.getValue().dao, filter.getKey());
+			}
+		}
+	}
+
+	private void scheduleRebuild(final DAO dao, final String appid, long delay) {
+		if (scheduler == null || dao == null) {
+			return;
+		}
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					if (filters.containsKey(appid)) {
+						rebuild(dao, appid);
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("Bloom filter rebuild of app '{}' rejected - shutting down.", appid);
+		}
+	}
+
+	private void rebuildAsync(final DAO dao, final String appid, AppFilter filter) {
+		if (dao == null) {
+			return;
+		}
+		synchronized (filter) {
+			if (filter.building != null || filter.scheduled) {
+				return;
+			}
+			filter.scheduled = true;
+		}
+		final AppFilter scheduled = filter;
+		executor.execute(new Runnable() {
+			public void run() {
+				synchronized (scheduled) {
+					scheduled.scheduled = false;
+				}
+				rebuild(dao, appid);
+			}
+		});
+	}
+
+	private AppFilter getFilter(String appid) {
+		AppFilter filter = filters.get(appid);
+		if (filter == null) {
+			AppFilter f = filters.putIfAbsent(appid, new AppFilter());
+			filter = (f == null) ? filters.get(appid) : f;
+		}
+		return filter;
+	}
+
+	/**
+	 * The filter of one app and the one being built to replace it.
+	 */
+	private static final class AppFilter {
+		private volatile BloomFilter current;
+		private volatile BloomFilter building;
+		private volatile boolean confirmed;
+		private volatile DAO dao;
+		private boolean scheduled;
+		private long deletes;
+		private long firstScan;
+
+		synchronized void add(String id) {
+			if (current != null) {
+				current.add(id);
+			}
+			if (building != null) {
+				building.add(id);
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.cache;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.utils.Config;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request-scoped identity map of objects read from the DAO. It is bound to the current thread
+ * by {@link #begin()} and cleared by {@link #end()}, usually by a servlet filter, and sits in front of the
+ * {@link Cache}. Repeated reads of the same object within a request are served from memory and return
+ * the same instance. Outside of a request (no bound map) all methods are no-ops.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class IdentityMap {
+
+	private static final boolean ENABLED = Config.getConfigBoolean("identity_map_enabled", true);
+	private static final int MAX_SIZE = Config.getConfigInt("identity_map_max_size", 1000);
+	private static final ThreadLocal<Map<String, ParaObject>> MAP = new ThreadLocal<Map<String, ParaObject>>();
+
+	private IdentityMap() { }
+
+	/**
+	 * Binds a new, empty identity map to the current thread.
+	 * @return true if a map was bound, false if one is already bound or the identity map is disabled
+	 */
+	public static boolean begin() {
+		if (!ENABLED || MAP.get() != null) {
+			return false;
+		}
+		MAP.set(new HashMap<String, ParaObject>());
+		return true;
+	}
+
+	/**
+	 * Clears and unbinds the identity map of the current thread.
+	 */
+	public static void end() {
+		MAP.remove();
+	}
+
+	/**
+	 * @return true if there's an identity map bound to the current thread
+	 */
+	public static boolean isActive() {
+		return MAP.get() != null;
+	}
+
+	/**
+	 * Returns an object from the identity map.
+	 * @param <P> the type of object
+	 * @param appid the name of the {@link com.erudika.para.core.App}
+	 * @param id the object id
+	 * @return the object or null if it isn't in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P extends ParaObject> P get(String appid, String id) {
+		Map<String, ParaObject> map = MAP.get();
+		if (map == null || appid == null || id == null) {
+			return null;
+		}
+		return (P) map.get(key(appid, id));
+	}
+
+	/**
+	 * Returns all objects with the given ids, but only if all of them are in the identity map.
+	 * @param <P> the type of object
+	 * @param appid the name of the {@link com.erudika.para.core.App}
+	 * @param ids a list of ids
+	 * @return a map of ids to objects or null if at least one object is missing
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P extends ParaObject> Map<String, P> getAll(String appid, List<String> ids) {
+		Map<String, ParaObject> map = MAP.get();
+		if (map == null || appid == null || ids == null || ids.isEmpty()) {
+			return null;
+		}
+		Map<String, P> results = new LinkedHashMap<String, P>(ids.size());
+		for (String id : ids) {
+			ParaObject obj = (id == null) ? null : map.get(key(appid, id));
+			if (obj == null) {
+				return null;
+			}
+			results.put(id, (P) obj);
+		}
+		return results;
+	}
+
+	/**
+	 * Adds an object to the identity map. Nothing is added when the map is full.
+	 * @param appid the name of the {@link com.erudika.para.core.App}
+	 * @param so the object
+	 */
+	public static void put(String appid, ParaObject so) {
+		Map<String, ParaObject> map = MAP.get();
+		if (map == null || appid == null || so == null || so.getId() == null) {
+			return;
+		}
+		if (map.size() < MAX_SIZE || map.containsKey(key(appid, so.getId()))) {
+			map.put(key(appid, so.getId()), so);
+		}
+	}
+
+	/**
+	 * Adds a collection of objects to the identity map.
+	 * @param appid the name of the {@link com.erudika.para.core.App}
+	 * @param objects the objects
+	 */
+	public static void putAll(String appid, Collection<? extends ParaObject> objects) {
+		if (isActive() && objects != null) {
+			for (ParaObject so : objects) {
+				put(appid, so);
+			}
+		}
+	}
+
+	/**
+	 * Removes an object from the identity map.
+	 * @param appid the name of the {@link com.erudika.para.core.App}
+	 * @param id the object id
+	 */
+	public static void remove(String appid, String id) {
+		Map<String, ParaObject> map = MAP.get();
+		if (map != null && appid != null && id != null) {
+			map.remove(key(appid, id));
+		}
+	}
+
+	/**
+	 * Removes a collection of objects from the identity map.
+	 * @param appid the name of the {@link com.erudika.para.core.App}
+	 * @param objects the objects
+	 */
+	public static void removeAll(String appid, Collection<? extends ParaObject> objects) {
+		if (isActive() && objects != null) {
+			for (ParaObject so : objects) {
+				if (so != null) {
+					remove(appid, so.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of objects in the identity map of the current thread
+	 */
+	public static int size() {
+		Map<String, ParaObject> map = MAP.get();
+		return (map == null) ? 0 : map.size();
+	}
+
+	private static String key(String appid, String id) {
+		return appid.concat(Config.SEPARATOR).concat(id);
+	}
+}
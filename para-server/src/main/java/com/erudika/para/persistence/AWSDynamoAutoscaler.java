@@ -0,0 +1,560 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
+import com.erudika.para.Para;
+import com.erudika.para.utils.Config;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adjusts the provisioned throughput of DynamoDB tables to the load they see. The capacity consumed by
+ * reads and writes and the number of throttled requests are collected per table over a sliding window of
+ * {@code dynamodb.autoscale.window_sec} seconds. Every {@code dynamodb.autoscale.interval_sec} seconds the
+ * capacity of each table is moved towards {@code dynamodb.autoscale.target_utilization} percent of the
+ * peak consumed rate. Throughput is raised when requests are throttled or utilization is high and
+ * lowered when the table is mostly idle, within the bounds {@code dynamodb.autoscale.min_read},
+ * {@code max_read}, {@code min_write} and {@code max_write}. Separate cooldowns apply to increases and
+ * decreases, and decreases are limited to {@code dynamodb.autoscale.max_decreases_per_day}, as DynamoDB
+ * only allows a few of them per day. All changes are logged and kept in {@link #getDecisions()}.
+ * <br>
+ * Disabled unless {@code dynamodb.autoscale} is true.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class AWSDynamoAutoscaler {
+
+	private static final Logger logger = LoggerFactory.getLogger(AWSDynamoAutoscaler.class);
+	private static final boolean ENABLED = Config.getConfigBoolean("dynamodb.autoscale", false);
+	private static final int BUCKETS = 30;
+	private static final int MAX_DECISIONS = 100;
+	private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+	private static AWSDynamoAutoscaler instance;
+
+	private final long windowMillis;
+	private final long bucketMillis;
+	private final double targetUtilization;
+	private final long minRead;
+	private final long maxRead;
+	private final long minWrite;
+	private final long maxWrite;
+	private final long upCooldownMillis;
+	private final long downCooldownMillis;
+	private final int maxDecreasesPerDay;
+	private final ConcurrentMap<String, TableStats> tables = new ConcurrentHashMap<String, TableStats>();
+	private final LinkedList<Decision> decisions = new LinkedList<Decision>();
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Creates a new autoscaler, configured by the {@code dynamodb.autoscale.*} settings.
+	 */
+	AWSDynamoAutoscaler() {
+		this(Config.getConfigInt("dynamodb.autoscale.window_sec", 300),
+				Config.getConfigInt("dynamodb.autoscale.target_utilization", 70),
+				Config.getConfigInt("dynamodb.autoscale.min_read", 2),
+				Config.getConfigInt("dynamodb.autoscale.max_read", 100),
+				Config.getConfigInt("dynamodb.autoscale.min_write", 1),
+				Config.getConfigInt("dynamodb.autoscale.max_write", 100),
+				Config.getConfigInt("dynamodb.autoscale.up_cooldown_sec", 60),
+				Config.getConfigInt("dynamodb.autoscale.down_cooldown_sec", 3600),
+				Config.getConfigInt("dynamodb.autoscale.max_decreases_per_day", 4));
+	}
+
+	/**
+	 * Creates a new autoscaler.
+	 * @param windowSec the length of the sliding window in seconds
+	 * @param targetPercent the target utilization in percent of the provisioned throughput
+	 * @param minRead the minimum read capacity
+	 * @param maxRead the maximum read capacity
+	 * @param minWrite the minimum write capacity
+	 * @param maxWrite the maximum write capacity
+	 * @param upCooldownSec the minimum number of seconds between two increases
+	 * @param downCooldownSec the minimum number of seconds after any change before a decrease
+	 * @param maxDecreasesPerDay the maximum number of decreases per table in 24 hours
+	 */
+	AWSDynamoAutoscaler(long windowSec, int targetPercent, long minRead, long maxRead, long minWrite,
+			long maxWrite, long upCooldownSec, long downCooldownSec, int maxDecreasesPerDay) {
+		this.windowMillis = Math.max(TimeUnit.SECONDS.toMillis(windowSec), BUCKETS);
+		this.bucketMillis = windowMillis / BUCKETS;
+		this.targetUtilization = Math.min(Math.max(targetPercent, 10), 90) / 100.0;
+		this.minRead = Math.max(minRead, 1);
+		this.maxRead = Math.max(maxRead, this.minRead);
+		this.minWrite = Math.max(minWrite, 1);
+		this.maxWrite = Math.max(maxWrite, this.minWrite);
+		this.upCooldownMillis = TimeUnit.SECONDS.toMillis(upCooldownSec);
+		this.downCooldownMillis = TimeUnit.SECONDS.toMillis(downCooldownSec);
+		this.maxDecreasesPerDay = maxDecreasesPerDay;
+	}
+
+	/**
+	 * Returns the autoscaler, starting it on first use.
+	 * @return the autoscaler or null if autoscaling is disabled
+	 */
+	public static synchronized AWSDynamoAutoscaler getInstance() {
+		if (instance == null && ENABLED) {
+			instance = new AWSDynamoAutoscaler();
+			instance.start(Config.getConfigInt("dynamodb.autoscale.interval_sec", 60));
+		}
+		return instance;
+	}
+
+	/**
+	 * Records the capacity consumed by a successful request. Does nothing if autoscaling is disabled.
+	 * @param table the table name
+	 * @param write true for writes, false for reads
+	 * @param units the consumed capacity units
+	 */
+	static void recordConsumed(String table, boolean write, double units) {
+		AWSDynamoAutoscaler autoscaler = ENABLED ? getInstance() : null;
+		if (autoscaler != null) {
+			autoscaler.record(table, write, units, 0, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Records a request which was throttled by DynamoDB. Does nothing if autoscaling is disabled.
+	 * @param table the table name
+	 * @param write true for writes, false for reads
+	 * @param units the capacity consumed by the accepted part of the request, if any
+	 */
+	static void recordThrottled(String table, boolean write, double units) {
+		AWSDynamoAutoscaler autoscaler = ENABLED ? getInstance() : null;
+		if (autoscaler != null) {
+			autoscaler.record(table, write, units, 1, System.currentTimeMillis());
+		}
+	}
+
+	void record(String table, boolean write, double units, int throttles, long now) {
+		if (StringUtils.isBlank(table)) {
+			return;
+		}
+		TableStats stats = tables.get(table);
+		if (stats == null) {
+			TableStats s = tables.putIfAbsent(table, new TableStats(now));
+			stats = (s == null) ? tables.get(table) : s;
+		}
+		(write ? stats.writes : stats.reads).add(now, units, throttles);
+	}
+
+	/**
+	 * Checks the load of every table seen so far and adjusts its provisioned throughput if needed.
+	 * @return the changes made
+	 */
+	public List<Decision> evaluateAll() {
+		List<Decision> changes = new ArrayList<Decision>();
+		for (String table : tables.keySet()) {
+			try {
+				Decision decision = evaluate(table, System.currentTimeMillis());
+				if (decision != null) {
+					changes.add(decision);
+				}
+			} catch (Exception e) {
+				logger.error(null, e);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Checks the load of a table and adjusts its provisioned throughput if needed.
+	 * @param table the table name
+	 * @param now the current time in milliseconds
+	 * @return the change made, or null if the throughput was left as is
+	 */
+	Decision evaluate(String table, long now) {
+		TableStats stats = tables.get(table);
+		ProvisionedThroughput current = (stats == null) ? null : describe(table);
+		if (current == null || current.getReadCapacityUnits() == null || current.getWriteCapacityUnits() == null) {
+			return null;
+		}
+		synchronized (stats) {
+			long read = current.getReadCapacityUnits();
+			long write = current.getWriteCapacityUnits();
+			String readReason = stats.reads.decide(read, minRead, maxRead, now);
+			String writeReason = stats.writes.decide(write, minWrite, maxWrite, now);
+			if (readReason == null && writeReason == null) {
+				return null;
+			}
+			long newRead = (readReason == null) ? read : stats.reads.desired;
+			long newWrite = (writeReason == null) ? write : stats.writes.desired;
+			boolean decrease = newRead < read || newWrite < write;
+			if (decrease && stats.decreasesToday(now) >= maxDecreasesPerDay) {
+				// keep the increase, if any, and skip the decrease
+				newRead = Math.max(newRead, read);
+				newWrite = Math.max(newWrite, write);
+				decrease = false;
+				if (newRead == read && newWrite == write) {
+					return null;
+				}
+			}
+			if (!update(table, newRead, newWrite)) {
+				return null;
+			}
+			if (newRead != read) {
+				stats.reads.lastChange = now;
+			}
+			if (newWrite != write) {
+				stats.writes.lastChange = now;
+			}
+			if (decrease) {
+				stats.decreases.add(now);
+			}
+			List<String> reasons = new ArrayList<String>(2);
+			if (newRead != read) {
+				reasons.add("reads: " + readReason);
+			}
+			if (newWrite != write) {
+				reasons.add("writes: " + writeReason);
+			}
+			Decision decision = new Decision(table, now, read, newRead, write, newWrite, StringUtils.join(reasons, "; "));
+			synchronized (decisions) {
+				decisions.addFirst(decision);
+				if (decisions.size() > MAX_DECISIONS) {
+					decisions.removeLast();
+				}
+			}
+			logger.info("Changed throughput of table '{}' from {}/{} to {}/{} (read/write) - {}.", table,
+					read, write, newRead, newWrite, decision.getReason());
+			return decision;
+		}
+	}
+
+	/**
+	 * Returns the current provisioned throughput of a table.
+	 * @param table the table name
+	 * @return the provisioned throughput, or null if the table isn't active or doesn't exist
+	 */
+	ProvisionedThroughput describe(String table) {
+		try {
+			TableDescription td = AWSDynamoUtils.getClient().describeTable(table).getTable();
+			ProvisionedThroughputDescription pt = td.getProvisionedThroughput();
+			if (pt == null || !TableStatus.ACTIVE.toString().equals(td.getTableStatus())) {
+				return null;
+			}
+			return new ProvisionedThroughput(pt.getReadCapacityUnits(), pt.getWriteCapacityUnits());
+		} catch (Exception e) {
+			logger.error(null, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the provisioned throughput of a table.
+	 * @param table the table name
+	 * @param readCapacity read capacity
+	 * @param writeCapacity write capacity
+	 * @return true if updated
+	 */
+	boolean update(String table, long readCapacity, long writeCapacity) {
+		try {
+			AWSDynamoUtils.getClient().updateTable(new UpdateTableRequest().withTableName(table).
+					withProvisionedThroughput(new ProvisionedThroughput(readCapacity, writeCapacity)));
+			return true;
+		} catch (Exception e) {
+			logger.error(null, e);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the most recent changes, newest first.
+	 * @return a list of decisions
+	 */
+	public List<Decision> getDecisions() {
+		synchronized (decisions) {
+			return new ArrayList<Decision>(decisions);
+		}
+	}
+
+	/**
+	 * Returns the most recent changes of one table, newest first.
+	 * @param table the table name
+	 * @return a list of decisions
+	 */
+	public List<Decision> getDecisions(String table) {
+		List<Decision> list = new ArrayList<Decision>();
+		for (Decision decision : getDecisions()) {
+			if (decision.getTable().equals(table)) {
+				list.add(decision);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the load of a table over the sliding window.
+	 * @param table the table name
+	 * @return a map of consumed rates (capacity units per second) and throttle counts,
+	 * empty if nothing was recorded for the table
+	 */
+	public Map<String, Object> getStats(String table) {
+		return getStats(table, System.currentTimeMillis());
+	}
+
+	Map<String, Object> getStats(String table, long now) {
+		TableStats stats = (table == null) ? null : tables.get(table);
+		if (stats == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("table", table);
+		map.put("windowSec", TimeUnit.MILLISECONDS.toSeconds(windowMillis));
+		synchronized (stats) {
+			stats.reads.sum(now);
+			map.put("readRate", stats.reads.averageRate);
+			map.put("peakReadRate", stats.reads.peakRate);
+			map.put("readThrottles", stats.reads.throttles);
+			stats.writes.sum(now);
+			map.put("writeRate", stats.writes.averageRate);
+			map.put("peakWriteRate", stats.writes.peakRate);
+			map.put("writeThrottles", stats.writes.throttles);
+		}
+		return map;
+	}
+
+	private synchronized void start(long intervalSec) {
+		if (scheduler != null || intervalSec <= 0) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "para-dynamodb-autoscaler");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evaluateAll();
+			}
+		}, intervalSec, intervalSec, TimeUnit.SECONDS);
+		Para.addDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				shutdown();
+			}
+		});
+	}
+
+	private synchronized void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * The reads and writes of one table.
+	 */
+	private final class TableStats {
+		private final Window reads;
+		private final Window writes;
+		private final List<Long> decreases = new LinkedList<Long>();
+
+		TableStats(long now) {
+			reads = new Window(now);
+			writes = new Window(now);
+		}
+
+		int decreasesToday(long now) {
+			while (!decreases.isEmpty() && decreases.get(0) <= now - DAY_MS) {
+				decreases.remove(0);
+			}
+			return decreases.size();
+		}
+	}
+
+	/**
+	 * Consumed capacity and throttles over a sliding window, kept in fixed time buckets.
+	 */
+	private final class Window {
+		private final double[] units = new double[BUCKETS];
+		private final int[] throttleCounts = new int[BUCKETS];
+		private final long[] bucketIds = new long[BUCKETS];
+		private final long since;
+		private long lastChange;
+		private double averageRate;
+		private double peakRate;
+		private int throttles;
+		private long desired;
+
+		Window(long now) {
+			this.since = now;
+			this.lastChange = Long.MIN_VALUE / 2;
+		}
+
+		synchronized void add(long now, double consumed, int throttled) {
+			long id = now / bucketMillis;
+			int i = (int) (id % BUCKETS);
+			if (bucketIds[i] != id) {
+				bucketIds[i] = id;
+				units[i] = 0;
+				throttleCounts[i] = 0;
+			}
+			units[i] += consumed;
+			throttleCounts[i] += throttled;
+		}
+
+		synchronized void sum(long now) {
+			long id = now / bucketMillis;
+			double total = 0;
+			double peak = 0;
+			int throttled = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				if (bucketIds[i] > id - BUCKETS && bucketIds[i] <= id) {
+					total += units[i];
+					peak = Math.max(peak, units[i]);
+					throttled += throttleCounts[i];
+				}
+			}
+			averageRate = total / (windowMillis / 1000.0);
+			peakRate = peak / (bucketMillis / 1000.0);
+			throttles = throttled;
+		}
+
+		/**
+		 * Sets the desired capacity.
+		 * @return the reason for changing the capacity, or null if it should stay as is
+		 */
+		String decide(long provisioned, long min, long max, long now) {
+			sum(now);
+			long target = (long) Math.ceil(peakRate / targetUtilization);
+			if (throttles > 0 || peakRate > provisioned * Math.min(targetUtilization + 0.1, 0.95)) {
+				if (now - lastChange < upCooldownMillis || provisioned >= max) {
+					return null;
+				}
+				if (throttles > 0) {
+					// throttled requests aren't counted as consumed, so grow by at least half
+					target = Math.max(target, provisioned + Math.max(1, provisioned / 2));
+				}
+				desired = clamp(Math.max(target, provisioned + 1), min, max);
+				return (throttles > 0) ? throttles + " throttled requests" :
+						"peak utilization " + percent(peakRate, provisioned);
+			}
+			if (provisioned > min && averageRate < provisioned * targetUtilization / 2 &&
+					now - since >= windowMillis && now - lastChange >= downCooldownMillis) {
+				desired = clamp(target, min, max);
+				if (desired < provisioned) {
+					return "average utilization " + percent(averageRate, provisioned);
+				}
+			}
+			if (provisioned < min || provisioned > max) {
+				desired = clamp(provisioned, min, max);
+				return "outside of bounds " + min + "-" + max;
+			}
+			return null;
+		}
+
+		private long clamp(long value, long min, long max) {
+			return Math.min(Math.max(value, min), max);
+		}
+
+		private String percent(double rate, long provisioned) {
+			return Math.round(rate * 100 / Math.max(provisioned, 1)) + "%";
+		}
+	}
+
+	/**
+	 * A change of the provisioned throughput of a table.
+	 */
+	public static final class Decision {
+		private final String table;
+		private final long timestamp;
+		private final long oldReadCapacity;
+		private final long newReadCapacity;
+		private final long oldWriteCapacity;
+		private final long newWriteCapacity;
+		private final String reason;
+
+		Decision(String table, long timestamp, long oldReadCapacity, long newReadCapacity,
+				long oldWriteCapacity, long newWriteCapacity, String reason) {
+			this.table = table;
+			this.timestamp = timestamp;
+			this.oldReadCapacity = oldReadCapacity;
+			this.newReadCapacity = newReadCapacity;
+			this.oldWriteCapacity = oldWriteCapacity;
+			this.newWriteCapacity = newWriteCapacity;
+			this.reason = reason;
+		}
+
+		/**
+		 * @return the table name
+		 */
+		public String getTable() {
+			return table;
+		}
+
+		/**
+		 * @return the time of the change
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return the read capacity before the change
+		 */
+		public long getOldReadCapacity() {
+			return oldReadCapacity;
+		}
+
+		/**
+		 * @return the read capacity after the change
+		 */
+		public long getNewReadCapacity() {
+			return newReadCapacity;
+		}
+
+		/**
+		 * @return the write capacity before the change
+		 */
+		public long getOldWriteCapacity() {
+			return oldWriteCapacity;
+		}
+
+		/**
+		 * @return the write capacity after the change
+		 */
+		public long getNewWriteCapacity() {
+			return newWriteCapacity;
+		}
+
+		/**
+		 * @return why the throughput was changed
+		 */
+		public String getReason() {
+			return reason;
+		}
+	}
+}
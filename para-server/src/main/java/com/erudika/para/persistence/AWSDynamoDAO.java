@@ -24,25 +24,41 @@ import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
 import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.GetItemResult;
 import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClient;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
 import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
 import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
 import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.erudika.para.Para;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.WriteContext;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Pager;
 import com.erudika.para.utils.Utils;
+import java.io.Closeable;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -54,8 +70,21 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static com.erudika.para.persistence.AWSDynamoUtils.*;
@@ -70,6 +99,30 @@ public class AWSDynamoDAO implements DAO {
 	private static final Logger logger = LoggerFactory.getLogger(AWSDynamoDAO.class);
 	private static final int MAX_ITEMS_PER_WRITE = 10; // Amazon DynamoDB limit ~= WRITE CAP
 	private static final int MAX_KEYS_PER_READ = 100; // Amazon DynamoDB limit = 100
+	private static final int MAX_UPDATES_IN_FLIGHT = Config.getConfigInt("dynamodb.max_updates_in_flight", 25);
+	private static final int SCAN_SEGMENTS = Config.getConfigInt("dynamodb.scan_segments", 4);
+	private static final int SCAN_PAGE_SIZE = Config.getConfigInt("dynamodb.scan_page_size", 100);
+	private static final int SCAN_QUEUE_SIZE = Config.getConfigInt("dynamodb.scan_queue_size", 1000);
+	private static final int SCAN_TIMEOUT_SEC = Config.getConfigInt("dynamodb.scan_timeout_sec", 600);
+	private static final Object END_OF_SEGMENT = new Object();
+	// reads scan segments, shared by all scans
+	private static final ExecutorService SCAN_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "para-dynamodb-scan");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	private static final boolean COMPACT_ROWS = Config.getConfigBoolean("dynamodb.compact_rows", false);
+	private static final String VALIDATION_ERROR = "ValidationException";
+
+	static {
+		Para.addDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				SCAN_EXECUTOR.shutdownNow();
+			}
+		});
+	}
 
 	/**
 	 * No-args constructor
@@ -80,6 +133,10 @@ public class AWSDynamoDAO implements DAO {
 		return AWSDynamoUtils.getClient();
 	}
 
+	AmazonDynamoDBAsyncClient asyncClient() {
+		return AWSDynamoUtils.getAsyncClient();
+	}
+
 	/////////////////////////////////////////////
 	//			CORE FUNCTIONS
 	/////////////////////////////////////////////
@@ -96,17 +153,28 @@ public class AWSDynamoDAO implements DAO {
 			so.setTimestamp(Utils.timestamp());
 		}
 		so.setAppid(appid);
-		createRow(so.getId(), appid, toRow(so, null));
+		if (createRow(so.getId(), appid, toRow(so, null)) != null) {
+			ParaObjectUtils.markClean(so);
+		}
 		logger.debug("DAO.create() {}", so.getId());
 		return so.getId();
 	}
 
 	@Override
 	public <P extends ParaObject> P read(String appid, String key) {
+		return readObject(appid, key, null);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		return readObject(appid, key, consistency);
+	}
+
+	private <P extends ParaObject> P readObject(String appid, String key, ReadConsistency consistency) {
 		if (StringUtils.isBlank(key)) {
 			return null;
 		}
-		P so = fromRow(readRow(key, appid));
+		P so = fromRow(readRow(key, appid, isStrong(consistency)));
 		logger.debug("DAO.read() {} -> {}", key, so == null ? null : so.getType());
 		return so != null ? so : null;
 	}
@@ -115,7 +183,10 @@ public class AWSDynamoDAO implements DAO {
 	public <P extends ParaObject> void update(String appid, P so) {
 		if (so != null && so.getId() != null) {
 			so.setUpdated(Utils.timestamp());
-			updateRow(so.getId(), appid, toRow(so, Locked.class));
+			if (COMPACT_ROWS ? updateCompactRow(appid, so) :
+					updateRow(appid, getUpdateItemRequest(so.getId(), appid, toChangedRow(so)))) {
+				ParaObjectUtils.markClean(so);
+			}
 			logger.debug("DAO.update() {}", so.getId());
 		}
 	}
@@ -128,6 +199,51 @@ public class AWSDynamoDAO implements DAO {
 		}
 	}
 
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (so == null || StringUtils.isBlank(so.getId()) || StringUtils.isBlank(appid) ||
+				(expected != null && !so.getId().equals(expected.getId()))) {
+			return false;
+		}
+		if (so.getTimestamp() == null) {
+			so.setTimestamp(Utils.timestamp());
+		}
+		so.setAppid(appid);
+		Map<String, AttributeValue> stored = readRow(so.getId(), appid, true);
+		if (!ParaObjectUtils.sameFields(fromRow(stored), expected)) {
+			return false;
+		}
+		Map<String, AttributeValue> row = toRow(so, null);
+		setRowKey(so.getId(), row);
+		String table = getTableNameForAppid(appid);
+		boolean done = false;
+		try {
+			recordCapacity(client().putItem(new PutItemRequest(table, row).withExpected(unchanged(stored)).
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)).getConsumedCapacity(), true);
+			ParaObjectUtils.markClean(so);
+			done = true;
+		} catch (ConditionalCheckFailedException e) {
+			logger.debug("DAO.compareAndSet() conflict on {}", so.getId());
+		} catch (Exception e) {
+			recordThrottle(table, true, e);
+			logger.error(null, e);
+		}
+		logger.debug("DAO.compareAndSet() {} -> {}", so.getId(), done);
+		return done;
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (StringUtils.isBlank(id) || StringUtils.isBlank(appid) || StringUtils.isBlank(field) ||
+				Config._KEY.equals(field) || COMPACT_ATTR.equals(field)) {
+			return null;
+		}
+		// compact rows keep all fields in one attribute, so they can't be incremented in place
+		Long value = COMPACT_ROWS ? compareAndIncrement(appid, id, field, delta) : addToAttribute(appid, id, field, delta);
+		logger.debug("DAO.increment() {} {} -> {}", id, field, value);
+		return value;
+	}
+
 	/////////////////////////////////////////////
 	//				ROW FUNCTIONS
 	/////////////////////////////////////////////
@@ -138,44 +254,254 @@ public class AWSDynamoDAO implements DAO {
 		}
 		try {
 			setRowKey(key, row);
-			PutItemRequest putItemRequest = new PutItemRequest(getTableNameForAppid(appid), row);
-			client().putItem(putItemRequest);
+			PutItemRequest putItemRequest = new PutItemRequest(getTableNameForAppid(appid), row).
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+			recordCapacity(client().putItem(putItemRequest).getConsumedCapacity(), true);
 		} catch (Exception e) {
+			recordThrottle(getTableNameForAppid(appid), true, e);
 			logger.error(null, e);
+			return null;
 		}
 		return key;
 	}
 
-	private void updateRow(String key, String appid, Map<String, AttributeValue> row) {
-		if (StringUtils.isBlank(key) || StringUtils.isBlank(appid) || row == null || row.isEmpty()) {
-			return;
+	private boolean updateRow(String appid, UpdateItemRequest updateItemRequest) {
+		if (StringUtils.isBlank(appid) || updateItemRequest == null) {
+			return false;
 		}
-		Map<String, AttributeValueUpdate> rou = new HashMap<String, AttributeValueUpdate>();
 		try {
+			recordCapacity(client().updateItem(updateItemRequest.
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)).getConsumedCapacity(), true);
+		} catch (Exception e) {
+			recordThrottle(updateItemRequest.getTableName(), true, e);
+			logger.error(null, e);
+			return false;
+		}
+		return true;
+	}
+
+	private UpdateItemRequest getUpdateItemRequest(String key, String appid, Map<String, AttributeValue> row) {
+		if (StringUtils.isBlank(key) || row == null || row.isEmpty()) {
+			return null;
+		}
+		Map<String, AttributeValueUpdate> rou = new HashMap<String, AttributeValueUpdate>();
+		for (Entry<String, AttributeValue> attr : row.entrySet()) {
+			rou.put(attr.getKey(), new AttributeValueUpdate(attr.getValue(), AttributeAction.PUT));
+		}
+		return new UpdateItemRequest(getTableNameForAppid(appid),
+				Collections.singletonMap(Config._KEY, new AttributeValue(key)), rou);
+	}
+
+	/**
+	 * Compact rows can't be updated partially, so the changes are merged with the stored object first.
+	 * Locked fields and null fields keep their stored values. Leftover attributes from legacy rows are deleted.
+	 * @param appid the app id
+	 * @param stored the stored object (may be null)
+	 * @param so the updated object
+	 * @return an update request
+	 */
+	private UpdateItemRequest getCompactUpdateRequest(String appid, ParaObject stored, ParaObject so) {
+		Map<String, Object> fields = ParaObjectUtils.getAnnotatedFields(stored, null, false);
+		for (Entry<String, Object> entry : WriteContext.capture(so, Locked.class, false).entrySet()) {
+			if (entry.getValue() != null) {
+				fields.put(entry.getKey(), entry.getValue());
+			}
+		}
+		Map<String, AttributeValue> row = withExpiry(so, toCompactRow(fields));
+		UpdateItemRequest request = getUpdateItemRequest(so.getId(), appid, row);
+		if (request != null) {
+			for (String name : WriteContext.getFields(so, null, false).keySet()) {
+				if (!row.containsKey(name) && !Config._KEY.equals(name)) {
+					request.addAttributeUpdatesEntry(name, new AttributeValueUpdate().withAction(AttributeAction.DELETE));
+				}
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * Merges the changes of an object into its compact row. The row is written back only if it wasn't
+	 * changed since it was read, otherwise it's read again and the write is retried, with backoff.
+	 * @param appid the app id
+	 * @param so the object
+	 * @return true if the row was updated
+	 */
+	private boolean updateCompactRow(String appid, ParaObject so) {
+		String table = getTableNameForAppid(appid);
+		for (int attempt = 0; attempt <= AWSDynamoThrottle.MAX_RETRIES; attempt++) {
+			try {
+				if (attempt > 0) {
+					Thread.sleep(AWSDynamoThrottle.backoff(attempt));
+				}
+				Map<String, AttributeValue> row = readRow(so.getId(), appid, true);
+				UpdateItemRequest request = getCompactUpdateRequest(appid, fromRow(row), so);
+				if (request == null) {
+					return false;
+				}
+				recordCapacity(client().updateItem(request.withExpected(unchanged(row)).
+						withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)).getConsumedCapacity(), true);
+				return true;
+			} catch (ConditionalCheckFailedException e) {
+				logger.debug("DAO.update() conflict on {}, attempt {}", so.getId(), attempt);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (Exception e) {
+				recordThrottle(table, true, e);
+				logger.error(null, e);
+				return false;
+			}
+		}
+		logger.warn("Failed to update {} after {} attempts.", so.getId(), AWSDynamoThrottle.MAX_RETRIES + 1);
+		return false;
+	}
+
+	/**
+	 * Returns the conditions under which a row is still as it was read. The binary attribute of a compact
+	 * row holds all fields which can change, except the key attributes, so it's compared along with them.
+	 * @param row the row as it was read, null if it didn't exist
+	 * @return the expected values of the row's attributes
+	 */
+	private static Map<String, ExpectedAttributeValue> unchanged(Map<String, AttributeValue> row) {
+		Map<String, ExpectedAttributeValue> conditions = new HashMap<String, ExpectedAttributeValue>();
+		if (row == null || row.isEmpty()) {
+			conditions.put(Config._KEY, new ExpectedAttributeValue(false));
+		} else {
 			for (Entry<String, AttributeValue> attr : row.entrySet()) {
-				rou.put(attr.getKey(), new AttributeValueUpdate(attr.getValue(), AttributeAction.PUT));
+				conditions.put(attr.getKey(), new ExpectedAttributeValue(attr.getValue()));
+			}
+		}
+		return conditions;
+	}
+
+	/**
+	 * Increments a numeric attribute with a single ADD operation. The item must exist.
+	 * @param appid the app id
+	 * @param id the object id
+	 * @param field the attribute
+	 * @param delta the number to add
+	 * @return the new value or null
+	 */
+	private Long addToAttribute(String appid, String id, String field, long delta) {
+		Map<String, AttributeValueUpdate> updates = new HashMap<String, AttributeValueUpdate>();
+		updates.put(field, new AttributeValueUpdate(new AttributeValue().withN(Long.toString(delta)),
+				AttributeAction.ADD));
+		updates.put(Config._UPDATED, new AttributeValueUpdate(new AttributeValue(Long.toString(Utils.timestamp())),
+				AttributeAction.PUT));
+		UpdateItemRequest request = new UpdateItemRequest(getTableNameForAppid(appid),
+				Collections.singletonMap(Config._KEY, new AttributeValue(id)), updates).
+				withExpected(Collections.singletonMap(Config._KEY, new ExpectedAttributeValue(new AttributeValue(id)))).
+				withReturnValues(ReturnValue.UPDATED_NEW).withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+		try {
+			UpdateItemResult result = client().updateItem(request);
+			recordCapacity(result.getConsumedCapacity(), true);
+			return Long.valueOf(result.getAttributes().get(field).getN());
+		} catch (ConditionalCheckFailedException e) {
+			// the object doesn't exist
+			return null;
+		} catch (AmazonServiceException e) {
+			if (VALIDATION_ERROR.equals(e.getErrorCode())) {
+				// the number was stored as a string, by an older version of create() or update() - convert it
+				return compareAndIncrement(appid, id, field, delta);
 			}
-			UpdateItemRequest updateItemRequest = new UpdateItemRequest(getTableNameForAppid(appid),
-					Collections.singletonMap(Config._KEY, new AttributeValue(key)), rou);
-			client().updateItem(updateItemRequest);
+			recordThrottle(request.getTableName(), true, e);
+			logger.error(null, e);
 		} catch (Exception e) {
 			logger.error(null, e);
 		}
+		return null;
 	}
 
-	private Map<String, AttributeValue> readRow(String key, String appid) {
+	/**
+	 * Increments a field by reading the row and writing it back, only if it wasn't changed in the meantime.
+	 * Used for compact rows and for numbers stored as strings, which are converted to numbers on the way.
+	 * @param appid the app id
+	 * @param id the object id
+	 * @param field the field
+	 * @param delta the number to add
+	 * @return the new value or null
+	 */
+	private Long compareAndIncrement(String appid, String id, String field, long delta) {
+		String table = getTableNameForAppid(appid);
+		Map<String, AttributeValue> key = Collections.singletonMap(Config._KEY, new AttributeValue(id));
+		for (int attempt = 0; attempt <= AWSDynamoThrottle.MAX_RETRIES; attempt++) {
+			try {
+				if (attempt > 0) {
+					Thread.sleep(AWSDynamoThrottle.backoff(attempt));
+				}
+				Map<String, AttributeValue> row = client().getItem(new GetItemRequest(table, key).
+						withConsistentRead(true)).getItem();
+				if (row == null || row.isEmpty()) {
+					return null;
+				}
+				Map<String, Object> fields = fromRowAttributes(row);
+				Object current = fields.get(field);
+				if (current != null && !NumberUtils.isNumber(current.toString())) {
+					return null;
+				}
+				long value = ((current == null) ? 0L : NumberUtils.createNumber(current.toString()).longValue()) + delta;
+				String checked;
+				UpdateItemRequest request;
+				if (COMPACT_ROWS || row.containsKey(COMPACT_ATTR)) {
+					fields.put(field, value);
+					fields.put(Config._UPDATED, Utils.timestamp());
+					Map<String, AttributeValue> newRow = toCompactRow(fields);
+					request = getUpdateItemRequest(id, appid, newRow);
+					if (request == null) {
+						return null;
+					}
+					for (String name : row.keySet()) {
+						if (!newRow.containsKey(name) && !Config._KEY.equals(name) && !Config._EXPIRES.equals(name)) {
+							request.addAttributeUpdatesEntry(name,
+									new AttributeValueUpdate().withAction(AttributeAction.DELETE));
+						}
+					}
+					checked = COMPACT_ATTR;
+				} else {
+					Map<String, AttributeValue> newRow = new HashMap<String, AttributeValue>();
+					newRow.put(field, new AttributeValue().withN(Long.toString(value)));
+					newRow.put(Config._UPDATED, new AttributeValue(Long.toString(Utils.timestamp())));
+					request = getUpdateItemRequest(id, appid, newRow);
+					checked = field;
+				}
+				Map<String, ExpectedAttributeValue> expected = new HashMap<String, ExpectedAttributeValue>();
+				expected.put(Config._KEY, new ExpectedAttributeValue(new AttributeValue(id)));
+				expected.put(checked, row.containsKey(checked) ?
+						new ExpectedAttributeValue(row.get(checked)) : new ExpectedAttributeValue(false));
+				client().updateItem(request.withExpected(expected));
+				return value;
+			} catch (ConditionalCheckFailedException e) {
+				logger.debug("DAO.increment() conflict on {}, attempt {}", id, attempt);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (Exception e) {
+				logger.error(null, e);
+				return null;
+			}
+		}
+		logger.warn("Failed to increment {} of {} after {} attempts.", field, id, AWSDynamoThrottle.MAX_RETRIES + 1);
+		return null;
+	}
+
+	private Map<String, AttributeValue> readRow(String key, String appid, boolean consistentRead) {
 		if (StringUtils.isBlank(key) || StringUtils.isBlank(appid)) {
 			return null;
 		}
 		Map<String, AttributeValue> row = null;
 		try {
 			GetItemRequest getItemRequest = new GetItemRequest(getTableNameForAppid(appid),
-					Collections.singletonMap(Config._KEY, new AttributeValue(key)));
+					Collections.singletonMap(Config._KEY, new AttributeValue(key))).withConsistentRead(consistentRead).
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
 			GetItemResult res = client().getItem(getItemRequest);
 			if (res != null && res.getItem() != null && !res.getItem().isEmpty()) {
 				row = res.getItem();
 			}
+			if (res != null) {
+				recordCapacity(res.getConsumedCapacity(), false);
+			}
 		} catch (Exception e) {
+			recordThrottle(getTableNameForAppid(appid), false, e);
 			logger.error(null, e);
 		}
 		return (row == null || row.isEmpty()) ? null : row;
@@ -187,9 +513,11 @@ public class AWSDynamoDAO implements DAO {
 		}
 		try {
 			DeleteItemRequest delItemRequest = new DeleteItemRequest(getTableNameForAppid(appid),
-					Collections.singletonMap(Config._KEY, new AttributeValue(key)));
-			client().deleteItem(delItemRequest);
+					Collections.singletonMap(Config._KEY, new AttributeValue(key))).
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+			recordCapacity(client().deleteItem(delItemRequest).getConsumedCapacity(), true);
 		} catch (Exception e) {
+			recordThrottle(getTableNameForAppid(appid), true, e);
 			logger.error(null, e);
 		}
 	}
@@ -206,41 +534,91 @@ public class AWSDynamoDAO implements DAO {
 
 	@Override
 	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return readAllObjects(appid, keys, getAllColumns, null);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAllObjects(appid, keys, getAllColumns, consistency);
+	}
+
+	private <P extends ParaObject> Map<String, P> readAllObjects(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		Map<String, P> results = batchRead(appid, keys, getAllColumns ? null : Arrays.asList(Config._KEY, Config._TYPE),
+				isStrong(consistency));
+		logger.debug("DAO.readAll() {}", results.size());
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		if (fields == null || fields.isEmpty()) {
+			return batchRead(appid, keys, null, isStrong(null));
+		}
+		Map<String, P> results = batchRead(appid, keys, getAttributesToRead(fields, COMPACT_ROWS), isStrong(null));
+		if (COMPACT_ROWS) {
+			// the encoded attribute holds all the other fields too
+			for (Entry<String, P> entry : results.entrySet()) {
+				entry.setValue(ParaObjectUtils.project(entry.getValue(), fields));
+			}
+		}
+		logger.debug("DAO.readAll() {} {}", results.size(), fields);
+		return results;
+	}
+
+	/**
+	 * Reads objects in batches, bypassing the cache.
+	 * @param appid the app id
+	 * @param keys the object ids
+	 * @param attributes the attributes to read, null means all
+	 * @param consistentRead true for strongly consistent reads
+	 * @return a map of ids to objects
+	 */
+	private <P extends ParaObject> Map<String, P> batchRead(String appid, List<String> keys, List<String> attributes,
+			boolean consistentRead) {
 		if (keys == null || keys.isEmpty() || StringUtils.isBlank(appid)) {
 			return new LinkedHashMap<String, P>();
 		}
 
-		Map<String, P> results = new LinkedHashMap<String, P>(keys.size(), 0.75f, true);
+		String table = getTableNameForAppid(appid);
+		// results are returned in the order of the keys, regardless of the order in which batches complete
+		Map<String, P> results = new LinkedHashMap<String, P>(keys.size());
+		List<Map<String, KeysAndAttributes>> batches = new ArrayList<Map<String, KeysAndAttributes>>();
 		ArrayList<Map<String, AttributeValue>> keyz = new ArrayList<Map<String, AttributeValue>>(MAX_KEYS_PER_READ);
 
-		int batchSteps = 1;
-		if ((keys.size() > MAX_KEYS_PER_READ)) {
-			batchSteps = (keys.size() / MAX_KEYS_PER_READ)
-					+ ((keys.size() % MAX_KEYS_PER_READ > 0) ? 1 : 0);
+		for (Iterator<String> it = keys.iterator(); it.hasNext();) {
+			String key = it.next();
+			if (StringUtils.isBlank(key) || results.containsKey(key)) {
+				continue;
+			}
+			results.put(key, null);
+			keyz.add(Collections.singletonMap(Config._KEY, new AttributeValue(key)));
+			if (keyz.size() == MAX_KEYS_PER_READ) {
+				batches.add(Collections.singletonMap(table, getKeysAndAttributes(keyz, attributes, consistentRead)));
+				keyz = new ArrayList<Map<String, AttributeValue>>(MAX_KEYS_PER_READ);
+			}
+		}
+		if (!keyz.isEmpty()) {
+			batches.add(Collections.singletonMap(table, getKeysAndAttributes(keyz, attributes, consistentRead)));
 		}
 
-		Iterator<String> it = keys.iterator();
-		int j = 0;
-
-		for (int i = 0; i < batchSteps; i++) {
-			while (it.hasNext() && j < MAX_KEYS_PER_READ) {
-				String key = it.next();
-				results.put(key, null);
-				keyz.add(Collections.singletonMap(Config._KEY, new AttributeValue(key)));
-				j++;
-			}
+		batchGetAll(batches, results);
+		return results;
+	}
 
-			KeysAndAttributes kna = new KeysAndAttributes().withKeys(keyz);
-			if (!getAllColumns) {
-				kna.setAttributesToGet(Arrays.asList(Config._KEY, Config._TYPE));
+	private KeysAndAttributes getKeysAndAttributes(List<Map<String, AttributeValue>> keys, List<String> attributes,
+			boolean consistentRead) {
+		KeysAndAttributes kna = new KeysAndAttributes().withKeys(keys).withConsistentRead(consistentRead);
+		if (attributes != null && !attributes.isEmpty()) {
+			// names are aliased because many of them are reserved words, e.g. "name" and "timestamp"
+			Map<String, String> names = new HashMap<String, String>(attributes.size());
+			for (String attribute : attributes) {
+				names.put("#a" + names.size(), attribute);
 			}
-
-			batchGet(Collections.singletonMap(getTableNameForAppid(appid), kna), results);
-			keyz.clear();
-			j = 0;
+			kna.withProjectionExpression(StringUtils.join(names.keySet(), ",")).withExpressionAttributeNames(names);
 		}
-		logger.debug("DAO.readAll() {}", results.size());
-		return results;
+		return kna;
 	}
 
 	@Override
@@ -266,6 +644,7 @@ public class AWSDynamoDAO implements DAO {
 
 			ScanResult result = client().scan(scanRequest);
 			logger.debug("readPage() CC: {}", result.getConsumedCapacity());
+			recordCapacity(result.getConsumedCapacity(), false);
 
 			for (Map<String, AttributeValue> item : result.getItems()) {
 				P obj = fromRow(item);
@@ -286,18 +665,186 @@ public class AWSDynamoDAO implements DAO {
 		return results;
 	}
 
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		if (StringUtils.isBlank(appid)) {
+			return Collections.<P>emptyIterator();
+		}
+		return new ParallelScanIterator<P>(getTableNameForAppid(appid), type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		if (!AWSDynamoUtils.INDEXED_FIELDS.contains(field)) {
+			return null;
+		}
+		List<P> results = new LinkedList<P>();
+		if (StringUtils.isBlank(appid) || StringUtils.isBlank(value)) {
+			return results;
+		}
+		if (pager == null) {
+			pager = new Pager();
+		}
+		// the last key is a "timestamp:key" cursor, the field value is known
+		Map<String, AttributeValue> lastKeyEvaluated = null;
+		String lastKey = pager.getLastKey();
+		if (!StringUtils.isBlank(lastKey) && StringUtils.contains(lastKey, Config.SEPARATOR)) {
+			lastKeyEvaluated = new HashMap<String, AttributeValue>();
+			lastKeyEvaluated.put(Config._KEY, new AttributeValue(StringUtils.substringAfter(lastKey, Config.SEPARATOR)));
+			lastKeyEvaluated.put(Config._TIMESTAMP, new AttributeValue(StringUtils.substringBefore(lastKey,
+					Config.SEPARATOR)));
+			lastKeyEvaluated.put(field, new AttributeValue(value));
+		}
+		try {
+			QueryRequest query = new QueryRequest().
+					withTableName(getTableNameForAppid(appid)).
+					withIndexName(AWSDynamoUtils.getIndexName(field)).
+					withKeyConditionExpression("#f = :v").
+					withExpressionAttributeNames(Collections.singletonMap("#f", field)).
+					withExpressionAttributeValues(Collections.singletonMap(":v", new AttributeValue(value))).
+					withScanIndexForward(!pager.isDesc()).
+					withLimit(pager.getLimit()).
+					withExclusiveStartKey(lastKeyEvaluated).
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+			QueryResult result = client().query(query);
+			logger.debug("readByField() CC: {}", result.getConsumedCapacity());
+			recordCapacity(result.getConsumedCapacity(), false);
+
+			for (Map<String, AttributeValue> item : result.getItems()) {
+				P obj = fromRow(item);
+				if (obj != null) {
+					results.add(obj);
+				}
+			}
+			lastKeyEvaluated = result.getLastEvaluatedKey();
+			if (lastKeyEvaluated != null && lastKeyEvaluated.containsKey(Config._TIMESTAMP)) {
+				pager.setLastKey(lastKeyEvaluated.get(Config._TIMESTAMP).getS() + Config.SEPARATOR +
+						lastKeyEvaluated.get(Config._KEY).getS());
+			} else {
+				pager.setLastKey(null);
+			}
+		} catch (Exception e) {
+			// tables created before the indexes were introduced don't have them - fall back to search
+			logger.error(null, e);
+			return null;
+		}
+		return results;
+	}
+
 	@Override
 	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
-		// DynamoDB doesn't have a BatchUpdate API yet so we have to do one of the following:
-		// 1. update items one by one (chosen for simplicity)
-		// 2. call writeAll() - writeAll(appid, objects, true);
-		String table = getTableNameForAppid(appid);
-		if (objects != null) {
+		if (objects == null || objects.isEmpty() || StringUtils.isBlank(appid)) {
+			return;
+		}
+		// DynamoDB doesn't have a BatchUpdate API so the updates are sent concurrently,
+		// with a limit on the number of requests in flight
+		final Semaphore inFlight = new Semaphore(MAX_UPDATES_IN_FLIGHT);
+		final AWSDynamoThrottle throttle = AWSDynamoThrottle.get(getTableNameForAppid(appid), true);
+		AsyncHandler<UpdateItemRequest, UpdateItemResult> handler =
+				new AsyncHandler<UpdateItemRequest, UpdateItemResult>() {
+			public void onError(Exception exception) {
+				inFlight.release();
+				if (exception instanceof ProvisionedThroughputExceededException) {
+					throttle.onThrottle(null);
+				}
+			}
+
+			public void onSuccess(UpdateItemRequest request, UpdateItemResult result) {
+				inFlight.release();
+				throttle.onSuccess(1, Collections.singletonList(result.getConsumedCapacity()));
+			}
+		};
+		Map<String, ParaObject> stored = Collections.emptyMap();
+		if (COMPACT_ROWS) {
+			List<String> ids = new ArrayList<String>(objects.size());
 			for (P object : objects) {
-				update(table, object);
+				if (object != null && object.getId() != null) {
+					ids.add(object.getId());
+				}
 			}
+			// read the rows directly, bypassing the cache - changes are merged into them, so they must be current
+			stored = batchRead(appid, ids, null, true);
+		}
+		List<P> sent = new ArrayList<P>(objects.size());
+		List<UpdateItemRequest> requests = new ArrayList<UpdateItemRequest>(objects.size());
+		for (P object : objects) {
+			if (object != null && object.getId() != null) {
+				object.setUpdated(Utils.timestamp());
+				UpdateItemRequest request = COMPACT_ROWS ?
+						getCompactUpdateRequest(appid, stored.get(object.getId()), object) :
+						getUpdateItemRequest(object.getId(), appid, toChangedRow(object));
+				if (request != null && COMPACT_ROWS) {
+					// every write changes the "updated" attribute - conflicting updates are retried one by one
+					ParaObject existing = stored.get(object.getId());
+					request.addExpectedEntry(Config._KEY, (existing == null) ? new ExpectedAttributeValue(false) :
+							new ExpectedAttributeValue(new AttributeValue(object.getId())));
+					if (existing != null) {
+						request.addExpectedEntry(Config._UPDATED, (existing.getUpdated() == null) ?
+								new ExpectedAttributeValue(false) :
+								new ExpectedAttributeValue(new AttributeValue(existing.getUpdated().toString())));
+					}
+				}
+				if (request != null) {
+					sent.add(object);
+					requests.add(request.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+				}
+			}
+		}
+		List<String> failed = new ArrayList<String>();
+		int updated = 0;
+		try {
+			// throttled updates are sent again, with exponential backoff
+			for (int attempt = 0; !sent.isEmpty(); attempt++) {
+				if (attempt > 0) {
+					if (attempt > AWSDynamoThrottle.MAX_RETRIES) {
+						break;
+					}
+					Thread.sleep(AWSDynamoThrottle.backoff(attempt));
+				}
+				List<Future<UpdateItemResult>> futures = new ArrayList<Future<UpdateItemResult>>(sent.size());
+				for (UpdateItemRequest request : requests) {
+					throttle.acquire(1);
+					inFlight.acquire();
+					futures.add(asyncClient().updateItemAsync(request, handler));
+				}
+				List<P> throttled = new ArrayList<P>();
+				List<UpdateItemRequest> retries = new ArrayList<UpdateItemRequest>();
+				for (int i = 0; i < futures.size(); i++) {
+					try {
+						futures.get(i).get();
+						ParaObjectUtils.markClean(sent.get(i));
+						updated++;
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof ProvisionedThroughputExceededException) {
+							throttled.add(sent.get(i));
+							retries.add(requests.get(i));
+						} else if (e.getCause() instanceof ConditionalCheckFailedException &&
+								updateCompactRow(appid, sent.get(i))) {
+							ParaObjectUtils.markClean(sent.get(i));
+							updated++;
+						} else {
+							logger.warn("DAO.updateAll() failed to update {}: {}", sent.get(i).getId(),
+									e.getCause().getMessage());
+							failed.add(sent.get(i).getId());
+						}
+					}
+				}
+				sent = throttled;
+				requests = retries;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error(null, e);
+		}
+		// whatever is left was throttled too many times or wasn't sent at all
+		for (P object : sent) {
+			failed.add(object.getId());
+		}
+		logger.debug("DAO.updateAll() {}", updated);
+		if (!failed.isEmpty()) {
+			throw new UpdateFailedException(appid, failed);
 		}
-		logger.debug("DAO.updateAll() {}", (objects == null) ? 0 : objects.size());
 	}
 
 	@Override
@@ -313,98 +860,273 @@ public class AWSDynamoDAO implements DAO {
 						withKey(Collections.singletonMap(Config._KEY, new AttributeValue(object.getId())))));
 			}
 		}
-		batchWrite(Collections.singletonMap(getTableNameForAppid(appid), reqs));
+		batchWriteAll(getTableNameForAppid(appid), reqs);
 		logger.debug("DAO.deleteAll() {}", objects.size());
 	}
 
-	private <P extends ParaObject> void batchGet(Map<String, KeysAndAttributes> kna, Map<String, P> results) {
-		if (kna == null || kna.isEmpty() || results == null) {
+	/**
+	 * Sends all batches concurrently and merges the results back into the given map.
+	 * The number of requests in flight is limited by the thread pool of the async client
+	 * and by the read throttle of the table.
+	 * @param batches a list of batch requests, at most {@link #MAX_KEYS_PER_READ} keys each
+	 * @param results a map of keys to objects
+	 */
+	private <P extends ParaObject> void batchGetAll(List<Map<String, KeysAndAttributes>> batches,
+			Map<String, P> results) {
+		if (batches.size() == 1) {
+			batchGet(batches.get(0), results, 0);
 			return;
 		}
+		List<Future<BatchGetItemResult>> futures = new ArrayList<Future<BatchGetItemResult>>(batches.size());
 		try {
-			BatchGetItemResult result = client().batchGetItem(new BatchGetItemRequest().
-					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).withRequestItems(kna));
-			if (result == null) {
-				return;
+			for (Map<String, KeysAndAttributes> batch : batches) {
+				throttle(batch, false).acquire(countKeys(batch));
+				futures.add(asyncClient().batchGetItemAsync(new BatchGetItemRequest().
+						withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).withRequestItems(batch)));
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error(null, e);
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			Map<String, KeysAndAttributes> batch = batches.get(i);
+			try {
+				batchGet(handleBatchGetResult(futures.get(i).get(), results, batch), results, 1);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof ProvisionedThroughputExceededException) {
+					throttle(batch, false).onThrottle(null);
+					batchGet(batch, results, 1);
+				} else {
+					logger.error(null, e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logger.error(null, e);
+			}
+		}
+	}
 
-			List<Map<String, AttributeValue>> res = result.getResponses().get(kna.keySet().iterator().next());
+	/**
+	 * Reads a batch of keys, retrying unprocessed keys with exponential backoff.
+	 * @param kna keys to read
+	 * @param results a map of keys to objects
+	 * @param attempt the number of attempts made so far
+	 */
+	private <P extends ParaObject> void batchGet(Map<String, KeysAndAttributes> kna, Map<String, P> results,
+			int attempt) {
+		if (kna == null || kna.isEmpty() || results == null) {
+			return;
+		}
+		try {
+			AWSDynamoThrottle throttle = throttle(kna, false);
+			Map<String, KeysAndAttributes> pending = kna;
+			for (int i = attempt; pending != null && !pending.isEmpty(); i++) {
+				if (i > AWSDynamoThrottle.MAX_RETRIES) {
+					logger.error("batchGet() gave up on {} unprocessed keys after {} retries.",
+							countKeys(pending), AWSDynamoThrottle.MAX_RETRIES);
+					return;
+				}
+				if (i > 0) {
+					logger.warn("UNPROCESSED {}", countKeys(pending));
+					Thread.sleep(AWSDynamoThrottle.backoff(i));
+				}
+				throttle.acquire(countKeys(pending));
+				try {
+					pending = handleBatchGetResult(client().batchGetItem(new BatchGetItemRequest().
+							withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).
+							withRequestItems(pending)), results, pending);
+				} catch (ProvisionedThroughputExceededException e) {
+					throttle.onThrottle(null);
+				}
+			}
+		} catch (Exception e) {
+			logger.error(null, e);
+		}
+	}
 
+	private <P extends ParaObject> Map<String, KeysAndAttributes> handleBatchGetResult(BatchGetItemResult result,
+			Map<String, P> results, Map<String, KeysAndAttributes> request) {
+		if (result == null) {
+			return null;
+		}
+		for (List<Map<String, AttributeValue>> res : result.getResponses().values()) {
 			for (Map<String, AttributeValue> item : res) {
 				P obj = fromRow(item);
 				results.put(item.get(Config._KEY).getS(), obj);
 			}
-			logger.debug("batchGet() CC: {}", result.getConsumedCapacity());
+		}
+		logger.debug("batchGet() CC: {}", result.getConsumedCapacity());
+		Map<String, KeysAndAttributes> unprocessed = result.getUnprocessedKeys();
+		if (unprocessed != null && !unprocessed.isEmpty()) {
+			throttle(request, false).onThrottle(result.getConsumedCapacity());
+		} else {
+			throttle(request, false).onSuccess(countKeys(request), result.getConsumedCapacity());
+		}
+		return unprocessed;
+	}
 
-			if (result.getUnprocessedKeys() != null && !result.getUnprocessedKeys().isEmpty()) {
-				Thread.sleep(1000);
-				logger.warn("UNPROCESSED {}", result.getUnprocessedKeys().size());
-				batchGet(result.getUnprocessedKeys(), results);
+	/**
+	 * Splits the write requests into batches of {@link #MAX_ITEMS_PER_WRITE} and sends them concurrently.
+	 * @param table the table name
+	 * @param reqs a list of write requests
+	 */
+	private void batchWriteAll(String table, List<WriteRequest> reqs) {
+		if (reqs == null || reqs.isEmpty()) {
+			return;
+		}
+		if (reqs.size() <= MAX_ITEMS_PER_WRITE) {
+			batchWrite(Collections.singletonMap(table, reqs), 0);
+			return;
+		}
+		AWSDynamoThrottle throttle = AWSDynamoThrottle.get(table, true);
+		List<Map<String, List<WriteRequest>>> batches = new ArrayList<Map<String, List<WriteRequest>>>();
+		List<Future<BatchWriteItemResult>> futures = new ArrayList<Future<BatchWriteItemResult>>();
+		try {
+			for (int i = 0; i < reqs.size(); i += MAX_ITEMS_PER_WRITE) {
+				Map<String, List<WriteRequest>> batch = Collections.singletonMap(table,
+						reqs.subList(i, Math.min(i + MAX_ITEMS_PER_WRITE, reqs.size())));
+				throttle.acquire(countItems(batch));
+				batches.add(batch);
+				futures.add(asyncClient().batchWriteItemAsync(new BatchWriteItemRequest().
+						withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).withRequestItems(batch)));
 			}
-		} catch (Exception e) {
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			logger.error(null, e);
 		}
+		for (int i = 0; i < futures.size(); i++) {
+			Map<String, List<WriteRequest>> batch = batches.get(i);
+			try {
+				batchWrite(handleBatchWriteResult(futures.get(i).get(), batch), 1);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof ProvisionedThroughputExceededException) {
+					throttle.onThrottle(null);
+					batchWrite(batch, 1);
+				} else {
+					logger.error(null, e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logger.error(null, e);
+			}
+		}
 	}
 
-	private void batchWrite(Map<String, List<WriteRequest>> items) {
+	/**
+	 * Writes a batch of items, retrying unprocessed items with exponential backoff.
+	 * @param items items to write
+	 * @param attempt the number of attempts made so far
+	 */
+	private void batchWrite(Map<String, List<WriteRequest>> items, int attempt) {
 		if (items == null || items.isEmpty()) {
 			return;
 		}
 		try {
-			BatchWriteItemResult result = client().batchWriteItem(new BatchWriteItemRequest().
-					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).withRequestItems(items));
-			if (result == null) {
-				return;
-			}
-			logger.debug("batchWrite() CC: {}", result.getConsumedCapacity());
-
-			if (result.getUnprocessedItems() != null && !result.getUnprocessedItems().isEmpty()) {
-				Thread.sleep(1000);
-				logger.warn("UNPROCESSED {0}", result.getUnprocessedItems().size());
-				batchWrite(result.getUnprocessedItems());
+			AWSDynamoThrottle throttle = throttle(items, true);
+			Map<String, List<WriteRequest>> pending = items;
+			for (int i = attempt; pending != null && !pending.isEmpty(); i++) {
+				if (i > AWSDynamoThrottle.MAX_RETRIES) {
+					logger.error("batchWrite() gave up on {} unprocessed items after {} retries.",
+							countItems(pending), AWSDynamoThrottle.MAX_RETRIES);
+					return;
+				}
+				if (i > 0) {
+					logger.warn("UNPROCESSED {}", countItems(pending));
+					Thread.sleep(AWSDynamoThrottle.backoff(i));
+				}
+				throttle.acquire(countItems(pending));
+				try {
+					pending = handleBatchWriteResult(client().batchWriteItem(new BatchWriteItemRequest().
+							withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).
+							withRequestItems(pending)), pending);
+				} catch (ProvisionedThroughputExceededException e) {
+					throttle.onThrottle(null);
+				}
 			}
 		} catch (Exception e) {
 			logger.error(null, e);
 		}
 	}
 
+	private Map<String, List<WriteRequest>> handleBatchWriteResult(BatchWriteItemResult result,
+			Map<String, List<WriteRequest>> request) {
+		if (result == null) {
+			return null;
+		}
+		logger.debug("batchWrite() CC: {}", result.getConsumedCapacity());
+		Map<String, List<WriteRequest>> unprocessed = result.getUnprocessedItems();
+		if (unprocessed != null && !unprocessed.isEmpty()) {
+			throttle(request, true).onThrottle(result.getConsumedCapacity());
+		} else {
+			throttle(request, true).onSuccess(countItems(request), result.getConsumedCapacity());
+		}
+		return unprocessed;
+	}
+
+	/**
+	 * Reports the capacity consumed by a single request to the autoscaler.
+	 * Batch requests report it through their {@link AWSDynamoThrottle}.
+	 */
+	private void recordCapacity(ConsumedCapacity consumed, boolean write) {
+		if (consumed != null && consumed.getCapacityUnits() != null) {
+			AWSDynamoAutoscaler.recordConsumed(consumed.getTableName(), write, consumed.getCapacityUnits());
+		}
+	}
+
+	private void recordThrottle(String table, boolean write, Exception e) {
+		if (e instanceof ProvisionedThroughputExceededException) {
+			AWSDynamoAutoscaler.recordThrottled(table, write, 0);
+		}
+	}
+
+	private AWSDynamoThrottle throttle(Map<String, ?> request, boolean write) {
+		return AWSDynamoThrottle.get(request.keySet().iterator().next(), write);
+	}
+
+	private int countKeys(Map<String, KeysAndAttributes> kna) {
+		int count = 0;
+		for (KeysAndAttributes keys : kna.values()) {
+			count += keys.getKeys().size();
+		}
+		return count;
+	}
+
+	private int countItems(Map<String, List<WriteRequest>> items) {
+		int count = 0;
+		for (List<WriteRequest> reqs : items.values()) {
+			count += reqs.size();
+		}
+		return count;
+	}
+
 	private <P extends ParaObject> void writeAll(String appid, List<P> objects, boolean updateOp) {
 		if (objects == null || objects.isEmpty() || StringUtils.isBlank(appid)) {
 			return;
 		}
 
 		List<WriteRequest> reqs = new ArrayList<WriteRequest>(objects.size());
-		int batchSteps = 1;
-		if ((objects.size() > MAX_ITEMS_PER_WRITE)) {
-			batchSteps = (objects.size() / MAX_ITEMS_PER_WRITE) +
-					((objects.size() % MAX_ITEMS_PER_WRITE > 0) ? 1 : 0);
-		}
-
-		Iterator<P> it = objects.iterator();
-		int j = 0;
-
-		for (int i = 0; i < batchSteps; i++) {
-			while (it.hasNext() && j < MAX_ITEMS_PER_WRITE) {
-				ParaObject object = it.next();
-				if (StringUtils.isBlank(object.getId())) {
-					object.setId(Utils.getNewId());
-				}
-				if (object.getTimestamp() == null) {
-					object.setTimestamp(Utils.timestamp());
-				}
-				if (updateOp) {
-					object.setUpdated(Utils.timestamp());
-				}
-				object.setAppid(appid);
-				Map<String, AttributeValue> row = toRow(object, null);
-				setRowKey(object.getId(), row);
-				reqs.add(new WriteRequest().withPutRequest(new PutRequest().withItem(row)));
-				j++;
+		for (ParaObject object : objects) {
+			if (object == null) {
+				continue;
 			}
-			batchWrite(Collections.singletonMap(getTableNameForAppid(appid), reqs));
-			reqs.clear();
-			j = 0;
+			if (StringUtils.isBlank(object.getId())) {
+				object.setId(Utils.getNewId());
+			}
+			if (object.getTimestamp() == null) {
+				object.setTimestamp(Utils.timestamp());
+			}
+			if (updateOp) {
+				object.setUpdated(Utils.timestamp());
+			}
+			object.setAppid(appid);
+			Map<String, AttributeValue> row = toRow(object, null);
+			if (row.isEmpty()) {
+				continue;
+			}
+			setRowKey(object.getId(), row);
+			reqs.add(new WriteRequest().withPutRequest(new PutRequest().withItem(row)));
 		}
+		batchWriteAll(getTableNameForAppid(appid), reqs);
 	}
 
 	/////////////////////////////////////////////
@@ -416,24 +1138,262 @@ public class AWSDynamoDAO implements DAO {
 		if (so == null) {
 			return row;
 		}
-		for (Entry<String, Object> entry : ParaObjectUtils.getAnnotatedFields(so, filter).entrySet()) {
+		if (COMPACT_ROWS) {
+			Map<String, AttributeValue> compactRow = toCompactRow(WriteContext.capture(so, filter, false));
+			return (compactRow == null) ? row : withExpiry(so, compactRow);
+		}
+		return withExpiry(so, toRow(WriteContext.capture(so, filter, true)));
+	}
+
+	/**
+	 * Adds the expiration time of an object to its row, in seconds since the epoch. This is the format
+	 * expected by DynamoDB's Time To Live feature, once it is enabled on the {@code _expires} attribute.
+	 * The attribute is kept outside of compact rows, so DynamoDB can read it.
+	 * @param so an object
+	 * @param row the row of the object
+	 * @return the same row
+	 */
+	private <P extends ParaObject> Map<String, AttributeValue> withExpiry(P so, Map<String, AttributeValue> row) {
+		Long expiresAt = ParaObjectUtils.getExpiresAt(so);
+		if (expiresAt != null && row != null && !row.isEmpty()) {
+			row.put(Config._EXPIRES, new AttributeValue().withN(Long.toString(expiresAt / 1000)));
+		}
+		return row;
+	}
+
+	/**
+	 * Returns a row containing only the fields which were modified since the object was read.
+	 * @param so an object
+	 * @return a row
+	 */
+	private <P extends ParaObject> Map<String, AttributeValue> toChangedRow(P so) {
+		return withExpiry(so, toRow(ParaObjectUtils.getChangedFields(so, Locked.class)));
+	}
+
+	/**
+	 * Converts fields to attributes. Whole numbers, like {@code count} and {@code votes}, are stored as numbers,
+	 * so {@link #increment(java.lang.String, java.lang.String, java.lang.String, long)} can add to them.
+	 * Timestamps are kept as strings, because they are range keys of the secondary indexes.
+	 * @param fields the fields of an object
+	 * @return a row
+	 */
+	private Map<String, AttributeValue> toRow(Map<String, Object> fields) {
+		HashMap<String, AttributeValue> row = new HashMap<String, AttributeValue>();
+		for (Entry<String, Object> entry : fields.entrySet()) {
 			Object value = entry.getValue();
 			if (value != null && !StringUtils.isBlank(value.toString())) {
-				row.put(entry.getKey(), new AttributeValue(value.toString()));
+				row.put(entry.getKey(), isNumberAttribute(entry.getKey(), value) ?
+						new AttributeValue().withN(value.toString()) : new AttributeValue(value.toString()));
 			}
 		}
 		return row;
 	}
 
+	private static boolean isNumberAttribute(String field, Object value) {
+		return (value instanceof Long || value instanceof Integer || value instanceof Short ||
+				value instanceof Byte) && !Config._TIMESTAMP.equals(field) && !Config._UPDATED.equals(field) &&
+				!INDEXED_FIELDS.contains(field);
+	}
+
 	private <P extends ParaObject> P fromRow(Map<String, AttributeValue> row) {
 		if (row == null || row.isEmpty()) {
 			return null;
 		}
-		Map<String, Object> props = new HashMap<String, Object>();
-		for (Entry<String, AttributeValue> col : row.entrySet()) {
-			props.put(col.getKey(), col.getValue().getS());
+		Map<String, Object> props = fromRowAttributes(row);
+		P obj = ParaObjectUtils.setAnnotatedFields(props);
+		if (row.containsKey(COMPACT_ATTR)) {
+			// decoded fields may hold nested maps and lists which the object shares
+			ParaObjectUtils.markClean(obj);
+		} else {
+			ParaObjectUtils.markCleanLazily(obj, props);
 		}
-		return ParaObjectUtils.setAnnotatedFields(props);
+		return obj;
+	}
+
+	/**
+	 * Scans a table in parallel segments, one thread per segment. The objects are handed over
+	 * through a bounded queue, so the scan can only get a little ahead of the consumer.
+	 * If a segment fails, or the consumer doesn't take an object for {@code dynamodb.scan_timeout_sec}
+	 * seconds, the scan is stopped and {@link #hasNext()} throws an exception, so a partial scan is never
+	 * mistaken for a complete one. Consumers which stop early should call {@link #close()}.
+	 * @param <P> the type of object
+	 */
+	private final class ParallelScanIterator<P extends ParaObject> implements Iterator<P>, Closeable {
+
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(SCAN_QUEUE_SIZE);
+		private final List<Future<?>> tasks = new ArrayList<Future<?>>(SCAN_SEGMENTS);
+		private final int segments = SCAN_SEGMENTS;
+		private final String table;
+		private final AtomicReference<Exception> error = new AtomicReference<Exception>();
+		private volatile boolean closed;
+		private int finished;
+		private P next;
+
+		ParallelScanIterator(final String table, final String type) {
+			this.table = table;
+			for (int i = 0; i < segments; i++) {
+				final int segment = i;
+				tasks.add(SCAN_EXECUTOR.submit(new Runnable() {
+					public void run() {
+						try {
+							scanSegment(table, type, segment);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						} catch (Exception e) {
+							fail(e);
+						}
+						if (Thread.currentThread().isInterrupted() && !closed) {
+							fail(new InterruptedException("Scan of segment " + segment + " was interrupted."));
+						} else if (!isStopped()) {
+							offer(END_OF_SEGMENT);
+						}
+					}
+				}));
+			}
+		}
+
+		private void scanSegment(String table, String type, int segment) throws InterruptedException {
+			AWSDynamoThrottle throttle = AWSDynamoThrottle.get(table, false);
+			ScanRequest scanRequest = new ScanRequest().
+					withTableName(table).
+					withSegment(segment).
+					withTotalSegments(segments).
+					withLimit(SCAN_PAGE_SIZE).
+					withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+			if (type != null) {
+				scanRequest.addScanFilterEntry(Config._TYPE, new Condition().
+						withComparisonOperator(ComparisonOperator.EQ).withAttributeValueList(new AttributeValue(type)));
+			}
+			Map<String, AttributeValue> lastKeyEvaluated = null;
+			double units = 1;
+			int retries = 0;
+			boolean more = true;
+			while (more && !isStopped()) {
+				throttle.acquire(units);
+				ScanResult result;
+				try {
+					result = client().scan(scanRequest.withExclusiveStartKey(lastKeyEvaluated));
+				} catch (ProvisionedThroughputExceededException e) {
+					throttle.onThrottle(null);
+					if (++retries > AWSDynamoThrottle.MAX_RETRIES) {
+						throw e;
+					}
+					Thread.sleep(AWSDynamoThrottle.backoff(retries));
+					continue;
+				}
+				retries = 0;
+				throttle.onSuccess(units, Collections.singletonList(result.getConsumedCapacity()));
+				if (result.getConsumedCapacity() != null && result.getConsumedCapacity().getCapacityUnits() != null) {
+					units = Math.max(1, result.getConsumedCapacity().getCapacityUnits());
+				}
+				for (Map<String, AttributeValue> item : result.getItems()) {
+					P obj = fromRow(item);
+					if (obj != null && !offer(obj)) {
+						return;
+					}
+				}
+				lastKeyEvaluated = result.getLastEvaluatedKey();
+				more = lastKeyEvaluated != null;
+			}
+		}
+
+		private boolean offer(Object obj) {
+			try {
+				if (queue.offer(obj, SCAN_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+					return true;
+				}
+				if (!isStopped()) {
+					fail(new TimeoutException("Scan stopped after " + SCAN_TIMEOUT_SEC +
+							" seconds waiting for the consumer."));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		private boolean isStopped() {
+			return closed || error.get() != null || Thread.currentThread().isInterrupted();
+		}
+
+		private void fail(Exception e) {
+			if (error.compareAndSet(null, e)) {
+				logger.error("Scan of table '" + table + "' failed.", e);
+				cancel();
+			}
+		}
+
+		private void cancel() {
+			for (Future<?> task : tasks) {
+				task.cancel(true);
+			}
+			queue.clear();
+		}
+
+		/**
+		 * Stops the scan and interrupts the threads which are still reading segments.
+		 */
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				cancel();
+			}
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean hasNext() {
+			try {
+				while (next == null && finished < segments && !closed) {
+					checkError();
+					Object obj = queue.poll(1, TimeUnit.SECONDS);
+					if (obj == END_OF_SEGMENT) {
+						finished++;
+					} else if (obj != null) {
+						next = (P) obj;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new IllegalStateException("Scan of table '" + table + "' was interrupted.", e);
+			}
+			checkError();
+			return next != null;
+		}
+
+		private void checkError() {
+			Exception e = error.get();
+			if (e != null) {
+				next = null;
+				throw new IllegalStateException("Scan of table '" + table + "' failed.", e);
+			}
+		}
+
+		@Override
+		public P next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			P obj = next;
+			next = null;
+			return obj;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Strongly consistent reads cost twice as many read units, so they are only used when asked for.
+	 * @param consistency the read consistency, or null for the configured default
+	 * @return true if the read should be strongly consistent
+	 */
+	private boolean isStrong(ReadConsistency consistency) {
+		return ((consistency == null) ? ReadConsistency.forType(null) : consistency) == ReadConsistency.STRONG;
 	}
 
 	private void setRowKey(String key, Map<String, AttributeValue> row) {
@@ -456,6 +1416,11 @@ public class AWSDynamoDAO implements DAO {
 		return read(Config.APP_NAME_NS, key);
 	}
 
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
 	@Override
 	public <P extends ParaObject> void update(P so) {
 		update(Config.APP_NAME_NS, so);
@@ -466,6 +1431,16 @@ public class AWSDynamoDAO implements DAO {
 		delete(Config.APP_NAME_NS, so);
 	}
 
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
 	@Override
 	public <P extends ParaObject> void createAll(List<P> objects) {
 		createAll(Config.APP_NAME_NS, objects);
@@ -476,11 +1451,32 @@ public class AWSDynamoDAO implements DAO {
 		return readAll(Config.APP_NAME_NS, keys, getAllColumns);
 	}
 
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
 	@Override
 	public <P extends ParaObject> List<P> readPage(Pager pager) {
 		return readPage(Config.APP_NAME_NS, pager);
 	}
 
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
 	@Override
 	public <P extends ParaObject> void updateAll(List<P> objects) {
 		updateAll(Config.APP_NAME_NS, objects);
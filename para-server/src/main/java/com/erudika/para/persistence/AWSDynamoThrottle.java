@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.erudika.para.utils.Config;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Paces requests to a DynamoDB table using a token bucket, measured in capacity units per second.
+ * The rate adapts to the capacity consumed by each request - it is cut in half when DynamoDB
+ * throttles a request and grows slowly again while requests succeed. Retries are delayed with
+ * exponential backoff and full jitter, up to {@code dynamodb.max_retries} times.
+ * There is one throttle for reads and one for writes per table. The consumed capacity and throttled
+ * requests are also reported to the {@link AWSDynamoAutoscaler}.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class AWSDynamoThrottle {
+
+	private static final ConcurrentMap<String, AWSDynamoThrottle> THROTTLES =
+			new ConcurrentHashMap<String, AWSDynamoThrottle>();
+	private static final Random RAND = new Random();
+
+	/**
+	 * The maximum number of retries for a single batch.
+	 */
+	static final int MAX_RETRIES = Config.getConfigInt("dynamodb.max_retries", 10);
+	private static final long BACKOFF_BASE_MS = Config.getConfigInt("dynamodb.backoff_base_ms", 50);
+	private static final long BACKOFF_MAX_MS = Config.getConfigInt("dynamodb.backoff_max_ms", 10000);
+	private static final double MIN_RATE = 1.0;
+
+	private final String table;
+	private final boolean write;
+	private final double maxRate;
+	private double rate;
+	private double tokens;
+	private long lastRefill;
+	private double consumedInWindow;
+	private long windowStart;
+	private double measuredRate;
+
+	/**
+	 * Creates a new throttle.
+	 * @param initialRate the initial and maximum rate in capacity units per second, 0 means unlimited
+	 */
+	AWSDynamoThrottle(double initialRate) {
+		this(null, false, initialRate);
+	}
+
+	/**
+	 * Creates a new throttle for a table.
+	 * @param table the table name
+	 * @param write true for writes, false for reads
+	 * @param initialRate the initial and maximum rate in capacity units per second, 0 means unlimited
+	 */
+	AWSDynamoThrottle(String table, boolean write, double initialRate) {
+		this.table = table;
+		this.write = write;
+		this.maxRate = initialRate;
+		this.rate = initialRate;
+		this.tokens = initialRate;
+		this.lastRefill = System.nanoTime();
+		this.windowStart = lastRefill;
+	}
+
+	/**
+	 * Returns the throttle for reads or writes on a table.
+	 * @param table the table name
+	 * @param write true for writes, false for reads
+	 * @return a throttle instance
+	 */
+	static AWSDynamoThrottle get(String table, boolean write) {
+		String key = StringUtils.trimToEmpty(table) + (write ? ":w" : ":r");
+		AWSDynamoThrottle throttle = THROTTLES.get(key);
+		if (throttle == null) {
+			double initial = Config.getConfigInt(write ? "dynamodb.max_write_rate" : "dynamodb.max_read_rate", 0);
+			AWSDynamoThrottle t = THROTTLES.putIfAbsent(key, new AWSDynamoThrottle(table, write, initial));
+			throttle = (t == null) ? THROTTLES.get(key) : t;
+		}
+		return throttle;
+	}
+
+	/**
+	 * Blocks until the estimated capacity for a request is available.
+	 * @param units estimated capacity units, usually one per item
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	void acquire(double units) throws InterruptedException {
+		long wait = reserve(units);
+		if (wait > 0) {
+			Thread.sleep(wait);
+		}
+	}
+
+	/**
+	 * Takes tokens from the bucket, going into debt if there aren't enough.
+	 * @param units capacity units
+	 * @return the number of milliseconds to wait before sending the request
+	 */
+	synchronized long reserve(double units) {
+		if (rate <= 0) {
+			return 0;
+		}
+		refill();
+		tokens -= units;
+		return (tokens >= 0) ? 0 : (long) Math.ceil(-tokens / rate * 1000);
+	}
+
+	/**
+	 * Records the capacity consumed by a successful request and corrects the earlier estimate.
+	 * @param estimated the units passed to {@link #acquire(double)}
+	 * @param consumed the consumed capacity returned by DynamoDB
+	 */
+	synchronized void onSuccess(double estimated, List<ConsumedCapacity> consumed) {
+		double units = sum(consumed, estimated);
+		record(units);
+		if (table != null) {
+			AWSDynamoAutoscaler.recordConsumed(table, write, units);
+		}
+		if (rate > 0) {
+			tokens -= (units - estimated);
+			// probe for more capacity, slowly
+			rate += Math.max(MIN_RATE, rate * 0.02);
+			if (maxRate > 0) {
+				rate = Math.min(rate, maxRate);
+			}
+		}
+	}
+
+	/**
+	 * Lowers the rate after DynamoDB rejected all or part of a request.
+	 * @param consumed the consumed capacity returned by DynamoDB, if any
+	 */
+	synchronized void onThrottle(List<ConsumedCapacity> consumed) {
+		double units = sum(consumed, 0);
+		record(units);
+		if (table != null) {
+			AWSDynamoAutoscaler.recordThrottled(table, write, units);
+		}
+		double base = (rate > 0) ? rate : currentRate();
+		// back off quickly
+		rate = Math.max(MIN_RATE, base * 0.5);
+		tokens = Math.min(tokens, 0);
+	}
+
+	/**
+	 * Returns the current rate.
+	 * @return capacity units per second, 0 means unlimited
+	 */
+	synchronized double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Returns the delay before the next retry, using exponential backoff with full jitter.
+	 * @param attempt the retry attempt, starting at 1
+	 * @return a delay in milliseconds
+	 */
+	static long backoff(int attempt) {
+		long cap = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(Math.max(attempt - 1, 0), 20));
+		synchronized (RAND) {
+			return (long) (RAND.nextDouble() * cap) + 1;
+		}
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		// allow bursts of up to one second worth of capacity
+		tokens = Math.min(rate, tokens + (now - lastRefill) / 1e9 * rate);
+		lastRefill = now;
+	}
+
+	private void record(double units) {
+		long now = System.nanoTime();
+		consumedInWindow += units;
+		double elapsed = (now - windowStart) / 1e9;
+		if (elapsed >= 1) {
+			measuredRate = consumedInWindow / elapsed;
+			consumedInWindow = 0;
+			windowStart = now;
+		}
+	}
+
+	private double currentRate() {
+		if (measuredRate > 0) {
+			return measuredRate;
+		}
+		double elapsed = Math.max((System.nanoTime() - windowStart) / 1e9, 0.1);
+		return Math.max(consumedInWindow / elapsed, MIN_RATE);
+	}
+
+	private static double sum(List<ConsumedCapacity> consumed, double defaultValue) {
+		if (consumed == null || consumed.isEmpty()) {
+			return defaultValue;
+		}
+		double units = 0;
+		for (ConsumedCapacity cc : consumed) {
+			if (cc != null && cc.getCapacityUnits() != null) {
+				units += cc.getCapacityUnits();
+			}
+		}
+		return units;
+	}
+}
@@ -18,25 +18,44 @@
 package com.erudika.para.persistence;
 
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClient;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.KeyType;
 import com.amazonaws.services.dynamodbv2.model.ListTablesResult;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
 import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
 import com.erudika.para.Para;
 import com.erudika.para.utils.Config;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.ning.compress.lzf.LZFDecoder;
+import com.ning.compress.lzf.LZFEncoder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,10 +66,25 @@ import org.slf4j.LoggerFactory;
  */
 public final class AWSDynamoUtils {
 
-	private static AmazonDynamoDBClient ddbClient;
+	private static AmazonDynamoDBAsyncClient ddbClient;
 	private static final String LOCAL_ENDPOINT = "http://localhost:8000";
 	private static final String ENDPOINT = "dynamodb.".concat(Config.AWS_REGION).concat(".amazonaws.com");
 	private static final Logger logger = LoggerFactory.getLogger(AWSDynamoUtils.class);
+	private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+	private static final TypeReference<Map<String, Object>> FIELDS_TYPE = new TypeReference<Map<String, Object>>() { };
+	private static final Set<String> KEY_ATTRIBUTES = new HashSet<String>(Arrays.asList(Config._ID, Config._TYPE,
+			Config._APPID, Config._PARENTID, Config._CREATORID, Config._TIMESTAMP, Config._UPDATED));
+
+	/**
+	 * The fields which have a global secondary index, used by {@link AWSDynamoDAO#readByField}.
+	 */
+	public static final List<String> INDEXED_FIELDS = Collections.unmodifiableList(Arrays.asList(
+			Config._PARENTID, Config._CREATORID, Config._TYPE));
+
+	/**
+	 * The name of the binary attribute which holds the fields of a compact row.
+	 */
+	public static final String COMPACT_ATTR = "_data";
 
 	private AWSDynamoUtils() { }
 
@@ -63,11 +97,14 @@ public final class AWSDynamoUtils {
 			return ddbClient;
 		}
 
+		// the size of the thread pool limits the number of concurrent async requests
+		ExecutorService executor = Executors.newFixedThreadPool(Config.getConfigInt("dynamodb.max_concurrency", 10));
 		if (Config.IN_PRODUCTION) {
-			ddbClient = new AmazonDynamoDBClient(new BasicAWSCredentials(Config.AWS_ACCESSKEY, Config.AWS_SECRETKEY));
+			ddbClient = new AmazonDynamoDBAsyncClient(new BasicAWSCredentials(Config.AWS_ACCESSKEY,
+					Config.AWS_SECRETKEY), executor);
 			ddbClient.setEndpoint(ENDPOINT);
 		} else {
-			ddbClient = new AmazonDynamoDBClient(new BasicAWSCredentials("local", "null"));
+			ddbClient = new AmazonDynamoDBAsyncClient(new BasicAWSCredentials("local", "null"), executor);
 			ddbClient.setEndpoint(LOCAL_ENDPOINT);
 		}
 
@@ -84,6 +121,16 @@ public final class AWSDynamoUtils {
 		return ddbClient;
 	}
 
+	/**
+	 * Returns an asynchronous client instance for AWS DynamoDB.
+	 * Requests are executed on a fixed thread pool of size {@code dynamodb.max_concurrency} (default: 10).
+	 * @return a client that talks to DynamoDB asynchronously
+	 */
+	public static AmazonDynamoDBAsyncClient getAsyncClient() {
+		getClient();
+		return ddbClient;
+	}
+
 	/**
 	 * Stops the client and releases resources.
 	 * <b>There's no need to call this explicitly!</b>
@@ -133,10 +180,25 @@ public final class AWSDynamoUtils {
 			return false;
 		}
 		try {
+			List<AttributeDefinition> attributes = new ArrayList<AttributeDefinition>();
+			attributes.add(new AttributeDefinition(Config._KEY, ScalarAttributeType.S));
+			List<GlobalSecondaryIndex> indexes = new ArrayList<GlobalSecondaryIndex>();
+			if (Config.getConfigBoolean("dynamodb.create_indexes", true)) {
+				// timestamps are stored as strings, which sort correctly while they have the same number of digits
+				attributes.add(new AttributeDefinition(Config._TIMESTAMP, ScalarAttributeType.S));
+				for (String field : INDEXED_FIELDS) {
+					attributes.add(new AttributeDefinition(field, ScalarAttributeType.S));
+					indexes.add(new GlobalSecondaryIndex().withIndexName(getIndexName(field)).
+							withKeySchema(new KeySchemaElement(field, KeyType.HASH),
+									new KeySchemaElement(Config._TIMESTAMP, KeyType.RANGE)).
+							withProjection(new Projection().withProjectionType(ProjectionType.ALL)).
+							withProvisionedThroughput(new ProvisionedThroughput(readCapacity, writeCapacity)));
+				}
+			}
 			getClient().createTable(new CreateTableRequest().withTableName(getTableNameForAppid(appid)).
 					withKeySchema(new KeySchemaElement(Config._KEY, KeyType.HASH)).
-					withAttributeDefinitions(new AttributeDefinition().withAttributeName(Config._KEY).
-					withAttributeType(ScalarAttributeType.S)).
+					withAttributeDefinitions(attributes).
+					withGlobalSecondaryIndexes(indexes.isEmpty() ? null : indexes).
 					withProvisionedThroughput(new ProvisionedThroughput(readCapacity, writeCapacity)));
 		} catch (Exception e) {
 			logger.error(null, e);
@@ -158,10 +220,13 @@ public final class AWSDynamoUtils {
 		}
 		try {
 			Map<String, Object> dbStats = getTableStatus(appid);
+			if (dbStats.isEmpty()) {
+				return false;
+			}
 			long currentReadCapacity = (Long) dbStats.get("readCapacityUnits");
 			long currentWriteCapacity = (Long) dbStats.get("writeCapacityUnits");
 			// AWS throws an exception if the new read/write capacity values are the same as the current ones
-			if (!dbStats.isEmpty() && readCapacity != currentReadCapacity && writeCapacity != currentWriteCapacity) {
+			if (readCapacity != currentReadCapacity || writeCapacity != currentWriteCapacity) {
 				getClient().updateTable(new UpdateTableRequest().withTableName(getTableNameForAppid(appid)).
 						withProvisionedThroughput(new ProvisionedThroughput(readCapacity, writeCapacity)));
 			}
@@ -233,6 +298,15 @@ public final class AWSDynamoUtils {
 		return tables;
 	}
 
+	/**
+	 * Returns the name of the global secondary index for a field.
+	 * @param field one of {@link #INDEXED_FIELDS}
+	 * @return the index name
+	 */
+	public static String getIndexName(String field) {
+		return field + "_index";
+	}
+
 	/**
 	 * Returns the table name for a given app id. Table names are usually in the form 'prefix-appid'.
 	 * @param appIdentifier app id
@@ -247,4 +321,90 @@ public final class AWSDynamoUtils {
 		}
 	}
 
+	/**
+	 * Converts the fields of an object to a compact row. The key attributes (id, type, appid, parentid,
+	 * creatorid, timestamp, updated) are stored as string attributes, so they can still be used in
+	 * filters and indexes. All other fields are encoded with Smile, compressed with LZF and stored
+	 * in a single binary attribute.
+	 * @param fields a map of fields and their values, nested objects should not be converted to JSON strings
+	 * @return a row or null if the fields couldn't be encoded
+	 */
+	public static Map<String, AttributeValue> toCompactRow(Map<String, Object> fields) {
+		Map<String, AttributeValue> row = new HashMap<String, AttributeValue>();
+		Map<String, Object> data = new HashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : fields.entrySet()) {
+			Object value = entry.getValue();
+			if (value == null) {
+				continue;
+			}
+			if (KEY_ATTRIBUTES.contains(entry.getKey())) {
+				if (!StringUtils.isBlank(value.toString())) {
+					row.put(entry.getKey(), new AttributeValue(value.toString()));
+				}
+			} else {
+				data.put(entry.getKey(), value);
+			}
+		}
+		try {
+			row.put(COMPACT_ATTR, new AttributeValue().withB(ByteBuffer.wrap(
+					LZFEncoder.encode(SMILE_MAPPER.writeValueAsBytes(data)))));
+		} catch (IOException e) {
+			logger.error(null, e);
+			return null;
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the attributes which must be read to get some fields of an object.
+	 * The key, id and type are always included. In compact rows, all fields except the key attributes
+	 * are stored in a single encoded attribute.
+	 * @param fields the field names
+	 * @param compact true if rows are compact
+	 * @return a list of attribute names
+	 */
+	public static List<String> getAttributesToRead(List<String> fields, boolean compact) {
+		Set<String> attributes = new LinkedHashSet<String>();
+		attributes.add(Config._KEY);
+		attributes.add(Config._ID);
+		attributes.add(Config._TYPE);
+		for (String field : fields) {
+			if (!StringUtils.isBlank(field)) {
+				attributes.add((compact && !KEY_ATTRIBUTES.contains(field)) ? COMPACT_ATTR : field);
+			}
+		}
+		return new ArrayList<String>(attributes);
+	}
+
+	/**
+	 * Converts a row to a map of fields. Reads both compact rows and rows with a string attribute per field.
+	 * @param row a row
+	 * @return a map of fields and their values
+	 */
+	public static Map<String, Object> fromRowAttributes(Map<String, AttributeValue> row) {
+		Map<String, Object> props = new HashMap<String, Object>();
+		if (row == null) {
+			return props;
+		}
+		for (Map.Entry<String, AttributeValue> col : row.entrySet()) {
+			if (!COMPACT_ATTR.equals(col.getKey())) {
+				// whole numbers are stored as numbers, everything else as strings
+				AttributeValue value = col.getValue();
+				props.put(col.getKey(), (value.getN() != null) ? value.getN() : value.getS());
+			}
+		}
+		// the encoded fields take precedence over any leftover attributes from a legacy row
+		if (row.containsKey(COMPACT_ATTR) && row.get(COMPACT_ATTR).getB() != null) {
+			ByteBuffer buf = row.get(COMPACT_ATTR).getB();
+			byte[] bytes = new byte[buf.remaining()];
+			buf.duplicate().get(bytes);
+			try {
+				props.putAll(SMILE_MAPPER.<Map<String, Object>>readValue(LZFDecoder.decode(bytes), FIELDS_TYPE));
+			} catch (IOException e) {
+				logger.error(null, e);
+			}
+		}
+		return props;
+	}
+
 }
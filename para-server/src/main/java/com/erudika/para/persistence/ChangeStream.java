@@ -0,0 +1,273 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.Para;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Utils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A change-data-capture stream of DAO writes. Each write made through the {@link DAO} is turned into
+ * a {@link ChangeEvent} (see {@link com.erudika.para.aop.ChangePublishingDAO}) and delivered to all
+ * registered {@link ChangeSink}s. Every sink has its own bounded queue ({@code cdc.queue_size}) and a
+ * worker thread which delivers events in batches of up to {@code cdc.batch_size}. Events emitted by one
+ * thread are delivered in the order they were emitted, events emitted concurrently may arrive slightly out
+ * of sequence - sinks should rely on {@link ChangeEvent#getSequence()} for ordering. When a queue is full
+ * the writer waits up to {@code cdc.offer_timeout_ms} milliseconds for space and then the event is dropped
+ * for that sink, unless the sink was added as lossless - then the writer waits until there's space.
+ * <br>
+ * Sinks are added with {@link #addSink(com.erudika.para.persistence.ChangeSink)} or loaded through
+ * {@link ServiceLoader}. When there are no sinks, nothing is captured.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+@Singleton
+public class ChangeStream {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChangeStream.class);
+
+	private final int queueSize;
+	private final int batchSize;
+	private final long offerTimeout;
+	private final List<Channel> channels = new CopyOnWriteArrayList<Channel>();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong sequence = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Default constructor.
+	 */
+	public ChangeStream() {
+		this(Config.getConfigInt("cdc.queue_size", 10000), Config.getConfigInt("cdc.batch_size", 100),
+				Config.getConfigInt("cdc.offer_timeout_ms", 100));
+		for (ChangeSink sink : ServiceLoader.load(ChangeSink.class)) {
+			if (sink != null) {
+				addSink(sink);
+			}
+		}
+		Para.addFirstDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Constructs a new instance.
+	 * @param queueSize the maximum number of events waiting to be delivered to a sink
+	 * @param batchSize the maximum number of events delivered to a sink at once
+	 * @param offerTimeoutMillis the time to wait for space in a full queue
+	 */
+	public ChangeStream(int queueSize, int batchSize, long offerTimeoutMillis) {
+		this.queueSize = Math.max(queueSize, 1);
+		this.batchSize = Math.max(batchSize, 1);
+		this.offerTimeout = Math.max(offerTimeoutMillis, 0);
+	}
+
+	/**
+	 * Registers a sink. It will receive all changes emitted after this call.
+	 * @param sink a sink
+	 */
+	public void addSink(ChangeSink sink) {
+		addSink(sink, false);
+	}
+
+	/**
+	 * Registers a sink. It will receive all changes emitted after this call.
+	 * @param sink a sink
+	 * @param lossless if true, events are never dropped for this sink - writers wait for space in its
+	 * queue for as long as it takes, so a slow sink slows down all writes
+	 */
+	public void addSink(ChangeSink sink, boolean lossless) {
+		if (sink != null) {
+			Channel channel = new Channel(sink, lossless);
+			channels.add(channel);
+			channel.start();
+			logger.debug("ChangeStream.addSink() {}", sink.getClass().getName());
+		}
+	}
+
+	/**
+	 * @return true if there is at least one sink, i.e. changes should be captured
+	 */
+	public boolean isEnabled() {
+		return !channels.isEmpty();
+	}
+
+	/**
+	 * Emits a change event to all sinks.
+	 * @param action the type of change
+	 * @param appid the app id
+	 * @param id the object id
+	 * @param type the object type
+	 * @param fields the fields which were written
+	 */
+	public void emit(ChangeEvent.Action action, String appid, String id, String type,
+			Map<String, Object> fields) {
+		if (channels.isEmpty() || id == null) {
+			return;
+		}
+		// offering may block, so other writers are never kept waiting for a lock
+		ChangeEvent event = new ChangeEvent(sequence.incrementAndGet(), action, appid, id, type, fields,
+				Utils.timestamp());
+		for (Channel channel : channels) {
+			channel.offer(event);
+		}
+	}
+
+	/**
+	 * Waits until all emitted events have been delivered or dropped.
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all events were delivered in time
+	 */
+	public boolean flush(long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (Channel channel : channels) {
+			while (!channel.isIdle()) {
+				if (System.currentTimeMillis() >= deadline) {
+					return false;
+				}
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of events which were dropped because a sink couldn't keep up
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Delivers the remaining events and stops the worker threads. Changes emitted after this
+	 * are delivered synchronously.
+	 */
+	public void shutdown() {
+		flush(Config.getConfigInt("cdc.shutdown_timeout_ms", 5000));
+		closed = true;
+		for (Channel channel : channels) {
+			channel.worker.interrupt();
+		}
+	}
+
+	/**
+	 * A sink, its queue and its worker thread.
+	 */
+	private final class Channel implements Runnable {
+
+		private final ChangeSink sink;
+		private final boolean lossless;
+		private final BlockingQueue<ChangeEvent> queue;
+		private final Thread worker;
+		private final AtomicLong queued = new AtomicLong();
+		private volatile long delivered;
+
+		Channel(ChangeSink sink, boolean lossless) {
+			this.sink = sink;
+			this.lossless = lossless;
+			this.queue = new ArrayBlockingQueue<ChangeEvent>(queueSize);
+			this.worker = new Thread(this, "para-cdc-" + sink.getClass().getSimpleName());
+			this.worker.setDaemon(true);
+		}
+
+		void start() {
+			worker.start();
+		}
+
+		void offer(ChangeEvent event) {
+			if (closed) {
+				deliver(Collections.singletonList(event));
+				return;
+			}
+			try {
+				boolean offered = queue.offer(event, offerTimeout, TimeUnit.MILLISECONDS);
+				while (!offered && lossless) {
+					if (closed || !worker.isAlive()) {
+						deliver(Collections.singletonList(event));
+						return;
+					}
+					offered = queue.offer(event, Math.max(offerTimeout, 10), TimeUnit.MILLISECONDS);
+				}
+				if (offered) {
+					queued.incrementAndGet();
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			long count = dropped.incrementAndGet();
+			logger.warn("ChangeStream: sink {} is too slow, dropped event {} ({} dropped so far).",
+					sink.getClass().getName(), event, count);
+		}
+
+		boolean isIdle() {
+			return delivered >= queued.get() || !worker.isAlive();
+		}
+
+		public void run() {
+			List<ChangeEvent> batch = new ArrayList<ChangeEvent>(batchSize);
+			while (!closed || !queue.isEmpty()) {
+				try {
+					batch.add(queue.take());
+				} catch (InterruptedException e) {
+					if (closed) {
+						queue.drainTo(batch);
+						if (!batch.isEmpty()) {
+							deliver(batch);
+							delivered += batch.size();
+						}
+						break;
+					}
+					continue;
+				}
+				queue.drainTo(batch, batchSize - 1);
+				deliver(batch);
+				delivered += batch.size();
+				batch.clear();
+			}
+		}
+
+		private void deliver(List<ChangeEvent> events) {
+			try {
+				sink.onChanges(new ArrayList<ChangeEvent>(events));
+			} catch (Exception e) {
+				logger.error("ChangeStream: sink " + sink.getClass().getName() + " failed to process "
+						+ events.size() + " events.", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.User;
+import com.erudika.para.storage.FileStore;
+import com.erudika.para.storage.StreamingFileStore;
+import com.erudika.para.utils.Config;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports and imports all objects of an app as newline-delimited JSON (one object per line),
+ * optionally compressed with gzip. Both directions are streamed - exports read objects page by page
+ * with {@link DAO#iterate(java.lang.String, java.lang.String)} and imports parse one line at a time
+ * and write objects in chunks of {@code export.batch_size} through
+ * {@link DAO#createAll(java.lang.String, java.util.List)}, while the next chunk is being parsed.
+ * Memory use doesn't depend on the size of the app.
+ * <br>
+ * Files in a {@link FileStore} are kept under a folder named after the app id, so an app can only export
+ * to and import from its own files.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class ExportImport {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExportImport.class);
+	private static final int BATCH_SIZE = Config.getConfigInt("export.batch_size", 100);
+	private static final int MAX_CHUNKS_IN_FLIGHT = Config.getConfigInt("export.max_chunks_in_flight", 2);
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "para-export-import");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private ExportImport() { }
+
+	/**
+	 * Writes all objects of an app to a stream, one JSON object per line. The stream is not closed.
+	 * @param dao the DAO to read from
+	 * @param appid the app id
+	 * @param out the stream to write to
+	 * @param gzip true if the output should be compressed
+	 * @return the number of objects written
+	 * @throws IOException if writing fails
+	 */
+	public static long exportApp(DAO dao, String appid, OutputStream out, boolean gzip) throws IOException {
+		if (dao == null || StringUtils.isBlank(appid) || out == null) {
+			return 0;
+		}
+		GZIPOutputStream gzout = gzip ? new GZIPOutputStream(out, 8192) : null;
+		Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzout : out, Config.DEFAULT_ENCODING));
+		ObjectWriter jsonWriter = ParaObjectUtils.getJsonWriterNoIdent();
+		long count = 0;
+		for (Iterator<ParaObject> it = dao.iterate(appid, null); it.hasNext();) {
+			writer.write(jsonWriter.writeValueAsString(it.next()));
+			writer.write('\n');
+			count++;
+		}
+		writer.flush();
+		if (gzout != null) {
+			gzout.finish();
+		}
+		out.flush();
+		logger.debug("ExportImport.exportApp() {} -> {} objects", appid, count);
+		return count;
+	}
+
+	/**
+	 * Exports all objects of an app to a private file in a {@link StreamingFileStore}.
+	 * @param dao the DAO to read from
+	 * @param appid the app id
+	 * @param store the file store
+	 * @param path the file path, relative to the folder of the app
+	 * @param gzip true if the file should be compressed
+	 * @return the path of the file in the store, null if there's no store
+	 * @throws IOException if the export fails
+	 * @throws IllegalArgumentException if the path is invalid
+	 */
+	public static String exportApp(final DAO dao, final String appid, StreamingFileStore store, String path,
+			final boolean gzip) throws IOException {
+		if (store == null) {
+			return null;
+		}
+		String appPath = getAppPath(appid, path);
+		final PipedOutputStream out = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(out, 64 * 1024);
+		// the file store consumes the stream on this thread, while the objects are written on another
+		Future<Long> export = EXECUTOR.submit(new Callable<Long>() {
+			public Long call() throws Exception {
+				try {
+					return exportApp(dao, appid, out, gzip);
+				} finally {
+					out.close();
+				}
+			}
+		});
+		try {
+			store.write(appPath, in);
+		} finally {
+			// stops the export if the file couldn't be written
+			in.close();
+		}
+		await(export);
+		return appPath;
+	}
+
+	/**
+	 * Reads objects from a stream of newline-delimited JSON and creates them in an app. Gzipped
+	 * input is detected automatically. Existing objects with the same ids are overwritten.
+	 * The stream is not closed.
+	 * @param dao the DAO to write to
+	 * @param appid the app id
+	 * @param is the stream to read from
+	 * @return the number of objects imported
+	 * @throws IOException if reading fails
+	 */
+	public static long importApp(final DAO dao, final String appid, InputStream is) throws IOException {
+		if (dao == null || StringUtils.isBlank(appid) || is == null) {
+			return 0;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(decompress(is), Config.DEFAULT_ENCODING));
+		ObjectReader jsonReader = ParaObjectUtils.getJsonReader(Map.class);
+		LinkedList<Future<Integer>> inFlight = new LinkedList<Future<Integer>>();
+		List<ParaObject> chunk = new ArrayList<ParaObject>(BATCH_SIZE);
+		long count = 0;
+		long lineNumber = 0;
+		String line;
+		try {
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (StringUtils.isBlank(line)) {
+					continue;
+				}
+				Map<String, Object> fields;
+				try {
+					fields = jsonReader.readValue(line);
+				} catch (JsonProcessingException e) {
+					// the parser's message quotes the input, which isn't echoed back
+					throw new IOException("Invalid JSON on line " + lineNumber + ".");
+				}
+				ParaObject so = ParaObjectUtils.setAnnotatedFields(fields);
+				if (so == null) {
+					continue;
+				}
+				so.setAppid(appid);
+				chunk.add(so);
+				if (chunk.size() >= BATCH_SIZE) {
+					// wait for the oldest chunk, so that the parsed objects don't pile up
+					while (inFlight.size() >= MAX_CHUNKS_IN_FLIGHT) {
+						count += await(inFlight.removeFirst());
+					}
+					inFlight.add(write(dao, appid, chunk));
+					chunk = new ArrayList<ParaObject>(BATCH_SIZE);
+				}
+			}
+			if (!chunk.isEmpty()) {
+				inFlight.add(write(dao, appid, chunk));
+			}
+		} finally {
+			while (!inFlight.isEmpty()) {
+				count += await(inFlight.removeFirst());
+			}
+		}
+		logger.debug("ExportImport.importApp() {} <- {} objects", appid, count);
+		return count;
+	}
+
+	/**
+	 * Imports objects into an app from a file in a {@link FileStore}.
+	 * @param dao the DAO to write to
+	 * @param appid the app id
+	 * @param store the file store
+	 * @param path the file path, relative to the folder of the app
+	 * @return the number of objects imported, -1 if the file wasn't found
+	 * @throws IOException if reading fails
+	 * @throws IllegalArgumentException if the path is invalid
+	 */
+	public static long importApp(DAO dao, String appid, FileStore store, String path) throws IOException {
+		InputStream is = (store == null) ? null : store.load(getAppPath(appid, path));
+		if (is == null) {
+			return -1;
+		}
+		try {
+			return importApp(dao, appid, is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Returns the path of a file of an app in a {@link FileStore}.
+	 * @param appid the app id
+	 * @param path a path relative to the folder of the app
+	 * @return the path prefixed with the app id
+	 * @throws IllegalArgumentException if the path is blank or leads out of the folder of the app
+	 */
+	public static String getAppPath(String appid, String path) {
+		String p = StringUtils.removeStart(StringUtils.trimToEmpty(path), "/");
+		if (StringUtils.isBlank(appid) || StringUtils.isBlank(p) || p.contains("\\")) {
+			throw new IllegalArgumentException("Invalid path.");
+		}
+		for (String segment : p.split("/")) {
+			if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+				throw new IllegalArgumentException("Invalid path.");
+			}
+		}
+		return appid + "/" + p;
+	}
+
+	private static Future<Integer> write(final DAO dao, final String appid, final List<ParaObject> chunk) {
+		return EXECUTOR.submit(new Callable<Integer>() {
+			public Integer call() throws Exception {
+				List<ParaObject> objects = new ArrayList<ParaObject>(chunk.size());
+				for (ParaObject so : chunk) {
+					// batch writes skip users and apps, so these are created one by one
+					if (so instanceof User || so instanceof App) {
+						dao.create(appid, so);
+					} else {
+						objects.add(so);
+					}
+				}
+				dao.createAll(appid, objects);
+				return chunk.size();
+			}
+		});
+	}
+
+	private static InputStream decompress(InputStream is) throws IOException {
+		BufferedInputStream bis = new BufferedInputStream(is);
+		bis.mark(2);
+		int magic = bis.read() | (bis.read() << 8);
+		bis.reset();
+		return (magic == GZIP_MAGIC) ? new GZIPInputStream(bis) : bis;
+	}
+
+	private static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+}
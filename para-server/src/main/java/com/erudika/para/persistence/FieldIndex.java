@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * An in-memory secondary index of the objects of one app by {@code parentid}, {@code creatorid}
+ * and {@code type}. Used by the DAOs which don't have native secondary indexes.
+ * Each value maps to a sorted set of keys of the form {@code timestamp:id}, so that objects
+ * are listed in chronological order and the last key of a page can be used as a cursor.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+final class FieldIndex {
+
+	private static final String[] FIELDS = {Config._PARENTID, Config._CREATORID, Config._TYPE};
+
+	private final ConcurrentMap<String, NavigableSet<String>> values =
+			new ConcurrentHashMap<String, NavigableSet<String>>();
+	private final ConcurrentMap<String, String[]> entries = new ConcurrentHashMap<String, String[]>();
+
+	/**
+	 * @param field a field name
+	 * @return true if the field is indexed
+	 */
+	static boolean isIndexed(String field) {
+		return indexOf(field) >= 0;
+	}
+
+	/**
+	 * Indexes an object, replacing its previous entries.
+	 * @param so the object
+	 */
+	synchronized void add(ParaObject so) {
+		if (so == null || so.getId() == null) {
+			return;
+		}
+		remove(so.getId());
+		String[] entry = {sortKey(so), so.getParentid(), so.getCreatorid(), so.getType()};
+		for (int i = 0; i < FIELDS.length; i++) {
+			if (entry[i + 1] != null) {
+				getKeys(FIELDS[i], entry[i + 1]).add(entry[0]);
+			}
+		}
+		entries.put(so.getId(), entry);
+	}
+
+	/**
+	 * Removes an object from the index.
+	 * @param id the object id
+	 */
+	synchronized void remove(String id) {
+		String[] entry = (id == null) ? null : entries.remove(id);
+		if (entry == null) {
+			return;
+		}
+		for (int i = 0; i < FIELDS.length; i++) {
+			if (entry[i + 1] != null) {
+				NavigableSet<String> keys = values.get(FIELDS[i] + Config.SEPARATOR + entry[i + 1]);
+				if (keys != null) {
+					keys.remove(entry[0]);
+					if (keys.isEmpty()) {
+						values.remove(FIELDS[i] + Config.SEPARATOR + entry[i + 1]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds a page of object ids by the value of a field, ordered by timestamp.
+	 * Paging continues after {@link Pager#getLastKey()}, which is set to null on the last page.
+	 * @param field an indexed field
+	 * @param value the exact value
+	 * @param pager a pager
+	 * @return a list of ids
+	 */
+	List<String> find(String field, String value, Pager pager) {
+		List<String> ids = new ArrayList<String>();
+		NavigableSet<String> keys = values.get(field + Config.SEPARATOR + value);
+		if (keys == null) {
+			pager.setLastKey(null);
+			return ids;
+		}
+		String lastKey = pager.getLastKey();
+		NavigableSet<String> page;
+		if (pager.isDesc()) {
+			page = StringUtils.isBlank(lastKey) ? keys.descendingSet() : keys.headSet(lastKey, false).descendingSet();
+		} else {
+			page = StringUtils.isBlank(lastKey) ? keys : keys.tailSet(lastKey, false);
+		}
+		for (String key : page) {
+			if (ids.size() >= pager.getLimit()) {
+				break;
+			}
+			ids.add(StringUtils.substringAfter(key, Config.SEPARATOR));
+			lastKey = key;
+		}
+		pager.setLastKey(ids.size() < pager.getLimit() ? null : lastKey);
+		return ids;
+	}
+
+	private NavigableSet<String> getKeys(String field, String value) {
+		String key = field + Config.SEPARATOR + value;
+		NavigableSet<String> keys = values.get(key);
+		if (keys == null) {
+			keys = new ConcurrentSkipListSet<String>();
+			NavigableSet<String> existing = values.putIfAbsent(key, keys);
+			if (existing != null) {
+				keys = existing;
+			}
+		}
+		return keys;
+	}
+
+	private static int indexOf(String field) {
+		for (int i = 0; i < FIELDS.length; i++) {
+			if (FIELDS[i].equals(field)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String sortKey(ParaObject so) {
+		long timestamp = (so.getTimestamp() == null) ? 0 : so.getTimestamp();
+		return StringUtils.leftPad(Long.toString(timestamp), 19, '0') + Config.SEPARATOR + so.getId();
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DAO} which forwards all calls to another DAO. Decorators extend it and override only the
+ * methods they change. Calls without an app id are routed to the methods with an app id, and reads without
+ * a read consistency are routed to the methods with one (passing null, the data store's default), so
+ * those are the only methods a decorator needs to override.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public abstract class ForwardingDAO implements DAO {
+
+	private final DAO dao;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO calls are forwarded to
+	 */
+	protected ForwardingDAO(DAO dao) {
+		this.dao = dao;
+	}
+
+	/**
+	 * @return the DAO calls are forwarded to
+	 */
+	public DAO getDelegate() {
+		return dao;
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		return dao.create(appid, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key) {
+		return read(appid, key, null);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		return dao.read(appid, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		dao.update(appid, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		return dao.compareAndSet(appid, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		dao.delete(appid, so);
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		return dao.increment(appid, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		dao.createAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return readAll(appid, keys, getAllColumns, null);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return dao.readAll(appid, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		return dao.readAll(appid, keys, fields);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(String appid, Pager pager) {
+		return dao.readPage(appid, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		return dao.iterate(appid, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		return dao.readByField(appid, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		dao.updateAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		dao.deleteAll(appid, objects);
+	}
+
+	////////////////////////////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(P so) {
+		return create(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key) {
+		return read(Config.APP_NAME_NS, key, null);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(P so) {
+		update(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(P so) {
+		delete(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(List<P> objects) {
+		createAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, null);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(Pager pager) {
+		return readPage(Config.APP_NAME_NS, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(List<P> objects) {
+		updateAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(List<P> objects) {
+		deleteAll(Config.APP_NAME_NS, objects);
+	}
+}
@@ -0,0 +1,759 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.annotations.Locked;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.WriteContext;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import static com.erudika.para.persistence.JDBCUtils.*;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Singleton;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of the {@link DAO} interface using a relational database as a data store.
+ * Each object is stored as a row in the table of its app. The key fields are kept in separate columns
+ * and all other stored fields are serialized as JSON in a single text column.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+@Singleton
+public class JDBCDAO implements DAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(JDBCDAO.class);
+	private static final int MAX_BATCH_SIZE = Config.getConfigInt("sql.batch_size", 100);
+	private static final int MAX_KEYS_PER_READ = Config.getConfigInt("sql.max_keys_per_read", 1000);
+	private static final String INSERT_COLUMNS = StringUtils.join(new String[]{COL_ID, COL_TYPE, COL_CREATORID,
+		COL_PARENTID, COL_TIMESTAMP, COL_UPDATED, COL_JSON}, ", ");
+	private static final String UPDATE_COLUMNS = StringUtils.join(new String[]{COL_TYPE, COL_CREATORID,
+		COL_PARENTID, COL_TIMESTAMP, COL_UPDATED, COL_JSON}, " = ?, ") + " = ?";
+	// fields which are stored in their own columns
+	private static final Map<String, String> KEY_COLUMNS = new HashMap<String, String>();
+
+	static {
+		KEY_COLUMNS.put(Config._ID, COL_ID);
+		KEY_COLUMNS.put(Config._TYPE, COL_TYPE);
+		KEY_COLUMNS.put(Config._CREATORID, COL_CREATORID);
+		KEY_COLUMNS.put(Config._PARENTID, COL_PARENTID);
+		KEY_COLUMNS.put(Config._TIMESTAMP, COL_TIMESTAMP);
+		KEY_COLUMNS.put(Config._UPDATED, COL_UPDATED);
+	}
+
+	/**
+	 * No-args constructor
+	 */
+	public JDBCDAO() { }
+
+	/////////////////////////////////////////////
+	//			CORE FUNCTIONS
+	/////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		if (so == null || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		writeAll(appid, Collections.singletonList(so));
+		logger.debug("DAO.create() {}", so.getId());
+		return so.getId();
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key) {
+		return readObject(appid, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		// all reads are strongly consistent
+		return readObject(appid, key);
+	}
+
+	private <P extends ParaObject> P readObject(String appid, String key) {
+		if (StringUtils.isBlank(key) || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		Map<String, P> results = readAllObjects(appid, Collections.singletonList(key), true);
+		P so = results.get(key);
+		logger.debug("DAO.read() {} -> {}", key, so == null ? null : so.getType());
+		return so;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (so != null && so.getId() != null) {
+			updateAll(appid, Collections.singletonList(so));
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		if (so != null && so.getId() != null) {
+			deleteAll(appid, Collections.singletonList(so));
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (so == null || StringUtils.isBlank(so.getId()) || StringUtils.isBlank(appid) ||
+				(expected != null && !so.getId().equals(expected.getId()))) {
+			return false;
+		}
+		if (so.getTimestamp() == null) {
+			so.setTimestamp(Utils.timestamp());
+		}
+		so.setAppid(appid);
+		String table = getTableFor(appid);
+		boolean done = false;
+		boolean exists = false;
+		Connection conn = null;
+		PreparedStatement select = null;
+		PreparedStatement write = null;
+		ResultSet rs = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			select = conn.prepareStatement("SELECT " + COL_JSON + " FROM " + table + " WHERE " + COL_ID +
+					" = ? FOR UPDATE");
+			select.setString(1, so.getId());
+			rs = select.executeQuery();
+			exists = rs.next();
+			if (ParaObjectUtils.sameFields(exists ? fromJSON(rs.getString(COL_JSON)) : null, expected)) {
+				if (exists) {
+					write = conn.prepareStatement("UPDATE " + table + " SET " + UPDATE_COLUMNS + " WHERE " +
+							COL_ID + " = ?");
+					setColumns(write, 1, so);
+					write.setString(7, so.getId());
+				} else {
+					write = conn.prepareStatement("INSERT INTO " + table + " (" + INSERT_COLUMNS +
+							") VALUES (?, ?, ?, ?, ?, ?, ?)");
+					write.setString(1, so.getId());
+					setColumns(write, 2, so);
+				}
+				done = write.executeUpdate() == 1;
+			}
+			conn.commit();
+		} catch (Exception e) {
+			rollback(conn);
+			if (exists) {
+				logger.error(null, e);
+			} else {
+				// most likely the object was created concurrently
+				logger.debug("DAO.compareAndSet() failed to insert {}: {}", so.getId(), e.getMessage());
+			}
+			done = false;
+		} finally {
+			close(rs, select, null);
+			close(null, write, conn);
+		}
+		if (done) {
+			ParaObjectUtils.markClean(so);
+		}
+		logger.debug("DAO.compareAndSet() {} -> {}", so.getId(), done);
+		return done;
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (StringUtils.isBlank(id) || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		String table = getTableFor(appid);
+		Long value = null;
+		Connection conn = null;
+		PreparedStatement select = null;
+		PreparedStatement update = null;
+		ResultSet rs = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			// the row stays locked until the transaction ends
+			select = conn.prepareStatement("SELECT " + COL_JSON + " FROM " + table + " WHERE " + COL_ID +
+					" = ? FOR UPDATE");
+			select.setString(1, id);
+			rs = select.executeQuery();
+			ParaObject so = rs.next() ? this.<ParaObject>fromJSON(rs.getString(COL_JSON)) : null;
+			value = ParaObjectUtils.incrementField(so, field, delta);
+			if (value != null) {
+				so.setUpdated(Utils.timestamp());
+				update = conn.prepareStatement("UPDATE " + table + " SET " + COL_UPDATED + " = ?, " + COL_JSON +
+						" = ? WHERE " + COL_ID + " = ?");
+				update.setLong(1, so.getUpdated());
+				update.setString(2, toJSON(so));
+				update.setString(3, id);
+				update.executeUpdate();
+			}
+			conn.commit();
+		} catch (Exception e) {
+			rollback(conn);
+			logger.error(null, e);
+			value = null;
+		} finally {
+			close(rs, select, null);
+			close(null, update, conn);
+		}
+		logger.debug("DAO.increment() {} {} -> {}", id, field, value);
+		return value;
+	}
+
+	/////////////////////////////////////////////
+	//				READ ALL FUNCTIONS
+	/////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		writeAll(appid, objects);
+		logger.debug("DAO.createAll() {}", (objects == null) ? 0 : objects.size());
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return readAllObjects(appid, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAllObjects(appid, keys, getAllColumns);
+	}
+
+	private <P extends ParaObject> Map<String, P> readAllObjects(String appid, List<String> keys, boolean getAllColumns) {
+		Map<String, P> results = select(appid, keys, getAllColumns ? null : Collections.<String>emptyList());
+		logger.debug("DAO.readAll() {}", results.size());
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		Map<String, P> results;
+		if (fields == null || fields.isEmpty() || !KEY_COLUMNS.keySet().containsAll(fields)) {
+			// the other fields are in the JSON column, so the whole object is read
+			results = select(appid, keys, null);
+			for (Map.Entry<String, P> entry : results.entrySet()) {
+				entry.setValue(ParaObjectUtils.project(entry.getValue(), fields));
+			}
+		} else {
+			results = select(appid, keys, fields);
+		}
+		logger.debug("DAO.readAll() {} {}", results.size(), fields);
+		return results;
+	}
+
+	/**
+	 * Reads objects by id.
+	 * @param appid the app id
+	 * @param keys the object ids
+	 * @param fields the key fields to read, besides id and type. null means the whole object.
+	 * @return a map of ids to objects, in the order of the keys
+	 */
+	private <P extends ParaObject> Map<String, P> select(String appid, List<String> keys, List<String> fields) {
+		if (keys == null || keys.isEmpty() || StringUtils.isBlank(appid)) {
+			return new LinkedHashMap<String, P>();
+		}
+		String table = getTableFor(appid);
+		List<String> columns = new ArrayList<String>();
+		if (fields == null) {
+			columns.add(COL_JSON);
+		} else {
+			columns.add(COL_ID);
+			columns.add(COL_TYPE);
+			for (String field : fields) {
+				if (!columns.contains(KEY_COLUMNS.get(field))) {
+					columns.add(KEY_COLUMNS.get(field));
+				}
+			}
+		}
+		Map<String, P> found = new HashMap<String, P>(keys.size());
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			for (int i = 0; i < keys.size(); i += MAX_KEYS_PER_READ) {
+				List<String> chunk = keys.subList(i, Math.min(i + MAX_KEYS_PER_READ, keys.size()));
+				PreparedStatement ps = null;
+				ResultSet rs = null;
+				try {
+					ps = conn.prepareStatement("SELECT " + StringUtils.join(columns, ", ") + " FROM " + table +
+							" WHERE " + COL_ID + " IN (" + StringUtils.repeat("?", ", ", chunk.size()) + ")");
+					for (int j = 0; j < chunk.size(); j++) {
+						ps.setString(j + 1, chunk.get(j));
+					}
+					rs = ps.executeQuery();
+					while (rs.next()) {
+						P obj = (fields == null) ? this.<P>fromJSON(rs.getString(COL_JSON)) :
+								this.<P>fromKeyColumns(rs, fields);
+						if (obj != null) {
+							found.put(obj.getId(), obj);
+						}
+					}
+				} finally {
+					close(rs, ps, null);
+				}
+			}
+		} catch (Exception e) {
+			logger.error(null, e);
+		} finally {
+			close(null, null, conn);
+		}
+		// preserve the order of the keys
+		Map<String, P> results = new LinkedHashMap<String, P>(found.size());
+		for (String key : keys) {
+			if (found.containsKey(key)) {
+				results.put(key, found.get(key));
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(String appid, Pager pager) {
+		List<P> results = new LinkedList<P>();
+		if (StringUtils.isBlank(appid)) {
+			return results;
+		}
+		if (pager == null) {
+			pager = new Pager();
+		}
+		String table = getTableFor(appid);
+		boolean hasLastKey = !StringUtils.isBlank(pager.getLastKey());
+		Connection conn = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			conn = getConnection();
+			// keyset pagination - continue after the last key of the previous page
+			ps = conn.prepareStatement("SELECT " + COL_ID + ", " + COL_JSON + " FROM " + table +
+					(hasLastKey ? " WHERE " + COL_ID + " > ?" : "") + " ORDER BY " + COL_ID);
+			if (hasLastKey) {
+				ps.setString(1, pager.getLastKey());
+			}
+			ps.setMaxRows(pager.getLimit());
+			ps.setFetchSize(pager.getLimit());
+			rs = ps.executeQuery();
+			String lastKey = null;
+			while (rs.next()) {
+				P obj = fromJSON(rs.getString(COL_JSON));
+				if (obj != null) {
+					results.add(obj);
+				}
+				lastKey = rs.getString(COL_ID);
+			}
+			pager.setLastKey(results.size() < pager.getLimit() ? null : lastKey);
+		} catch (Exception e) {
+			logger.error(null, e);
+		} finally {
+			close(rs, ps, conn);
+		}
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		return new PagingIterator<P>(this, appid, type, MAX_KEYS_PER_READ);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		if (!Config._PARENTID.equals(field) && !Config._CREATORID.equals(field) && !Config._TYPE.equals(field)) {
+			return null;
+		}
+		List<P> results = new LinkedList<P>();
+		if (StringUtils.isBlank(appid) || StringUtils.isBlank(value)) {
+			return results;
+		}
+		if (pager == null) {
+			pager = new Pager();
+		}
+		String table = getTableFor(appid);
+		String col = KEY_COLUMNS.get(field);
+		// the last key is a "timestamp:id" cursor
+		String lastKey = pager.getLastKey();
+		boolean hasLastKey = !StringUtils.isBlank(lastKey) && StringUtils.contains(lastKey, Config.SEPARATOR);
+		String op = pager.isDesc() ? " < " : " > ";
+		String order = pager.isDesc() ? " DESC" : " ASC";
+		Connection conn = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			conn = getConnection();
+			ps = conn.prepareStatement("SELECT " + COL_ID + ", " + COL_TIMESTAMP + ", " + COL_JSON + " FROM " +
+					table + " WHERE " + col + " = ?" + (hasLastKey ? " AND (" + COL_TIMESTAMP + op + "? OR (" +
+					COL_TIMESTAMP + " = ? AND " + COL_ID + op + "?))" : "") +
+					" ORDER BY " + COL_TIMESTAMP + order + ", " + COL_ID + order);
+			ps.setString(1, value);
+			if (hasLastKey) {
+				long timestamp = NumberUtils.toLong(StringUtils.substringBefore(lastKey, Config.SEPARATOR));
+				ps.setLong(2, timestamp);
+				ps.setLong(3, timestamp);
+				ps.setString(4, StringUtils.substringAfter(lastKey, Config.SEPARATOR));
+			}
+			ps.setMaxRows(pager.getLimit());
+			ps.setFetchSize(pager.getLimit());
+			rs = ps.executeQuery();
+			lastKey = null;
+			int rows = 0;
+			while (rs.next()) {
+				P obj = fromJSON(rs.getString(COL_JSON));
+				if (obj != null) {
+					results.add(obj);
+				}
+				lastKey = rs.getLong(COL_TIMESTAMP) + Config.SEPARATOR + rs.getString(COL_ID);
+				rows++;
+			}
+			pager.setLastKey(rows < pager.getLimit() ? null : lastKey);
+		} catch (Exception e) {
+			logger.error(null, e);
+		} finally {
+			close(rs, ps, conn);
+		}
+		logger.debug("DAO.readByField() {}={} -> {}", field, value, results.size());
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		if (objects == null || objects.isEmpty() || StringUtils.isBlank(appid)) {
+			return;
+		}
+		String table = getTableFor(appid);
+		List<String> ids = new ArrayList<String>(objects.size());
+		for (P object : objects) {
+			if (object != null && object.getId() != null) {
+				ids.add(object.getId());
+			}
+		}
+		Connection conn = null;
+		PreparedStatement ps = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			ps = conn.prepareStatement("UPDATE " + table + " SET " + UPDATE_COLUMNS + " WHERE " + COL_ID + " = ?");
+			for (int i = 0; i < objects.size(); i += MAX_BATCH_SIZE) {
+				List<P> chunk = objects.subList(i, Math.min(i + MAX_BATCH_SIZE, objects.size()));
+				// locked fields are not updated - merge the changes into the stored objects first,
+				// which stay locked until the transaction ends, so concurrent changes aren't lost
+				Map<String, ParaObject> stored = selectForUpdate(conn, table, chunk);
+				for (P object : chunk) {
+					ParaObject existing = (object == null) ? null : stored.get(object.getId());
+					if (existing != null) {
+						object.setUpdated(Utils.timestamp());
+						// only the fields changed since the object was read are merged
+						ParaObjectUtils.setAnnotatedFields(existing,
+								ParaObjectUtils.getChangedFields(object, Locked.class), Locked.class);
+						setColumns(ps, 1, existing);
+						ps.setString(7, object.getId());
+						ps.addBatch();
+					}
+				}
+				ps.executeBatch();
+			}
+			conn.commit();
+		} catch (Exception e) {
+			rollback(conn);
+			logger.error(null, e);
+			throw new UpdateFailedException(appid, ids);
+		} finally {
+			close(null, ps, conn);
+		}
+		markClean(objects);
+		logger.debug("DAO.updateAll() {}", objects.size());
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		if (objects == null || objects.isEmpty() || StringUtils.isBlank(appid)) {
+			return;
+		}
+		String table = getTableFor(appid);
+		Connection conn = null;
+		PreparedStatement ps = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			ps = conn.prepareStatement("DELETE FROM " + table + " WHERE " + COL_ID + " = ?");
+			int batched = 0;
+			for (P object : objects) {
+				if (object != null && object.getId() != null) {
+					ps.setString(1, object.getId());
+					ps.addBatch();
+					if (++batched % MAX_BATCH_SIZE == 0) {
+						ps.executeBatch();
+					}
+				}
+			}
+			ps.executeBatch();
+			conn.commit();
+		} catch (Exception e) {
+			rollback(conn);
+			logger.error(null, e);
+		} finally {
+			close(null, ps, conn);
+		}
+		logger.debug("DAO.deleteAll() {}", objects.size());
+	}
+
+	/**
+	 * Reads and locks the stored copies of some objects, until the transaction ends.
+	 */
+	private <P extends ParaObject> Map<String, ParaObject> selectForUpdate(Connection conn, String table,
+			List<P> objects) throws SQLException, IOException {
+		List<String> ids = new ArrayList<String>(objects.size());
+		for (P object : objects) {
+			if (object != null && object.getId() != null) {
+				ids.add(object.getId());
+			}
+		}
+		Map<String, ParaObject> stored = new HashMap<String, ParaObject>(ids.size());
+		if (ids.isEmpty()) {
+			return stored;
+		}
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = conn.prepareStatement("SELECT " + COL_JSON + " FROM " + table + " WHERE " + COL_ID +
+					" IN (" + StringUtils.repeat("?", ", ", ids.size()) + ") FOR UPDATE");
+			for (int j = 0; j < ids.size(); j++) {
+				ps.setString(j + 1, ids.get(j));
+			}
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				ParaObject obj = fromJSON(rs.getString(COL_JSON));
+				if (obj != null) {
+					stored.put(obj.getId(), obj);
+				}
+			}
+		} finally {
+			close(rs, ps, null);
+		}
+		return stored;
+	}
+
+	private <P extends ParaObject> void writeAll(String appid, List<P> objects) {
+		if (objects == null || objects.isEmpty() || StringUtils.isBlank(appid)) {
+			return;
+		}
+		String table = getTableFor(appid);
+		Connection conn = null;
+		PreparedStatement del = null;
+		PreparedStatement ins = null;
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			// create() overwrites existing objects - delete and insert is the portable way to "upsert"
+			del = conn.prepareStatement("DELETE FROM " + table + " WHERE " + COL_ID + " = ?");
+			ins = conn.prepareStatement("INSERT INTO " + table + " (" + INSERT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+			int batched = 0;
+			for (P object : objects) {
+				if (object == null) {
+					continue;
+				}
+				if (StringUtils.isBlank(object.getId())) {
+					object.setId(Utils.getNewId());
+				}
+				if (object.getTimestamp() == null) {
+					object.setTimestamp(Utils.timestamp());
+				}
+				object.setAppid(appid);
+				del.setString(1, object.getId());
+				del.addBatch();
+				ins.setString(1, object.getId());
+				setColumns(ins, 2, object);
+				ins.addBatch();
+				if (++batched % MAX_BATCH_SIZE == 0) {
+					del.executeBatch();
+					ins.executeBatch();
+				}
+			}
+			del.executeBatch();
+			ins.executeBatch();
+			conn.commit();
+			markClean(objects);
+		} catch (Exception e) {
+			rollback(conn);
+			logger.error(null, e);
+		} finally {
+			close(null, del, null);
+			close(null, ins, conn);
+		}
+	}
+
+	/////////////////////////////////////////////
+	//				MISC FUNCTIONS
+	/////////////////////////////////////////////
+
+	/**
+	 * Sets the parameters for all columns except the id, in the order of {@link #UPDATE_COLUMNS}.
+	 */
+	private <P extends ParaObject> void setColumns(PreparedStatement ps, int index, P so)
+			throws SQLException, IOException {
+		ps.setString(index, so.getType());
+		ps.setString(index + 1, so.getCreatorid());
+		ps.setString(index + 2, so.getParentid());
+		ps.setLong(index + 3, so.getTimestamp());
+		if (so.getUpdated() == null) {
+			ps.setNull(index + 4, Types.BIGINT);
+		} else {
+			ps.setLong(index + 4, so.getUpdated());
+		}
+		ps.setString(index + 5, toJSON(so));
+	}
+
+	private <P extends ParaObject> String toJSON(P so) throws IOException {
+		return ParaObjectUtils.getJsonWriterNoIdent().writeValueAsString(WriteContext.capture(so, null, false));
+	}
+
+	private <P extends ParaObject> P fromJSON(String json) throws IOException {
+		if (StringUtils.isBlank(json)) {
+			return null;
+		}
+		Map<String, Object> props = ParaObjectUtils.getJsonReader(Map.class).readValue(json);
+		P obj = ParaObjectUtils.setAnnotatedFields(props);
+		ParaObjectUtils.markCleanLazily(obj, json);
+		return obj;
+	}
+
+	private <P extends ParaObject> P fromKeyColumns(ResultSet rs, List<String> fields) throws SQLException {
+		Map<String, Object> props = new HashMap<String, Object>(fields.size() + 2);
+		props.put(Config._ID, rs.getString(COL_ID));
+		props.put(Config._TYPE, rs.getString(COL_TYPE));
+		for (String field : fields) {
+			props.put(field, rs.getObject(KEY_COLUMNS.get(field)));
+		}
+		P obj = ParaObjectUtils.setAnnotatedFields(props);
+		ParaObjectUtils.markCleanLazily(obj, props);
+		return obj;
+	}
+
+	private <P extends ParaObject> void markClean(List<P> objects) {
+		for (P object : objects) {
+			ParaObjectUtils.markClean(object);
+		}
+	}
+
+	private void rollback(Connection conn) {
+		if (conn != null) {
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				logger.error(null, e);
+			}
+		}
+	}
+
+	//////////////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(P so) {
+		return create(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key) {
+		return read(Config.APP_NAME_NS, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(P so) {
+		update(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(P so) {
+		delete(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(List<P> objects) {
+		createAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(Pager pager) {
+		return readPage(Config.APP_NAME_NS, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(List<P> objects) {
+		updateAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(List<P> objects) {
+		deleteAll(Config.APP_NAME_NS, objects);
+	}
+
+}
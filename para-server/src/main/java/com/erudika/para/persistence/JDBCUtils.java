@@ -0,0 +1,273 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.Para;
+import com.erudika.para.utils.Config;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper utilities for connecting to a relational database through JDBC.
+ * Each app is stored in its own table. Connections are pooled.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class JDBCUtils {
+
+	private static final Logger logger = LoggerFactory.getLogger(JDBCUtils.class);
+	private static final Set<String> KNOWN_TABLES = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private static HikariDataSource dataSource;
+
+	/**
+	 * The name of the primary key column.
+	 */
+	public static final String COL_ID = "id";
+	/**
+	 * The name of the type column.
+	 */
+	public static final String COL_TYPE = "type";
+	/**
+	 * The name of the creatorid column.
+	 */
+	public static final String COL_CREATORID = "creatorid";
+	/**
+	 * The name of the parentid column.
+	 */
+	public static final String COL_PARENTID = "parentid";
+	/**
+	 * The name of the creation timestamp column.
+	 */
+	public static final String COL_TIMESTAMP = "created";
+	/**
+	 * The name of the last modification timestamp column.
+	 */
+	public static final String COL_UPDATED = "updated";
+	/**
+	 * The name of the column containing all stored fields as JSON.
+	 */
+	public static final String COL_JSON = "json";
+
+	private JDBCUtils() { }
+
+	/**
+	 * Returns a pooled data source for the configured database.
+	 * @return a data source
+	 */
+	public static synchronized DataSource getDataSource() {
+		if (dataSource != null) {
+			return dataSource;
+		}
+		HikariConfig conf = new HikariConfig();
+		conf.setPoolName(Config.PARA + "-jdbc");
+		conf.setJdbcUrl(Config.getConfigParam("sql.url", ""));
+		conf.setUsername(Config.getConfigParam("sql.user", ""));
+		conf.setPassword(Config.getConfigParam("sql.password", ""));
+		conf.setMaximumPoolSize(Config.getConfigInt("sql.pool_size", 10));
+		String driver = Config.getConfigParam("sql.driver", "");
+		if (!StringUtils.isBlank(driver)) {
+			conf.setDriverClassName(driver);
+		}
+		dataSource = new HikariDataSource(conf);
+
+		Para.addDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				shutdownClient();
+			}
+		});
+
+		return dataSource;
+	}
+
+	/**
+	 * Closes all pooled connections.
+	 * <b>There's no need to call this explicitly!</b>
+	 */
+	protected static synchronized void shutdownClient() {
+		if (dataSource != null) {
+			dataSource.close();
+			dataSource = null;
+		}
+		KNOWN_TABLES.clear();
+	}
+
+	/**
+	 * Returns a new connection from the pool.
+	 * @return a connection
+	 * @throws SQLException if the database is unavailable
+	 */
+	public static Connection getConnection() throws SQLException {
+		return getDataSource().getConnection();
+	}
+
+	/**
+	 * Checks if the table for an app exists in the database.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return true if the table exists
+	 */
+	public static boolean existsTable(String appid) {
+		if (StringUtils.isBlank(appid)) {
+			return false;
+		}
+		Connection conn = null;
+		ResultSet rs = null;
+		try {
+			conn = getConnection();
+			String table = getTableNameForAppid(appid);
+			rs = conn.getMetaData().getTables(null, null, null, new String[]{"TABLE"});
+			while (rs.next()) {
+				if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+					return true;
+				}
+			}
+		} catch (Exception e) {
+			logger.error(null, e);
+		} finally {
+			close(rs, null, conn);
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the table for an app, if it doesn't exist.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return true if created
+	 */
+	public static boolean createTable(String appid) {
+		if (StringUtils.isBlank(appid) || StringUtils.containsWhitespace(appid)) {
+			return false;
+		}
+		String table = getTableNameForAppid(appid);
+		String textType = Config.getConfigParam("sql.text_type", "TEXT");
+		Connection conn = null;
+		Statement st = null;
+		try {
+			conn = getConnection();
+			st = conn.createStatement();
+			st.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+					+ COL_ID + " VARCHAR(255) NOT NULL PRIMARY KEY, "
+					+ COL_TYPE + " VARCHAR(255), "
+					+ COL_CREATORID + " VARCHAR(255), "
+					+ COL_PARENTID + " VARCHAR(255), "
+					+ COL_TIMESTAMP + " BIGINT, "
+					+ COL_UPDATED + " BIGINT, "
+					+ COL_JSON + " " + textType + ")");
+			if (Config.getConfigBoolean("sql.create_indexes", true)) {
+				// secondary indexes for DAO.readByField(), ordered by timestamp
+				for (String col : new String[]{COL_TYPE, COL_CREATORID, COL_PARENTID}) {
+					st.execute("CREATE INDEX IF NOT EXISTS " + table + "_" + col + "_idx ON " + table +
+							" (" + col + ", " + COL_TIMESTAMP + ", " + COL_ID + ")");
+				}
+			}
+			KNOWN_TABLES.add(table);
+		} catch (Exception e) {
+			logger.error(null, e);
+			return false;
+		} finally {
+			close(null, st, conn);
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the table for an app.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return true if deleted
+	 */
+	public static boolean deleteTable(String appid) {
+		if (StringUtils.isBlank(appid) || !existsTable(appid)) {
+			return false;
+		}
+		String table = getTableNameForAppid(appid);
+		Connection conn = null;
+		Statement st = null;
+		try {
+			conn = getConnection();
+			st = conn.createStatement();
+			st.execute("DROP TABLE " + table);
+			KNOWN_TABLES.remove(table);
+		} catch (Exception e) {
+			logger.error(null, e);
+			return false;
+		} finally {
+			close(null, st, conn);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the table name for a given app id, creating the table on first use.
+	 * @param appid app id
+	 * @return the table name
+	 */
+	static String getTableFor(String appid) {
+		String table = getTableNameForAppid(appid);
+		if (table != null && !KNOWN_TABLES.contains(table)) {
+			createTable(appid);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the table name for a given app id. Table names are usually in the form 'prefix_appid'.
+	 * Characters which are not allowed in unquoted SQL identifiers are replaced with underscores.
+	 * @param appIdentifier app id
+	 * @return the table name
+	 */
+	public static String getTableNameForAppid(String appIdentifier) {
+		if (StringUtils.isBlank(appIdentifier)) {
+			return null;
+		}
+		String table = (appIdentifier.equals(Config.APP_NAME_NS) || appIdentifier.startsWith(Config.PARA.concat("-"))) ?
+				appIdentifier : Config.PARA + "-" + appIdentifier;
+		return table.replaceAll("[^A-Za-z0-9_]", "_");
+	}
+
+	/**
+	 * Quietly closes JDBC resources.
+	 * @param rs a result set (optional)
+	 * @param st a statement (optional)
+	 * @param conn a connection (optional)
+	 */
+	static void close(ResultSet rs, Statement st, Connection conn) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+			if (st != null) {
+				st.close();
+			}
+			if (conn != null) {
+				conn.close();
+			}
+		} catch (SQLException e) {
+			logger.error(null, e);
+		}
+	}
+
+}
@@ -0,0 +1,779 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.Para;
+import com.erudika.para.annotations.Locked;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.WriteContext;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+import javax.inject.Singleton;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of the {@link DAO} interface which keeps objects in append-only log files on disk.
+ * Each app gets its own folder of memory-mapped segment files. Writes are appended to the active segment,
+ * an in-memory index maps each key to its latest record and reads are served straight from the mapped buffers.
+ * The index is rebuilt from the logs on startup and segments with mostly stale records are compacted
+ * in the background. Intended for single-node (embedded) deployments.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+@Singleton
+public class MappedFileDAO implements DAO {
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedFileDAO.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String SEGMENT_EXT = ".log";
+	private static final int HEADER_SIZE = 8; // body length + checksum
+	private static final byte OP_PUT = 1;
+	private static final byte OP_DELETE = 2;
+
+	private final Map<String, AppLog> logs = new ConcurrentHashMap<String, AppLog>();
+	private final String folder;
+	private final int segmentSize;
+	private final double compactionRatio;
+	private final boolean syncWrites;
+
+	/**
+	 * No-args constructor
+	 */
+	public MappedFileDAO() {
+		this(Config.getConfigParam("filedb.dir", "data"));
+	}
+
+	/**
+	 * Default constructor.
+	 * @param folder the folder where segment files are kept
+	 */
+	public MappedFileDAO(String folder) {
+		this(folder, Config.getConfigInt("filedb.segment_size_mb", 64) * 1024 * 1024);
+	}
+
+	/**
+	 * Constructs a new instance with a given segment size.
+	 * @param folder the folder where segment files are kept
+	 * @param segmentSize the size of each segment file in bytes
+	 */
+	public MappedFileDAO(String folder, int segmentSize) {
+		this.folder = folder;
+		this.segmentSize = segmentSize;
+		this.compactionRatio = NumberUtils.toDouble(Config.getConfigParam("filedb.compaction_ratio", "0.5"), 0.5);
+		this.syncWrites = Config.getConfigBoolean("filedb.sync_writes", false);
+		Para.addDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				close();
+			}
+		});
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		if (so == null || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		if (StringUtils.isBlank(so.getId())) {
+			so.setId(Utils.getNewId());
+		}
+		if (so.getTimestamp() == null) {
+			so.setTimestamp(Utils.timestamp());
+		}
+		so.setAppid(appid);
+		if (!putObject(appid, so)) {
+			return null;
+		}
+		logger.debug("DAO.create() {}", so.getId());
+		return so.getId();
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key) {
+		return readObject(appid, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		// all reads are strongly consistent
+		return readObject(appid, key);
+	}
+
+	private <P extends ParaObject> P readObject(String appid, String key) {
+		if (StringUtils.isBlank(key) || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		P so = fromBytes(getLog(appid).get(key));
+		logger.debug("DAO.read() {} -> {}", key, so == null ? null : so.getType());
+		return so;
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (so != null && so.getId() != null && !StringUtils.isBlank(appid)) {
+			so.setUpdated(Utils.timestamp());
+			AppLog log = getLog(appid);
+			// hold the log's lock so that concurrent increments aren't lost
+			synchronized (log) {
+				ParaObject existing = read(appid, so.getId());
+				if (existing == null) {
+					putObject(appid, so);
+				} else {
+					putObject(appid, ParaObjectUtils.setAnnotatedFields(existing,
+							ParaObjectUtils.getChangedFields(so, Locked.class), Locked.class));
+				}
+			}
+			logger.debug("DAO.update() {}", so.getId());
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		if (so != null && so.getId() != null && !StringUtils.isBlank(appid)) {
+			try {
+				AppLog log = getLog(appid);
+				synchronized (log) {
+					log.delete(so.getId());
+					log.fields.remove(so.getId());
+				}
+			} catch (IOException e) {
+				logger.error(null, e);
+			}
+			logger.debug("DAO.delete() {}", so.getId());
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (so == null || StringUtils.isBlank(so.getId()) || StringUtils.isBlank(appid) ||
+				(expected != null && !so.getId().equals(expected.getId()))) {
+			return false;
+		}
+		if (so.getTimestamp() == null) {
+			so.setTimestamp(Utils.timestamp());
+		}
+		so.setAppid(appid);
+		boolean done;
+		synchronized (getLog(appid)) {
+			done = ParaObjectUtils.sameFields(readObject(appid, so.getId()), expected) && putObject(appid, so);
+		}
+		logger.debug("DAO.compareAndSet() {} -> {}", so.getId(), done);
+		return done;
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (StringUtils.isBlank(id) || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		AppLog log = getLog(appid);
+		Long value;
+		synchronized (log) {
+			ParaObject so = fromBytes(log.get(id));
+			value = ParaObjectUtils.incrementField(so, field, delta);
+			if (value != null) {
+				so.setUpdated(Utils.timestamp());
+				if (!putObject(appid, so)) {
+					value = null;
+				}
+			}
+		}
+		logger.debug("DAO.increment() {} {} -> {}", id, field, value);
+		return value;
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		if (StringUtils.isBlank(appid) || objects == null) {
+			return;
+		}
+		for (P p : objects) {
+			create(appid, p);
+		}
+		logger.debug("DAO.createAll() {}", objects.size());
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return readAllObjects(appid, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAllObjects(appid, keys, getAllColumns);
+	}
+
+	private <P extends ParaObject> Map<String, P> readAllObjects(String appid, List<String> keys, boolean getAllColumns) {
+		if (keys == null || StringUtils.isBlank(appid)) {
+			return new LinkedHashMap<String, P>();
+		}
+		Map<String, P> results = new LinkedHashMap<String, P>(keys.size());
+		AppLog log = getLog(appid);
+		for (String key : keys) {
+			P so = fromBytes(log.get(key));
+			if (so != null) {
+				results.put(key, so);
+			}
+		}
+		logger.debug("DAO.readAll() {}", results.size());
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		if (keys == null || StringUtils.isBlank(appid)) {
+			return new LinkedHashMap<String, P>();
+		}
+		Map<String, P> results = new LinkedHashMap<String, P>(keys.size());
+		AppLog log = getLog(appid);
+		for (String key : keys) {
+			P so = fromBytes(log.get(key));
+			if (so != null) {
+				results.put(key, ParaObjectUtils.project(so, fields));
+			}
+		}
+		logger.debug("DAO.readAll() {} {}", results.size(), fields);
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(String appid, Pager pager) {
+		List<P> results = new LinkedList<P>();
+		if (StringUtils.isBlank(appid)) {
+			return results;
+		}
+		if (pager == null) {
+			pager = new Pager();
+		}
+		AppLog log = getLog(appid);
+		NavigableMap<String, Location> page = StringUtils.isBlank(pager.getLastKey()) ?
+				log.index : log.index.tailMap(pager.getLastKey(), false);
+		String lastKey = null;
+		for (String key : page.keySet()) {
+			if (results.size() >= pager.getLimit()) {
+				break;
+			}
+			P so = fromBytes(log.get(key));
+			if (so != null) {
+				results.add(so);
+				lastKey = key;
+			}
+		}
+		pager.setLastKey(results.size() < pager.getLimit() ? null : lastKey);
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		return new PagingIterator<P>(this, appid, type, Config.MAX_ITEMS_PER_PAGE);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		if (!FieldIndex.isIndexed(field)) {
+			return null;
+		}
+		List<P> results = new LinkedList<P>();
+		if (StringUtils.isBlank(appid) || StringUtils.isBlank(value)) {
+			return results;
+		}
+		AppLog log = getLog(appid);
+		for (String id : log.fields.find(field, value, (pager == null) ? new Pager() : pager)) {
+			P so = fromBytes(log.get(id));
+			if (so != null) {
+				results.add(so);
+			}
+		}
+		logger.debug("DAO.readByField() {}={} -> {}", field, value, results.size());
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		if (!StringUtils.isBlank(appid) && objects != null) {
+			for (P obj : objects) {
+				if (obj != null) {
+					update(appid, obj);
+				}
+			}
+			logger.debug("DAO.updateAll() {}", objects.size());
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		if (!StringUtils.isBlank(appid) && objects != null) {
+			for (P obj : objects) {
+				if (obj != null) {
+					delete(appid, obj);
+				}
+			}
+			logger.debug("DAO.deleteAll() {}", objects.size());
+		}
+	}
+
+	/**
+	 * Rewrites the live records from all sealed segments of an app and deletes those segments.
+	 * This is normally triggered automatically when the ratio of stale records grows too large.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 */
+	public void compact(String appid) {
+		if (!StringUtils.isBlank(appid)) {
+			try {
+				getLog(appid).compact();
+			} catch (IOException e) {
+				logger.error(null, e);
+			}
+		}
+	}
+
+	/**
+	 * Flushes all segments to disk and releases file handles.
+	 * <b>There's no need to call this explicitly!</b>
+	 */
+	public void close() {
+		synchronized (logs) {
+			for (AppLog log : logs.values()) {
+				log.close();
+			}
+			logs.clear();
+		}
+	}
+
+	/////////////////////////////////////////////
+	//				MISC FUNCTIONS
+	/////////////////////////////////////////////
+
+	private <P extends ParaObject> boolean putObject(String appid, P so) {
+		try {
+			Map<String, Object> fields = WriteContext.capture(so, null, true);
+			AppLog log = getLog(appid);
+			synchronized (log) {
+				log.put(so.getId(), ParaObjectUtils.getJsonWriterNoIdent().writeValueAsBytes(fields));
+				log.fields.add(so);
+			}
+			return true;
+		} catch (IOException e) {
+			logger.error(null, e);
+		}
+		return false;
+	}
+
+	private <P extends ParaObject> P fromBytes(byte[] value) {
+		if (value == null || value.length == 0) {
+			return null;
+		}
+		try {
+			Map<String, Object> fields = ParaObjectUtils.getJsonReader(Map.class).readValue(value);
+			P obj = ParaObjectUtils.setAnnotatedFields(fields);
+			ParaObjectUtils.markCleanLazily(obj, value);
+			return obj;
+		} catch (IOException e) {
+			logger.error(null, e);
+		}
+		return null;
+	}
+
+	private AppLog getLog(String appid) {
+		AppLog log = logs.get(appid);
+		if (log == null) {
+			synchronized (logs) {
+				log = logs.get(appid);
+				if (log == null) {
+					log = new AppLog(new File(folder, appid));
+					logs.put(appid, log);
+				}
+			}
+		}
+		return log;
+	}
+
+	/**
+	 * A memory-mapped segment file.
+	 */
+	private static final class Segment {
+		private final int id;
+		private final File file;
+		private final RandomAccessFile raf;
+		private final MappedByteBuffer buffer;
+		private final int capacity;
+		private int position;
+
+		Segment(int id, File file, int capacity) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.capacity = capacity;
+			this.raf = new RandomAccessFile(file, "rw");
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+
+		byte[] read(int offset, int length) {
+			ByteBuffer buf = buffer.duplicate();
+			buf.position(offset);
+			byte[] bytes = new byte[length];
+			buf.get(bytes);
+			return bytes;
+		}
+
+		void close() {
+			try {
+				buffer.force();
+				raf.close();
+			} catch (IOException e) {
+				logger.error(null, e);
+			}
+		}
+	}
+
+	/**
+	 * Points to the value of the latest record for a key.
+	 */
+	private static final class Location {
+		private final Segment segment;
+		private final int offset;
+		private final int length;
+		private final int recordSize;
+
+		Location(Segment segment, int offset, int length, int recordSize) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.recordSize = recordSize;
+		}
+	}
+
+	/**
+	 * The log of a single app - a sequence of segments and an index of keys pointing into them.
+	 * Records have the form: [body length][crc32 of body][op][key length][key][value].
+	 */
+	private final class AppLog {
+		private final File dir;
+		private final ConcurrentNavigableMap<String, Location> index = new ConcurrentSkipListMap<String, Location>();
+		private final FieldIndex fields = new FieldIndex();
+		private final NavigableMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+		private Segment active;
+		private long liveBytes;
+		private long totalBytes;
+		private boolean compacting;
+
+		AppLog(File dir) {
+			this.dir = dir;
+			try {
+				if (!dir.exists() && !dir.mkdirs()) {
+					throw new IOException("Failed to create folder " + dir.getAbsolutePath());
+				}
+				recover();
+				// the secondary index isn't persisted - it's rebuilt from the live records
+				for (String key : index.keySet()) {
+					fields.add(fromBytes(get(key)));
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		byte[] get(String key) {
+			Location loc = (key == null) ? null : index.get(key);
+			return (loc == null) ? null : loc.segment.read(loc.offset, loc.length);
+		}
+
+		synchronized void put(String key, byte[] value) throws IOException {
+			Location loc = append(OP_PUT, key, value);
+			Location old = index.put(key, loc);
+			if (old != null) {
+				liveBytes -= old.recordSize;
+			}
+			liveBytes += loc.recordSize;
+		}
+
+		synchronized void delete(String key) throws IOException {
+			if (index.containsKey(key)) {
+				append(OP_DELETE, key, new byte[0]);
+				liveBytes -= index.remove(key).recordSize;
+			}
+		}
+
+		private Location append(byte op, String key, byte[] value) throws IOException {
+			byte[] k = key.getBytes(UTF8);
+			int bodySize = 1 + 4 + k.length + value.length;
+			int recordSize = HEADER_SIZE + bodySize;
+			if (active.position + recordSize > active.capacity) {
+				roll(recordSize);
+			}
+			ByteBuffer body = ByteBuffer.allocate(bodySize);
+			body.put(op).putInt(k.length).put(k).put(value);
+			CRC32 crc = new CRC32();
+			crc.update(body.array());
+
+			int start = active.position;
+			ByteBuffer buf = active.buffer.duplicate();
+			buf.position(start + 4);
+			buf.putInt((int) crc.getValue());
+			buf.put(body.array());
+			// the length is written last so that a torn record is never mistaken for a complete one
+			buf.putInt(start, bodySize);
+			if (syncWrites) {
+				active.buffer.force();
+			}
+			active.position += recordSize;
+			totalBytes += recordSize;
+			return new Location(active, start + HEADER_SIZE + 5 + k.length, value.length, recordSize);
+		}
+
+		private void roll(int minSize) throws IOException {
+			int id = (active == null) ? 0 : active.id + 1;
+			active = new Segment(id, new File(dir, String.format("%010d", id) + SEGMENT_EXT),
+					Math.max(segmentSize, minSize));
+			segments.put(id, active);
+			if (!compacting && segments.size() > 2 && totalBytes > 0 &&
+					(double) (totalBytes - liveBytes) / totalBytes >= compactionRatio) {
+				compacting = true;
+				Para.asyncExecute(new Runnable() {
+					public void run() {
+						try {
+							compact();
+						} catch (IOException e) {
+							logger.error(null, e);
+						}
+					}
+				});
+			}
+		}
+
+		private void recover() throws IOException {
+			File[] files = dir.listFiles(new FileFilter() {
+				public boolean accept(File f) {
+					return f.isFile() && f.getName().endsWith(SEGMENT_EXT);
+				}
+			});
+			if (files != null) {
+				Arrays.sort(files, new Comparator<File>() {
+					public int compare(File f1, File f2) {
+						return f1.getName().compareTo(f2.getName());
+					}
+				});
+				for (File file : files) {
+					int id = NumberUtils.toInt(StringUtils.removeEnd(file.getName(), SEGMENT_EXT), -1);
+					if (id >= 0 && file.length() > HEADER_SIZE) {
+						Segment segment = new Segment(id, file, (int) file.length());
+						replay(segment);
+						segments.put(id, segment);
+						active = segment;
+					}
+				}
+			}
+			if (active == null) {
+				roll(0);
+			}
+			logger.debug("Recovered {} keys from {} segments in {}", index.size(), segments.size(), dir);
+		}
+
+		private void replay(Segment segment) {
+			ByteBuffer buf = segment.buffer.duplicate();
+			int pos = 0;
+			while (pos + HEADER_SIZE <= segment.capacity) {
+				int bodySize = buf.getInt(pos);
+				if (bodySize <= 5 || pos + HEADER_SIZE + bodySize > segment.capacity) {
+					break;
+				}
+				byte[] body = segment.read(pos + HEADER_SIZE, bodySize);
+				CRC32 crc = new CRC32();
+				crc.update(body);
+				if ((int) crc.getValue() != buf.getInt(pos + 4)) {
+					logger.warn("Corrupted record found in segment {} at offset {}. Discarding the rest of it.",
+							segment.file, pos);
+					break;
+				}
+				ByteBuffer b = ByteBuffer.wrap(body);
+				byte op = b.get();
+				int keySize = b.getInt();
+				String key = new String(body, 5, keySize, UTF8);
+				int recordSize = HEADER_SIZE + bodySize;
+				Location old;
+				if (op == OP_PUT) {
+					Location loc = new Location(segment, pos + HEADER_SIZE + 5 + keySize,
+							bodySize - 5 - keySize, recordSize);
+					old = index.put(key, loc);
+					liveBytes += recordSize;
+				} else {
+					old = index.remove(key);
+				}
+				if (old != null) {
+					liveBytes -= old.recordSize;
+				}
+				totalBytes += recordSize;
+				pos += recordSize;
+			}
+			segment.position = pos;
+		}
+
+		void compact() throws IOException {
+			Set<Segment> sealed;
+			synchronized (this) {
+				compacting = true;
+				sealed = new LinkedHashSet<Segment>(segments.headMap(active.id, false).values());
+			}
+			try {
+				for (Map.Entry<String, Location> entry : index.entrySet()) {
+					Location loc = entry.getValue();
+					if (sealed.contains(loc.segment)) {
+						synchronized (this) {
+							// skip keys which were changed or deleted in the meantime
+							if (index.get(entry.getKey()) == loc) {
+								put(entry.getKey(), loc.segment.read(loc.offset, loc.length));
+							}
+						}
+					}
+				}
+				// segments are deleted in order so that tombstones always outlive the records they shadow
+				for (Segment segment : sealed) {
+					synchronized (this) {
+						segments.remove(segment.id);
+						totalBytes -= segment.position;
+					}
+					segment.close();
+					if (!segment.file.delete()) {
+						logger.warn("Failed to delete segment {}", segment.file);
+					}
+				}
+				logger.debug("Compacted {} segments in {}", sealed.size(), dir);
+			} finally {
+				synchronized (this) {
+					compacting = false;
+				}
+			}
+		}
+
+		synchronized void close() {
+			for (Segment segment : segments.values()) {
+				segment.close();
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(P so) {
+		return create(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key) {
+		return read(Config.APP_NAME_NS, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(P so) {
+		update(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(P so) {
+		delete(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(List<P> objects) {
+		createAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(Pager pager) {
+		return readPage(Config.APP_NAME_NS, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(List<P> objects) {
+		updateAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(List<P> objects) {
+		deleteAll(Config.APP_NAME_NS, objects);
+	}
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.annotations.Locked;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Thread-safe in-memory storage for the {@link MockDAO} and the {@link IndexBasedDAO}.
+ * Each app has its own map of objects, ordered by id, which is used for paging.
+ * Stored objects are private copies and are never modified in place - writes replace them
+ * with new copies, so reads don't need locking. Read-modify-write operations are serialized
+ * by a set of lock stripes, chosen by object id. A {@link FieldIndex} per app is kept up to date
+ * with every write, for lookups by parentid, creatorid and type.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+final class MemoryStore {
+
+	private static final int STRIPES = 64;
+
+	private final ConcurrentMap<String, ConcurrentNavigableMap<String, ParaObject>> maps =
+			new ConcurrentHashMap<String, ConcurrentNavigableMap<String, ParaObject>>();
+	private final ConcurrentMap<String, FieldIndex> indexes = new ConcurrentHashMap<String, FieldIndex>();
+	private final Object[] locks = new Object[STRIPES];
+
+	MemoryStore() {
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Stores a copy of an object, replacing any previous version.
+	 * @param appid the app id
+	 * @param so the object
+	 */
+	void put(String appid, ParaObject so) {
+		synchronized (lock(so.getId())) {
+			ParaObject stored = copy(so);
+			getMap(appid).put(so.getId(), stored);
+			getIndex(appid).add(stored);
+		}
+		ParaObjectUtils.markClean(so);
+	}
+
+	/**
+	 * @param <P> the type of object
+	 * @param appid the app id
+	 * @param id the object id
+	 * @return a copy of the stored object or null
+	 */
+	<P extends ParaObject> P get(String appid, String id) {
+		ParaObject stored = getMap(appid).get(id);
+		P so = copy(stored);
+		// stored objects are replaced, never modified, so they can serve as the snapshot
+		ParaObjectUtils.markCleanLazily(so, stored);
+		return so;
+	}
+
+	/**
+	 * @param appid the app id
+	 * @param id the object id
+	 * @return true if the object exists
+	 */
+	boolean contains(String appid, String id) {
+		return getMap(appid).containsKey(id);
+	}
+
+	/**
+	 * Merges the changed fields of an object into its stored version.
+	 * @param appid the app id
+	 * @param so the object
+	 * @return false if the object doesn't exist
+	 */
+	boolean merge(String appid, ParaObject so) {
+		Map<String, Object> changes = ParaObjectUtils.getChangedFields(so, Locked.class);
+		synchronized (lock(so.getId())) {
+			ParaObject stored = copy(getMap(appid).get(so.getId()));
+			if (stored == null) {
+				return false;
+			}
+			getMap(appid).put(so.getId(), ParaObjectUtils.setAnnotatedFields(stored, changes, Locked.class));
+			getIndex(appid).add(stored);
+		}
+		ParaObjectUtils.markClean(so);
+		return true;
+	}
+
+	/**
+	 * Stores a copy of an object, only if the stored version has the same fields as the expected one.
+	 * @param appid the app id
+	 * @param expected the expected stored version, null if the object must not exist
+	 * @param so the new version
+	 * @return true if the object was stored
+	 */
+	boolean replace(String appid, ParaObject expected, ParaObject so) {
+		synchronized (lock(so.getId())) {
+			if (!ParaObjectUtils.sameFields(getMap(appid).get(so.getId()), expected)) {
+				return false;
+			}
+			put(appid, so);
+		}
+		return true;
+	}
+
+	/**
+	 * Atomically increments a numeric field of a stored object.
+	 * @param appid the app id
+	 * @param id the object id
+	 * @param field the field name
+	 * @param delta the amount to add
+	 * @return the new value or null if the object or field don't exist
+	 */
+	Long increment(String appid, String id, String field, long delta) {
+		synchronized (lock(id)) {
+			ParaObject stored = copy(getMap(appid).get(id));
+			if (stored == null) {
+				return null;
+			}
+			Long value = ParaObjectUtils.incrementField(stored, field, delta);
+			if (value != null) {
+				stored.setUpdated(Utils.timestamp());
+				getMap(appid).put(id, stored);
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * @param appid the app id
+	 * @param id the object id
+	 */
+	void remove(String appid, String id) {
+		synchronized (lock(id)) {
+			getMap(appid).remove(id);
+			getIndex(appid).remove(id);
+		}
+	}
+
+	/**
+	 * Reads a page of objects, ordered by id, starting after {@link Pager#getLastKey()}.
+	 * The last key is set to null when there are no more pages.
+	 * @param <P> the type of object
+	 * @param appid the app id
+	 * @param pager a pager
+	 * @return a list of copies
+	 */
+	<P extends ParaObject> List<P> readPage(String appid, Pager pager) {
+		List<P> results = new LinkedList<P>();
+		NavigableMap<String, ParaObject> map = getMap(appid);
+		NavigableMap<String, ParaObject> page = StringUtils.isBlank(pager.getLastKey()) ?
+				map : map.tailMap(pager.getLastKey(), false);
+		String lastKey = null;
+		for (Map.Entry<String, ParaObject> entry : page.entrySet()) {
+			if (results.size() >= pager.getLimit()) {
+				break;
+			}
+			P so = copy(entry.getValue());
+			ParaObjectUtils.markCleanLazily(so, entry.getValue());
+			results.add(so);
+			lastKey = entry.getKey();
+		}
+		pager.setLastKey(results.size() < pager.getLimit() ? null : lastKey);
+		return results;
+	}
+
+	/**
+	 * Reads a page of objects by the exact value of parentid, creatorid or type, ordered by timestamp.
+	 * @param <P> the type of object
+	 * @param appid the app id
+	 * @param field the field name
+	 * @param value the field value
+	 * @param pager a pager
+	 * @return a list of copies or null if the field isn't indexed
+	 */
+	<P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		if (!FieldIndex.isIndexed(field)) {
+			return null;
+		}
+		List<P> results = new LinkedList<P>();
+		for (String id : getIndex(appid).find(field, value, pager)) {
+			P so = get(appid, id);
+			if (so != null) {
+				results.add(so);
+			}
+		}
+		return results;
+	}
+
+	private FieldIndex getIndex(String appid) {
+		FieldIndex index = indexes.get(appid);
+		if (index == null) {
+			index = new FieldIndex();
+			FieldIndex existing = indexes.putIfAbsent(appid, index);
+			if (existing != null) {
+				index = existing;
+			}
+		}
+		return index;
+	}
+
+	private ConcurrentNavigableMap<String, ParaObject> getMap(String appid) {
+		ConcurrentNavigableMap<String, ParaObject> map = maps.get(appid);
+		if (map == null) {
+			map = new ConcurrentSkipListMap<String, ParaObject>();
+			ConcurrentNavigableMap<String, ParaObject> existing = maps.putIfAbsent(appid, map);
+			if (existing != null) {
+				map = existing;
+			}
+		}
+		return map;
+	}
+
+	private Object lock(String id) {
+		return locks[(id == null ? 0 : id.hashCode() & Integer.MAX_VALUE) % STRIPES];
+	}
+
+	/**
+	 * Copies all stored fields of an object, nested objects included.
+	 */
+	private <P extends ParaObject> P copy(ParaObject so) {
+		if (so == null) {
+			return null;
+		}
+		return ParaObjectUtils.setAnnotatedFields(ParaObjectUtils.<P>toObject(so.getType()),
+				ParaObjectUtils.getAnnotatedFields(so), null);
+	}
+}
@@ -17,14 +17,13 @@
  */
 package com.erudika.para.persistence;
 
-import com.erudika.para.annotations.Locked;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.ParaObjectUtils;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Pager;
 import com.erudika.para.utils.Utils;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,18 +34,19 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Fake DAO for in-memory persistence.
- * Used for testing and development without a database.
+ * Used for testing and development without a database. It is thread-safe and
+ * objects read from it are copies, so changes aren't visible until they are written back.
  * @author Alex Bogdanovski [alex@erudika.com]
  */
 @Singleton
 public class MockDAO implements DAO {
 
 	private static final Logger logger = LoggerFactory.getLogger(MockDAO.class);
-	private Map<String, Map<String, ParaObject>> maps = new HashMap<String, Map<String, ParaObject>>();
+	private final MemoryStore store = new MemoryStore();
 
 	@Override
 	public <P extends ParaObject> String create(String appid, P so) {
-		if (so == null) {
+		if (so == null || StringUtils.isBlank(appid)) {
 			return null;
 		}
 		if (StringUtils.isBlank(so.getId())) {
@@ -56,42 +56,73 @@ public class MockDAO implements DAO {
 			so.setTimestamp(Utils.timestamp());
 		}
 		so.setAppid(appid);
-		getMap(appid).put(so.getId(), ParaObjectUtils.setAnnotatedFields(ParaObjectUtils.toObject(so.getType()),
-				ParaObjectUtils.getAnnotatedFields(so), null));
+		store.put(appid, so);
 		logger.debug("DAO.create() {}", so.getId());
 		return so.getId();
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public <P extends ParaObject> P read(String appid, String key) {
+		return readObject(appid, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		// all reads are strongly consistent
+		return readObject(appid, key);
+	}
+
+	private <P extends ParaObject> P readObject(String appid, String key) {
 		if (key == null || StringUtils.isBlank(appid)) {
 			return null;
 		}
-		P so = (P) getMap(appid).get(key);
+		P so = store.get(appid, key);
 		logger.debug("DAO.read() {} -> {}", key, so);
 		return so;
 	}
 
 	@Override
 	public <P extends ParaObject> void update(String appid, P so) {
-		if (so != null && !StringUtils.isBlank(appid)) {
+		if (so != null && so.getId() != null && !StringUtils.isBlank(appid)) {
 			so.setUpdated(Utils.timestamp());
-			ParaObject soUpdated = getMap(appid).get(so.getId());
-			ParaObjectUtils.setAnnotatedFields(soUpdated, ParaObjectUtils.getAnnotatedFields(so), Locked.class);
-			getMap(appid).put(so.getId(), soUpdated);
+			store.merge(appid, so);
 			logger.debug("DAO.update() {}", so.getId());
 		}
 	}
 
 	@Override
 	public <P extends ParaObject> void delete(String appid, P so) {
-		if (so != null && !StringUtils.isBlank(appid)) {
-			getMap(appid).remove(so.getId());
+		if (so != null && so.getId() != null && !StringUtils.isBlank(appid)) {
+			store.remove(appid, so.getId());
 			logger.debug("DAO.delete() {}", so.getId());
 		}
 	}
 
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (so == null || StringUtils.isBlank(so.getId()) || StringUtils.isBlank(appid) ||
+				(expected != null && !so.getId().equals(expected.getId()))) {
+			return false;
+		}
+		if (so.getTimestamp() == null) {
+			so.setTimestamp(Utils.timestamp());
+		}
+		so.setAppid(appid);
+		boolean done = store.replace(appid, expected, so);
+		logger.debug("DAO.compareAndSet() {} -> {}", so.getId(), done);
+		return done;
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (id == null || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		Long value = store.increment(appid, id, field, delta);
+		logger.debug("DAO.increment() {} {} -> {}", id, field, value);
+		return value;
+	}
+
 	@Override
 	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
 		if (StringUtils.isBlank(appid) || objects == null) {
@@ -104,24 +135,64 @@ public class MockDAO implements DAO {
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return readAllObjects(appid, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAllObjects(appid, keys, getAllColumns);
+	}
+
+	private <P extends ParaObject> Map<String, P> readAllObjects(String appid, List<String> keys, boolean getAllColumns) {
 		if (keys == null || StringUtils.isBlank(appid)) {
 			return Collections.emptyMap();
 		}
 		Map<String, P> results = new LinkedHashMap<String, P>(keys.size());
 		for (String key : keys) {
-			if (getMap(appid).containsKey(key)) {
-				results.put(key, (P) read(key));
+			P so = (key == null) ? null : store.<P>get(appid, key);
+			if (so != null) {
+				results.put(key, so);
 			}
 		}
 		logger.debug("DAO.readAll() {}", results.size());
 		return results;
 	}
 
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		Map<String, P> results = new LinkedHashMap<String, P>(this.<P>readAll(appid, keys, true));
+		for (Map.Entry<String, P> entry : results.entrySet()) {
+			entry.setValue(ParaObjectUtils.project(entry.getValue(), fields));
+		}
+		logger.debug("DAO.readAll() {} {}", results.size(), fields);
+		return results;
+	}
+
 	@Override
 	public <P extends ParaObject> List<P> readPage(String appid, Pager pager) {
-		return Collections.emptyList();
+		if (StringUtils.isBlank(appid)) {
+			return Collections.emptyList();
+		}
+		List<P> results = store.readPage(appid, (pager == null) ? new Pager() : pager);
+		logger.debug("DAO.readPage() {}", results.size());
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		return new PagingIterator<P>(this, appid, type, Config.MAX_ITEMS_PER_PAGE);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		if (StringUtils.isBlank(appid) || StringUtils.isBlank(value)) {
+			return Collections.emptyList();
+		}
+		List<P> results = store.readByField(appid, field, value, (pager == null) ? new Pager() : pager);
+		logger.debug("DAO.readByField() {}={} -> {}", field, value, results == null ? null : results.size());
+		return results;
 	}
 
 	@Override
@@ -140,7 +211,7 @@ public class MockDAO implements DAO {
 	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
 		if (!StringUtils.isBlank(appid) && objects != null) {
 			for (P obj : objects) {
-				if (obj != null && getMap(appid).containsKey(obj.getId())) {
+				if (obj != null) {
 					delete(appid, obj);
 				}
 			}
@@ -148,13 +219,6 @@ public class MockDAO implements DAO {
 		}
 	}
 
-	private Map<String, ParaObject> getMap(String appid) {
-		if (!maps.containsKey(appid)) {
-			maps.put(appid, new  HashMap<String, ParaObject>());
-		}
-		return maps.get(appid);
-	}
-
 	////////////////////////////////////////////////////////////////////
 
 	@Override
@@ -167,6 +231,11 @@ public class MockDAO implements DAO {
 		return read(Config.APP_NAME_NS, key);
 	}
 
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
 	@Override
 	public <P extends ParaObject> void update(P so) {
 		update(Config.APP_NAME_NS, so);
@@ -177,6 +246,16 @@ public class MockDAO implements DAO {
 		delete(Config.APP_NAME_NS, so);
 	}
 
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
 	@Override
 	public <P extends ParaObject> void createAll(List<P> objects) {
 		createAll(Config.APP_NAME_NS, objects);
@@ -187,11 +266,32 @@ public class MockDAO implements DAO {
 		return readAll(Config.APP_NAME_NS, keys, getAllColumns);
 	}
 
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
 	@Override
 	public <P extends ParaObject> List<P> readPage(Pager pager) {
 		return readPage(Config.APP_NAME_NS, pager);
 	}
 
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
 	@Override
 	public <P extends ParaObject> void updateAll(List<P> objects) {
 		updateAll(Config.APP_NAME_NS, objects);
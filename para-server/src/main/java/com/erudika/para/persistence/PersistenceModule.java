@@ -17,8 +17,11 @@
  */
 package com.erudika.para.persistence;
 
+import com.erudika.para.aop.DAOPipeline;
 import com.erudika.para.utils.Config;
 import com.google.inject.AbstractModule;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -28,27 +31,55 @@ import org.apache.commons.lang3.StringUtils;
 public class PersistenceModule extends AbstractModule {
 
 	protected void configure() {
+		Class<? extends DAO> daoClass = getDAOClass();
+		if (daoClass == null) {
+			return;
+		}
+		// decorators are chained: data store <- pipeline <- tiering <- write-behind buffer
+		bind(DAO.class).annotatedWith(Names.named(DAOPipeline.STORE)).to(daoClass).asEagerSingleton();
+		Key<? extends DAO> dao = Key.get(DAO.class, Names.named(DAOPipeline.PIPELINE));
+		if (!TieredDAO.getPolicies().isEmpty()) {
+			bind(DAO.class).annotatedWith(Names.named(TieredDAO.DELEGATE)).to(dao);
+			bind(TieredDAO.class).asEagerSingleton();
+			dao = Key.get(TieredDAO.class);
+		}
+		if (!WriteBehindDAO.getBufferedTypes().isEmpty()) {
+			bind(DAO.class).annotatedWith(Names.named(WriteBehindDAO.DELEGATE)).to(dao);
+			bind(WriteBehindDAO.class).asEagerSingleton();
+			dao = Key.get(WriteBehindDAO.class);
+		}
+		bind(DAO.class).to(dao);
+	}
+
+	private Class<? extends DAO> getDAOClass() {
 		String selectedDAO = Config.getConfigParam("database", "");
 		if (StringUtils.isBlank(selectedDAO)) {
 			if ("embedded".equals(Config.ENVIRONMENT)) {
-				bind(DAO.class).to(IndexBasedDAO.class).asEagerSingleton();
+				return IndexBasedDAO.class;
 			} else {
-				bind(DAO.class).to(AWSDynamoDAO.class).asEagerSingleton();
+				return AWSDynamoDAO.class;
 			}
 		} else {
 			if ("elasticsearch".equalsIgnoreCase(selectedDAO)) {
-				bind(DAO.class).to(IndexBasedDAO.class).asEagerSingleton();
+				return IndexBasedDAO.class;
 			} else if ("dynamodb".equalsIgnoreCase(selectedDAO)) {
-				bind(DAO.class).to(AWSDynamoDAO.class).asEagerSingleton();
+				return AWSDynamoDAO.class;
+			} else if ("sql".equalsIgnoreCase(selectedDAO)) {
+				return JDBCDAO.class;
+			} else if ("file".equalsIgnoreCase(selectedDAO)) {
+				return MappedFileDAO.class;
 			} else if ("cassandra".equalsIgnoreCase(selectedDAO)) {
 				// Cassandra connector plugin
+				return null;
 			} else if ("mongodb".equalsIgnoreCase(selectedDAO)) {
 				// MongoDB connector plugin
+				return null;
 			} else if ("postgre".equalsIgnoreCase(selectedDAO)) {
 				// MongoDB connector plugin
+				return null;
 			} else {
 				// in-memory DB
-				bind(DAO.class).to(MockDAO.class).asEagerSingleton();
+				return MockDAO.class;
 			}
 		}
 	}
@@ -0,0 +1,702 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.Para;
+import com.erudika.para.annotations.Locked;
+import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.storage.FileStore;
+import com.erudika.para.storage.StreamingFileStore;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A tiering decorator for another {@link DAO}. Objects of the types listed in {@code tiering.policies}
+ * (e.g. {@code "vote:365,linker:730"} - type and maximum age in days) which haven't been modified for
+ * longer than their maximum age are moved out of the data store into compressed segment files, written
+ * through a {@link FileStore}. Each archived object leaves behind a small tombstone in the data store,
+ * which holds the path of its segment, so reads find and return the original object transparently.
+ * Updating an archived object moves it back into the data store.
+ * <br>
+ * Archiving runs every {@code tiering.interval_hours} hours for all apps, or on demand with
+ * {@link #archive(java.lang.String)}. Archived objects are removed from the search index and don't show up
+ * in scans, pages or lookups by field - only reads by id return them.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+@Singleton
+public class TieredDAO implements DAO {
+
+	/**
+	 * The name of the binding for the underlying DAO.
+	 */
+	public static final String DELEGATE = "TieredDAO.delegate";
+
+	/**
+	 * The type of the tombstones left in the data store in place of archived objects.
+	 */
+	public static final String TOMBSTONE = "tombstone";
+
+	/**
+	 * The property of a tombstone which holds the type of the archived object.
+	 */
+	public static final String ARCHIVED_TYPE = "archivedType";
+
+	private static final Logger logger = LoggerFactory.getLogger(TieredDAO.class);
+	private static final String SEGMENTS_FOLDER = "tiering";
+
+	private final DAO dao;
+	private final FileStore store;
+	private final Map<String, Long> policies;
+	private final int segmentSize;
+	private final Map<String, Map<String, String>> segments;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Default constructor.
+	 * @param dao the underlying DAO
+	 * @param store the file store for segments
+	 */
+	@Inject
+	public TieredDAO(@Named(DELEGATE) DAO dao, FileStore store) {
+		this(dao, store, getPolicies(), Config.getConfigInt("tiering.segment_size", 1000),
+				Config.getConfigInt("tiering.cached_segments", 16));
+		long interval = Config.getConfigInt("tiering.interval_hours", 24);
+		if (interval > 0 && !policies.isEmpty()) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "para-tiering");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					archiveAll();
+				}
+			}, interval, interval, TimeUnit.HOURS);
+			Para.addDestroyListener(new Para.DestroyListener() {
+				public void onDestroy() {
+					scheduler.shutdownNow();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Constructs a new instance without scheduled archiving.
+	 * @param dao the underlying DAO
+	 * @param store the file store for segments
+	 * @param policies a map of types to the age in milliseconds after which objects are archived
+	 * @param segmentSize the maximum number of objects per segment
+	 * @param cachedSegments the number of decompressed segments kept in memory
+	 */
+	public TieredDAO(DAO dao, FileStore store, Map<String, Long> policies, int segmentSize,
+			final int cachedSegments) {
+		this.dao = dao;
+		this.store = store;
+		this.policies = (policies == null) ? Collections.<String, Long>emptyMap() : policies;
+		this.segmentSize = Math.max(segmentSize, 1);
+		this.segments = Collections.synchronizedMap(new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+				return size() > Math.max(cachedSegments, 1);
+			}
+		});
+	}
+
+	/**
+	 * Returns the tiering policies, as configured by {@code tiering.policies}.
+	 * @return a map of types to the age in milliseconds after which objects are archived,
+	 * empty if tiering is disabled
+	 */
+	public static Map<String, Long> getPolicies() {
+		Map<String, Long> policies = new HashMap<String, Long>();
+		for (String policy : StringUtils.split(Config.getConfigParam("tiering.policies", ""), ',')) {
+			String type = StringUtils.trimToNull(StringUtils.substringBefore(policy, ":"));
+			long days = NumberUtils.toLong(StringUtils.trim(StringUtils.substringAfter(policy, ":")), 0);
+			if (type != null && days > 0) {
+				policies.put(type, TimeUnit.DAYS.toMillis(days));
+			}
+		}
+		return policies;
+	}
+
+	/**
+	 * @param obj an object
+	 * @return true if the object is a tombstone of an archived object
+	 */
+	public static boolean isTombstone(ParaObject obj) {
+		return obj != null && TOMBSTONE.equals(obj.getType());
+	}
+
+	/**
+	 * Returns an empty object with the id, type and appid of the object a tombstone stands for,
+	 * e.g. for removing the archived object from the search index.
+	 * @param tombstone a tombstone
+	 * @return the archived object without its fields or null if the tombstone doesn't name its type
+	 */
+	public static ParaObject getArchivedStub(ParaObject tombstone) {
+		if (!isTombstone(tombstone) || !(tombstone instanceof Sysprop)) {
+			return null;
+		}
+		Object type = ((Sysprop) tombstone).getProperty(ARCHIVED_TYPE);
+		if (!(type instanceof String) || StringUtils.isBlank((String) type)) {
+			return null;
+		}
+		ParaObject stub = ParaObjectUtils.toObject((String) type);
+		stub.setId(tombstone.getId());
+		stub.setType((String) type);
+		stub.setAppid(tombstone.getAppid());
+		return stub;
+	}
+
+	/**
+	 * Archives the objects of an app which are older than their type's maximum age.
+	 * Objects are written to segments first and each segment is read back before any tombstones
+	 * pointing to it are written, so a failure leaves the objects in the data store. Tombstones replace
+	 * objects conditionally - objects modified while their segment was being written stay in the data store.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return the number of archived objects
+	 */
+	public long archive(String appid) {
+		if (StringUtils.isBlank(appid)) {
+			return 0;
+		}
+		long archived = 0;
+		for (Map.Entry<String, Long> policy : policies.entrySet()) {
+			long cutoff = Utils.timestamp() - policy.getValue();
+			List<ParaObject> chunk = new ArrayList<ParaObject>();
+			for (Iterator<ParaObject> it = dao.iterate(appid, policy.getKey()); it.hasNext();) {
+				ParaObject obj = it.next();
+				if (obj != null && policy.getKey().equals(obj.getType()) && lastModified(obj) < cutoff) {
+					chunk.add(obj);
+					if (chunk.size() >= segmentSize) {
+						archived += writeSegment(appid, policy.getKey(), chunk);
+						chunk = new ArrayList<ParaObject>();
+					}
+				}
+			}
+			if (!chunk.isEmpty()) {
+				archived += writeSegment(appid, policy.getKey(), chunk);
+			}
+		}
+		logger.info("Archived {} objects of app '{}'.", archived, appid);
+		return archived;
+	}
+
+	private void archiveAll() {
+		try {
+			archive(Config.APP_NAME_NS);
+			for (Iterator<App> it = dao.iterate(Config.APP_NAME_NS, Utils.type(App.class)); it.hasNext();) {
+				App app = it.next();
+				if (app != null && !Config.APP_NAME_NS.equals(app.getAppIdentifier())) {
+					archive(app.getAppIdentifier());
+				}
+			}
+		} catch (Exception e) {
+			logger.error(null, e);
+		}
+	}
+
+	private long writeSegment(String appid, String type, List<ParaObject> chunk) {
+		String path = SEGMENTS_FOLDER + "/" + appid + "/" + type + "/" + Utils.getNewId() + ".ndjson.gz";
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			GZIPOutputStream gzout = new GZIPOutputStream(bytes, 8192);
+			ObjectWriter jsonWriter = ParaObjectUtils.getJsonWriterNoIdent();
+			for (ParaObject obj : chunk) {
+				gzout.write(jsonWriter.writeValueAsBytes(ParaObjectUtils.getAnnotatedFields(obj)));
+				gzout.write('\n');
+			}
+			gzout.close();
+			InputStream data = new ByteArrayInputStream(bytes.toByteArray());
+			if (store instanceof StreamingFileStore) {
+				((StreamingFileStore) store).write(path, data);
+			} else if (store.store(path, data) == null) {
+				logger.warn("Failed to store segment {}.", path);
+				return 0;
+			}
+		} catch (IOException e) {
+			logger.error(null, e);
+			return 0;
+		}
+		// tombstones point to the path of the segment, so it must be readable from there
+		segments.remove(path);
+		Map<String, String> segment = loadSegment(path);
+		if (segment == null || segment.size() != chunk.size()) {
+			logger.warn("Segment {} can't be read back - {} objects weren't archived.", path, chunk.size());
+			store.delete(path);
+			return 0;
+		}
+		long archived = 0;
+		for (ParaObject obj : chunk) {
+			Sysprop tombstone = new Sysprop(obj.getId());
+			tombstone.setType(TOMBSTONE);
+			tombstone.setAppid(appid);
+			tombstone.setTimestamp(obj.getTimestamp());
+			tombstone.setName(path);
+			tombstone.addProperty(ARCHIVED_TYPE, type);
+			// objects changed in the meantime are skipped - their copies in the segment are stale
+			if (dao.compareAndSet(appid, obj, tombstone)) {
+				archived++;
+			}
+		}
+		logger.debug("TieredDAO.writeSegment() {} -> {}", path, archived);
+		return archived;
+	}
+
+	/**
+	 * Returns the archived object a tombstone stands for.
+	 */
+	private <P extends ParaObject> P resolve(P obj) {
+		if (!isTombstone(obj)) {
+			return obj;
+		}
+		Map<String, String> segment = loadSegment(obj.getName());
+		String json = (segment == null) ? null : segment.get(obj.getId());
+		if (json == null) {
+			logger.warn("Archived object {} not found in segment {}.", obj.getId(), obj.getName());
+			return null;
+		}
+		try {
+			Map<String, Object> fields = ParaObjectUtils.getJsonReader(Map.class).readValue(json);
+			P archived = ParaObjectUtils.setAnnotatedFields(fields);
+			ParaObjectUtils.markCleanLazily(archived, json);
+			return archived;
+		} catch (IOException e) {
+			logger.error(null, e);
+		}
+		return null;
+	}
+
+	private <P extends ParaObject> Map<String, P> resolveAll(Map<String, P> objects) {
+		if (objects == null) {
+			return null;
+		}
+		for (Iterator<Map.Entry<String, P>> it = objects.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, P> entry = it.next();
+			if (isTombstone(entry.getValue())) {
+				P archived = resolve(entry.getValue());
+				if (archived == null) {
+					it.remove();
+				} else {
+					entry.setValue(archived);
+				}
+			}
+		}
+		return objects;
+	}
+
+	/**
+	 * Reads a whole segment and keeps it in memory. Objects are kept as JSON, so every read
+	 * returns a new copy.
+	 */
+	private Map<String, String> loadSegment(String path) {
+		if (StringUtils.isBlank(path)) {
+			return null;
+		}
+		Map<String, String> segment = segments.get(path);
+		if (segment != null) {
+			return segment;
+		}
+		InputStream in = store.load(path);
+		if (in == null) {
+			logger.warn("Segment {} not found.", path);
+			return null;
+		}
+		segment = new HashMap<String, String>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in), Config.DEFAULT_ENCODING));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!StringUtils.isBlank(line)) {
+					Map<String, Object> fields = ParaObjectUtils.getJsonReader(Map.class).readValue(line);
+					segment.put((String) fields.get(Config._ID), line);
+				}
+			}
+		} catch (IOException e) {
+			logger.error(null, e);
+			return null;
+		} finally {
+			try {
+				if (reader != null) {
+					reader.close();
+				} else {
+					in.close();
+				}
+			} catch (IOException e) {
+				logger.error(null, e);
+			}
+		}
+		segments.put(path, segment);
+		return segment;
+	}
+
+	/**
+	 * Moves an archived object back into the data store, applying the changes of the given object.
+	 * @return true if the object was archived
+	 */
+	private <P extends ParaObject> boolean restore(String appid, String id, P changes) {
+		ParaObject stored = dao.read(appid, id);
+		if (!isTombstone(stored)) {
+			return false;
+		}
+		ParaObject archived = resolve(stored);
+		if (archived == null) {
+			return false;
+		}
+		if (changes != null) {
+			changes.setUpdated(Utils.timestamp());
+			ParaObjectUtils.setAnnotatedFields(archived, ParaObjectUtils.getChangedFields(changes, Locked.class),
+					Locked.class);
+		}
+		dao.create(appid, archived);
+		if (changes != null) {
+			ParaObjectUtils.markClean(changes);
+		}
+		logger.debug("TieredDAO.restore() {}", id);
+		return true;
+	}
+
+	private boolean isTiered(ParaObject so) {
+		return so != null && so.getType() != null && policies.containsKey(so.getType());
+	}
+
+	private static long lastModified(ParaObject obj) {
+		Long time = (obj.getUpdated() != null) ? obj.getUpdated() : obj.getTimestamp();
+		return (time == null) ? 0 : time;
+	}
+
+	private static <P extends ParaObject> List<P> removeTombstones(List<P> objects) {
+		if (objects != null) {
+			for (Iterator<P> it = objects.iterator(); it.hasNext();) {
+				if (isTombstone(it.next())) {
+					it.remove();
+				}
+			}
+		}
+		return objects;
+	}
+
+	/////////////////////////////////////////////
+	//				CORE FUNCTIONS
+	/////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		return dao.create(appid, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key) {
+		return resolve(dao.<P>read(appid, key));
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		return resolve(dao.<P>read(appid, key, consistency));
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (isTiered(so) && restore(appid, so.getId(), so)) {
+			return;
+		}
+		dao.update(appid, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (isTiered(expected)) {
+			// an archived object is expected as it was read, i.e. resolved from its tombstone
+			ParaObject stored = dao.read(appid, expected.getId());
+			if (isTombstone(stored)) {
+				return ParaObjectUtils.sameFields(resolve(stored), expected) && dao.compareAndSet(appid, stored, so);
+			}
+		}
+		return dao.compareAndSet(appid, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		dao.delete(appid, so);
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (!policies.isEmpty()) {
+			restore(appid, id, null);
+		}
+		return dao.increment(appid, id, field, delta);
+	}
+
+	/////////////////////////////////////////////
+	//				READ ALL FUNCTIONS
+	/////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		dao.createAll(appid, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return resolveAll(dao.<P>readAll(appid, keys, getAllColumns));
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return resolveAll(dao.<P>readAll(appid, keys, getAllColumns, consistency));
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		Map<String, P> results = dao.readAll(appid, keys, fields);
+		List<String> archived = new ArrayList<String>();
+		for (Map.Entry<String, P> entry : results.entrySet()) {
+			if (isTombstone(entry.getValue())) {
+				archived.add(entry.getKey());
+			}
+		}
+		if (!archived.isEmpty()) {
+			// the segment path isn't one of the projected fields - read the whole tombstones
+			Map<String, P> restored = resolveAll(dao.<P>readAll(appid, archived, true));
+			for (String id : archived) {
+				P obj = restored.get(id);
+				if (obj == null) {
+					results.remove(id);
+				} else {
+					results.put(id, ParaObjectUtils.project(obj, fields));
+				}
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(String appid, Pager pager) {
+		return removeTombstones(new LinkedList<P>(dao.<P>readPage(appid, pager)));
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		final Iterator<P> it = dao.iterate(appid, type);
+		if (type != null && !TOMBSTONE.equals(type)) {
+			return it;
+		}
+		return new TombstoneFilter<P>(it);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		List<P> results = dao.readByField(appid, field, value, pager);
+		return (results == null) ? null : removeTombstones(new LinkedList<P>(results));
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		if (objects == null || objects.isEmpty() || policies.isEmpty()) {
+			dao.updateAll(appid, objects);
+			return;
+		}
+		List<String> ids = new ArrayList<String>(objects.size());
+		for (P object : objects) {
+			if (isTiered(object)) {
+				ids.add(object.getId());
+			}
+		}
+		// only the key columns are needed to find the tombstones
+		Map<String, ParaObject> stored = ids.isEmpty() ? Collections.<String, ParaObject>emptyMap() :
+				dao.<ParaObject>readAll(appid, ids, false);
+		List<P> hot = new ArrayList<P>(objects.size());
+		for (P object : objects) {
+			if (object == null || !isTombstone(stored.get(object.getId())) ||
+					!restore(appid, object.getId(), object)) {
+				hot.add(object);
+			}
+		}
+		dao.updateAll(appid, hot);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		dao.deleteAll(appid, objects);
+	}
+
+	/**
+	 * Skips tombstones while iterating over the objects of another iterator, which is closed
+	 * along with this one if it's {@link Closeable}.
+	 * @param <P> the type of object
+	 */
+	private static final class TombstoneFilter<P extends ParaObject> implements Iterator<P>, Closeable {
+
+		private final Iterator<P> it;
+		private P next;
+
+		TombstoneFilter(Iterator<P> it) {
+			this.it = it;
+		}
+
+		public boolean hasNext() {
+			while (next == null && it.hasNext()) {
+				P obj = it.next();
+				next = isTombstone(obj) ? null : obj;
+			}
+			return next != null;
+		}
+
+		public P next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			P obj = next;
+			next = null;
+			return obj;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() throws IOException {
+			if (it instanceof Closeable) {
+				((Closeable) it).close();
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(P so) {
+		return create(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key) {
+		return read(Config.APP_NAME_NS, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(P so) {
+		update(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(P so) {
+		delete(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(List<P> objects) {
+		createAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(Pager pager) {
+		return readPage(Config.APP_NAME_NS, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(List<P> objects) {
+		updateAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(List<P> objects) {
+		deleteAll(Config.APP_NAME_NS, objects);
+	}
+}
@@ -0,0 +1,629 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.Para;
+import com.erudika.para.annotations.Locked;
+import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.User;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import com.erudika.para.validation.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A write-behind decorator for another {@link DAO}. Updates to objects of the configured types
+ * ({@code write_behind.types}) are acknowledged immediately and kept in memory. Repeated updates to
+ * the same object are coalesced and only the latest state is written, in batches, through
+ * {@link DAO#updateAll(java.lang.String, java.util.List)}. The buffer is flushed every
+ * {@code write_behind.flush_interval_ms} milliseconds, when it holds {@code write_behind.max_pending}
+ * objects and on {@link Para#destroy()}. Reads of pending objects are served from the buffer.
+ * <br>
+ * All other operations go straight to the underlying DAO. Buffered updates are validated before
+ * they are acknowledged, but they are indexed and cached only when they are flushed, so they may not
+ * show up in search results until then. The buffer keeps its own copies of the objects - changes made
+ * to an object after it was updated are not written unless it is updated again.
+ * Users and apps are never buffered.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+@Singleton
+public class WriteBehindDAO implements DAO {
+
+	/**
+	 * The name of the binding for the underlying DAO.
+	 */
+	public static final String DELEGATE = "WriteBehindDAO.delegate";
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteBehindDAO.class);
+	private static final Map<String, ParaObject> NONE = Collections.emptyMap();
+
+	private final DAO dao;
+	private final Set<String> types;
+	private final long flushInterval;
+	private final int maxPending;
+	private final Object lock = new Object();
+	private final Object flushLock = new Object();
+	private Map<String, Map<String, ParaObject>> pending = new HashMap<String, Map<String, ParaObject>>();
+	private Map<String, Map<String, ParaObject>> inFlight = Collections.emptyMap();
+	private int pendingCount;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Default constructor.
+	 * @param dao the underlying DAO
+	 */
+	@Inject
+	public WriteBehindDAO(@Named(DELEGATE) DAO dao) {
+		this(dao, getBufferedTypes(),
+				Config.getConfigInt("write_behind.flush_interval_ms", 1000),
+				Config.getConfigInt("write_behind.max_pending", 1000));
+	}
+
+	/**
+	 * Constructs a new instance.
+	 * @param dao the underlying DAO
+	 * @param types the types of objects whose updates are buffered
+	 * @param flushIntervalMillis the time between flushes, 0 means flush only when the buffer is full
+	 * @param maxPending the number of buffered objects which triggers a flush
+	 */
+	public WriteBehindDAO(DAO dao, Set<String> types, long flushIntervalMillis, int maxPending) {
+		this.dao = dao;
+		this.types = (types == null) ? Collections.<String>emptySet() : types;
+		this.flushInterval = flushIntervalMillis;
+		this.maxPending = Math.max(maxPending, 1);
+		Para.addFirstDestroyListener(new Para.DestroyListener() {
+			public void onDestroy() {
+				shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Returns the types of objects whose updates are buffered, as configured by {@code write_behind.types}.
+	 * Users and apps are skipped, their updates always go straight to the data store.
+	 * @return a set of types, empty if write-behind is disabled
+	 */
+	public static Set<String> getBufferedTypes() {
+		Set<String> types = new HashSet<String>();
+		for (String type : StringUtils.split(Config.getConfigParam("write_behind.types", ""), ',')) {
+			String t = type.trim();
+			if (t.equals(Utils.type(User.class)) || t.equals(Utils.type(App.class))) {
+				logger.warn("Updates to objects of type '{}' can't be buffered.", t);
+			} else if (!t.isEmpty()) {
+				types.add(t);
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Writes all buffered objects to the underlying DAO. Blocks until the writes are done.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			Map<String, Map<String, ParaObject>> batch;
+			synchronized (lock) {
+				if (pending.isEmpty()) {
+					return;
+				}
+				batch = pending;
+				inFlight = batch;
+				pending = new HashMap<String, Map<String, ParaObject>>();
+				pendingCount = 0;
+			}
+			try {
+				for (Map.Entry<String, Map<String, ParaObject>> entry : batch.entrySet()) {
+					String appid = entry.getKey();
+					List<ParaObject> objects = new ArrayList<ParaObject>(entry.getValue().values());
+					try {
+						dao.updateAll(appid, objects);
+						logger.debug("WriteBehindDAO.flush() {} {}", appid, objects.size());
+					} catch (UpdateFailedException e) {
+						logger.warn(e.getMessage());
+						Map<String, ParaObject> failed = new HashMap<String, ParaObject>(entry.getValue());
+						failed.keySet().retainAll(e.getFailedIds());
+						requeue(appid, failed);
+					} catch (Exception e) {
+						logger.error(null, e);
+						requeue(appid, entry.getValue());
+					}
+				}
+			} finally {
+				synchronized (lock) {
+					inFlight = Collections.emptyMap();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of objects waiting to be written.
+	 * @return the number of buffered objects
+	 */
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pendingCount;
+		}
+	}
+
+	/**
+	 * Flushes the buffer and stops the background flushing.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			if (scheduler != null) {
+				scheduler.shutdown();
+				scheduler = null;
+			}
+		}
+		flush();
+	}
+
+	@Override
+	public <P extends ParaObject> String create(String appid, P so) {
+		if (so != null) {
+			discard(appid, so.getId());
+		}
+		return dao.create(appid, so);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P extends ParaObject> P read(String appid, String key) {
+		return read(appid, key, null);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+		P so = (P) copyPending(appid, key);
+		if (so != null) {
+			return so;
+		}
+		return (consistency == null) ? dao.<P>read(appid, key) : dao.<P>read(appid, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(String appid, P so) {
+		if (!buffer(appid, so)) {
+			dao.update(appid, so);
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(String appid, P expected, P so) {
+		if (so != null && getPending(appid, so.getId()) != null) {
+			// the expected object may be the buffered copy, which must be stored first
+			flush();
+		}
+		return dao.compareAndSet(appid, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(String appid, P so) {
+		if (so != null) {
+			discard(appid, so.getId());
+		}
+		dao.delete(appid, so);
+	}
+
+	@Override
+	public Long increment(String appid, String id, String field, long delta) {
+		if (getPending(appid, id) != null) {
+			// a buffered copy would overwrite the new value when flushed
+			flush();
+		}
+		return dao.increment(appid, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(String appid, List<P> objects) {
+		if (objects != null) {
+			for (P so : objects) {
+				if (so != null) {
+					discard(appid, so.getId());
+				}
+			}
+		}
+		dao.createAll(appid, objects);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+		return readAll(appid, keys, getAllColumns, null);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		if (keys == null || StringUtils.isBlank(appid)) {
+			return readStored(appid, keys, getAllColumns, consistency);
+		}
+		Map<String, P> buffered = new HashMap<String, P>();
+		List<String> missing = new ArrayList<String>(keys.size());
+		for (String key : keys) {
+			P so = (P) copyPending(appid, key);
+			if (so == null) {
+				missing.add(key);
+			} else {
+				buffered.put(key, so);
+			}
+		}
+		if (buffered.isEmpty()) {
+			return readStored(appid, keys, getAllColumns, consistency);
+		}
+		Map<String, P> stored = missing.isEmpty() ? Collections.<String, P>emptyMap() :
+				this.<P>readStored(appid, missing, getAllColumns, consistency);
+		Map<String, P> results = new LinkedHashMap<String, P>(keys.size());
+		for (String key : keys) {
+			P so = buffered.containsKey(key) ? buffered.get(key) : stored.get(key);
+			if (so != null) {
+				results.put(key, so);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, List<String> fields) {
+		if (keys == null || StringUtils.isBlank(appid)) {
+			return dao.readAll(appid, keys, fields);
+		}
+		Map<String, P> buffered = new HashMap<String, P>();
+		List<String> missing = new ArrayList<String>(keys.size());
+		for (String key : keys) {
+			P so = (P) copyPending(appid, key);
+			if (so == null) {
+				missing.add(key);
+			} else {
+				buffered.put(key, ParaObjectUtils.project(so, fields));
+			}
+		}
+		if (buffered.isEmpty()) {
+			return dao.readAll(appid, keys, fields);
+		}
+		Map<String, P> stored = missing.isEmpty() ? Collections.<String, P>emptyMap() :
+				dao.<P>readAll(appid, missing, fields);
+		Map<String, P> results = new LinkedHashMap<String, P>(keys.size());
+		for (String key : keys) {
+			P so = buffered.containsKey(key) ? buffered.get(key) : stored.get(key);
+			if (so != null) {
+				results.put(key, so);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(String appid, Pager pager) {
+		// pages come from the data store, so they must see the latest state
+		flush();
+		return dao.readPage(appid, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String appid, String type) {
+		flush();
+		return dao.iterate(appid, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String appid, String field, String value, Pager pager) {
+		flush();
+		return dao.readByField(appid, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(String appid, List<P> objects) {
+		if (objects == null) {
+			dao.updateAll(appid, objects);
+			return;
+		}
+		List<P> direct = new ArrayList<P>(objects.size());
+		for (P so : objects) {
+			if (!buffer(appid, so)) {
+				direct.add(so);
+			}
+		}
+		if (!direct.isEmpty()) {
+			dao.updateAll(appid, direct);
+		}
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(String appid, List<P> objects) {
+		if (objects != null) {
+			for (P so : objects) {
+				if (so != null) {
+					discard(appid, so.getId());
+				}
+			}
+		}
+		dao.deleteAll(appid, objects);
+	}
+
+	private <P extends ParaObject> boolean buffer(String appid, P so) {
+		if (so == null || StringUtils.isBlank(appid) || StringUtils.isBlank(so.getId()) ||
+				!types.contains(so.getType()) || so instanceof User || so instanceof App) {
+			return false;
+		}
+		so.setUpdated(Utils.timestamp());
+		String[] errors = ValidationUtils.validateObject(so);
+		if (errors.length > 0) {
+			logger.warn("Invalid object {}->{} errors: [{}]. Changes weren't persisted.",
+					appid, so, StringUtils.join(errors, "; "));
+			return true;
+		}
+		// nested values are converted to JSON, so the changes don't share any state with the caller's object
+		Map<String, Object> changes = ParaObjectUtils.getChangedFields(so, Locked.class);
+		ParaObject copy = null;
+		if (getPending(appid, so.getId()) == null) {
+			// the object may be partial, so reads from the buffer are served from a complete copy
+			ParaObject stored = dao.read(appid, so.getId());
+			if (stored != null && stored != so) {
+				copy = copyOf(stored);
+				ParaObjectUtils.setAnnotatedFields(copy, changes, Locked.class);
+			}
+		}
+		boolean full;
+		synchronized (lock) {
+			Map<String, ParaObject> objects = pending.get(appid);
+			if (objects == null) {
+				objects = new HashMap<String, ParaObject>();
+				pending.put(appid, objects);
+			}
+			ParaObject existing = objects.get(so.getId());
+			if (existing == null) {
+				objects.put(so.getId(), (copy == null) ? copyOf(so) : copy);
+				pendingCount++;
+			} else {
+				// another update of the same object - keep both sets of changes
+				ParaObjectUtils.setAnnotatedFields(existing, changes, Locked.class);
+			}
+			full = pendingCount >= maxPending;
+			startScheduler();
+		}
+		if (full) {
+			scheduleFlush(0);
+		}
+		return true;
+	}
+
+	private <P extends ParaObject> P copyOf(P so) {
+		P copy = ParaObjectUtils.fromJSON(ParaObjectUtils.toJSON(so));
+		return (copy == null) ? so : copy;
+	}
+
+	private ParaObject getPending(String appid, String key) {
+		if (key == null || StringUtils.isBlank(appid)) {
+			return null;
+		}
+		synchronized (lock) {
+			ParaObject so = getOrNone(pending, appid).get(key);
+			return (so == null) ? getOrNone(inFlight, appid).get(key) : so;
+		}
+	}
+
+	private ParaObject copyPending(String appid, String key) {
+		synchronized (lock) {
+			ParaObject so = getPending(appid, key);
+			return (so == null) ? null : copyOf(so);
+		}
+	}
+
+	private <P extends ParaObject> Map<String, P> readStored(String appid, List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return (consistency == null) ? dao.<P>readAll(appid, keys, getAllColumns) :
+				dao.<P>readAll(appid, keys, getAllColumns, consistency);
+	}
+
+	private void discard(String appid, String key) {
+		if (key == null || StringUtils.isBlank(appid)) {
+			return;
+		}
+		boolean flushing;
+		synchronized (lock) {
+			if (getOrNone(pending, appid).remove(key) != null) {
+				pendingCount--;
+			}
+			flushing = getOrNone(inFlight, appid).containsKey(key);
+		}
+		if (flushing) {
+			// wait for the flush to finish, otherwise it could write the object after it was deleted
+			synchronized (flushLock) {
+				logger.debug("WriteBehindDAO.discard() {}", key);
+			}
+		}
+	}
+
+	private void requeue(String appid, Map<String, ParaObject> objects) {
+		synchronized (lock) {
+			Map<String, ParaObject> current = pending.get(appid);
+			if (current == null) {
+				current = new HashMap<String, ParaObject>();
+				pending.put(appid, current);
+			}
+			for (Map.Entry<String, ParaObject> entry : objects.entrySet()) {
+				// newer updates to the same objects are already in the buffer
+				if (!current.containsKey(entry.getKey())) {
+					current.put(entry.getKey(), entry.getValue());
+					pendingCount++;
+				}
+			}
+		}
+	}
+
+	private Map<String, ParaObject> getOrNone(Map<String, Map<String, ParaObject>> map, String appid) {
+		Map<String, ParaObject> objects = map.get(appid);
+		return (objects == null) ? NONE : objects;
+	}
+
+	private void startScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "para-write-behind");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			if (flushInterval > 0) {
+				scheduler.scheduleWithFixedDelay(new Runnable() {
+					public void run() {
+						flushQuietly();
+					}
+				}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private void scheduleFlush(long delay) {
+		synchronized (lock) {
+			if (scheduler != null) {
+				try {
+					scheduler.schedule(new Runnable() {
+						public void run() {
+							flushQuietly();
+						}
+					}, delay, TimeUnit.MILLISECONDS);
+					return;
+				} catch (RejectedExecutionException e) {
+					logger.debug(e.getMessage());
+				}
+			}
+		}
+		flush();
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (Exception e) {
+			logger.error(null, e);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////
+
+	@Override
+	public <P extends ParaObject> String create(P so) {
+		return create(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key) {
+		return read(Config.APP_NAME_NS, key);
+	}
+
+	@Override
+	public <P extends ParaObject> P read(String key, ReadConsistency consistency) {
+		return read(Config.APP_NAME_NS, key, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> void update(P so) {
+		update(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public <P extends ParaObject> boolean compareAndSet(P expected, P so) {
+		return compareAndSet(Config.APP_NAME_NS, expected, so);
+	}
+
+	@Override
+	public <P extends ParaObject> void delete(P so) {
+		delete(Config.APP_NAME_NS, so);
+	}
+
+	@Override
+	public Long increment(String id, String field, long delta) {
+		return increment(Config.APP_NAME_NS, id, field, delta);
+	}
+
+	@Override
+	public <P extends ParaObject> void createAll(List<P> objects) {
+		createAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, boolean getAllColumns,
+			ReadConsistency consistency) {
+		return readAll(Config.APP_NAME_NS, keys, getAllColumns, consistency);
+	}
+
+	@Override
+	public <P extends ParaObject> Map<String, P> readAll(List<String> keys, List<String> fields) {
+		return readAll(Config.APP_NAME_NS, keys, fields);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readPage(Pager pager) {
+		return readPage(Config.APP_NAME_NS, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> Iterator<P> iterate(String type) {
+		return iterate(Config.APP_NAME_NS, type);
+	}
+
+	@Override
+	public <P extends ParaObject> List<P> readByField(String field, String value, Pager pager) {
+		return readByField(Config.APP_NAME_NS, field, value, pager);
+	}
+
+	@Override
+	public <P extends ParaObject> void updateAll(List<P> objects) {
+		updateAll(Config.APP_NAME_NS, objects);
+	}
+
+	@Override
+	public <P extends ParaObject> void deleteAll(List<P> objects) {
+		deleteAll(Config.APP_NAME_NS, objects);
+	}
+
+}
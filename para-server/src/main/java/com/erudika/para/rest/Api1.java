@@ -19,13 +19,20 @@ package com.erudika.para.rest;
 
 import com.erudika.para.Para;
 import com.erudika.para.core.App;
+import com.erudika.para.core.CascadeDeleter;
 import com.erudika.para.core.CoreUtils;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.ParaObjectUtils;
 import com.erudika.para.core.User;
+import com.erudika.para.persistence.AWSDynamoAutoscaler;
+import com.erudika.para.persistence.AWSDynamoUtils;
 import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ExportImport;
+import com.erudika.para.persistence.ReadConsistency;
 import com.erudika.para.search.Search;
 import com.erudika.para.security.SecurityUtils;
+import com.erudika.para.storage.FileStore;
+import com.erudika.para.storage.StreamingFileStore;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.HumanTime;
 import com.erudika.para.utils.Pager;
@@ -33,7 +40,10 @@ import com.erudika.para.utils.Utils;
 import com.erudika.para.utils.filters.FieldFilter;
 import com.erudika.para.validation.Constraint;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -47,6 +57,7 @@ import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -68,6 +79,8 @@ public class Api1 extends ResourceConfig {
 	private static final Logger logger = LoggerFactory.getLogger(Api1.class);
 
 	private static final String JSON = MediaType.APPLICATION_JSON;
+	private static final String NDJSON = "application/x-ndjson";
+	private static final String GZIP = "application/gzip";
 	private static final String GET = HttpMethod.GET;
 	private static final String PUT = HttpMethod.PUT;
 	private static final String POST = HttpMethod.POST;
@@ -145,6 +158,20 @@ public class Api1 extends ResourceConfig {
 		permRes.addChildResource("{subjectid}").addMethod(DELETE).produces(JSON).handledBy(revokePermitHandler(null));
 		registerResources(permRes.build());
 
+		// export/import all objects of an app as newline-delimited JSON
+		Resource.Builder exportRes = Resource.builder("_export");
+		exportRes.addMethod(GET).produces(NDJSON, GZIP, JSON).handledBy(exportHandler());
+		registerResources(exportRes.build());
+
+		Resource.Builder importRes = Resource.builder("_import");
+		importRes.addMethod(POST).produces(JSON).handledBy(importHandler());
+		registerResources(importRes.build());
+
+		// the load of the app's DynamoDB table and the recent throughput changes
+		Resource.Builder capacityRes = Resource.builder("_capacity");
+		capacityRes.addMethod(GET).produces(JSON).handledBy(capacityHandler());
+		registerResources(capacityRes.build());
+
 		// util functions API
 		Resource.Builder utilsRes = Resource.builder("utils/{method}");
 		utilsRes.addMethod(GET).produces(JSON).handledBy(utilsHandler());
@@ -334,8 +361,10 @@ public class Api1 extends ResourceConfig {
 				pager.setSortby(params.getFirst("sort"));
 				pager.setDesc(Boolean.parseBoolean(params.containsKey("desc") ? params.getFirst("desc") : "true"));
 				pager.setLimit(NumberUtils.toInt(params.getFirst("limit"), pager.getLimit()));
+				pager.setLastKey(params.getFirst("lastkey"));
 
 				String childrenOnly = params.getFirst("childrenonly");
+				boolean async = Boolean.parseBoolean(params.getFirst("async"));
 
 				if (pobj != null) {
 					if (POST.equals(ctx.getMethod()) || PUT.equals(ctx.getMethod())) {
@@ -378,6 +407,9 @@ public class Api1 extends ResourceConfig {
 								}
 								result.put("items", items);
 								result.put("totalHits", pager.getCount());
+								if (pager.getLastKey() != null) {
+									result.put("lastKey", pager.getLastKey());
+								}
 								return Response.ok(result).build();
 							}
 						} else {
@@ -385,12 +417,22 @@ public class Api1 extends ResourceConfig {
 									"Parameter 'type' is missing.");
 						}
 					} else if (DELETE.equals(ctx.getMethod())) {
+						// with async=true, the links or children are deleted in the background and the response
+						// contains the task which tracks the progress of the cascade
 						if (type2 == null && id2 == null) {
+							if (async) {
+								return Response.status(Response.Status.ACCEPTED).
+										entity(CascadeDeleter.unlinkAllAsync(pobj)).build();
+							}
 							pobj.unlinkAll();
 						} else if (type2 != null) {
 							if (id2 != null) {
 								pobj.unlink(type2, id2);
 							} else if (childrenOnly != null) {
+								if (async) {
+									return Response.status(Response.Status.ACCEPTED).
+											entity(CascadeDeleter.deleteChildrenAsync(pobj, type2)).build();
+								}
 								pobj.deleteChildren(type2);
 							}
 						}
@@ -593,6 +635,26 @@ public class Api1 extends ResourceConfig {
 		};
 	}
 
+	private Inflector<ContainerRequestContext, Response> capacityHandler() {
+		return new Inflector<ContainerRequestContext, Response>() {
+			public Response apply(ContainerRequestContext ctx) {
+				App app = RestUtils.getPrincipalApp();
+				if (app == null) {
+					return RestUtils.getStatusResponse(Response.Status.NOT_FOUND, "App not found.");
+				}
+				AWSDynamoAutoscaler autoscaler = AWSDynamoAutoscaler.getInstance();
+				if (autoscaler == null) {
+					return RestUtils.getStatusResponse(Response.Status.NOT_FOUND, "Autoscaling is disabled.");
+				}
+				String table = AWSDynamoUtils.getTableNameForAppid(app.getAppIdentifier());
+				Map<String, Object> capacity = new HashMap<String, Object>();
+				capacity.put("stats", autoscaler.getStats(table));
+				capacity.put("decisions", autoscaler.getDecisions(table));
+				return Response.ok(capacity).build();
+			}
+		};
+	}
+
 	private Inflector<ContainerRequestContext, Response> keysHandler() {
 		return new Inflector<ContainerRequestContext, Response>() {
 			public Response apply(ContainerRequestContext ctx) {
@@ -627,6 +689,74 @@ public class Api1 extends ResourceConfig {
 		};
 	}
 
+	private Inflector<ContainerRequestContext, Response> exportHandler() {
+		return new Inflector<ContainerRequestContext, Response>() {
+			public Response apply(ContainerRequestContext ctx) {
+				App app = RestUtils.getPrincipalApp();
+				if (app == null) {
+					return RestUtils.getStatusResponse(Response.Status.NOT_FOUND, "App not found.");
+				}
+				final String appid = app.getAppIdentifier();
+				final boolean gzip = Boolean.parseBoolean(queryParam("gzip", ctx));
+				String path = queryParam("path", ctx);
+				if (!StringUtils.isBlank(path)) {
+					// export to a private file of the app in the file store instead of the response
+					FileStore store = Para.getInstance(FileStore.class);
+					if (!(store instanceof StreamingFileStore)) {
+						return RestUtils.getStatusResponse(Response.Status.BAD_REQUEST,
+								"The file store doesn't support exports.");
+					}
+					try {
+						String file = ExportImport.exportApp(dao, appid, (StreamingFileStore) store, path, gzip);
+						return Response.ok(Collections.singletonMap("path", file)).build();
+					} catch (IllegalArgumentException e) {
+						return RestUtils.getStatusResponse(Response.Status.BAD_REQUEST, e.getMessage());
+					} catch (IOException e) {
+						logger.error(null, e);
+						return RestUtils.getStatusResponse(Response.Status.INTERNAL_SERVER_ERROR, "Export failed.");
+					}
+				}
+				StreamingOutput output = new StreamingOutput() {
+					public void write(OutputStream out) throws IOException {
+						ExportImport.exportApp(dao, appid, out, gzip);
+					}
+				};
+				return Response.ok(output, gzip ? GZIP : NDJSON).header("Content-Disposition",
+						"attachment; filename=\"" + appid + (gzip ? ".ndjson.gz\"" : ".ndjson\"")).build();
+			}
+		};
+	}
+
+	private Inflector<ContainerRequestContext, Response> importHandler() {
+		return new Inflector<ContainerRequestContext, Response>() {
+			public Response apply(ContainerRequestContext ctx) {
+				App app = RestUtils.getPrincipalApp();
+				if (app == null) {
+					return RestUtils.getStatusResponse(Response.Status.NOT_FOUND, "App not found.");
+				}
+				String path = queryParam("path", ctx);
+				try {
+					long count;
+					if (StringUtils.isBlank(path)) {
+						count = ExportImport.importApp(dao, app.getAppIdentifier(), ctx.getEntityStream());
+					} else {
+						// large imports should come from the file store - request bodies are buffered for signing
+						count = ExportImport.importApp(dao, app.getAppIdentifier(), Para.getInstance(FileStore.class), path);
+						if (count < 0) {
+							return RestUtils.getStatusResponse(Response.Status.NOT_FOUND, "File not found.");
+						}
+					}
+					return Response.ok(Collections.singletonMap("count", count)).build();
+				} catch (IllegalArgumentException e) {
+					return RestUtils.getStatusResponse(Response.Status.BAD_REQUEST, e.getMessage());
+				} catch (IOException e) {
+					// invalid JSON is reported by line number, without quoting the file
+					return RestUtils.getStatusResponse(Response.Status.BAD_REQUEST, e.getMessage());
+				}
+			}
+		};
+	}
+
 	protected final Inflector<ContainerRequestContext, Response> createHandler(final App app, final String type) {
 		return new Inflector<ContainerRequestContext, Response>() {
 			public Response apply(ContainerRequestContext ctx) {
@@ -640,7 +770,10 @@ public class Api1 extends ResourceConfig {
 			public Response apply(ContainerRequestContext ctx) {
 				ParaObject obj = ParaObjectUtils.toObject(type);
 				obj.setId(pathParam(Config._ID, ctx));
-				return RestUtils.getReadResponse(dao.read(app.getAppIdentifier(), obj.getId()));
+				// ?consistent=true asks for a strongly consistent read, otherwise the type's default applies
+				boolean strong = Boolean.parseBoolean(ctx.getUriInfo().getQueryParameters().getFirst("consistent"));
+				return RestUtils.getReadResponse(dao.read(app.getAppIdentifier(), obj.getId(),
+						strong ? ReadConsistency.STRONG : ReadConsistency.forType(type)));
 			}
 		};
 	}
@@ -689,7 +822,7 @@ public class Api1 extends ResourceConfig {
 		return new Inflector<ContainerRequestContext, Response>() {
 			public Response apply(ContainerRequestContext ctx) {
 				App app = RestUtils.getPrincipalApp();
-				return RestUtils.getBatchReadResponse(app, queryParams("ids", ctx));
+				return RestUtils.getBatchReadResponse(app, queryParams("ids", ctx), selectedFields(ctx));
 			}
 		};
 	}
@@ -735,6 +868,7 @@ public class Api1 extends ResourceConfig {
 		pager.setSortby(params.getFirst("sort"));
 		pager.setDesc(Boolean.parseBoolean(params.containsKey("desc") ? params.getFirst("desc") : "true"));
 		pager.setLimit(NumberUtils.toInt(params.getFirst("limit"), pager.getLimit()));
+		pager.setLastKey(params.getFirst("lastkey"));
 
 		queryType = StringUtils.isBlank(queryType) ? params.getFirst("querytype") : queryType;
 		Map<String, Object> result = new HashMap<String, Object>();
@@ -797,6 +931,14 @@ public class Api1 extends ResourceConfig {
 			items = search.findWildcard(appid, type, params.getFirst("field"), query, pager);
 		} else if ("count".equals(queryType)) {
 			pager.setCount(search.getCount(appid, type));
+		} else if ("list".equals(queryType) && !StringUtils.isBlank(type)) {
+			// newest objects of a type, read from the data store - consistent with the latest writes
+			items = dao.readByField(appid, Config._TYPE, type, pager);
+			if (items == null) {
+				items = search.findQuery(appid, type, "*", pager);
+			} else if (pager.getLastKey() != null) {
+				result.put("lastKey", pager.getLastKey());
+			}
 		} else {
 			items = search.findQuery(appid, type, query, pager);
 		}
@@ -827,6 +969,11 @@ public class Api1 extends ResourceConfig {
 		return ctx.getUriInfo().getQueryParameters().containsKey(param);
 	}
 
+	protected List<String> selectedFields(ContainerRequestContext ctx) {
+		String[] fields = StringUtils.split(queryParam("select", ctx), ",");
+		return (fields == null) ? null : Arrays.asList(fields);
+	}
+
 	private Locale getLocale(String localeStr) {
 		try {
 			return LocaleUtils.toLocale(localeStr);
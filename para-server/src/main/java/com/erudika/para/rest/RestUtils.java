@@ -24,6 +24,7 @@ import com.erudika.para.core.CoreUtils;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.ParaObjectUtils;
 import com.erudika.para.core.User;
+import com.erudika.para.persistence.UpdateFailedException;
 import com.erudika.para.security.SecurityUtils;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Utils;
@@ -217,7 +218,7 @@ public final class RestUtils {
 				String[] errors = ValidationUtils.validateObject(app, content);
 				if (errors.length == 0) {
 					// Secondary validation pass called here. Object is validated again before being created
-					// See: IndexAndCacheAspect.java
+					// See: ValidatingDAO.java
 					String id = content.create();
 					if (id != null) {
 						// new type added so update app object
@@ -263,7 +264,7 @@ public final class RestUtils {
 				String[] errors = ValidationUtils.validateObject(app, content);
 				if (errors.length == 0) {
 					// Secondary validation pass called here. Object is validated again before being created
-					// See: IndexAndCacheAspect.java
+					// See: ValidatingDAO.java
 					CoreUtils.overwrite(app.getAppIdentifier(), content);
 					// new type added so update app object
 					if (typesCount < app.getDatatypes().size()) {
@@ -333,8 +334,22 @@ public final class RestUtils {
 	 * @return status code 200 or 400
 	 */
 	public static Response getBatchReadResponse(App app, List<String> ids) {
+		return getBatchReadResponse(app, ids, null);
+	}
+
+	/**
+	 * Batch read response as JSON
+	 * @param app the current App object
+	 * @param ids list of ids
+	 * @param fields the fields to read, e.g. from the "select" parameter. null means all fields.
+	 * @return status code 200 or 400
+	 */
+	public static Response getBatchReadResponse(App app, List<String> ids, List<String> fields) {
 		if (ids != null && !ids.isEmpty()) {
-			return Response.ok(Para.getDAO().readAll(app.getAppIdentifier(), ids, true).values()).build();
+			if (fields == null || fields.isEmpty()) {
+				return Response.ok(Para.getDAO().readAll(app.getAppIdentifier(), ids, true).values()).build();
+			}
+			return Response.ok(Para.getDAO().readAll(app.getAppIdentifier(), ids, fields).values()).build();
 		} else {
 			return getStatusResponse(Response.Status.BAD_REQUEST, "Missing ids.");
 		}
@@ -398,7 +413,13 @@ public final class RestUtils {
 					}
 				}
 			}
-			Para.getDAO().updateAll(app.getAppIdentifier(), objects);
+			try {
+				Para.getDAO().updateAll(app.getAppIdentifier(), objects);
+			} catch (UpdateFailedException e) {
+				// objects which failed to update are not returned
+				logger.warn(e.getMessage());
+				return Response.ok(e.getUpdated(objects)).build();
+			}
 		} else {
 			return entityRes;
 		}
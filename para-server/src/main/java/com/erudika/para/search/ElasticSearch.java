@@ -21,16 +21,20 @@ import com.erudika.para.core.Address;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.ParaObjectUtils;
 import com.erudika.para.core.Tag;
+import com.erudika.para.core.WriteContext;
 import com.erudika.para.persistence.DAO;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Pager;
 import com.erudika.para.utils.Utils;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.inject.Inject;
@@ -73,6 +77,9 @@ import org.slf4j.LoggerFactory;
 public class ElasticSearch implements Search {
 
 	private static final Logger logger = LoggerFactory.getLogger(ElasticSearch.class);
+	// how long a scroll cursor is kept between two pages, in milliseconds
+	private static final long SCROLL_KEEPALIVE = 60000;
+	private static final int SCROLL_PAGE_SIZE = Config.getConfigInt("es.scroll_page_size", 500);
 	private DAO dao;
 
 	/**
@@ -98,7 +105,8 @@ public class ElasticSearch implements Search {
 		if (po == null || StringUtils.isBlank(appid)) {
 			return;
 		}
-		Map<String, Object> data = ParaObjectUtils.getAnnotatedFields(po, null, false);
+		Map<String, Object> data = ElasticSearchUtils.withExpiry(po,
+				WriteContext.getFields(po, null, false));
 		try {
 			IndexRequestBuilder irb = client().prepareIndex(getIndexName(appid), po.getType(), po.getId()).
 					setSource(data);
@@ -142,7 +150,8 @@ public class ElasticSearch implements Search {
 		BulkRequestBuilder brb = client().prepareBulk();
 		for (ParaObject po : objects) {
 			brb.add(client().prepareIndex(getIndexName(appid), po.getType(), po.getId()).
-					setSource(ParaObjectUtils.getAnnotatedFields(po, null, false)));
+					setSource(ElasticSearchUtils.withExpiry(po,
+							WriteContext.getFields(po, null, false))));
 		}
 		if (brb.numberOfActions() > 0) {
 			if (isAsyncEnabled()) {
@@ -211,6 +220,38 @@ public class ElasticSearch implements Search {
 		}
 	}
 
+	/**
+	 * Finds objects which have expired, straight from the index. The objects are built from the
+	 * indexed documents even if {@code read_from_index} is off, because their rows may already be gone
+	 * from the data store.
+	 * @param <P> type of the object
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param time the current time in milliseconds
+	 * @param limit the maximum number of objects to return
+	 * @return a list of expired objects
+	 */
+	public <P extends ParaObject> List<P> findExpired(String appid, long time, int limit) {
+		if (StringUtils.isBlank(appid) || limit <= 0) {
+			return Collections.emptyList();
+		}
+		try {
+			SearchHits hits = client().prepareSearch(getIndexName(appid)).
+					setQuery(QueryBuilders.rangeQuery(Config._EXPIRES).lte(time)).
+					setSize(limit).execute().actionGet().getHits();
+			ArrayList<P> results = new ArrayList<P>(hits.getHits().length);
+			for (SearchHit hit : hits) {
+				P pobj = ParaObjectUtils.setAnnotatedFields(hit.getSource());
+				if (pobj != null) {
+					results.add(pobj);
+				}
+			}
+			return results;
+		} catch (Exception e) {
+			logger.warn(null, e);
+			return Collections.emptyList();
+		}
+	}
+
 	@Override
 	public <P extends ParaObject> P findById(String appid, String id) {
 		try {
@@ -320,6 +361,24 @@ public class ElasticSearch implements Search {
 		}
 	}
 
+	@Override
+	public <P extends ParaObject> Iterator<P> iterateTerms(String appid, String type,
+			Map<String, ?> terms, boolean mustMatchAll) {
+		if (StringUtils.isBlank(appid) || terms == null || terms.isEmpty()) {
+			return Collections.<P>emptyIterator();
+		}
+		QueryBuilder fb = getTermsQuery(terms, mustMatchAll);
+		if (fb == null) {
+			return Collections.<P>emptyIterator();
+		}
+		SearchRequestBuilder srb = client().prepareSearch(getIndexName(appid)).
+				setScroll(new TimeValue(SCROLL_KEEPALIVE)).setQuery(fb).setSize(SCROLL_PAGE_SIZE);
+		if (!StringUtils.isBlank(type)) {
+			srb.setTypes(type);
+		}
+		return new ScrollIterator<P>(srb);
+	}
+
 	@Override
 	public <P extends ParaObject> List<P> findSimilar(String appid, String type, String filterKey,
 			String[] fields, String liketext, Pager... pager) {
@@ -702,6 +761,11 @@ public class ElasticSearch implements Search {
 		return findTerms(Config.APP_NAME_NS, type, terms, mustMatchBoth, pager);
 	}
 
+	@Override
+	public <P extends ParaObject> Iterator<P> iterateTerms(String type, Map<String, ?> terms, boolean mustMatchAll) {
+		return iterateTerms(Config.APP_NAME_NS, type, terms, mustMatchAll);
+	}
+
 	@Override
 	public <P extends ParaObject> List<P> findWildcard(String type, String field, String wildcard,
 			Pager... pager) {
@@ -718,4 +782,78 @@ public class ElasticSearch implements Search {
 		return getCount(Config.APP_NAME_NS, type, terms);
 	}
 
+	/**
+	 * Reads the hits of a search page by page, with a scroll cursor. Objects are built from the source
+	 * stored in the index, so the data store isn't read. The cursor is cleared after the last page. If a page
+	 * can't be read, {@link #hasNext()} throws an exception, so a partial result is never taken for the whole.
+	 */
+	private final class ScrollIterator<P extends ParaObject> implements Iterator<P> {
+		private final SearchRequestBuilder request;
+		private String scrollId;
+		private Iterator<SearchHit> page = Collections.<SearchHit>emptyIterator();
+		private P next;
+		private boolean done;
+		private Exception error;
+
+		ScrollIterator(SearchRequestBuilder request) {
+			this.request = request;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				if (error != null) {
+					throw new IllegalStateException("Scroll of " + Arrays.toString(request.request().indices()) +
+							" failed.", error);
+				}
+				if (page.hasNext()) {
+					next = ParaObjectUtils.setAnnotatedFields(page.next().getSource());
+				} else if (done) {
+					break;
+				} else {
+					readNextPage();
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public P next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			P obj = next;
+			next = null;
+			return obj;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void readNextPage() {
+			try {
+				SearchResponse response = (scrollId == null) ? request.execute().actionGet() :
+						client().prepareSearchScroll(scrollId).setScroll(new TimeValue(SCROLL_KEEPALIVE)).
+								execute().actionGet();
+				scrollId = response.getScrollId();
+				SearchHit[] hits = response.getHits().getHits();
+				page = Arrays.asList(hits).iterator();
+				done = hits.length == 0;
+			} catch (Exception e) {
+				error = e;
+				page = Collections.<SearchHit>emptyIterator();
+				done = true;
+			}
+			if (done && scrollId != null) {
+				try {
+					client().prepareClearScroll().addScrollId(scrollId).execute();
+				} catch (Exception e) {
+					logger.debug(null, e);
+				}
+				scrollId = null;
+			}
+		}
+	}
 }
@@ -18,17 +18,18 @@
 package com.erudika.para.search;
 
 import com.erudika.para.Para;
+import com.erudika.para.core.LinkStore;
 import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.ParaObjectUtils;
 import com.erudika.para.persistence.DAO;
 import com.erudika.para.utils.Config;
-import com.erudika.para.utils.Pager;
 import com.erudika.para.utils.Utils;
 import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
@@ -271,22 +272,22 @@ public final class ElasticSearchUtils {
 
 			BulkRequestBuilder brb = getClient().prepareBulk();
 			BulkResponse resp = null;
-			Pager pager = new Pager();
-
-			do {
-				List<ParaObject> list = dao.readPage(appid, pager);
-				for (ParaObject obj : list) {
-					brb.add(getClient().prepareIndex(appid, obj.getType(), obj.getId()).
-							setSource(ParaObjectUtils.getAnnotatedFields(obj)));
-					pager.setLastKey(obj.getId());
+
+			for (Iterator<ParaObject> it = dao.iterate(appid, null); it.hasNext();) {
+				ParaObject obj = it.next();
+				if (LinkStore.isAdjacencyList(obj)) {
+					continue;
 				}
-				// bulk index 1000 objects
-				if (brb.numberOfActions() > 100) {
+				brb.add(getClient().prepareIndex(appid, obj.getType(), obj.getId()).
+						setSource(withExpiry(obj, ParaObjectUtils.getAnnotatedFields(obj))));
+				// bulk index 100 objects at a time
+				if (brb.numberOfActions() >= 100) {
 					resp = brb.execute().actionGet();
 					logger.info("rebuildIndex(): indexed {}, hasFailures: {}",
 							brb.numberOfActions(), resp.hasFailures());
+					brb = getClient().prepareBulk();
 				}
-			} while (pager.getLastKey() != null);
+			}
 
 			// anything left after loop? index that too
 			if (brb.numberOfActions() > 0) {
@@ -415,6 +416,21 @@ public final class ElasticSearchUtils {
 				getStatus().equals(ClusterHealthStatus.RED);
 	}
 
+	/**
+	 * Adds the expiration time of an object to its indexed fields, if it has a time to live.
+	 * Expired documents are later removed in bulk by {@link ExpiryReaper}.
+	 * @param po an object
+	 * @param data the fields to be indexed
+	 * @return the same map of fields
+	 */
+	static Map<String, Object> withExpiry(ParaObject po, Map<String, Object> data) {
+		Long expiresAt = ParaObjectUtils.getExpiresAt(po);
+		if (expiresAt != null && data != null) {
+			data.put(Config._EXPIRES, expiresAt);
+		}
+		return data;
+	}
+
 	/**
 	 * A list of default mappings that are defined upon index creation.
 	 * @return a json object of default mappings
@@ -441,6 +457,7 @@ public final class ElasticSearchUtils {
 						startObject(Config._TIMESTAMP).field("type", "string").field("index", "not_analyzed").endObject().
 						startObject(Config._IDENTIFIER).field("type", "string").field("index", "not_analyzed").endObject().
 						startObject(Config._RESET_TOKEN).field("type", "string").field("index", "not_analyzed").endObject().
+						startObject(Config._EXPIRES).field("type", "long").endObject().
 					endObject().
 				endObject().
 			endObject();
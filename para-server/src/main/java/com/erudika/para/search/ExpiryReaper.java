@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.search;
+
+import com.erudika.para.Para;
+import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes expired objects in bulk. An object expires {@link com.erudika.para.core.Expirable#getExpiresAfter()}
+ * seconds after its timestamp, or after the time to live set for its type in {@code ttl_types}. The expiration
+ * time is indexed with each object, so expired objects are found with a single range query per batch, instead of
+ * per-document TTL sweeps. Cache entries expire on their own, because they are stored with the same time to live.
+ * <br>
+ * Every {@code ttl_purge_interval_sec} seconds, expired objects are deleted from the data store in batches of
+ * {@code ttl_purge_batch_size}, which also removes them from the index and the cache. When the data store expires
+ * rows natively ({@code dynamodb.native_ttl}), expired objects are only removed from the index.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+@Singleton
+public class ExpiryReaper {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExpiryReaper.class);
+
+	private final DAO dao;
+	private final Search search;
+	private final int batchSize;
+	private final int maxBatches;
+	private final boolean nativeTTL;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Default constructor.
+	 * @param dao the DAO
+	 * @param search the search index
+	 */
+	@Inject
+	public ExpiryReaper(DAO dao, Search search) {
+		this(dao, search, Config.getConfigInt("ttl_purge_batch_size", 100),
+				Config.getConfigInt("ttl_purge_max_batches", 100),
+				Config.getConfigBoolean("dynamodb.native_ttl", false));
+		long interval = Config.getConfigInt("ttl_purge_interval_sec", 600);
+		if (interval > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "para-expiry-reaper");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					purgeAll();
+				}
+			}, interval, interval, TimeUnit.SECONDS);
+			Para.addDestroyListener(new Para.DestroyListener() {
+				public void onDestroy() {
+					scheduler.shutdownNow();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Constructs a new instance without scheduled purging.
+	 * @param dao the DAO
+	 * @param search the search index
+	 * @param batchSize the number of objects removed at once
+	 * @param maxBatches the maximum number of batches per app, per run
+	 * @param nativeTTL true if the data store deletes expired objects by itself
+	 */
+	public ExpiryReaper(DAO dao, Search search, int batchSize, int maxBatches, boolean nativeTTL) {
+		this.dao = dao;
+		this.search = search;
+		this.batchSize = Math.max(batchSize, 1);
+		this.maxBatches = Math.max(maxBatches, 1);
+		this.nativeTTL = nativeTTL;
+	}
+
+	/**
+	 * Removes the expired objects of an app.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @return the number of removed objects
+	 */
+	public long purge(String appid) {
+		return purge(appid, Utils.timestamp());
+	}
+
+	/**
+	 * Removes the objects of an app which expired before a given time.
+	 * @param appid name of the {@link com.erudika.para.core.App}
+	 * @param time the time in milliseconds
+	 * @return the number of removed objects
+	 */
+	public long purge(String appid, long time) {
+		if (StringUtils.isBlank(appid) || dao == null || search == null) {
+			return 0;
+		}
+		long purged = 0;
+		Set<String> seen = new HashSet<String>();
+		for (int i = 0; i < maxBatches; i++) {
+			List<ParaObject> expired = findExpired(appid, time);
+			// stop if the index hasn't caught up with the last batch yet
+			boolean progress = false;
+			for (ParaObject obj : expired) {
+				progress |= seen.add(obj.getId());
+			}
+			if (expired.isEmpty() || !progress) {
+				break;
+			}
+			if (nativeTTL) {
+				search.unindexAll(appid, expired);
+			} else {
+				dao.deleteAll(appid, expired);
+			}
+			purged += expired.size();
+			if (expired.size() < batchSize) {
+				break;
+			}
+		}
+		if (purged > 0) {
+			logger.info("Purged {} expired objects from app '{}'.", purged, appid);
+		}
+		return purged;
+	}
+
+	private List<ParaObject> findExpired(String appid, long time) {
+		List<ParaObject> expired;
+		if (search instanceof ElasticSearch) {
+			expired = ((ElasticSearch) search).findExpired(appid, time, batchSize);
+		} else {
+			expired = search.findQuery(appid, null, Config._EXPIRES + ":[* TO " + time + "]", new Pager(batchSize));
+		}
+		return (expired == null) ? Collections.<ParaObject>emptyList() : expired;
+	}
+
+	private void purgeAll() {
+		try {
+			purge(Config.APP_NAME_NS);
+			for (Iterator<App> it = dao.iterate(Config.APP_NAME_NS, Utils.type(App.class)); it.hasNext();) {
+				App app = it.next();
+				if (app != null && !Config.APP_NAME_NS.equals(app.getAppIdentifier())) {
+					purge(app.getAppIdentifier());
+				}
+			}
+		} catch (Exception e) {
+			logger.error(null, e);
+		}
+	}
+}
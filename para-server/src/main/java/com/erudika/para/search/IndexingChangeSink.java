@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.search;
+
+import com.erudika.para.Para;
+import com.erudika.para.core.LinkStore;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.persistence.ChangeEvent;
+import com.erudika.para.persistence.ChangeSink;
+import com.erudika.para.persistence.TieredDAO;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the search index up to date in the background, by consuming changes from the
+ * {@link com.erudika.para.persistence.ChangeStream}. Enabled by {@code cdc.async_indexing}.
+ * Each batch is reduced to the latest change per object - created and updated objects are read
+ * back from the {@link com.erudika.para.persistence.DAO} and indexed, deleted and archived objects are unindexed.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class IndexingChangeSink implements ChangeSink {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexingChangeSink.class);
+
+	@Override
+	public void onChanges(List<ChangeEvent> changes) {
+		// appid -> id -> latest change
+		Map<String, Map<String, ChangeEvent>> latest = new LinkedHashMap<String, Map<String, ChangeEvent>>();
+		for (ChangeEvent change : changes) {
+			Map<String, ChangeEvent> appChanges = latest.get(change.getAppid());
+			if (appChanges == null) {
+				appChanges = new LinkedHashMap<String, ChangeEvent>();
+				latest.put(change.getAppid(), appChanges);
+			}
+			// concurrent changes may arrive out of order
+			ChangeEvent previous = appChanges.remove(change.getId());
+			appChanges.put(change.getId(), (previous == null || change.getSequence() > previous.getSequence()) ?
+					change : previous);
+		}
+		for (Map.Entry<String, Map<String, ChangeEvent>> entry : latest.entrySet()) {
+			String appid = entry.getKey();
+			List<String> indexUs = new ArrayList<String>();
+			List<ParaObject> unindexUs = new ArrayList<ParaObject>();
+			for (ChangeEvent change : entry.getValue().values()) {
+				if (LinkStore.TYPE.equals(change.getType())) {
+					continue;
+				} else if (TieredDAO.TOMBSTONE.equals(change.getType())) {
+					// the object was archived - a tombstone event carries all fields, including the archived type
+					ParaObject archived = (change.getFields() == null) ? null :
+							TieredDAO.getArchivedStub(ParaObjectUtils.setAnnotatedFields(change.getFields()));
+					if (archived != null) {
+						unindexUs.add(archived);
+					}
+				} else if (change.getAction() == ChangeEvent.Action.DELETE) {
+					ParaObject so = ParaObjectUtils.toObject(change.getType());
+					so.setId(change.getId());
+					so.setType(change.getType());
+					so.setAppid(appid);
+					unindexUs.add(so);
+				} else {
+					indexUs.add(change.getId());
+				}
+			}
+			if (!indexUs.isEmpty()) {
+				Map<String, ParaObject> objects = Para.getDAO().readAll(appid, indexUs, true);
+				Para.getSearch().indexAll(appid, new ArrayList<ParaObject>(objects.values()));
+			}
+			if (!unindexUs.isEmpty()) {
+				Para.getSearch().unindexAll(appid, unindexUs);
+			}
+			logger.debug("IndexingChangeSink.onChanges() {} indexed: {}, unindexed: {}",
+					appid, indexUs.size(), unindexUs.size());
+		}
+	}
+}
@@ -27,6 +27,7 @@ public class SearchModule extends AbstractModule {
 
 	protected void configure() {
 		bind(Search.class).to(ElasticSearch.class).asEagerSingleton();
+		bind(ExpiryReaper.class).asEagerSingleton();
 	}
 
 }
@@ -21,7 +21,9 @@ import com.eaio.uuid.UUID;
 import com.erudika.para.cache.Cache;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Utils;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.inject.Inject;
 import javax.servlet.http.Cookie;
@@ -46,7 +48,8 @@ public class CachedCsrfTokenRepository implements CsrfTokenRepository {
 	private String parameterName = "_csrf";
 	private final String headerName = "X-CSRF-TOKEN";
 	private final String cookieName = Config.getConfigParam("security.csrf_cookie", "para-csrf-token");
-	private final Map<String, Object[]> localCache = new HashMap<String, Object[]>();
+	// insertion order is expiration order, because all tokens live for the same time
+	private final Map<String, Object[]> localCache = Collections.synchronizedMap(new LinkedHashMap<String, Object[]>());
 
 	private Cache cache;
 
@@ -83,6 +86,7 @@ public class CachedCsrfTokenRepository implements CsrfTokenRepository {
 				if (Config.isCacheEnabled()) {
 					cache.put(Config.APP_NAME_NS, key, token, Config.SESSION_TIMEOUT_SEC);
 				} else {
+					removeExpiredTokens();
 					localCache.put(key, new Object[]{token, System.currentTimeMillis()});
 				}
 			}
@@ -105,8 +109,7 @@ public class CachedCsrfTokenRepository implements CsrfTokenRepository {
 			} else {
 				Object[] arr = localCache.get(key);
 				if (arr != null && arr.length == 2) {
-					boolean expired = (((Long) arr[1]) + Config.SESSION_TIMEOUT_SEC * 1000) < System.currentTimeMillis();
-					if (expired) {
+					if (isExpired(arr)) {
 						localCache.remove(key);
 					} else {
 						token = (CsrfToken) arr[0];
@@ -117,6 +120,22 @@ public class CachedCsrfTokenRepository implements CsrfTokenRepository {
 		return token;
 	}
 
+	private boolean isExpired(Object[] entry) {
+		return (((Long) entry[1]) + Config.SESSION_TIMEOUT_SEC * 1000) < System.currentTimeMillis();
+	}
+
+	private void removeExpiredTokens() {
+		synchronized (localCache) {
+			for (Iterator<Object[]> it = localCache.values().iterator(); it.hasNext();) {
+				if (isExpired(it.next())) {
+					it.remove();
+				} else {
+					break;
+				}
+			}
+		}
+	}
+
 	private String getIdentifierFromCookie(HttpServletRequest request) {
 		String cookie = Utils.getStateParam(Config.AUTH_COOKIE, request);
 		String ident = null;
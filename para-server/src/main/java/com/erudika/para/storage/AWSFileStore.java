@@ -17,28 +17,40 @@
  */
 package com.erudika.para.storage;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.StorageClass;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Utils;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * An implementation of the {@link FileStore} interface using AWS S3.
+ * An implementation of the {@link FileStore} interface using AWS S3. Streams of unknown length are
+ * written with multipart uploads, in parts of {@code para.s3.part_size_mb}.
  * @author Alex Bogdanovski [alex@erudika.com]
  */
-public class AWSFileStore implements FileStore {
+public class AWSFileStore implements StreamingFileStore {
 
 	private static final Logger logger = LoggerFactory.getLogger(AWSFileStore.class);
+	// S3 requires all parts of a multipart upload except the last to be at least 5 MB
+	private static final int PART_SIZE = Math.max(Config.getConfigInt("para.s3.part_size_mb", 8), 5) * 1024 * 1024;
 	private final String baseUrl = "https://s3-{0}.amazonaws.com/{1}/{2}";
 	private final BasicAWSCredentials awsCredentials;
 	private AmazonS3Client s3;
@@ -109,6 +121,53 @@ public class AWSFileStore implements FileStore {
 		return null;
 	}
 
+	@Override
+	public void write(String path, InputStream data) throws IOException {
+		if (data == null) {
+			throw new IOException("No data for " + path);
+		}
+		if (StringUtils.startsWith(path, "/")) {
+			path = path.substring(1);
+		}
+		String uploadId = null;
+		try {
+			if (StringUtils.isBlank(path)) {
+				throw new IOException("Invalid path: " + path);
+			}
+			// only one part is held in memory, whatever the size of the stream
+			byte[] part = new byte[PART_SIZE];
+			int length = fill(data, part);
+			if (length < PART_SIZE) {
+				ObjectMetadata om = new ObjectMetadata();
+				om.setContentLength(length);
+				s3.putObject(new PutObjectRequest(bucket, path, new ByteArrayInputStream(part, 0, length), om));
+				return;
+			}
+			uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, path)).getUploadId();
+			List<PartETag> etags = new ArrayList<PartETag>();
+			while (length > 0) {
+				etags.add(s3.uploadPart(new UploadPartRequest().withBucketName(bucket).withKey(path).
+						withUploadId(uploadId).withPartNumber(etags.size() + 1).withPartSize(length).
+						withInputStream(new ByteArrayInputStream(part, 0, length))).getPartETag());
+				length = fill(data, part);
+			}
+			s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, path, uploadId, etags));
+			uploadId = null;
+		} catch (AmazonClientException e) {
+			throw new IOException(e);
+		} finally {
+			if (uploadId != null) {
+				// the parts of an incomplete upload are kept (and billed) until it's aborted
+				try {
+					s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, path, uploadId));
+				} catch (AmazonClientException e) {
+					logger.warn(null, e);
+				}
+			}
+			data.close();
+		}
+	}
+
 	@Override
 	public boolean delete(String path) {
 		if (StringUtils.startsWith(path, "/")) {
@@ -121,4 +180,13 @@ public class AWSFileStore implements FileStore {
 		return false;
 	}
 
+	private static int fill(InputStream data, byte[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = data.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
 }
@@ -26,16 +26,19 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Stores files locally.
+ * Stores files locally. Paths which point outside of the storage folder are rejected.
  *
  * @author Alex Bogdanovski [alex@erudika.com]
  */
-public class LocalFileStore implements FileStore {
+public class LocalFileStore implements StreamingFileStore {
 
 	private static final Logger logger = LoggerFactory.getLogger(LocalFileStore.class);
 	private String folder;
@@ -61,12 +64,9 @@ public class LocalFileStore implements FileStore {
 
 	@Override
 	public InputStream load(String path) {
-		if (StringUtils.startsWith(path, File.separator)) {
-			path = path.substring(1);
-		}
-		if (!StringUtils.isBlank(path)) {
+		File f = resolve(path);
+		if (f != null) {
 			try {
-				File f = new File(folder + File.separator + path);
 				return f.canRead() ? new BufferedInputStream(new FileInputStream(f)) : null;
 			} catch (FileNotFoundException ex) {
 				logger.error(null, ex);
@@ -77,26 +77,24 @@ public class LocalFileStore implements FileStore {
 
 	@Override
 	public String store(String path, InputStream data) {
-		if (StringUtils.startsWith(path, File.separator)) {
-			path = path.substring(1);
-		}
-		if (StringUtils.isBlank(path)) {
+		File f = resolve(path);
+		if (f == null) {
 			return null;
 		}
 		int maxFileSizeMBytes = Config.getConfigInt("para.localstorage.max_filesize_mb", 10);
-		FileOutputStream fos = null;
-		BufferedOutputStream bos = null;
+		OutputStream out = null;
 		try {
 			if (data.available() > 0 && data.available() <= (maxFileSizeMBytes * 1024 * 1024)) {
-				File f = new File(folder + File.separator + path);
-				if (f.canWrite()) {
-					fos = new FileOutputStream(f);
-					bos = new BufferedOutputStream(fos);
+				File dir = f.getParentFile();
+				if ((dir.isDirectory() || dir.mkdirs()) && (!f.exists() || f.canWrite())) {
+					out = new BufferedOutputStream(new FileOutputStream(f));
 					int read = 0;
 					byte[] bytes = new byte[1024];
 					while ((read = data.read(bytes)) != -1) {
-						bos.write(bytes, 0, read);
+						out.write(bytes, 0, read);
 					}
+					out.close();
+					out = null;
 					return f.getAbsolutePath();
 				}
 			}
@@ -104,8 +102,9 @@ public class LocalFileStore implements FileStore {
 			logger.error(null, e);
 		} finally {
 			try {
-				fos.close();
-				bos.close();
+				if (out != null) {
+					out.close();
+				}
 				data.close();
 			} catch (IOException e) {
 				logger.error(null, e);
@@ -116,14 +115,66 @@ public class LocalFileStore implements FileStore {
 
 	@Override
 	public boolean delete(String path) {
+		File f = resolve(path);
+		return f != null && f.canWrite() && f.delete();
+	}
+
+	@Override
+	public void write(String path, InputStream data) throws IOException {
+		if (data == null) {
+			throw new IOException("No data for " + path);
+		}
+		try {
+			File f = resolve(path);
+			if (f == null) {
+				throw new IOException("Invalid path: " + path);
+			}
+			File dir = f.getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Can't create folder " + dir);
+			}
+			// the file is written next to its final location and moved there when it's complete
+			File tmp = File.createTempFile(f.getName(), ".tmp", dir);
+			try {
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+				try {
+					byte[] bytes = new byte[8192];
+					int read;
+					while ((read = data.read(bytes)) != -1) {
+						out.write(bytes, 0, read);
+					}
+				} finally {
+					out.close();
+				}
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmp.toPath());
+			}
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * @param path a relative path
+	 * @return the file or null if the path is blank or points outside of the storage folder
+	 */
+	private File resolve(String path) {
 		if (StringUtils.startsWith(path, File.separator)) {
 			path = path.substring(1);
 		}
-		if (!StringUtils.isBlank(path)) {
-			File f = new File(folder + File.separator + path);
-			return f.canWrite() && f.delete();
+		if (StringUtils.isBlank(path)) {
+			return null;
+		}
+		try {
+			File base = new File(folder).getCanonicalFile();
+			File f = new File(base, path).getCanonicalFile();
+			String prefix = StringUtils.appendIfMissing(base.getPath(), File.separator);
+			return f.getPath().startsWith(prefix) ? f : null;
+		} catch (IOException e) {
+			logger.warn("Invalid path {}: {}", path, e.getMessage());
+			return null;
 		}
-		return false;
 	}
 
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.utils.filters;
+
+import com.erudika.para.cache.IdentityMap;
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Binds a request-scoped {@link IdentityMap} to the thread handling the request and clears it
+ * when the request is done. It should run before the security filters so that the objects they
+ * read (apps, users) are reused by the request handlers.
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class IdentityMapFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig fc) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		// nested dispatches (forward, include, error) share the map of the outer request
+		boolean bound = IdentityMap.begin();
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			if (bound) {
+				IdentityMap.end();
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+}
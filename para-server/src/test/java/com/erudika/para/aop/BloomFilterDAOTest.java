@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.aop.IdentityMapDAOTest.CountingDAO;
+import com.erudika.para.cache.BloomFilters;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.ReadConsistency;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class BloomFilterDAOTest {
+
+	private static final String APPID = "bloom-filter-test";
+	private CountingDAO store;
+	private DAO dao;
+	private BloomFilters filters;
+
+	@Before
+	public void setUp() {
+		filters = new BloomFilters(100, 0.01, new Executor() {
+			public void execute(Runnable command) {
+				command.run();
+			}
+		}, false);
+		store = new CountingDAO();
+		dao = new BloomFilterDAO(store, filters);
+	}
+
+	@Test
+	public void testMissesSkipDAO() {
+		// written before the filter exists - found by the scan
+		Sysprop s1 = new Sysprop("bf1");
+		dao.create(APPID, s1);
+		assertFalse(filters.isReady(APPID));
+
+		assertNotNull(dao.read(APPID, s1.getId()));
+		assertTrue(filters.isReady(APPID));
+		assertEquals(1, store.reads);
+		assertNull(dao.read(APPID, "missing"));
+		assertEquals(1, store.reads);
+		assertTrue(dao.readAll(APPID, Arrays.asList("missing1", "missing2"), true).isEmpty());
+		assertEquals(1, store.reads);
+		assertEquals(1, dao.readAll(APPID, Arrays.asList("missing1", s1.getId()), true).size());
+		assertEquals(2, store.reads);
+
+		// strong reads skip the filter
+		assertNull(dao.read(APPID, "missing", ReadConsistency.STRONG));
+		assertEquals(3, store.reads);
+
+		// created objects are added
+		Sysprop s2 = new Sysprop("bf2");
+		dao.create(APPID, s2);
+		assertNotNull(dao.read(APPID, s2.getId()));
+		Sysprop s3 = new Sysprop();
+		dao.create(APPID, s3);
+		assertNotNull(dao.read(APPID, s3.getId()));
+		Sysprop s4 = new Sysprop("bf4");
+		Sysprop s5 = new Sysprop("bf5");
+		dao.createAll(APPID, Arrays.asList(s4, s5));
+		assertEquals(2, dao.readAll(APPID, Arrays.asList(s4.getId(), s5.getId()), true).size());
+
+		// deleted objects are still read from the DAO until the filter is rebuilt
+		dao.delete(APPID, s2);
+		store.reads = 0;
+		assertNull(dao.read(APPID, s2.getId()));
+		assertEquals(1, store.reads);
+		assertEquals(4, filters.rebuild(dao, APPID));
+		assertNull(dao.read(APPID, s2.getId()));
+		assertEquals(1, store.reads);
+
+		// filters are per app
+		filters.added("other-app", Arrays.asList(s2.getId()));
+		assertNull(dao.read("other-app", s1.getId()));
+		assertTrue(filters.isReady("other-app"));
+		filters.clear(APPID);
+		assertFalse(filters.isReady(APPID));
+	}
+
+	@Test
+	public void testNewFiltersAreConfirmed() throws InterruptedException {
+		Executor sameThread = new Executor() {
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+		DAO dao2 = new BloomFilterDAO(store, new BloomFilters(100, 0.01, sameThread, false, 3600000, 0));
+		assertNull(dao2.read(APPID, "missing"));
+
+		// written on another node before the scan, but missed by it
+		store.create(APPID, new Sysprop("bf-other1"));
+		assertNotNull(dao2.read(APPID, "bf-other1"));
+		store.reads = 0;
+		assertNull(dao2.read(APPID, "missing"));
+		assertEquals(1, store.reads);
+
+		BloomFilters confirmed = new BloomFilters(100, 0.01, sameThread, false, 1, 100);
+		DAO dao3 = new BloomFilterDAO(store, confirmed);
+		assertNull(dao3.read(APPID, "missing"));
+		for (int i = 0; i < 100 && !confirmed.isReady(APPID); i++) {
+			Thread.sleep(50);
+		}
+		assertTrue(confirmed.isReady(APPID));
+		store.reads = 0;
+		assertNull(dao3.read(APPID, "missing"));
+		assertEquals(0, store.reads);
+		assertNotNull(dao3.read(APPID, "bf-other1"));
+
+		// written on another node, but the message was lost - found after the next rebuild
+		store.create(APPID, new Sysprop("bf-other2"));
+		for (int i = 0; i < 100 && dao3.read(APPID, "bf-other2") == null; i++) {
+			Thread.sleep(50);
+		}
+		assertNotNull(dao3.read(APPID, "bf-other2"));
+	}
+}
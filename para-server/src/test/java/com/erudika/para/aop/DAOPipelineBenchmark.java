@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.MockCache;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.MockDAO;
+import com.erudika.para.search.Search;
+import com.google.inject.util.Providers;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A micro-benchmark of the {@link DAOPipeline}, compared to calling the data store directly. It's not run
+ * by the build - run {@code main()} from the test classpath. Each operation is measured in several rounds,
+ * after a few warm-up rounds, and the best round is reported in nanoseconds per operation.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class DAOPipelineBenchmark {
+
+	private static final String APPID = "benchmark";
+	private static final int OBJECTS = 1000;
+	private static final int OPS = 1000000;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	private static volatile Object sink;
+
+	private DAOPipelineBenchmark() { }
+
+	/**
+	 * Runs the benchmark.
+	 * @param args ignored
+	 */
+	public static void main(String[] args) {
+		System.setProperty("para.cache_enabled", "true");
+		Map<String, DAO> daos = new LinkedHashMap<String, DAO>();
+		daos.put("store", new MockDAO());
+		daos.put("pipeline", DAOPipeline.assemble(new MockDAO(), Providers.of(noopSearch()), new MockCache(),
+				null, null, false));
+
+		System.out.println(String.format("%-12s %14s %14s", "", "read ns/op", "update ns/op"));
+		for (Map.Entry<String, DAO> entry : daos.entrySet()) {
+			List<Sysprop> objects = populate(entry.getValue());
+			System.out.println(String.format("%-12s %14.1f %14.1f", entry.getKey(),
+					measure(entry.getValue(), objects, false), measure(entry.getValue(), objects, true)));
+		}
+	}
+
+	private static List<Sysprop> populate(DAO dao) {
+		List<Sysprop> objects = new ArrayList<Sysprop>(OBJECTS);
+		for (int i = 0; i < OBJECTS; i++) {
+			Sysprop s = new Sysprop("bench" + i);
+			s.setName("benchmark object " + i);
+			dao.create(APPID, s);
+			objects.add(s);
+		}
+		return objects;
+	}
+
+	private static double measure(DAO dao, List<Sysprop> objects, boolean write) {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < OPS; i++) {
+				Sysprop s = objects.get(i % OBJECTS);
+				if (write) {
+					dao.update(APPID, s);
+				} else {
+					sink = dao.read(APPID, s.getId());
+				}
+			}
+			double nanosPerOp = (System.nanoTime() - start) / (double) OPS;
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, nanosPerOp);
+			}
+		}
+		return best;
+	}
+
+	private static Search noopSearch() {
+		return (Search) Proxy.newProxyInstance(Search.class.getClassLoader(), new Class<?>[]{Search.class},
+				new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return null;
+			}
+		});
+	}
+}
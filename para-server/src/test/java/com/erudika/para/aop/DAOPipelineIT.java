@@ -36,6 +36,7 @@ import com.erudika.para.utils.Config;
 import com.erudika.para.utils.Utils;
 import com.google.inject.Binder;
 import com.google.inject.Module;
+import com.google.inject.name.Names;
 import com.google.inject.util.Modules;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -51,9 +52,9 @@ import org.slf4j.LoggerFactory;
  *
  * @author Alex Bogdanovski [alex@erudika.com]
  */
-public class AspectsIT {
+public class DAOPipelineIT {
 
-	private static final Logger logger = LoggerFactory.getLogger(AspectsIT.class);
+	private static final Logger logger = LoggerFactory.getLogger(DAOPipelineIT.class);
 	private static Sysprop s0;
 	private static Sysprop s1;
 	private static Sysprop s2;
@@ -66,7 +67,7 @@ public class AspectsIT {
 		System.setProperty("para.cache_enabled", "true");
 		Para.initialize(Modules.override(ParaServer.getCoreModules()).with(new Module() {
 			public void configure(Binder binder) {
-				binder.bind(DAO.class).to(MockDAO.class).asEagerSingleton();
+				binder.bind(DAO.class).annotatedWith(Names.named(DAOPipeline.STORE)).to(MockDAO.class).asEagerSingleton();
 				binder.bind(Cache.class).to(MockCache.class).asEagerSingleton();
 				binder.bind(Search.class).to(ElasticSearch.class).asEagerSingleton();
 			}
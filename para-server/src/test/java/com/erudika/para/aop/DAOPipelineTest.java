@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.Cache;
+import com.erudika.para.cache.MockCache;
+import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.core.Tag;
+import com.erudika.para.core.User;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.MockDAO;
+import com.erudika.para.persistence.ReadConsistency;
+import com.erudika.para.persistence.TieredDAO;
+import com.erudika.para.search.Search;
+import com.google.inject.util.Providers;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class DAOPipelineTest {
+
+	private static final String APPID = "pipeline-test";
+	private MockDAO store;
+	private Search search;
+	private Cache cache;
+	private DAO dao;
+
+	@Before
+	public void setUp() {
+		store = new MockDAO();
+		search = mock(Search.class);
+		cache = new MockCache();
+		dao = DAOPipeline.assemble(store, Providers.of(search), cache, null, null, false);
+	}
+
+	@Test
+	public void testValidation() {
+		User invalid = new User("invalid");
+		invalid.setIdentifier(null);
+		assertNull(dao.create(APPID, invalid));
+		assertNull(store.read(APPID, invalid.getId()));
+		assertFalse(cache.contains(APPID, invalid.getId()));
+		verify(search, never()).index(anyString(), any(ParaObject.class));
+
+		// users and apps are never written in batches
+		App app = new App("app1");
+		Tag tag = new Tag("tag1");
+		List<ParaObject> list = new ArrayList<ParaObject>(Arrays.asList(app, invalid, tag));
+		dao.createAll(APPID, list);
+		assertEquals(1, list.size());
+		assertNull(store.read(APPID, app.getId()));
+		assertNotNull(store.read(APPID, tag.getId()));
+	}
+
+	@Test
+	public void testIndexingAndCaching() {
+		Sysprop s = new Sysprop("p1");
+		assertNotNull(dao.create(APPID, s));
+		verify(search).index(APPID, s);
+		assertTrue(cache.contains(APPID, s.getId()));
+
+		// reads are served from the cache, strong reads from the data store
+		store.delete(APPID, s);
+		assertNotNull(dao.read(APPID, s.getId()));
+		assertNull(dao.read(APPID, s.getId(), ReadConsistency.STRONG));
+		store.create(APPID, s);
+
+		cache.remove(APPID, s.getId());
+		assertNotNull(dao.read(APPID, s.getId()));
+		assertTrue(cache.contains(APPID, s.getId()));
+
+		Sysprop s2 = new Sysprop("p2");
+		store.create(APPID, s2);
+		assertEquals(2, dao.readAll(APPID, Arrays.asList(s.getId(), s2.getId()), true).size());
+		assertTrue(cache.contains(APPID, s2.getId()));
+
+		// incremented objects are evicted and indexed again
+		assertEquals(3L, dao.increment(APPID, s.getId(), "votes", 3).longValue());
+		assertFalse(cache.contains(APPID, s.getId()));
+		verify(search, times(2)).index(eq(APPID), any(ParaObject.class));
+		assertEquals(3, dao.<Sysprop>read(APPID, s.getId()).getVotes().intValue());
+
+		dao.deleteAll(APPID, Arrays.asList(s, s2));
+		verify(search).unindexAll(APPID, Arrays.asList(s, s2));
+		assertFalse(cache.contains(APPID, s.getId()));
+		assertFalse(cache.contains(APPID, s2.getId()));
+		assertNull(dao.read(APPID, s2.getId()));
+	}
+
+	@Test
+	public void testUpdatingProjections() {
+		Sysprop s = new Sysprop("proj1");
+		s.setName("name");
+		s.setParentid("parent");
+		dao.create(APPID, s);
+		Sysprop partial = dao.<Sysprop>readAll(APPID, Arrays.asList(s.getId()), Arrays.asList("name")).get(s.getId());
+		partial.setName("new name");
+		dao.update(APPID, partial);
+		// the partial object is neither cached nor indexed - the stored object is indexed instead
+		assertFalse(cache.contains(APPID, s.getId()));
+		verify(search, times(1)).index(anyString(), any(ParaObject.class));
+		verify(search).indexAll(eq(APPID), argThat(new ArgumentMatcher<List<ParaObject>>() {
+			public boolean matches(Object list) {
+				Sysprop indexed = (Sysprop) ((List<?>) list).get(0);
+				return "new name".equals(indexed.getName()) && "parent".equals(indexed.getParentid());
+			}
+		}));
+		Sysprop stored = dao.read(APPID, s.getId());
+		assertEquals("new name", stored.getName());
+		assertEquals("parent", stored.getParentid());
+
+		partial.setName("newer name");
+		dao.updateAll(APPID, Arrays.asList(partial));
+		assertFalse(cache.contains(APPID, s.getId()));
+		assertEquals("parent", dao.<Sysprop>read(APPID, s.getId()).getParentid());
+		verify(search, times(2)).indexAll(eq(APPID), anyListOf(ParaObject.class));
+	}
+
+	@Test
+	public void testBatchedReindex() {
+		IndexingDAO indexing = new IndexingDAO(store, Providers.of(search), 60000);
+		Sysprop s1 = new Sysprop("r1");
+		Sysprop s2 = new Sysprop("r2");
+		store.create(APPID, s1);
+		store.create(APPID, s2);
+		indexing.increment(APPID, s1.getId(), "votes", 1);
+		indexing.increment(APPID, s1.getId(), "votes", 1);
+		indexing.increment(APPID, s2.getId(), "votes", -1);
+		verify(search, never()).index(anyString(), any(ParaObject.class));
+
+		// each incremented object is read and indexed once
+		indexing.shutdown();
+		verify(search).indexAll(eq(APPID), argThat(new ArgumentMatcher<List<ParaObject>>() {
+			public boolean matches(Object list) {
+				return ((List<?>) list).size() == 2;
+			}
+		}));
+		indexing.reindexPending();
+		verify(search, times(1)).indexAll(eq(APPID), anyListOf(ParaObject.class));
+
+		// after shutdown objects are reindexed right away
+		indexing.increment(APPID, s1.getId(), "votes", 1);
+		verify(search).index(eq(APPID), any(ParaObject.class));
+	}
+
+	@Test
+	public void testArchivedObjectsAreUnindexed() {
+		Sysprop s = new Sysprop("a1");
+		assertNotNull(dao.create(APPID, s));
+		Sysprop read = dao.read(APPID, s.getId());
+		Sysprop tombstone = new Sysprop(s.getId());
+		tombstone.setType(TieredDAO.TOMBSTONE);
+		tombstone.setName("tiering/segment");
+		tombstone.addProperty(TieredDAO.ARCHIVED_TYPE, s.getType());
+		assertTrue(dao.compareAndSet(APPID, read, tombstone));
+		// the original is removed from the index, the tombstone is never indexed
+		verify(search).unindex(APPID, read);
+		verify(search, times(1)).index(anyString(), any(ParaObject.class));
+		assertFalse(cache.contains(APPID, s.getId()));
+		assertFalse(dao.compareAndSet(APPID, read, tombstone));
+		verify(search, times(1)).unindex(anyString(), any(ParaObject.class));
+	}
+
+	@Test
+	public void testDisabledDecorators() {
+		DAO plain = DAOPipeline.assemble(store, null, null, null, null, false);
+		Sysprop s = new Sysprop("p3");
+		assertNotNull(plain.create(APPID, s));
+		plain.delete(APPID, s);
+		verifyZeroInteractions(search);
+		assertFalse(cache.contains(APPID, s.getId()));
+		assertNull(plain.create(APPID, new User("invalid")));
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.aop;
+
+import com.erudika.para.cache.IdentityMap;
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.MockDAO;
+import com.erudika.para.persistence.ReadConsistency;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class IdentityMapDAOTest {
+
+	private static final String APPID = "identity-map-test";
+	private CountingDAO store;
+	private DAO dao;
+
+	public static class CountingDAO extends MockDAO {
+		int reads = 0;
+
+		@Override
+		public <P extends ParaObject> P read(String appid, String key) {
+			reads++;
+			return super.read(appid, key);
+		}
+
+		@Override
+		public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+			reads++;
+			return super.read(appid, key, consistency);
+		}
+
+		@Override
+		public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns) {
+			reads++;
+			return super.readAll(appid, keys, getAllColumns);
+		}
+
+		@Override
+		public <P extends ParaObject> Map<String, P> readAll(String appid, List<String> keys, boolean getAllColumns,
+				ReadConsistency consistency) {
+			reads++;
+			return super.readAll(appid, keys, getAllColumns, consistency);
+		}
+	}
+
+	@Before
+	public void setUp() {
+		store = new CountingDAO();
+		dao = new IdentityMapDAO(store);
+	}
+
+	@After
+	public void tearDown() {
+		IdentityMap.end();
+	}
+
+	@Test
+	public void testRepeatedReads() {
+		Sysprop s1 = new Sysprop("im1");
+		Sysprop s2 = new Sysprop("im2");
+		dao.create(APPID, s1);
+		dao.create(APPID, s2);
+
+		// no bound map - every read goes to the DAO
+		dao.read(APPID, s1.getId());
+		dao.read(APPID, s1.getId());
+		assertEquals(2, store.reads);
+
+		assertTrue(IdentityMap.begin());
+		assertFalse(IdentityMap.begin());
+		store.reads = 0;
+		ParaObject r1 = dao.read(APPID, s1.getId());
+		ParaObject r2 = dao.read(APPID, s1.getId());
+		assertNotNull(r1);
+		assertSame(r1, r2);
+		assertEquals(1, store.reads);
+		assertNull(dao.read("other-app", s1.getId()));
+		assertEquals(2, store.reads);
+
+		store.reads = 0;
+		Map<String, ParaObject> all = dao.readAll(APPID, Arrays.asList(s1.getId(), s2.getId()), true);
+		assertEquals(2, all.size());
+		assertEquals(1, store.reads);
+		assertEquals(r1, all.get(s1.getId()));
+		dao.readAll(APPID, Arrays.asList(s1.getId(), s2.getId()), true);
+		dao.read(APPID, s2.getId());
+		assertEquals(1, store.reads);
+
+		IdentityMap.end();
+		assertFalse(IdentityMap.isActive());
+		assertEquals(0, IdentityMap.size());
+	}
+
+	@Test
+	public void testStrongReadsBypassIdentityMap() {
+		IdentityMap.begin();
+		Sysprop s1 = new Sysprop("im4");
+		dao.create(APPID, s1);
+		dao.read(APPID, s1.getId(), ReadConsistency.EVENTUAL);
+		assertEquals(0, store.reads);
+
+		assertNotNull(dao.read(APPID, s1.getId(), ReadConsistency.STRONG));
+		assertEquals(1, store.reads);
+		dao.readAll(APPID, Arrays.asList(s1.getId()), true, ReadConsistency.STRONG);
+		assertEquals(2, store.reads);
+		// the result of a strong read is kept for the rest of the request
+		dao.read(APPID, s1.getId());
+		assertEquals(2, store.reads);
+	}
+
+	@Test
+	public void testWritesUpdateIdentityMap() {
+		IdentityMap.begin();
+		Sysprop s1 = new Sysprop("im3");
+		dao.create(APPID, s1);
+		assertSame(s1, dao.read(APPID, s1.getId()));
+		assertEquals(0, store.reads);
+
+		Sysprop copy = new Sysprop(s1.getId());
+		copy.setName("updated");
+		dao.update(APPID, copy);
+		assertEquals("updated", dao.read(APPID, s1.getId()).getName());
+		assertEquals(1, store.reads);
+
+		dao.increment(APPID, s1.getId(), "votes", 1);
+		assertEquals(1, dao.<Sysprop>read(APPID, s1.getId()).getVotes().intValue());
+		assertEquals(2, store.reads);
+
+		dao.delete(APPID, s1);
+		assertNull(dao.read(APPID, s1.getId()));
+		assertEquals(3, store.reads);
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.cache;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class BloomFilterTest {
+
+	@Test
+	public void testNoFalseNegatives() {
+		BloomFilter filter = new BloomFilter(100, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.add("key" + i);
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("key" + i));
+		}
+		assertFalse(filter.mightContain(null));
+		assertTrue(filter.size() > 9800 && filter.size() <= 10000);
+		assertTrue(filter.sizeInBytes() > 0);
+	}
+
+	@Test
+	public void testFalsePositiveRate() {
+		BloomFilter filter = new BloomFilter(1000, 0.01);
+		for (int i = 0; i < 50000; i++) {
+			filter.add("id" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("missing" + i)) {
+				falsePositives++;
+			}
+		}
+		// scaling keeps the overall rate below the configured one
+		assertTrue("false positives: " + falsePositives, falsePositives < 1000);
+	}
+}
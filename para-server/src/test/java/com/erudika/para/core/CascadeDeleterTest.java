@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.MockDAO;
+import com.erudika.para.search.Search;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class CascadeDeleterTest {
+
+	@Test
+	public void testDeleteChildren() {
+		DAO dao = new MockDAO();
+		Sysprop parent = new Sysprop("cascade-parent");
+		parent.setDao(dao);
+		dao.create(parent);
+		long now = System.currentTimeMillis();
+		List<Sysprop> children = new ArrayList<Sysprop>();
+		for (int i = 0; i < 250; i++) {
+			Sysprop child = new Sysprop("cascade-child" + i);
+			child.setType("child");
+			child.setParentid(parent.getId());
+			child.setTimestamp(now - i);
+			children.add(child);
+		}
+		Sysprop other = new Sysprop("cascade-other");
+		other.setType("other");
+		other.setParentid(parent.getId());
+		other.setTimestamp(now);
+		dao.createAll(children);
+		dao.create(other);
+
+		CascadeDeleter.Task task = CascadeDeleter.deleteChildren(parent, "child");
+		assertTrue(task.isDone());
+		assertFalse(task.isFailed());
+		assertEquals(250, task.getFound());
+		assertEquals(250, task.getDeleted());
+		for (Sysprop child : children) {
+			assertNull(dao.read(child.getId()));
+		}
+		assertNotNull(dao.read(other.getId()));
+		assertNotNull(dao.read(parent.getId()));
+	}
+
+	@Test
+	public void testDeleteChildrenFromIndex() {
+		DAO dao = mock(DAO.class);
+		Search search = mock(Search.class);
+		Sysprop parent = new Sysprop("cascade-parent2");
+		parent.setDao(dao);
+		parent.setSearch(search);
+		List<ParaObject> children = new ArrayList<ParaObject>();
+		children.add(new Sysprop("c1"));
+		children.add(new Sysprop("c2"));
+		// the DAO can't look up children by parent id, so the search index is used
+		when(dao.readByField(anyString(), eq(Config._PARENTID), eq(parent.getId()), any(Pager.class))).
+				thenReturn(null);
+		when(search.iterateTerms(anyString(), eq("child"), anyMapOf(String.class, Object.class), eq(true))).
+				thenReturn(children.iterator());
+
+		CascadeDeleter.Task task = CascadeDeleter.deleteChildren(parent, "child");
+		assertEquals(2, task.getDeleted());
+		verify(dao).deleteAll(anyString(), eq(children));
+	}
+
+	@Test
+	public void testFailedIndexScroll() {
+		DAO dao = mock(DAO.class);
+		Search search = mock(Search.class);
+		Sysprop parent = new Sysprop("cascade-parent3");
+		parent.setDao(dao);
+		parent.setSearch(search);
+		Iterator<ParaObject> failing = new Iterator<ParaObject>() {
+			private int read = 0;
+
+			public boolean hasNext() {
+				if (read >= 1) {
+					throw new IllegalStateException("Scroll failed.");
+				}
+				return true;
+			}
+
+			public ParaObject next() {
+				return new Sysprop("c" + (read++));
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		when(dao.readByField(anyString(), eq(Config._PARENTID), eq(parent.getId()), any(Pager.class))).
+				thenReturn(null);
+		when(search.iterateTerms(anyString(), eq("child"), anyMapOf(String.class, Object.class), eq(true))).
+				thenReturn(failing);
+
+		CascadeDeleter.Task task = CascadeDeleter.deleteChildren(parent, "child");
+		assertTrue(task.isDone());
+		assertTrue(task.isFailed());
+	}
+
+	@Test
+	public void testUnlinkAllAsync() throws InterruptedException {
+		DAO dao = new MockDAO();
+		Search search = mock(Search.class);
+		User u = new User("cascade-user");
+		u.setDao(dao);
+		u.setSearch(search);
+		List<ParaObject> links = new ArrayList<ParaObject>();
+		for (int i = 0; i < 150; i++) {
+			Linker link = new Linker(Utils.type(User.class), Utils.type(Tag.class), u.getId(), "tag" + i);
+			dao.create(link);
+			links.add(link);
+		}
+		when(search.iterateTerms(anyString(), eq(Utils.type(Linker.class)), anyMapOf(String.class, Object.class),
+				eq(false))).thenReturn(links.iterator());
+
+		CascadeDeleter.Task task = CascadeDeleter.unlinkAllAsync(u);
+		assertSame(task, CascadeDeleter.getTask(task.getId()));
+		for (int i = 0; i < 100 && !task.isDone(); i++) {
+			Thread.sleep(50);
+		}
+		assertTrue(task.isDone());
+		assertFalse(task.isFailed());
+		assertEquals(150, task.getDeleted());
+		for (ParaObject link : links) {
+			assertNull(dao.read(link.getId()));
+		}
+		assertNull(CascadeDeleter.getTask(null));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A micro-benchmark of the cost of change tracking on reads - an object is decoded from JSON, as data stores
+ * do, and then either not tracked, marked clean or marked clean lazily. It's not run by the build - run
+ * {@code main()} from the test classpath. The best round is reported in nanoseconds per read.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public final class ChangeTrackingBenchmark {
+
+	private static final int OBJECTS = 1000;
+	private static final int OPS = 200000;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	private static volatile Object sink;
+
+	private ChangeTrackingBenchmark() { }
+
+	/**
+	 * Runs the benchmark.
+	 * @param args ignored
+	 * @throws IOException if an object can't be decoded
+	 */
+	public static void main(String[] args) throws IOException {
+		List<byte[]> rows = new ArrayList<byte[]>(OBJECTS);
+		for (int i = 0; i < OBJECTS; i++) {
+			Sysprop s = new Sysprop("bench" + i);
+			s.setName("benchmark object " + i);
+			s.setTimestamp(System.currentTimeMillis());
+			s.addProperty("count", i);
+			s.addProperty("text", "some text which is stored with the object");
+			rows.add(ParaObjectUtils.getJsonWriterNoIdent().writeValueAsBytes(ParaObjectUtils.getAnnotatedFields(s)));
+		}
+		System.out.println(String.format("%-12s %14s", "", "read ns/op"));
+		for (String mode : new String[]{"untracked", "eager", "lazy"}) {
+			System.out.println(String.format("%-12s %14.1f", mode, measure(rows, mode)));
+		}
+	}
+
+	private static double measure(List<byte[]> rows, String mode) throws IOException {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < OPS; i++) {
+				byte[] row = rows.get(i % OBJECTS);
+				Map<String, Object> fields = ParaObjectUtils.getJsonReader(Map.class).readValue(row);
+				Sysprop s = ParaObjectUtils.setAnnotatedFields(fields);
+				if ("eager".equals(mode)) {
+					ParaObjectUtils.markClean(s);
+				} else if ("lazy".equals(mode)) {
+					ParaObjectUtils.markCleanLazily(s, row);
+				}
+				sink = s;
+			}
+			double nanosPerOp = (System.nanoTime() - start) / (double) OPS;
+			if (round >= WARMUP_ROUNDS) {
+				best = Math.min(best, nanosPerOp);
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import com.erudika.para.aop.DAOPipeline;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.MockDAO;
+import com.erudika.para.persistence.ReadConsistency;
+import com.erudika.para.search.Search;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import com.erudika.para.utils.Utils;
+import com.google.inject.util.Providers;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class LinkStoreTest {
+
+	private DAO dao;
+	private Search search;
+
+	@Before
+	public void setUp() {
+		System.setProperty("para.link_store_enabled", "true");
+		search = mock(Search.class);
+		dao = DAOPipeline.assemble(new MockDAO(), Providers.of(search), null, null, null, true);
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("para.link_store_enabled");
+	}
+
+	@Test
+	public void testLinks() {
+		Sysprop u = new Sysprop("ls-user1");
+		u.setType("person");
+		u.setDao(dao);
+		u.setSearch(search);
+		dao.create(u);
+		List<Tag> tags = new ArrayList<Tag>();
+		for (int i = 0; i < 3; i++) {
+			Tag t = new Tag("ls-tag" + i);
+			t.setDao(dao);
+			t.setSearch(search);
+			dao.create(t);
+			tags.add(t);
+			assertNotNull(u.link(t.getId()));
+		}
+		// linking twice doesn't add the link twice
+		u.link(tags.get(0).getId());
+
+		assertEquals(3L, u.countLinks(Utils.type(Tag.class)).longValue());
+		assertEquals(1L, tags.get(1).countLinks("person").longValue());
+		assertEquals(0L, u.countLinks("person").longValue());
+		assertTrue(u.isLinked(tags.get(2)));
+
+		List<ParaObject> linked = u.getLinkedObjects(Utils.type(Tag.class));
+		assertEquals(3, linked.size());
+		assertEquals(tags.get(0).getId(), linked.get(0).getId());
+		assertEquals(tags.get(2).getId(), linked.get(2).getId());
+		List<Linker> links = u.getLinks(Utils.type(Tag.class));
+		assertEquals(3, links.size());
+		assertEquals(u.getId(), links.get(1).getId1());
+		assertEquals(tags.get(1).getId(), links.get(1).getId2());
+		assertEquals(u.getId(), tags.get(1).getLinkedObjects("person").get(0).getId());
+
+		u.unlink(Utils.type(Tag.class), tags.get(1).getId());
+		assertEquals(2L, u.countLinks(Utils.type(Tag.class)).longValue());
+		assertEquals(0L, tags.get(1).countLinks("person").longValue());
+		assertFalse(u.isLinked(tags.get(1)));
+
+		// links are read by key, the search index isn't queried
+		verify(search, never()).findTerms(anyString(), anyString(), anyMapOf(String.class, Object.class),
+				anyBoolean());
+		verify(search, never()).getCount(anyString(), anyString(), anyMapOf(String.class, Object.class));
+		// adjacency lists aren't indexed
+		ArgumentCaptor<ParaObject> indexed = ArgumentCaptor.forClass(ParaObject.class);
+		verify(search, atLeastOnce()).index(anyString(), indexed.capture());
+		for (ParaObject so : indexed.getAllValues()) {
+			assertFalse(LinkStore.isAdjacencyList(so));
+		}
+	}
+
+	@Test
+	public void testShardsAndPaging() {
+		Sysprop parent = new Sysprop("ls-parent");
+		parent.setDao(dao);
+		dao.create(parent);
+		List<Linker> links = new ArrayList<Linker>();
+		for (int i = 0; i < 2500; i++) {
+			links.add(new Linker(parent.getType(), "item", parent.getId(), "ls-item" + i));
+		}
+		dao.createAll(links);
+		assertEquals(2500L, parent.countLinks("item").longValue());
+
+		Pager pager = new Pager(2, 1000);
+		List<String> ids = LinkStore.getLinkedIds(parent, "item", pager);
+		assertEquals(2500, pager.getCount());
+		assertEquals(1000, ids.size());
+		assertEquals("ls-item1000", ids.get(0));
+		assertEquals("ls-item1999", ids.get(999));
+		ids = LinkStore.getLinkedIds(parent, "item", new Pager(3, 1000));
+		assertEquals(500, ids.size());
+		assertEquals("ls-item2499", ids.get(499));
+		assertTrue(LinkStore.getLinkedIds(parent, "item", new Pager(4, 1000)).isEmpty());
+
+		dao.deleteAll(links.subList(0, 1200));
+		assertEquals(1300L, parent.countLinks("item").longValue());
+		ids = LinkStore.getLinkedIds(parent, "item", new Pager(1, 10));
+		assertEquals("ls-item1200", ids.get(0));
+		assertEquals(10, ids.size());
+
+		dao.deleteAll(links.subList(1200, 2500));
+		assertEquals(0L, parent.countLinks("item").longValue());
+		for (Iterator<ParaObject> it = dao.iterate(LinkStore.TYPE); it.hasNext();) {
+			String id = it.next().getId();
+			// only the lock rows are kept until the parent is deleted
+			assertTrue(id, !id.contains(parent.getId()) || id.startsWith("lock:"));
+		}
+	}
+
+	@Test
+	public void testRebuild() {
+		DAO store = new MockDAO();
+		Sysprop s1 = new Sysprop("ls-rebuild1");
+		s1.setDao(store);
+		for (int i = 0; i < 5; i++) {
+			// created without the link store
+			store.create(new Linker(s1.getType(), "item", s1.getId(), "ls-r" + i));
+		}
+		assertEquals(0L, s1.countLinks("item").longValue());
+		assertEquals(5L, LinkStore.rebuild(store, Config.APP_NAME_NS));
+		assertEquals(5L, s1.countLinks("item").longValue());
+		assertEquals(5L, LinkStore.rebuild(store, Config.APP_NAME_NS));
+		assertEquals(5L, s1.countLinks("item").longValue());
+		assertEquals("ls-r0", LinkStore.getLinkedIds(s1, "item").get(0));
+	}
+
+	@Test
+	public void testConcurrentLinks() throws InterruptedException {
+		// slow reads, so that all threads check if the link exists before any of them creates it
+		DAO slow = DAOPipeline.assemble(new MockDAO() {
+			@Override
+			public <P extends ParaObject> P read(String appid, String key, ReadConsistency consistency) {
+				if (key != null && key.startsWith("sysprop:ls-concurrent:")) {
+					try {
+						Thread.sleep(50);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.read(appid, key, consistency);
+			}
+		}, Providers.of(search), null, null, null, true);
+		final Sysprop s = new Sysprop("ls-concurrent");
+		s.setDao(slow);
+		s.setSearch(search);
+		slow.create(s);
+		final Tag tag = new Tag("ls-same");
+		slow.create(tag);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++) {
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						s.link(tag.getId());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		// the link was created eight times, but it's only in the list once
+		assertEquals(1L, s.countLinks(Utils.type(Tag.class)).longValue());
+		assertEquals(1, LinkStore.getLinkedIds(s, Utils.type(Tag.class)).size());
+	}
+
+	@Test
+	public void testListLockedByAnotherNode() throws InterruptedException {
+		final Sysprop s = new Sysprop("ls-locked");
+		s.setDao(dao);
+		s.setSearch(search);
+		dao.create(s);
+		final Tag tag = new Tag("ls-locked");
+		dao.create(tag);
+		// another node holds the lock of the list
+		String key = "lock:" + LinkStore.TYPE + ":" + s.getType() + ":" + s.getId() + ":" + tag.getType();
+		Sysprop lock = new Sysprop(key);
+		lock.setType(LinkStore.TYPE);
+		lock.addProperty("lockedUntil", Utils.timestamp() + 60000);
+		dao.create(lock);
+
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				s.link(tag.getId());
+			}
+		});
+		t.start();
+		t.join(300);
+		assertTrue(t.isAlive());
+		assertEquals(0L, s.countLinks(Utils.type(Tag.class)).longValue());
+
+		// the other node releases the lock
+		Sysprop released = new Sysprop(key);
+		released.setType(LinkStore.TYPE);
+		released.addProperty("lockedUntil", 0L);
+		assertTrue(dao.compareAndSet(Config.APP_NAME_NS, dao.read(key), released));
+		t.join(5000);
+		assertFalse(t.isAlive());
+		assertEquals(1L, s.countLinks(Utils.type(Tag.class)).longValue());
+
+		// expired locks are taken over
+		lock.addProperty("lockedUntil", Utils.timestamp() - 1000);
+		dao.create(lock);
+		s.unlink(Utils.type(Tag.class), tag.getId());
+		assertEquals(0L, s.countLinks(Utils.type(Tag.class)).longValue());
+	}
+
+	@Test
+	public void testDeleteDropsLists() {
+		Sysprop s = new Sysprop("ls-deleted");
+		s.setDao(dao);
+		s.setSearch(search);
+		dao.create(s);
+		Tag tag = new Tag("ls-deleted");
+		dao.create(tag);
+		s.link(tag.getId());
+		List<Linker> links = new ArrayList<Linker>();
+		for (int i = 0; i < 1500; i++) {
+			links.add(new Linker(s.getType(), "item", s.getId(), "ls-deleted-item" + i));
+		}
+		dao.createAll(links);
+		assertEquals(1500L, s.countLinks("item").longValue());
+		assertEquals(1L, s.countLinks(Utils.type(Tag.class)).longValue());
+
+		dao.delete(s);
+		assertEquals(0L, s.countLinks("item").longValue());
+		assertEquals(0L, s.countLinks(Utils.type(Tag.class)).longValue());
+		for (Iterator<ParaObject> it = dao.iterate(LinkStore.TYPE); it.hasNext();) {
+			String id = it.next().getId();
+			assertFalse(id, id.contains(":" + s.getType() + ":" + s.getId()));
+		}
+	}
+}
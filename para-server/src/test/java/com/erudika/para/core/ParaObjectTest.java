@@ -79,6 +79,8 @@ public class ParaObjectTest {
 
 		when(search.findTerms(anyString(), anyString(), anyMapOf(String.class, Object.class),
 				anyBoolean())).thenReturn(list);
+		when(search.iterateTerms(anyString(), anyString(), anyMapOf(String.class, Object.class),
+				anyBoolean())).thenReturn(list.iterator());
 
 		assertEquals(0, u.getLinkedObjects(Utils.type(Tag.class), null, null).size());
 		assertEquals(0, u.getLinkedObjects(Utils.type(User.class), null, null).size());
@@ -17,9 +17,17 @@
  */
 package com.erudika.para.core;
 
+import com.erudika.para.annotations.Locked;
 import static com.erudika.para.core.ParaObjectUtils.*;
+import com.erudika.para.utils.Config;
+import java.util.Arrays;
+import java.util.Map;
 import org.junit.AfterClass;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -117,4 +125,114 @@ public class ParaObjectUtilsTest {
 	public void testToJSON() {
 	}
 
+	@Test
+	public void testGetChangedFields() {
+		Sysprop s = new Sysprop("changes");
+		s.setName("name");
+		s.addProperty("prop", "value");
+		assertTrue(getChangedFields(s, null).containsKey("name"));
+
+		markClean(s);
+		assertTrue(getChangedFields(s, null).isEmpty());
+
+		s.setName("new name");
+		s.addProperty("prop2", "value2");
+		s.setParentid("locked");
+		Map<String, Object> changes = getChangedFields(s, Locked.class);
+		assertEquals(2, changes.size());
+		assertEquals("new name", changes.get("name"));
+		assertTrue(changes.containsKey("properties"));
+
+		// equal objects don't share snapshots
+		Sysprop s2 = new Sysprop("changes");
+		assertTrue(getChangedFields(s2, null).containsKey(Config._ID));
+		markClean(s2);
+		assertFalse(getChangedFields(s, null).isEmpty());
+	}
+
+	@Test
+	public void testMarkCleanLazily() throws Exception {
+		Sysprop s = new Sysprop("lazy");
+		s.setName("name");
+		s.addProperty("prop", "value");
+		String json = getJsonWriterNoIdent().writeValueAsString(getAnnotatedFields(s));
+		Map<String, Object> fields = getAnnotatedFields(s);
+
+		for (Object source : new Object[]{json, json.getBytes(Config.DEFAULT_ENCODING), fields, s}) {
+			Sysprop read = setAnnotatedFields(getJsonReader(Map.class).<Map<String, Object>>readValue(json));
+			markCleanLazily(read, source);
+			assertTrue(getChangedFields(read, null).isEmpty());
+
+			read.setName("new name");
+			read.addProperty("prop2", "value2");
+			Map<String, Object> changes = getChangedFields(read, null);
+			assertEquals(2, changes.size());
+			assertEquals("new name", changes.get("name"));
+			assertTrue(changes.containsKey("properties"));
+
+			markClean(read, "name");
+			assertEquals(1, getChangedFields(read, null).size());
+			assertTrue(getChangedFields(read, null).containsKey("properties"));
+		}
+
+		// without a source the current state is taken right away
+		Sysprop s2 = new Sysprop("lazy");
+		markCleanLazily(s2, null);
+		assertTrue(getChangedFields(s2, null).isEmpty());
+	}
+
+	@Test
+	public void testProject() {
+		Sysprop s = new Sysprop("proj");
+		s.setName("name");
+		s.setParentid("parent");
+		assertSame(s, project(s, null));
+		assertFalse(isPartial(s));
+
+		Sysprop partial = project(s, Arrays.asList("name"));
+		assertEquals("name", partial.getName());
+		assertNull(partial.getParentid());
+		assertTrue(isPartial(partial));
+		assertTrue(getChangedFields(partial, null).isEmpty());
+		// still partial after it's written
+		partial.setName("new name");
+		markClean(partial);
+		assertTrue(isPartial(partial));
+		markClean(s);
+		assertFalse(isPartial(s));
+	}
+
+	@Test
+	public void testGetExpiresAt() {
+		Vote v = new Vote("1", "2", "up");
+		v.setTimestamp(1000L);
+		v.setExpiresAfter(10L);
+		assertEquals(11000L, getExpiresAt(v).longValue());
+		assertEquals(0L, getTimeToLive(v).longValue());
+
+		v.setTimestamp(System.currentTimeMillis());
+		assertTrue(getTimeToLive(v) > 8 && getTimeToLive(v) <= 10);
+
+		v.setExpiresAfter(0L);
+		assertNull(getExpiresAt(v));
+		assertNull(getTimeToLive(v));
+
+		Sysprop s = new Sysprop("ttl");
+		s.setTimestamp(1000L);
+		assertNull(getExpiresAt(s));
+		assertNull(getExpiresAt(null));
+
+		// the expiration time is never read back as a property
+		Map<String, Object> fields = getAnnotatedFields(s);
+		fields.put(Config._EXPIRES, 11000L);
+		Sysprop s2 = setAnnotatedFields(fields);
+		assertFalse(s2.hasProperty(Config._EXPIRES));
+
+		// but a user-defined property with the same plain name is kept
+		fields = getAnnotatedFields(s);
+		fields.put("expires", "tomorrow");
+		Sysprop s3 = setAnnotatedFields(fields);
+		assertEquals("tomorrow", s3.getProperty("expires"));
+	}
+
 }
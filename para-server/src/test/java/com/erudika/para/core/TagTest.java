@@ -109,8 +109,10 @@ public class TagTest {
 		assertTrue(t.exists());
 
 		t.setCount(2);
+		t.update();
 		t.decrementCount();
 		assertEquals(1, t.getCount().intValue());
+		assertEquals(1, ((Tag) dao.read(t.getId())).getCount().intValue());
 		t.decrementCount();
 
 		assertFalse(t.exists());
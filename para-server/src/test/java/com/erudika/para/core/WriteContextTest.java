@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.core;
+
+import com.erudika.para.annotations.Locked;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class WriteContextTest {
+
+	private Sysprop newObject() {
+		Sysprop s = new Sysprop("wc1");
+		s.setName("before");
+		s.addProperty("color", "red");
+		return s;
+	}
+
+	@Test
+	public void testWithoutContext() {
+		Sysprop s = newObject();
+		assertFalse(WriteContext.isOpen());
+		Map<String, Object> first = WriteContext.getFields(s, null, true);
+		assertEquals(ParaObjectUtils.getAnnotatedFields(s, null, true), first);
+		s.setName("after");
+		Map<String, Object> second = WriteContext.getFields(s, null, true);
+		assertEquals("after", second.get("name"));
+		assertNotSame(first.get("properties"), second.get("properties"));
+	}
+
+	@Test
+	public void testFieldsAreSharedWithinContext() {
+		Sysprop s = newObject();
+		WriteContext ctx = WriteContext.open();
+		try {
+			Map<String, Object> captured = WriteContext.capture(s, null, true);
+			assertEquals(ParaObjectUtils.getAnnotatedFields(s, null, true), captured);
+			// nested contexts join the outer one
+			WriteContext inner = WriteContext.open();
+			Map<String, Object> shared = WriteContext.getFields(s, null, true);
+			inner.close();
+			assertTrue(WriteContext.isOpen());
+			assertSame(captured.get("properties"), shared.get("properties"));
+			// the raw values are the same ones, nested objects aren't converted
+			Map<String, Object> raw = WriteContext.getFields(s, null, false);
+			assertSame(s.getProperties(), raw.get("properties"));
+			// the returned maps aren't shared
+			shared.remove("name");
+			assertEquals("before", WriteContext.getFields(s, null, true).get("name"));
+			// capturing again reads the current state
+			s.setName("after");
+			assertEquals("before", WriteContext.getFields(s, null, true).get("name"));
+			assertEquals("after", WriteContext.capture(s, null, true).get("name"));
+			assertEquals("after", WriteContext.getFields(s, null, true).get("name"));
+		} finally {
+			ctx.close();
+		}
+		assertFalse(WriteContext.isOpen());
+	}
+
+	@Test
+	public void testFilter() {
+		Sysprop s = newObject();
+		WriteContext ctx = WriteContext.open();
+		try {
+			Map<String, Object> all = WriteContext.capture(s, null, false);
+			Map<String, Object> unlocked = WriteContext.getFields(s, Locked.class, false);
+			assertEquals(ParaObjectUtils.getAnnotatedFields(s, Locked.class, false), unlocked);
+			assertTrue(all.containsKey("id"));
+			assertFalse(unlocked.containsKey("id"));
+			assertTrue(unlocked.containsKey("name"));
+		} finally {
+			ctx.close();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import org.junit.AfterClass;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the autoscaler against DynamoDB Local with a simulated load.
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class AWSDynamoAutoscalerIT {
+
+	private static final String APPID = "autoscale-test";
+
+	@BeforeClass
+	public static void setUpClass() {
+		AWSDynamoUtils.createTable(APPID, 2, 2);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		AWSDynamoUtils.deleteTable(APPID);
+		AWSDynamoUtils.shutdownClient();
+	}
+
+	@Test
+	public void testScaleUp() {
+		String table = AWSDynamoUtils.getTableNameForAppid(APPID);
+		AWSDynamoAutoscaler autoscaler = new AWSDynamoAutoscaler(60, 70, 1, 20, 1, 20, 0, 3600, 4);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 60; i++) {
+			now += 1000;
+			autoscaler.record(table, false, 1, 0, now);
+			autoscaler.record(table, true, 10, 2, now);
+		}
+		AWSDynamoAutoscaler.Decision decision = autoscaler.evaluate(table, now);
+		assertNotNull(decision);
+		assertEquals(2, decision.getOldWriteCapacity());
+		assertEquals(15, decision.getNewWriteCapacity());
+		assertEquals(2, decision.getNewReadCapacity());
+		assertEquals(15L, AWSDynamoUtils.getTableStatus(APPID).get("writeCapacityUnits"));
+		assertNull(autoscaler.evaluate("missing-table", now));
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class AWSDynamoAutoscalerTest {
+
+	private static final String TABLE = "para-autoscaled";
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+	@Test
+	public void testScaleUpAndDown() {
+		SimulatedTable table = new SimulatedTable(10, 5);
+		// 5 minute window, 70% target, reads 2-100, writes 1-50, 1 minute up cooldown, 1 hour down cooldown
+		AWSDynamoAutoscaler autoscaler = table.autoscaler(300, 70, 2, 100, 1, 50, 60, 3600, 2);
+		long now = 1000 * MINUTE;
+		assertNull(autoscaler.evaluate(TABLE, now));
+
+		// steady load of 5 reads and 3 writes per second - 50-60% utilization is fine
+		now = table.load(autoscaler, now, 5, 3, 0, 300);
+		assertNull(autoscaler.evaluate(TABLE, now));
+		assertEquals(5.0, (Double) autoscaler.getStats(TABLE, now).get("readRate"), 0.5);
+		assertEquals(3.0, (Double) autoscaler.getStats(TABLE, now).get("peakWriteRate"), 0.1);
+		assertTrue(autoscaler.getStats("missing", now).isEmpty());
+
+		// reads go up to 20/sec
+		now = table.load(autoscaler, now, 20, 3, 0, 60);
+		AWSDynamoAutoscaler.Decision d = autoscaler.evaluate(TABLE, now);
+		assertNotNull(d);
+		assertEquals(10, d.getOldReadCapacity());
+		assertTrue(d.getNewReadCapacity() >= 29);
+		assertEquals(5, d.getNewWriteCapacity());
+		assertEquals(d.getNewReadCapacity(), table.read);
+		assertTrue(d.getReason().startsWith("reads:"));
+
+		// throttled writes, but within the cooldown of the last change only writes may grow
+		now = table.load(autoscaler, now, 0, 1, 3, 10);
+		d = autoscaler.evaluate(TABLE, now);
+		assertNotNull(d);
+		assertEquals(5, d.getOldWriteCapacity());
+		assertTrue(d.getNewWriteCapacity() >= 7);
+		now = table.load(autoscaler, now, 0, 1, 3, 10);
+		assertNull(autoscaler.evaluate(TABLE, now));
+
+		// the upper bound holds
+		now += MINUTE;
+		now = table.load(autoscaler, now, 0, 500, 0, 30);
+		d = autoscaler.evaluate(TABLE, now);
+		assertEquals(50, d.getNewWriteCapacity());
+		now += MINUTE;
+		now = table.load(autoscaler, now, 0, 500, 0, 30);
+		assertNull(autoscaler.evaluate(TABLE, now));
+
+		// idle - no decrease before the cooldown, then down to the minimum
+		now = table.load(autoscaler, now, 0, 0, 0, 600);
+		assertNull(autoscaler.evaluate(TABLE, now));
+		now += TimeUnit.HOURS.toMillis(1);
+		d = autoscaler.evaluate(TABLE, now);
+		assertNotNull(d);
+		assertEquals(2, table.read);
+		assertEquals(1, table.write);
+		assertEquals(4, autoscaler.getDecisions(TABLE).size());
+		assertSame(d, autoscaler.getDecisions().get(0));
+	}
+
+	@Test
+	public void testDecreasesPerDay() {
+		SimulatedTable table = new SimulatedTable(50, 50);
+		AWSDynamoAutoscaler autoscaler = table.autoscaler(60, 70, 1, 100, 1, 100, 0, 0, 2);
+		long now = 1000 * MINUTE;
+		autoscaler.record(TABLE, false, 0, 0, now);
+		for (int i = 0; i < 2; i++) {
+			now += 2 * MINUTE;
+			now = table.load(autoscaler, now, 10 - i * 5, 10 - i * 5, 0, 60);
+			assertNotNull(autoscaler.evaluate(TABLE, now));
+		}
+		long read = table.read;
+		now += 2 * MINUTE;
+		now = table.load(autoscaler, now, 0, 0, 0, 60);
+		assertNull(autoscaler.evaluate(TABLE, now));
+		assertEquals(read, table.read);
+		// increases are always allowed
+		now = table.load(autoscaler, now, 100, 0, 0, 60);
+		assertNotNull(autoscaler.evaluate(TABLE, now));
+		assertTrue(table.read > read);
+		// a day later decreases are allowed again
+		now += TimeUnit.DAYS.toMillis(1);
+		assertNotNull(autoscaler.evaluate(TABLE, now));
+		assertEquals(1, table.read);
+	}
+
+	@Test
+	public void testDisabled() {
+		assertNull(AWSDynamoAutoscaler.getInstance());
+		AWSDynamoAutoscaler.recordConsumed(TABLE, true, 10);
+		AWSDynamoAutoscaler.recordThrottled(TABLE, true, 0);
+	}
+
+	/**
+	 * A table which keeps its throughput in memory.
+	 */
+	private static class SimulatedTable {
+		private long read;
+		private long write;
+
+		SimulatedTable(long read, long write) {
+			this.read = read;
+			this.write = write;
+		}
+
+		AWSDynamoAutoscaler autoscaler(long windowSec, int target, long minRead, long maxRead, long minWrite,
+				long maxWrite, long upCooldownSec, long downCooldownSec, int maxDecreases) {
+			return new AWSDynamoAutoscaler(windowSec, target, minRead, maxRead, minWrite, maxWrite,
+					upCooldownSec, downCooldownSec, maxDecreases) {
+				ProvisionedThroughput describe(String table) {
+					return new ProvisionedThroughput(read, write);
+				}
+
+				boolean update(String table, long readCapacity, long writeCapacity) {
+					read = readCapacity;
+					write = writeCapacity;
+					return true;
+				}
+			};
+		}
+
+		/**
+		 * Sends a constant load for some seconds.
+		 * @return the time after the load
+		 */
+		long load(AWSDynamoAutoscaler autoscaler, long now, double readsPerSec, double writesPerSec,
+				int throttlesPerSec, int seconds) {
+			for (int i = 0; i < seconds; i++) {
+				now += 1000;
+				autoscaler.record(TABLE, false, readsPerSec, 0, now);
+				autoscaler.record(TABLE, true, writesPerSec, throttlesPerSec, now);
+			}
+			return now;
+		}
+	}
+}
@@ -17,9 +17,17 @@
  */
 package com.erudika.para.persistence;
 
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.Sysprop;
 import com.erudika.para.utils.Config;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -65,4 +73,53 @@ public class AWSDynamoDAOIT extends DAOTest {
 		assertFalse(AWSDynamoUtils.deleteTable(badAppid));
 	}
 
+	@Test
+	public void testParallelBatches() {
+		List<Sysprop> list = new ArrayList<Sysprop>();
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 250; i++) {
+			Sysprop s = new Sysprop("batch" + i);
+			list.add(s);
+			ids.add(s.getId());
+		}
+		dao.createAll(appid1, list);
+
+		Map<String, ParaObject> res = dao.readAll(appid1, ids, true);
+		assertEquals(ids.size(), res.size());
+		Iterator<String> it = res.keySet().iterator();
+		for (String id : ids) {
+			assertEquals(id, it.next());
+			assertNotNull(res.get(id));
+		}
+
+		dao.deleteAll(appid1, list);
+		res = dao.readAll(appid1, ids, true);
+		for (String id : ids) {
+			assertEquals(null, res.get(id));
+		}
+	}
+
+	@Test
+	public void testParallelUpdateAll() {
+		List<Sysprop> list = new ArrayList<Sysprop>();
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			Sysprop s = new Sysprop("update" + i);
+			list.add(s);
+			ids.add(s.getId());
+		}
+		dao.createAll(appid1, list);
+		for (Sysprop s : list) {
+			s.setName("updated");
+		}
+		dao.updateAll(appid1, list);
+		assertEquals(100, list.size());
+
+		Map<String, ParaObject> res = dao.readAll(appid1, ids, true);
+		for (String id : ids) {
+			assertEquals("updated", res.get(id).getName());
+		}
+		dao.deleteAll(appid1, list);
+	}
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import java.util.Collections;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class AWSDynamoThrottleTest {
+
+	@Test
+	public void testGet() {
+		assertSame(AWSDynamoThrottle.get("table", true), AWSDynamoThrottle.get("table", true));
+		assertNotSame(AWSDynamoThrottle.get("table", true), AWSDynamoThrottle.get("table", false));
+	}
+
+	@Test
+	public void testReserve() {
+		AWSDynamoThrottle unlimited = new AWSDynamoThrottle(0);
+		assertEquals(0, unlimited.reserve(1000));
+
+		AWSDynamoThrottle throttle = new AWSDynamoThrottle(10);
+		assertEquals(0, throttle.reserve(10));
+		long wait = throttle.reserve(10);
+		assertTrue(wait > 0 && wait <= 1000);
+	}
+
+	@Test
+	public void testAdaptiveRate() {
+		AWSDynamoThrottle throttle = new AWSDynamoThrottle(0);
+		throttle.onSuccess(10, Collections.singletonList(new ConsumedCapacity().withCapacityUnits(10.0)));
+		assertEquals(0, throttle.getRate(), 0);
+		throttle.onThrottle(null);
+		double rate = throttle.getRate();
+		assertTrue(rate >= 1);
+		throttle.onThrottle(null);
+		assertTrue(throttle.getRate() <= rate);
+		throttle.onSuccess(1, null);
+		assertTrue(throttle.getRate() > rate / 2);
+
+		AWSDynamoThrottle capped = new AWSDynamoThrottle(10);
+		for (int i = 0; i < 10; i++) {
+			capped.onSuccess(1, null);
+		}
+		assertEquals(10, capped.getRate(), 0);
+	}
+
+	@Test
+	public void testBackoff() {
+		for (int i = 1; i < 50; i++) {
+			long delay = AWSDynamoThrottle.backoff(i);
+			assertTrue(delay >= 1);
+			assertTrue(delay <= 10001);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.utils.Config;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class AWSDynamoUtilsTest {
+
+	@Test
+	public void testCompactRows() {
+		Sysprop s = new Sysprop("compact");
+		s.setName("Compact row");
+		s.setParentid("parent");
+		s.setTimestamp(1234L);
+		s.addProperty("number", 5);
+		s.addProperty("list", Arrays.asList("a", "b"));
+		s.addProperty("map", Collections.singletonMap("x", "y"));
+
+		Map<String, AttributeValue> row = AWSDynamoUtils.toCompactRow(ParaObjectUtils.getAnnotatedFields(s, null, false));
+		assertNotNull(row);
+		assertEquals("compact", row.get(Config._ID).getS());
+		assertEquals("parent", row.get(Config._PARENTID).getS());
+		assertEquals("1234", row.get(Config._TIMESTAMP).getS());
+		assertNotNull(row.get(AWSDynamoUtils.COMPACT_ATTR).getB());
+		assertFalse(row.containsKey("name"));
+		assertFalse(row.containsKey("properties"));
+
+		Sysprop s2 = ParaObjectUtils.setAnnotatedFields(AWSDynamoUtils.fromRowAttributes(row));
+		assertNotNull(s2);
+		assertEquals(s.getId(), s2.getId());
+		assertEquals(s.getName(), s2.getName());
+		assertEquals(s.getParentid(), s2.getParentid());
+		assertEquals(s.getTimestamp(), s2.getTimestamp());
+		assertEquals(5, s2.getProperty("number"));
+		assertEquals(Arrays.asList("a", "b"), s2.getProperty("list"));
+		assertEquals("y", ((Map) s2.getProperty("map")).get("x"));
+
+		// encoded fields take precedence over leftover legacy attributes
+		row.put("name", new AttributeValue("Old name"));
+		assertEquals(s.getName(), AWSDynamoUtils.fromRowAttributes(row).get("name"));
+	}
+
+	@Test
+	public void testLegacyRows() {
+		Sysprop s = new Sysprop("legacy");
+		s.setName("Legacy row");
+		s.addProperty("prop", "value");
+		Map<String, AttributeValue> row = new HashMap<String, AttributeValue>();
+		for (Map.Entry<String, Object> entry : ParaObjectUtils.getAnnotatedFields(s).entrySet()) {
+			if (entry.getValue() != null) {
+				row.put(entry.getKey(), new AttributeValue(entry.getValue().toString()));
+			}
+		}
+		Sysprop s2 = ParaObjectUtils.setAnnotatedFields(AWSDynamoUtils.fromRowAttributes(row));
+		assertNotNull(s2);
+		assertEquals(s.getName(), s2.getName());
+		assertEquals("value", s2.getProperty("prop"));
+		assertTrue(AWSDynamoUtils.fromRowAttributes(null).isEmpty());
+	}
+}
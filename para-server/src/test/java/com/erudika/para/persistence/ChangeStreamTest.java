@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.aop.DAOPipeline;
+import com.erudika.para.cache.Cache;
+import com.erudika.para.cache.MockCache;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.search.Search;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class ChangeStreamTest {
+
+	private static class CollectingSink implements ChangeSink {
+		final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<ChangeEvent>());
+		final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+
+		public void onChanges(List<ChangeEvent> changes) {
+			batches.add(changes.size());
+			events.addAll(changes);
+		}
+	}
+
+	@Test
+	public void testOrderingAndBatching() {
+		ChangeStream stream = new ChangeStream(1000, 10, 100);
+		assertFalse(stream.isEnabled());
+		// nothing is captured without sinks
+		stream.emit(ChangeEvent.Action.CREATE, "app", "0", "sysprop", null);
+
+		CollectingSink sink1 = new CollectingSink();
+		CollectingSink sink2 = new CollectingSink();
+		stream.addSink(sink1);
+		stream.addSink(sink2);
+		assertTrue(stream.isEnabled());
+		for (int i = 1; i <= 100; i++) {
+			stream.emit(ChangeEvent.Action.UPDATE, "app", Integer.toString(i), "sysprop", null);
+		}
+		assertTrue(stream.flush(5000));
+		for (CollectingSink sink : Arrays.asList(sink1, sink2)) {
+			assertEquals(100, sink.events.size());
+			for (int i = 0; i < 100; i++) {
+				assertEquals(i + 1, sink.events.get(i).getSequence());
+				assertEquals(Integer.toString(i + 1), sink.events.get(i).getId());
+			}
+			for (Integer size : sink.batches) {
+				assertTrue(size <= 10);
+			}
+		}
+		stream.shutdown();
+		// delivered synchronously after shutdown
+		stream.emit(ChangeEvent.Action.DELETE, "app", "1", "sysprop", null);
+		assertEquals(101, sink1.events.size());
+	}
+
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		ChangeStream stream = new ChangeStream(2, 1, 10);
+		final CollectingSink sink = new CollectingSink();
+		stream.addSink(new ChangeSink() {
+			public void onChanges(List<ChangeEvent> changes) {
+				try {
+					release.await();
+				} catch (InterruptedException e) { }
+				sink.onChanges(changes);
+			}
+		});
+		// one event is being delivered, two are queued, the rest don't fit
+		for (int i = 0; i < 10; i++) {
+			stream.emit(ChangeEvent.Action.UPDATE, "app", Integer.toString(i), null, null);
+		}
+		assertTrue(stream.getDroppedCount() > 0);
+		release.countDown();
+		assertTrue(stream.flush(5000));
+		assertEquals(10 - stream.getDroppedCount(), sink.events.size());
+		stream.shutdown();
+	}
+
+	@Test
+	public void testLosslessSink() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final ChangeStream stream = new ChangeStream(2, 1, 10);
+		final CollectingSink sink = new CollectingSink();
+		stream.addSink(new ChangeSink() {
+			public void onChanges(List<ChangeEvent> changes) {
+				try {
+					release.await();
+				} catch (InterruptedException e) { }
+				sink.onChanges(changes);
+			}
+		}, true);
+		Thread writer = new Thread() {
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					stream.emit(ChangeEvent.Action.UPDATE, "app", Integer.toString(i), null, null);
+				}
+			}
+		};
+		writer.start();
+		// the writer waits for the sink instead of dropping events
+		writer.join(200);
+		assertTrue(writer.isAlive());
+		release.countDown();
+		writer.join(5000);
+		assertTrue(stream.flush(5000));
+		assertEquals(0, stream.getDroppedCount());
+		assertEquals(10, sink.events.size());
+		stream.shutdown();
+	}
+
+	@Test
+	public void testChangesFromDAO() {
+		Injector injector = Guice.createInjector(new AbstractModule() {
+			protected void configure() {
+				bind(DAO.class).annotatedWith(Names.named(DAOPipeline.STORE)).to(MockDAO.class);
+				bind(DAO.class).annotatedWith(Names.named(DAOPipeline.PIPELINE)).toProvider(DAOPipeline.class);
+				bind(DAO.class).to(Key.get(DAO.class, Names.named(DAOPipeline.PIPELINE)));
+				bind(Search.class).toInstance(mock(Search.class));
+				bind(Cache.class).to(MockCache.class);
+			}
+		});
+		DAO dao = injector.getInstance(DAO.class);
+		ChangeStream stream = injector.getInstance(ChangeStream.class);
+		CollectingSink sink = new CollectingSink();
+		stream.addSink(sink);
+
+		String appid = "cdc";
+		Sysprop s = new Sysprop("cdc1");
+		s.setName("one");
+		dao.create(appid, s);
+		s.setName("two");
+		dao.update(appid, s);
+		dao.increment(appid, s.getId(), "votes", 5);
+		Sysprop s2 = new Sysprop("cdc2");
+		dao.createAll(appid, Collections.singletonList(s2));
+		dao.delete(appid, s);
+		assertTrue(stream.flush(5000));
+		stream.shutdown();
+
+		List<ChangeEvent> events = sink.events;
+		assertEquals(5, events.size());
+		assertEquals(ChangeEvent.Action.CREATE, events.get(0).getAction());
+		assertEquals("one", events.get(0).getFields().get("name"));
+		assertEquals(s.getType(), events.get(0).getType());
+
+		assertEquals(ChangeEvent.Action.UPDATE, events.get(1).getAction());
+		assertEquals("two", events.get(1).getFields().get("name"));
+		assertFalse(events.get(1).getFields().containsKey("timestamp"));
+
+		assertEquals(ChangeEvent.Action.UPDATE, events.get(2).getAction());
+		assertEquals(5L, events.get(2).getFields().get("votes"));
+
+		assertEquals(ChangeEvent.Action.CREATE, events.get(3).getAction());
+		assertEquals(s2.getId(), events.get(3).getId());
+
+		assertEquals(ChangeEvent.Action.DELETE, events.get(4).getAction());
+		assertEquals(s.getId(), events.get(4).getId());
+		assertTrue(events.get(4).getFields().isEmpty());
+		for (int i = 1; i < events.size(); i++) {
+			assertTrue(events.get(i).getSequence() > events.get(i - 1).getSequence());
+		}
+	}
+}
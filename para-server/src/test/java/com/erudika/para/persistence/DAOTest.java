@@ -18,13 +18,21 @@
 package com.erudika.para.persistence;
 
 import com.erudika.para.core.App;
+import com.erudika.para.core.ParaObject;
 import com.erudika.para.core.Sysprop;
 import com.erudika.para.core.Tag;
 import com.erudika.para.core.User;
 import com.erudika.para.search.Search;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
 import com.erudika.para.utils.Utils;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.After;
 import static org.junit.Assert.*;
 import org.junit.Before;
@@ -223,8 +231,210 @@ public abstract class DAOTest {
 		assertEquals("123", tr4.getParentid());
 	}
 
+	@Test
+	public void testUpdateOnlyChangedFields() {
+		Sysprop s = new Sysprop("changes");
+		s.setName("name");
+		s.addProperty("prop", "value");
+		dao.create(appid1, s);
+
+		Sysprop s1 = dao.read(appid1, s.getId());
+		Sysprop s2 = dao.read(appid1, s.getId());
+		s1.setName("new name");
+		dao.update(appid1, s1);
+		// s2 doesn't overwrite the name because it wasn't changed
+		s2.addProperty("prop2", "value2");
+		dao.update(appid1, s2);
+
+		Sysprop s3 = dao.read(appid1, s.getId());
+		assertEquals("new name", s3.getName());
+		assertEquals("value", s3.getProperty("prop"));
+		assertEquals("value2", s3.getProperty("prop2"));
+		assertNotNull(s3.getUpdated());
+		dao.delete(appid1, s);
+	}
+
+	@Test
+	public void testIncrement() {
+		assertNull(dao.increment(appid1, "123", "votes", 1));
+		assertNull(dao.increment(appid1, null, "votes", 1));
+
+		Sysprop s = new Sysprop("counter");
+		s.setVotes(5);
+		dao.create(appid1, s);
+		assertEquals(6L, dao.increment(appid1, s.getId(), "votes", 1).longValue());
+		assertEquals(4L, dao.increment(appid1, s.getId(), "votes", -2).longValue());
+		assertEquals(4, ((Sysprop) dao.read(appid1, s.getId())).getVotes().intValue());
+		// only numeric fields can be incremented
+		assertNull(dao.increment(appid1, s.getId(), "name", 1));
+
+		// a stale copy doesn't overwrite the counter
+		Sysprop stale = dao.read(appid1, s.getId());
+		dao.increment(appid1, s.getId(), "votes", 10);
+		stale.setName("stale");
+		dao.update(appid1, stale);
+		assertEquals(14, ((Sysprop) dao.read(appid1, s.getId())).getVotes().intValue());
+		dao.delete(appid1, s);
+	}
+
+	@Test
+	public void testCompareAndSet() {
+		Sysprop s = new Sysprop("cas");
+		s.setName("v1");
+		// null means the object must not exist yet
+		assertTrue(dao.compareAndSet(appid1, null, s));
+		assertFalse(dao.compareAndSet(appid1, null, s));
+		Sysprop read = dao.read(appid1, s.getId());
+		assertEquals("v1", read.getName());
+
+		Sysprop v2 = new Sysprop(s.getId());
+		v2.setName("v2");
+		assertTrue(dao.compareAndSet(appid1, read, v2));
+		assertEquals("v2", ((Sysprop) dao.read(appid1, s.getId())).getName());
+
+		// the object was changed after it was read
+		Sysprop v3 = new Sysprop(s.getId());
+		v3.setName("v3");
+		assertFalse(dao.compareAndSet(appid1, read, v3));
+		assertEquals("v2", ((Sysprop) dao.read(appid1, s.getId())).getName());
+		dao.delete(appid1, s);
+	}
+
+	@Test
+	public void testReadAllFields() {
+		Sysprop s1 = new Sysprop("proj1");
+		s1.setName("name1");
+		s1.setCreatorid("creator1");
+		s1.addProperty("prop", "value");
+		Sysprop s2 = new Sysprop("proj2");
+		s2.setName("name2");
+		dao.createAll(appid1, Arrays.asList(s1, s2));
+
+		Map<String, Sysprop> all = dao.readAll(appid1, Arrays.asList(s1.getId(), s2.getId()), (List<String>) null);
+		assertEquals(2, all.size());
+		assertEquals("value", all.get(s1.getId()).getProperty("prop"));
+
+		Map<String, Sysprop> partial = dao.readAll(appid1,
+				Arrays.asList(s2.getId(), "missing", s1.getId()), Arrays.asList("name"));
+		assertEquals(Arrays.asList(s2.getId(), s1.getId()), new ArrayList<String>(partial.keySet()));
+		Sysprop p1 = partial.get(s1.getId());
+		assertEquals(s1.getId(), p1.getId());
+		assertEquals(s1.getType(), p1.getType());
+		assertEquals("name1", p1.getName());
+		assertNull(p1.getCreatorid());
+		assertNull(p1.getProperty("prop"));
+
+		Map<String, Sysprop> keysOnly = dao.readAll(appid1, Arrays.asList(s1.getId()), Arrays.asList("creatorid"));
+		assertEquals("creator1", keysOnly.get(s1.getId()).getCreatorid());
+		assertFalse("name1".equals(keysOnly.get(s1.getId()).getName()));
+
+		// updating a partial object doesn't erase the other fields
+		p1.setName("new name");
+		dao.update(appid1, p1);
+		Sysprop s3 = dao.read(appid1, s1.getId());
+		assertEquals("new name", s3.getName());
+		assertEquals("value", s3.getProperty("prop"));
+		dao.deleteAll(appid1, Arrays.asList(s1, s2));
+	}
+
 	@Test
 	public void testReadPage() {
 		// TODO
 	}
+
+	@Test
+	public void testReadByField() {
+		String appid = "readbyfield";
+		List<Sysprop> list = new ArrayList<Sysprop>();
+		for (int i = 0; i < 7; i++) {
+			Sysprop s = new Sysprop("rbf" + i);
+			s.setParentid("parent1");
+			s.setCreatorid("creator1");
+			s.setTimestamp(1000L + i);
+			list.add(s);
+		}
+		Tag tag = new Tag("readbyfield");
+		tag.setParentid("parent1");
+		tag.setTimestamp(2000L);
+		Sysprop other = new Sysprop("rbf-other");
+		other.setParentid("parent2");
+		other.setTimestamp(3000L);
+		dao.createAll(appid, list);
+		dao.create(appid, tag);
+		dao.create(appid, other);
+
+		// newest first, page by page
+		Pager pager = new Pager(3);
+		List<String> ids = new ArrayList<String>();
+		List<ParaObject> page;
+		int pages = 0;
+		do {
+			page = dao.readByField(appid, Config._PARENTID, "parent1", pager);
+			for (ParaObject obj : page) {
+				ids.add(obj.getId());
+			}
+			pages++;
+		} while (pager.getLastKey() != null);
+		assertEquals(3, pages);
+		assertEquals(8, ids.size());
+		assertEquals(tag.getId(), ids.get(0));
+		assertEquals("rbf6", ids.get(1));
+		assertEquals("rbf0", ids.get(7));
+
+		pager = new Pager(1, null, false, 10);
+		List<ParaObject> asc = dao.readByField(appid, Config._PARENTID, "parent1", pager);
+		assertEquals(8, asc.size());
+		assertEquals("rbf0", asc.get(0).getId());
+		assertNull(pager.getLastKey());
+
+		assertEquals(7, dao.readByField(appid, Config._CREATORID, "creator1", new Pager()).size());
+		assertEquals(8, dao.readByField(appid, Config._TYPE, Utils.type(Sysprop.class), new Pager()).size());
+		assertTrue(dao.readByField(appid, Config._PARENTID, "nothing", new Pager()).isEmpty());
+		assertNull(dao.readByField(appid, "name", "rbf0", new Pager()));
+
+		// lookups reflect deletes straight away
+		dao.delete(appid, list.get(5));
+		ids.clear();
+		for (ParaObject obj : dao.readByField(appid, Config._PARENTID, "parent1", new Pager())) {
+			ids.add(obj.getId());
+		}
+		assertEquals(7, ids.size());
+		assertFalse(ids.contains("rbf5"));
+		assertEquals(6, dao.readByField(appid, Config._CREATORID, "creator1", new Pager()).size());
+
+		dao.deleteAll(appid, list);
+		dao.delete(appid, tag);
+		dao.delete(appid, other);
+	}
+
+	@Test
+	public void testIterate() {
+		String appid = "iterate";
+		List<Sysprop> list = new ArrayList<Sysprop>();
+		for (int i = 0; i < 50; i++) {
+			list.add(new Sysprop("it" + i));
+		}
+		Tag tag = new Tag("iterate");
+		dao.createAll(appid, list);
+		dao.create(appid, tag);
+
+		Set<String> ids = new HashSet<String>();
+		for (Iterator<ParaObject> it = dao.iterate(appid, null); it.hasNext();) {
+			ids.add(it.next().getId());
+		}
+		assertEquals(51, ids.size());
+		assertTrue(ids.contains(tag.getId()));
+
+		ids.clear();
+		for (Iterator<Sysprop> it = dao.iterate(appid, Utils.type(Sysprop.class)); it.hasNext();) {
+			ids.add(it.next().getId());
+		}
+		assertEquals(50, ids.size());
+		assertFalse(ids.contains(tag.getId()));
+		assertFalse(dao.iterate(appid, "nothing").hasNext());
+		assertFalse(dao.iterate(null, null).hasNext());
+
+		dao.deleteAll(appid, list);
+		dao.delete(appid, tag);
+	}
 }
\ No newline at end of file
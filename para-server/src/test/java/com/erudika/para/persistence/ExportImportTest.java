@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.core.Tag;
+import com.erudika.para.storage.LocalFileStore;
+import com.erudika.para.storage.StreamingFileStore;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class ExportImportTest {
+
+	private static final String APPID = "export-test";
+	private static final int COUNT = 250;
+	private static DAO dao;
+
+	@BeforeClass
+	public static void setUpClass() {
+		dao = new MockDAO();
+		for (int i = 0; i < COUNT; i++) {
+			Sysprop s = new Sysprop("ex" + i);
+			s.setName("Object " + i);
+			s.addProperty("num", i);
+			dao.create(APPID, s);
+		}
+		dao.create(APPID, new Tag("exported"));
+	}
+
+	@Test
+	public void testExportImport() throws IOException {
+		for (boolean gzip : new boolean[] {false, true}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals(COUNT + 1, ExportImport.exportApp(dao, APPID, out, gzip));
+			if (!gzip) {
+				String[] lines = new String(out.toByteArray(), "UTF-8").split("\n");
+				assertEquals(COUNT + 1, lines.length);
+				assertTrue(lines[0].startsWith("{"));
+			}
+
+			MockDAO target = new MockDAO();
+			String appid = "import-test";
+			assertEquals(COUNT + 1, ExportImport.importApp(target, appid, new ByteArrayInputStream(out.toByteArray())));
+			for (int i = 0; i < COUNT; i++) {
+				Sysprop s = target.read(appid, "ex" + i);
+				assertNotNull(s);
+				assertEquals("Object " + i, s.getName());
+				assertEquals(i, s.getProperty("num"));
+				assertEquals(appid, s.getAppid());
+			}
+			ParaObject tag = target.read(appid, new Tag("exported").getId());
+			assertTrue(tag instanceof Tag);
+		}
+		assertEquals(0, ExportImport.exportApp(dao, null, new ByteArrayOutputStream(), false));
+		assertEquals(0, ExportImport.importApp(dao, APPID, new ByteArrayInputStream(new byte[0])));
+	}
+
+	@Test(expected = IOException.class)
+	public void testImportInvalid() throws IOException {
+		ExportImport.importApp(new MockDAO(), APPID, new ByteArrayInputStream("{not json\n".getBytes("UTF-8")));
+	}
+
+	@Test
+	public void testFileStore() throws IOException {
+		final Map<String, byte[]> files = new HashMap<String, byte[]>();
+		StreamingFileStore store = new StreamingFileStore() {
+			public InputStream load(String path) {
+				return files.containsKey(path) ? new ByteArrayInputStream(files.get(path)) : null;
+			}
+
+			public String store(String path, InputStream data) {
+				throw new UnsupportedOperationException();
+			}
+
+			public void write(String path, InputStream data) throws IOException {
+				files.put(path, IOUtils.toByteArray(data));
+			}
+
+			public boolean delete(String path) {
+				return files.remove(path) != null;
+			}
+		};
+		assertEquals(APPID + "/dump.gz", ExportImport.exportApp(dao, APPID, store, "/dump.gz", true));
+		assertTrue(files.get(APPID + "/dump.gz").length > 0);
+
+		MockDAO target = new MockDAO();
+		assertEquals(COUNT + 1, ExportImport.importApp(target, APPID, store, "dump.gz"));
+		assertNotNull(target.read(APPID, "ex0"));
+		assertEquals(-1, ExportImport.importApp(target, APPID, store, "missing"));
+		// the files of other apps can't be read
+		assertEquals(-1, ExportImport.importApp(target, "other-app", store, "dump.gz"));
+	}
+
+	@Test
+	public void testInvalidPaths() {
+		for (String path : new String[] {null, " ", "/", "../other-app/dump", "a/../../dump", "a//b", "./dump", "a\\b"}) {
+			try {
+				ExportImport.getAppPath(APPID, path);
+				fail("Accepted " + path);
+			} catch (IllegalArgumentException e) {
+				assertEquals("Invalid path.", e.getMessage());
+			}
+		}
+		assertEquals(APPID + "/exports/dump.gz", ExportImport.getAppPath(APPID, "exports/dump.gz"));
+	}
+
+	@Test
+	public void testLocalFileStore() throws IOException {
+		// larger than the buffer of the pipe between the export and the file store
+		MockDAO source = new MockDAO();
+		for (int i = 0; i < 2000; i++) {
+			Sysprop s = new Sysprop("big" + i);
+			s.setName("A larger object " + i);
+			s.addProperty("text", "Exported through a pipe which holds only a part of the whole export.");
+			source.create(APPID, s);
+		}
+		File folder = Files.createTempDirectory("para-export").toFile();
+		try {
+			LocalFileStore store = new LocalFileStore(folder.getPath());
+			assertEquals(APPID + "/dumps/dump.ndjson",
+					ExportImport.exportApp(source, APPID, store, "dumps/dump.ndjson", false));
+			File file = new File(folder, APPID + "/dumps/dump.ndjson");
+			assertTrue(file.length() > 64 * 1024);
+
+			MockDAO target = new MockDAO();
+			assertEquals(2000, ExportImport.importApp(target, APPID, store, "dumps/dump.ndjson"));
+			assertNotNull(target.read(APPID, "big1999"));
+
+			// the store itself doesn't leave its folder either
+			File outside = File.createTempFile("para-outside", ".txt", folder.getParentFile());
+			try {
+				assertNull(store.load("../" + outside.getName()));
+				assertFalse(store.delete("../" + outside.getName()));
+			} finally {
+				outside.delete();
+			}
+			try {
+				store.write("../outside", new ByteArrayInputStream(new byte[1]));
+				fail();
+			} catch (IOException e) {
+				assertFalse(new File(folder.getParentFile(), "outside").exists());
+			}
+		} finally {
+			FileUtils.deleteDirectory(folder);
+		}
+	}
+}
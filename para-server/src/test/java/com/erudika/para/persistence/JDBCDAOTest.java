@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.utils.Config;
+import com.erudika.para.utils.Pager;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.AfterClass;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class JDBCDAOTest extends DAOTest {
+
+	@BeforeClass
+	public static void setUpClass() {
+		System.setProperty("para.sql.url", "jdbc:h2:mem:para;DB_CLOSE_DELAY=-1");
+		dao = new JDBCDAO();
+		JDBCUtils.createTable(Config.APP_NAME_NS);
+		JDBCUtils.createTable(appid1);
+		JDBCUtils.createTable(appid2);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		JDBCUtils.deleteTable(Config.APP_NAME_NS);
+		JDBCUtils.deleteTable(appid1);
+		JDBCUtils.deleteTable(appid2);
+		JDBCUtils.shutdownClient();
+		System.clearProperty("para.sql.url");
+	}
+
+	@Test
+	public void testCreateDeleteExistsTable() {
+		String testappid1 = "test-table";
+		assertFalse(JDBCUtils.createTable(""));
+		assertFalse(JDBCUtils.existsTable(""));
+
+		assertTrue(JDBCUtils.createTable(testappid1));
+		assertTrue(JDBCUtils.existsTable(testappid1));
+		assertTrue(JDBCUtils.deleteTable(testappid1));
+		assertFalse(JDBCUtils.existsTable(testappid1));
+		assertFalse(JDBCUtils.createTable("test table 123"));
+	}
+
+	@Test
+	public void testBatchesAndKeyOnlyReads() {
+		List<Sysprop> list = new ArrayList<Sysprop>();
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 250; i++) {
+			Sysprop s = new Sysprop("batch" + i);
+			s.setName("batch");
+			list.add(s);
+			ids.add(s.getId());
+		}
+		dao.createAll(appid1, list);
+		Map<String, Sysprop> all = dao.readAll(appid1, ids, true);
+		assertEquals(250, all.size());
+		assertEquals(ids, new ArrayList<String>(all.keySet()));
+		assertEquals("batch", all.get("batch10").getName());
+
+		Map<String, Sysprop> keysOnly = dao.readAll(appid1, ids, false);
+		assertEquals(250, keysOnly.size());
+		assertNull(keysOnly.get("batch10").getTimestamp());
+		assertEquals("sysprop", keysOnly.get("batch10").getType());
+
+		dao.deleteAll(appid1, list);
+		assertTrue(dao.readAll(appid1, ids, true).isEmpty());
+	}
+
+	@Test
+	public void testUpdateKeyColumns() throws SQLException {
+		Sysprop s = new Sysprop("keycols");
+		s.setParentid("p1");
+		dao.create(appid1, s);
+		execute("UPDATE " + JDBCUtils.getTableNameForAppid(appid1) + " SET parentid = 'stale' WHERE id = 'keycols'");
+		s.setName("updated");
+		dao.update(appid1, s);
+		// key-only reads come from the columns, which are rewritten along with the JSON
+		Sysprop keys = dao.<Sysprop>readAll(appid1, Arrays.asList(s.getId()),
+				Arrays.asList("parentid", "updated")).get(s.getId());
+		assertEquals("p1", keys.getParentid());
+		assertEquals(s.getUpdated(), keys.getUpdated());
+		assertEquals(1, dao.readByField(appid1, "parentid", "p1", null).size());
+		dao.delete(appid1, s);
+	}
+
+	@Test
+	public void testUpdateAllFailure() throws SQLException {
+		execute("INSERT INTO " + JDBCUtils.getTableNameForAppid(appid1) + " (id, type, json) " +
+				"VALUES ('broken', 'sysprop', '{broken')");
+		Sysprop ok = new Sysprop("notbroken");
+		dao.create(appid1, ok);
+		ok.setName("changed");
+		try {
+			dao.updateAll(appid1, new ArrayList<Sysprop>(Arrays.asList(ok, new Sysprop("broken"))));
+			fail();
+		} catch (UpdateFailedException e) {
+			// the batch is rolled back
+			assertEquals(new HashSet<String>(Arrays.asList("notbroken", "broken")), e.getFailedIds());
+		}
+		assertFalse("changed".equals(((Sysprop) dao.read(appid1, ok.getId())).getName()));
+		dao.delete(appid1, ok);
+		dao.delete(appid1, new Sysprop("broken"));
+	}
+
+	private static void execute(String sql) throws SQLException {
+		Connection conn = JDBCUtils.getConnection();
+		try {
+			conn.createStatement().execute(sql);
+		} finally {
+			conn.close();
+		}
+	}
+
+	@Override
+	@Test
+	public void testReadPage() {
+		String appid = "paging";
+		for (int i = 0; i < 25; i++) {
+			dao.create(appid, new Sysprop("p" + i));
+		}
+		Pager pager = new Pager(10);
+		Set<String> ids = new HashSet<String>();
+		List<Sysprop> page;
+		int pages = 0;
+		do {
+			page = dao.readPage(appid, pager);
+			for (Sysprop sysprop : page) {
+				ids.add(sysprop.getId());
+			}
+			pages++;
+		} while (pager.getLastKey() != null);
+		assertEquals(3, pages);
+		assertEquals(25, ids.size());
+		JDBCUtils.deleteTable(appid);
+	}
+}
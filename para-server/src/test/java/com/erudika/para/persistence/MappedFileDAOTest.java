@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.utils.Pager;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class MappedFileDAOTest extends DAOTest {
+
+	private static File folder;
+
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		folder = File.createTempFile("para-filedb", "");
+		folder.delete();
+		dao = new MappedFileDAO(folder.getAbsolutePath(), 64 * 1024);
+	}
+
+	@AfterClass
+	public static void tearDownClass() throws IOException {
+		((MappedFileDAO) dao).close();
+		FileUtils.deleteDirectory(folder);
+	}
+
+	@Test
+	public void testRecovery() {
+		String appid = "recovery";
+		Sysprop s1 = new Sysprop("s1");
+		Sysprop s2 = new Sysprop("s2");
+		s1.addProperty("prop", "value");
+		dao.create(appid, s1);
+		dao.create(appid, s2);
+		s1.setName("updated");
+		dao.update(appid, s1);
+		dao.delete(appid, s2);
+
+		MappedFileDAO dao2 = new MappedFileDAO(folder.getAbsolutePath(), 64 * 1024);
+		Sysprop r1 = dao2.read(appid, s1.getId());
+		assertNotNull(r1);
+		assertEquals("updated", r1.getName());
+		assertEquals("value", r1.getProperty("prop"));
+		assertNull(dao2.read(appid, s2.getId()));
+		dao2.close();
+	}
+
+	@Test
+	public void testCompaction() {
+		String appid = "compaction";
+		MappedFileDAO fdao = (MappedFileDAO) dao;
+		List<Sysprop> list = new ArrayList<Sysprop>();
+		for (int i = 0; i < 300; i++) {
+			Sysprop s = new Sysprop("c" + i);
+			s.addProperty("data", "abcdefghijklmnopqrstuvwxyz0123456789");
+			list.add(s);
+		}
+		// overwrite the same keys a few times to produce garbage and roll over segments
+		for (int i = 0; i < 5; i++) {
+			fdao.createAll(appid, list);
+		}
+		fdao.deleteAll(appid, list.subList(0, 100));
+		fdao.compact(appid);
+
+		File[] segments = new File(folder, appid).listFiles();
+		assertNotNull(segments);
+		assertTrue(segments.length <= 2);
+		assertNull(fdao.read(appid, "c0"));
+		assertNotNull(fdao.read(appid, "c100"));
+		assertNotNull(fdao.read(appid, "c299"));
+
+		MappedFileDAO dao2 = new MappedFileDAO(folder.getAbsolutePath(), 64 * 1024);
+		assertNull(dao2.read(appid, "c99"));
+		assertEquals("abcdefghijklmnopqrstuvwxyz0123456789",
+				((Sysprop) dao2.read(appid, "c200")).getProperty("data"));
+		dao2.close();
+	}
+
+	@Override
+	@Test
+	public void testReadPage() {
+		String appid = "paging";
+		for (int i = 0; i < 25; i++) {
+			dao.create(appid, new Sysprop("p" + i));
+		}
+		Pager pager = new Pager(10);
+		Set<String> ids = new HashSet<String>();
+		List<Sysprop> page;
+		int pages = 0;
+		do {
+			page = dao.readPage(appid, pager);
+			for (Sysprop sysprop : page) {
+				ids.add(sysprop.getId());
+			}
+			pages++;
+		} while (pager.getLastKey() != null);
+		assertEquals(3, pages);
+		assertEquals(25, ids.size());
+	}
+}
@@ -17,15 +17,125 @@
  */
 package com.erudika.para.persistence;
 
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.utils.Pager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  *
  * @author Alex Bogdanovski [alex@erudika.com]
  */
 public class MockDAOTest extends DAOTest {
 
+	private static final Logger logger = LoggerFactory.getLogger(MockDAOTest.class);
+
 	public MockDAOTest() {
 		super();
 		dao = new MockDAO();
 	}
 
+	@Test
+	public void testReadPage() {
+		String appid = "readpage";
+		for (int i = 0; i < 25; i++) {
+			dao.create(appid, new Sysprop("rp" + (100 + i)));
+		}
+		Set<String> ids = new HashSet<String>();
+		Pager pager = new Pager(10);
+		List<ParaObject> page;
+		int pages = 0;
+		do {
+			page = dao.readPage(appid, pager);
+			for (ParaObject obj : page) {
+				assertTrue(ids.add(obj.getId()));
+			}
+			pages++;
+		} while (pager.getLastKey() != null);
+		assertEquals(25, ids.size());
+		assertEquals(3, pages);
+		assertTrue(dao.readPage(null, new Pager()).isEmpty());
+
+		// objects are copies - changing them doesn't change the stored ones
+		Sysprop s = dao.read(appid, "rp100");
+		s.setName("changed");
+		assertNotEquals("changed", dao.read(appid, "rp100").getName());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final String appid = "concurrent";
+		final int threads = 8;
+		final int opsPerThread = 2000;
+		final Sysprop counter = new Sysprop("counter");
+		counter.setVotes(0);
+		dao.create(appid, counter);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>(threads);
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			futures.add(executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					int increments = 0;
+					for (int i = 0; i < opsPerThread; i++) {
+						String id = "obj-" + thread + "-" + (i % 100);
+						switch (i % 4) {
+							case 0:
+								dao.create(appid, new Sysprop(id));
+								break;
+							case 1:
+								Sysprop s = dao.read(appid, id);
+								if (s != null) {
+									s.setName("name-" + i);
+									dao.update(appid, s);
+								}
+								break;
+							case 2:
+								dao.increment(appid, counter.getId(), "votes", 1);
+								increments++;
+								break;
+							default:
+								dao.readPage(appid, new Pager(5));
+								break;
+						}
+					}
+					return increments;
+				}
+			}));
+		}
+		int increments = 0;
+		for (Future<Integer> future : futures) {
+			increments += future.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		logger.info("{} threads, {} ops in {} ms ({} ops/s)", threads, threads * opsPerThread,
+				TimeUnit.NANOSECONDS.toMillis(elapsed), (long) (threads * opsPerThread / (elapsed / 1e9)));
+
+		// no increment was lost
+		assertEquals(increments, dao.<Sysprop>read(appid, counter.getId()).getVotes().intValue());
+		// every object which was created is reachable by paging
+		Set<String> ids = new HashSet<String>();
+		for (Iterator<ParaObject> it = dao.iterate(appid, null); it.hasNext();) {
+			ids.add(it.next().getId());
+		}
+		assertEquals(threads * 25 + 1, ids.size());
+	}
+
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.core.Tag;
+import com.erudika.para.storage.FileStore;
+import com.erudika.para.storage.LocalFileStore;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class TieredDAOTest extends DAOTest {
+
+	private static final String APPID = "tiered-test";
+	private final Map<String, byte[]> files = new HashMap<String, byte[]>();
+
+	public TieredDAOTest() {
+		super();
+		dao = new TieredDAO(new MockDAO(), new MemoryFileStore(files),
+				Collections.singletonMap("sysprop", TimeUnit.DAYS.toMillis(365)), 1000, 16);
+	}
+
+	@Test
+	public void testArchive() {
+		MockDAO base = new MockDAO();
+		TieredDAO tiered = new TieredDAO(base, new MemoryFileStore(files),
+				Collections.singletonMap("sysprop", TimeUnit.DAYS.toMillis(30)), 3, 2);
+		long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(60);
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			Sysprop s = new Sysprop("cold" + i);
+			s.setTimestamp(old);
+			s.setParentid("parent");
+			s.addProperty("num", i);
+			tiered.create(APPID, s);
+			ids.add(s.getId());
+		}
+		Sysprop hot = new Sysprop("hot");
+		hot.setTimestamp(old);
+		hot.setUpdated(System.currentTimeMillis());
+		tiered.create(APPID, hot);
+		Tag tag = new Tag("oldtag");
+		tag.setTimestamp(old);
+		tiered.create(APPID, tag);
+
+		assertEquals(0, tiered.archive(null));
+		assertEquals(10, tiered.archive(APPID));
+		assertEquals(0, tiered.archive(APPID));
+		// 10 objects in segments of 3
+		int segments = 0;
+		for (String path : files.keySet()) {
+			if (path.startsWith("tiering/" + APPID + "/sysprop/")) {
+				segments++;
+			}
+		}
+		assertEquals(4, segments);
+
+		// the data store keeps only tombstones, reads return the archived objects
+		assertTrue(TieredDAO.isTombstone(base.read(APPID, "cold0")));
+		Sysprop cold = tiered.read(APPID, "cold0");
+		assertNotNull(cold);
+		assertEquals("sysprop", cold.getType());
+		assertEquals("parent", cold.getParentid());
+		assertEquals(0, cold.getProperty("num"));
+		assertEquals(old, (long) cold.getTimestamp());
+		assertEquals(9, ((Sysprop) tiered.read(APPID, "cold9", ReadConsistency.STRONG)).getProperty("num"));
+		assertFalse(TieredDAO.isTombstone(base.read(APPID, hot.getId())));
+		assertFalse(TieredDAO.isTombstone(base.read(APPID, tag.getId())));
+
+		List<String> keys = new ArrayList<String>(ids);
+		keys.add(hot.getId());
+		Map<String, Sysprop> all = tiered.readAll(APPID, keys, true);
+		assertEquals(11, all.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, all.get("cold" + i).getProperty("num"));
+		}
+		Map<String, Sysprop> partial = tiered.readAll(APPID, Arrays.asList("cold5", "hot"),
+				Arrays.asList("parentid"));
+		assertEquals("parent", partial.get("cold5").getParentid());
+		assertEquals("sysprop", partial.get("cold5").getType());
+
+		// archived objects don't show up in scans
+		int scanned = 0;
+		for (Iterator<ParaObject> it = tiered.iterate(APPID, null); it.hasNext();) {
+			assertFalse(TieredDAO.isTombstone(it.next()));
+			scanned++;
+		}
+		assertEquals(2, scanned);
+		assertTrue(tiered.readByField(APPID, "parentid", "parent", null).isEmpty());
+
+		// updates bring objects back
+		cold.addProperty("num", 100);
+		tiered.update(APPID, cold);
+		Sysprop restored = base.read(APPID, "cold0");
+		assertEquals("sysprop", restored.getType());
+		assertEquals(100, restored.getProperty("num"));
+		assertNotNull(restored.getUpdated());
+
+		Sysprop cold1 = tiered.read(APPID, "cold1");
+		cold1.setName("renamed");
+		tiered.updateAll(APPID, new ArrayList<Sysprop>(Arrays.asList(cold1)));
+		restored = base.read(APPID, "cold1");
+		assertEquals("renamed", restored.getName());
+		assertEquals(1, restored.getProperty("num"));
+
+		assertNotNull(tiered.increment(APPID, "cold2", "votes", 1));
+		assertEquals(1, (int) ((Sysprop) base.read(APPID, "cold2")).getVotes());
+
+		tiered.delete(APPID, new Sysprop("cold3"));
+		assertNull(tiered.read(APPID, "cold3"));
+		assertEquals(9, tiered.readAll(APPID, ids, true).size());
+	}
+
+	@Test
+	public void testArchiveToLocalFileStore() throws IOException {
+		File folder = Files.createTempDirectory("para-tiering").toFile();
+		try {
+			MockDAO base = new MockDAO();
+			TieredDAO tiered = new TieredDAO(base, new LocalFileStore(folder.getAbsolutePath()),
+					Collections.singletonMap("sysprop", TimeUnit.DAYS.toMillis(30)), 5, 2);
+			createOld(tiered, 12);
+			assertEquals(12, tiered.archive(APPID));
+			File[] segments = new File(folder, "tiering/" + APPID + "/sysprop").listFiles();
+			assertNotNull(segments);
+			assertEquals(3, segments.length);
+			Sysprop tombstone = base.read(APPID, "cold7");
+			assertTrue(TieredDAO.isTombstone(tombstone));
+			assertTrue(new File(folder, tombstone.getName()).isFile());
+			assertEquals(7, ((Sysprop) tiered.read(APPID, "cold7")).getProperty("num"));
+
+			// the archived type is kept, so the object can be removed from the search index
+			ParaObject stub = TieredDAO.getArchivedStub(tombstone);
+			assertEquals("sysprop", stub.getType());
+			assertEquals("cold7", stub.getId());
+			assertEquals(APPID, stub.getAppid());
+			assertNull(TieredDAO.getArchivedStub(new Sysprop("cold7")));
+		} finally {
+			FileUtils.deleteQuietly(folder);
+		}
+	}
+
+	@Test
+	public void testUnreadableSegment() {
+		// the file is stored somewhere else, so the tombstones would point to a missing segment
+		MockDAO base = new MockDAO();
+		TieredDAO tiered = new TieredDAO(base, new MemoryFileStore(files) {
+			public InputStream load(String path) {
+				return null;
+			}
+		}, Collections.singletonMap("sysprop", TimeUnit.DAYS.toMillis(30)), 5, 2);
+		createOld(tiered, 3);
+		assertEquals(0, tiered.archive(APPID));
+		assertEquals("sysprop", base.read(APPID, "cold0").getType());
+		assertTrue(files.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentChanges() {
+		final MockDAO base = new MockDAO();
+		TieredDAO tiered = new TieredDAO(base, new MemoryFileStore(files) {
+			public String store(String path, InputStream data) {
+				// updated and incremented while the segment is being written
+				Sysprop cold1 = base.read(APPID, "cold1");
+				cold1.setName("changed");
+				base.update(APPID, cold1);
+				base.increment(APPID, "cold2", "votes", 1);
+				return super.store(path, data);
+			}
+		}, Collections.singletonMap("sysprop", TimeUnit.DAYS.toMillis(30)), 5, 2);
+		createOld(tiered, 3);
+		// the changed objects are only moved if they're old enough the next time
+		assertEquals(1, tiered.archive(APPID));
+		assertTrue(TieredDAO.isTombstone(base.read(APPID, "cold0")));
+		assertEquals("changed", base.read(APPID, "cold1").getName());
+		assertEquals(1, (int) ((Sysprop) base.read(APPID, "cold2")).getVotes());
+	}
+
+	private void createOld(DAO tiered, int count) {
+		long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(60);
+		for (int i = 0; i < count; i++) {
+			Sysprop s = new Sysprop("cold" + i);
+			s.setTimestamp(old);
+			s.addProperty("num", i);
+			tiered.create(APPID, s);
+		}
+	}
+
+	@Test
+	public void testPolicies() {
+		assertTrue(TieredDAO.getPolicies().isEmpty());
+	}
+
+	private static class MemoryFileStore implements FileStore {
+		private final Map<String, byte[]> files;
+
+		MemoryFileStore(Map<String, byte[]> files) {
+			this.files = files;
+		}
+
+		public InputStream load(String path) {
+			return files.containsKey(path) ? new ByteArrayInputStream(files.get(path)) : null;
+		}
+
+		public String store(String path, InputStream data) {
+			try {
+				files.put(path, IOUtils.toByteArray(data));
+				return path;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		public boolean delete(String path) {
+			return files.remove(path) != null;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.persistence;
+
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.core.Tag;
+import com.erudika.para.core.User;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class WriteBehindDAOTest extends DAOTest {
+
+	public WriteBehindDAOTest() {
+		super();
+		dao = new WriteBehindDAO(new MockDAO(), new HashSet<String>(Arrays.asList("sysprop", "tag")), 0, 1000);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCoalescedWrites() {
+		DAO mock = spy(new MockDAO());
+		WriteBehindDAO wb = new WriteBehindDAO(mock, new HashSet<String>(Arrays.asList("sysprop")), 0, 1000);
+		Sysprop s = new Sysprop("hot");
+		wb.create(appid1, s);
+
+		for (int i = 1; i <= 100; i++) {
+			s.addProperty("count", i);
+			wb.update(appid1, s);
+		}
+		assertEquals(1, wb.getPendingCount());
+		assertEquals(100, ((Sysprop) wb.read(appid1, s.getId())).getProperty("count"));
+		assertEquals(100, ((Sysprop) wb.readAll(appid1, Arrays.asList(s.getId()), true).get(s.getId())).
+				getProperty("count"));
+		verify(mock, never()).update(anyString(), any(Sysprop.class));
+
+		wb.flush();
+		assertEquals(0, wb.getPendingCount());
+		verify(mock, times(1)).updateAll(eq(appid1), anyList());
+		assertEquals(100, ((Sysprop) mock.read(appid1, s.getId())).getProperty("count"));
+
+		// deleting a pending object drops it from the buffer
+		wb.update(appid1, s);
+		wb.delete(appid1, s);
+		assertEquals(0, wb.getPendingCount());
+		assertNull(wb.read(appid1, s.getId()));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFlushWhenFull() throws InterruptedException {
+		DAO mock = spy(new MockDAO());
+		WriteBehindDAO wb = new WriteBehindDAO(mock, new HashSet<String>(Arrays.asList("sysprop")), 0, 2);
+		Sysprop s1 = new Sysprop("full1");
+		Sysprop s2 = new Sysprop("full2");
+		List<Sysprop> list = Arrays.asList(s1, s2);
+		wb.createAll(appid1, list);
+		wb.updateAll(appid1, list);
+		for (int i = 0; i < 50 && wb.getPendingCount() > 0; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, wb.getPendingCount());
+		verify(mock, timeout(1000)).updateAll(eq(appid1), anyList());
+		wb.shutdown();
+	}
+
+	@Test
+	public void testUnbufferedTypes() {
+		DAO mock = spy(new MockDAO());
+		WriteBehindDAO wb = new WriteBehindDAO(mock, new HashSet<String>(Arrays.asList("tag")), 0, 1000);
+		Sysprop s = new Sysprop("direct");
+		wb.create(appid1, s);
+		wb.update(appid1, s);
+		assertEquals(0, wb.getPendingCount());
+		verify(mock, times(1)).update(appid1, s);
+	}
+
+	@Test
+	public void testBufferedCopies() {
+		WriteBehindDAO wb = new WriteBehindDAO(new MockDAO(), new HashSet<String>(Arrays.asList("sysprop")), 0, 1000);
+		Sysprop s = new Sysprop("copied");
+		wb.create(appid1, s);
+		s.addProperty("count", 1);
+		wb.update(appid1, s);
+		// changes made after the update aren't seen by the buffer
+		s.addProperty("count", 2);
+		assertEquals(1, ((Sysprop) wb.read(appid1, s.getId())).getProperty("count"));
+		((Sysprop) wb.read(appid1, s.getId())).addProperty("count", 3);
+		assertEquals(1, ((Sysprop) wb.read(appid1, s.getId())).getProperty("count"));
+		assertNotSame(s, wb.read(appid1, s.getId()));
+		wb.flush();
+		assertEquals(1, ((Sysprop) wb.read(appid1, s.getId())).getProperty("count"));
+	}
+
+	@Test
+	public void testInvalidAndSpecialObjects() {
+		DAO mock = spy(new MockDAO());
+		WriteBehindDAO wb = new WriteBehindDAO(mock, new HashSet<String>(Arrays.asList("tag", "user")), 0, 1000);
+		Tag t = new Tag("valid");
+		wb.create(appid1, t);
+		t.setTag(null);
+		wb.update(appid1, t);
+		assertEquals(0, wb.getPendingCount());
+		verify(mock, never()).update(appid1, t);
+		assertEquals("valid", ((Tag) wb.read(appid1, t.getId())).getTag());
+
+		User u = new User("wb-user");
+		wb.update(appid1, u);
+		assertEquals(0, wb.getPendingCount());
+		verify(mock, times(1)).update(appid1, u);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRequeueFailedUpdates() {
+		DAO mock = spy(new MockDAO());
+		WriteBehindDAO wb = new WriteBehindDAO(mock, new HashSet<String>(Arrays.asList("sysprop")), 0, 1000);
+		Sysprop s1 = new Sysprop("failing1");
+		Sysprop s2 = new Sysprop("failing2");
+		wb.createAll(appid1, Arrays.asList(s1, s2));
+		wb.updateAll(appid1, Arrays.asList(s1, s2));
+		assertEquals(2, wb.getPendingCount());
+
+		doThrow(new UpdateFailedException(appid1, Arrays.asList(s2.getId()))).
+				when(mock).updateAll(eq(appid1), anyList());
+		wb.flush();
+		// only the object which failed is written again
+		assertEquals(1, wb.getPendingCount());
+		assertNotNull(wb.read(appid1, s2.getId()));
+
+		doCallRealMethod().when(mock).updateAll(eq(appid1), anyList());
+		wb.flush();
+		assertEquals(0, wb.getPendingCount());
+	}
+}
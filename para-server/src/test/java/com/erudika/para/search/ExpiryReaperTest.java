@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013-2015 Erudika. http://erudika.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For issues and patches go to: https://github.com/erudika
+ */
+package com.erudika.para.search;
+
+import com.erudika.para.core.ParaObject;
+import com.erudika.para.core.ParaObjectUtils;
+import com.erudika.para.core.Sysprop;
+import com.erudika.para.core.Vote;
+import com.erudika.para.persistence.DAO;
+import com.erudika.para.persistence.MockDAO;
+import com.erudika.para.utils.Pager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ *
+ * @author Alex Bogdanovski [alex@erudika.com]
+ */
+public class ExpiryReaperTest {
+
+	private static final String APPID = "expiry-test";
+	private static final long NOW = System.currentTimeMillis();
+
+	private DAO dao;
+	private Search search;
+
+	@Before
+	public void setUp() {
+		dao = new MockDAO();
+		search = mock(Search.class);
+		// the index finds the expired objects in the data store
+		when(search.findQuery(eq(APPID), anyString(), anyString(), (Pager[]) anyVararg())).
+				thenAnswer(new Answer<List<ParaObject>>() {
+			public List<ParaObject> answer(InvocationOnMock invocation) throws Throwable {
+								Pager pager = (Pager) invocation.getArguments()[3];
+				List<ParaObject> expired = new ArrayList<ParaObject>();
+				for (Iterator<ParaObject> it = dao.iterate(APPID, null); it.hasNext();) {
+					ParaObject obj = it.next();
+					Long expiresAt = ParaObjectUtils.getExpiresAt(obj);
+					if (expiresAt != null && expiresAt <= NOW && expired.size() < pager.getLimit()) {
+						expired.add(obj);
+					}
+				}
+				return expired;
+			}
+		});
+		for (int i = 0; i < 25; i++) {
+			Vote v = new Vote("u" + i, "v" + i, "up");
+			v.setExpiresAfter(10L);
+			v.setTimestamp((i < 20) ? NOW - 60000 : NOW);
+			dao.create(APPID, v);
+		}
+		Sysprop s = new Sysprop("forever");
+		s.setTimestamp(NOW - 60000);
+		dao.create(APPID, s);
+	}
+
+	@Test
+	public void testPurge() {
+		ExpiryReaper reaper = new ExpiryReaper(dao, search, 8, 100, false);
+		assertEquals(0, reaper.purge(null));
+		assertEquals(20, reaper.purge(APPID, NOW));
+		// three batches of 8, 8 and 4
+		verify(search, times(3)).findQuery(eq(APPID), anyString(), anyString(), (Pager[]) anyVararg());
+		assertNull(dao.read(APPID, "vote:u0:v0"));
+		assertNotNull(dao.read(APPID, "vote:u20:v20"));
+		assertNotNull(dao.read(APPID, "forever"));
+		assertEquals(0, reaper.purge(APPID, NOW));
+	}
+
+	@Test
+	public void testPurgeWithNativeTTL() {
+		ExpiryReaper reaper = new ExpiryReaper(dao, search, 100, 100, true);
+		// the data store removes expired objects by itself, so they're only removed from the index
+		assertEquals(20, reaper.purge(APPID, NOW));
+		verify(search).unindexAll(eq(APPID), anyListOf(ParaObject.class));
+		assertNotNull(dao.read(APPID, "vote:u0:v0"));
+	}
+
+	@Test
+	public void testPurgeStopsWithoutProgress() {
+		ExpiryReaper reaper = new ExpiryReaper(dao, search, 8, 100, true);
+		// the same batch is found over and over again, because nothing is deleted
+		assertEquals(8, reaper.purge(APPID, NOW));
+		verify(search, times(2)).findQuery(eq(APPID), anyString(), anyString(), (Pager[]) anyVararg());
+	}
+}